@@ -0,0 +1,110 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks the pure in-memory allocation engine, without Spring or a database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OccupancyIndexBenchmark {
+
+  @Param({ "25", "10000", "1000000" })
+  public int lotSize;
+
+  @Param({ "0", "50", "95" })
+  public int occupancyPercent;
+
+  private OccupancyIndex occupancyIndex;
+
+  @Setup
+  public void setUp() {
+    occupancyIndex = new OccupancyIndex();
+    occupancyIndex.rebuild(LotLayout.spots(lotSize, occupancyPercent));
+  }
+
+  @State(Scope.Thread)
+  public static class Driver {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final String vehicleId = "Benchmark" + THREADS.incrementAndGet();
+
+    private int next;
+
+    VehicleType nextType() {
+      return LotLayout.VEHICLE_MIX[next++ & (LotLayout.VEHICLE_MIX.length - 1)];
+    }
+  }
+
+  @Benchmark
+  public long[] parkAndLeave(Driver driver) {
+    long[] spotIds = occupancyIndex.claim(driver.nextType());
+    if (spotIds != null && occupancyIndex.assign(driver.vehicleId, spotIds)) {
+      occupancyIndex.unassign(driver.vehicleId, spotIds);
+      occupancyIndex.release(spotIds);
+    }
+    return spotIds;
+  }
+
+  @Benchmark
+  public int getRemainingSpots() {
+    return occupancyIndex.getRemainingSpots();
+  }
+
+  @Benchmark
+  public boolean isFull(Driver driver) {
+    return !occupancyIndex.hasCapacity(driver.nextType());
+  }
+
+  /**
+   * Builds lots in the row layout of {@link assessment.parkinglot.factories.ParkingSpotGenerator}.
+   */
+  static final class LotLayout {
+
+    static final VehicleType[] VEHICLE_MIX = {
+        VehicleType.CAR, VehicleType.CAR, VehicleType.MOTORCYCLE, VehicleType.CAR,
+        VehicleType.VAN, VehicleType.CAR, VehicleType.MOTORCYCLE, VehicleType.CAR };
+
+    private static final ParkingSpotType[] ROW_TYPES = {
+        ParkingSpotType.MOTORCYCLE,
+        ParkingSpotType.COMPACT, ParkingSpotType.COMPACT,
+        ParkingSpotType.REGULAR, ParkingSpotType.REGULAR };
+
+    private LotLayout() {}
+
+    static List<ParkingSpot> spots(int lotSize, int occupancyPercent) {
+      List<ParkingSpot> spots = new ArrayList<>(lotSize);
+      for (int i = 0; i < lotSize; i++) {
+        ParkingSpotType type = ROW_TYPES[i / 10 % ROW_TYPES.length];
+        Vehicle vehicle = i % 100 < occupancyPercent ? new Vehicle("Parked" + i, VehicleType.CAR) : null;
+        spots.add(new ParkingSpot(i + 1L, type, vehicle));
+      }
+      return spots;
+    }
+  }
+}
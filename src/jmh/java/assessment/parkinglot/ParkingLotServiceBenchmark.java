@@ -0,0 +1,109 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
+import assessment.parkinglot.services.ParkingLotService;
+import assessment.parkinglot.services.VehicleAlreadyParkedException;
+import assessment.parkinglot.services.VehicleNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks {@link ParkingLotService} against the embedded H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParkingLotServiceBenchmark {
+
+  private static final int SEEDED_SPOTS = 25;
+
+  @Param({ "25", "10000", "1000000" })
+  public int lotSize;
+
+  @Param({ "0", "50", "95" })
+  public int occupancyPercent;
+
+  private ConfigurableApplicationContext context;
+
+  private ParkingLotService parkingLotService;
+
+  @Setup
+  public void setUp() {
+    context = new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .web(WebApplicationType.NONE)
+        .properties(
+            "parking-lot.generated-spots=" + (lotSize - SEEDED_SPOTS),
+            "logging.level.root=WARN")
+        .run();
+    JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+    jdbcTemplate.update("INSERT INTO vehicle (id, type) SELECT 'Parked' || id, 'CAR' FROM parking_spot WHERE MOD(id, 100) < ?",
+        occupancyPercent);
+    jdbcTemplate.update("UPDATE parking_spot SET vehicle_id = 'Parked' || id WHERE MOD(id, 100) < ?", occupancyPercent);
+    parkingLotService = context.getBean(ParkingLotService.class);
+    parkingLotService.loadOccupancy();
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @State(Scope.Thread)
+  public static class Driver {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final String vehicleId = "Benchmark" + THREADS.incrementAndGet();
+
+    private int next;
+
+    VehicleType nextType() {
+      return OccupancyIndexBenchmark.LotLayout.VEHICLE_MIX[next++ & (OccupancyIndexBenchmark.LotLayout.VEHICLE_MIX.length - 1)];
+    }
+  }
+
+  @Benchmark
+  public boolean parkAndLeave(Driver driver) throws ParkingLotNotFoundException, VehicleNotFoundException {
+    try {
+      parkingLotService.park(ParkingLot.DEFAULT_ID, new ParkVehicleRequest(driver.vehicleId, driver.nextType()));
+    } catch (VehicleAlreadyParkedException | NoAvailableSpotsException e) {
+      return false;
+    }
+    parkingLotService.leave(ParkingLot.DEFAULT_ID, driver.vehicleId);
+    return true;
+  }
+
+  @Benchmark
+  public Integer getRemainingSpots() throws ParkingLotNotFoundException {
+    return parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID);
+  }
+
+  @Benchmark
+  public Boolean isFull(Driver driver) throws ParkingLotNotFoundException {
+    return parkingLotService.isFull(ParkingLot.DEFAULT_ID, driver.nextType());
+  }
+}
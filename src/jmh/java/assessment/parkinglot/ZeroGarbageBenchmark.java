@@ -0,0 +1,105 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.response.ParkingResult;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
+import assessment.parkinglot.services.ParkingLotService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks the result-code park, leave and is-full paths of {@link ParkingLotService} in the
+ * in-memory allocation mode with {@code parking-lot.persistence=memory}, in a lot with room and in
+ * a full one. Run with the gc
+ * profiler by {@code ./gradlew allocationGate}, which fails if any of them allocates per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZeroGarbageBenchmark {
+
+  private static final int SEEDED_SPOTS = 25;
+
+  private static final int LOT_SIZE = 10_000;
+
+  @Param({ "50", "100" })
+  public int occupancyPercent;
+
+  private ConfigurableApplicationContext context;
+
+  private ParkingLotService parkingLotService;
+
+  @Setup
+  public void setUp() {
+    context = new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .web(WebApplicationType.NONE)
+        .properties(
+            "parking-lot.persistence=memory",
+            "parking-lot.in-memory-allocation=true",
+            "parking-lot.generated-spots=" + (LOT_SIZE - SEEDED_SPOTS),
+            "logging.level.root=WARN")
+        .run();
+    JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+    jdbcTemplate.update("INSERT INTO vehicle (id, type) SELECT 'Parked' || id, 'CAR' FROM parking_spot WHERE MOD(id, 100) < ?",
+        occupancyPercent);
+    jdbcTemplate.update("UPDATE parking_spot SET vehicle_id = 'Parked' || id WHERE MOD(id, 100) < ?", occupancyPercent);
+    parkingLotService = context.getBean(ParkingLotService.class);
+    parkingLotService.loadOccupancy();
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @State(Scope.Thread)
+  public static class Driver {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final String vehicleId = "Benchmark" + THREADS.incrementAndGet();
+
+    private int next;
+
+    VehicleType nextType() {
+      return OccupancyIndexBenchmark.LotLayout.VEHICLE_MIX[next++ & (OccupancyIndexBenchmark.LotLayout.VEHICLE_MIX.length - 1)];
+    }
+  }
+
+  @Benchmark
+  public ParkingResult.Status parkAndLeave(Driver driver) throws ParkingLotNotFoundException {
+    ParkingResult.Status parked = parkingLotService.tryPark(ParkingLot.DEFAULT_ID, driver.vehicleId, driver.nextType());
+    return parked == ParkingResult.Status.PARKED ? parkingLotService.tryLeave(ParkingLot.DEFAULT_ID, driver.vehicleId) : parked;
+  }
+
+  @Benchmark
+  public ParkingResult.Status leaveUnknown(Driver driver) throws ParkingLotNotFoundException {
+    return parkingLotService.tryLeave(ParkingLot.DEFAULT_ID, driver.vehicleId);
+  }
+
+  @Benchmark
+  public boolean isFull(Driver driver) throws ParkingLotNotFoundException {
+    return parkingLotService.isFullNow(ParkingLot.DEFAULT_ID, driver.nextType());
+  }
+}
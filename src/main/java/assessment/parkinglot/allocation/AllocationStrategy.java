@@ -0,0 +1,21 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.VehicleType;
+
+/**
+ * Chooses the spots a vehicle parks on, out of the free spots of a lot.
+ * <p>
+ * The service picks one by {@code parking-lot.allocation.strategy} and every lot's
+ * {@link OccupancyIndex} hands its claims to it. Implementations must be thread-safe and should
+ * only ask {@link FreeSpots} a bounded number of questions per claim, since they run on every park.
+ */
+public interface AllocationStrategy {
+
+  /**
+   * Claims {@code into.length} spots of one of the vehicle type's allowed spot types, writing
+   * their positions to {@code into}.
+   *
+   * @return {@code false}, without claiming anything, if there is not enough room
+   */
+  boolean claim(VehicleType vehicleType, FreeSpots freeSpots, long[] into);
+}
@@ -0,0 +1,46 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+
+/**
+ * Immutable view of the availability of one lot as it was between two writes, so a vehicle
+ * taking up several spots is always seen with all of them taken or all of them free.
+ */
+public final class Availability {
+
+  private final long version;
+
+  private final int[] freeSpots;
+
+  private final boolean[] capacity;
+
+  Availability(long version, int[] freeSpots, boolean[] capacity) {
+    this.version = version;
+    this.freeSpots = freeSpots;
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return the number of writes to the lot this view includes
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public int countFree(ParkingSpotType type) {
+    return freeSpots[type.ordinal()];
+  }
+
+  public int getRemainingSpots() {
+    int remaining = 0;
+    for (int free : freeSpots) {
+      remaining += free;
+    }
+    return remaining;
+  }
+
+  public boolean hasCapacity(VehicleType vehicleType) {
+    return capacity[vehicleType.ordinal()];
+  }
+}
@@ -0,0 +1,44 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Takes the smallest allowed spot type with room, so cars fill compact spots first, and takes
+ * single spots out of free runs too short for a van before any other, and otherwise off the end
+ * of a run, so runs a van could use are neither split nor used up while a fragment is free.
+ * <p>
+ * Single-spot claims on pools keeping free runs go through the pool's run lock rather than the
+ * lock-free path, which is the price of choosing the spot by its neighbours.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.allocation.strategy", havingValue = "best-fit")
+public class BestFitStrategy implements AllocationStrategy {
+
+  private final Map<VehicleType, ParkingSpotType[]> smallestFirst = new EnumMap<>(VehicleType.class);
+
+  public BestFitStrategy() {
+    for (VehicleType vehicleType : VehicleType.values()) {
+      ParkingSpotType[] types = vehicleType.getTakeUpSpotTypes().clone();
+      Arrays.sort(types, Comparator.comparingInt(ParkingSpotType::ordinal));
+      smallestFirst.put(vehicleType, types);
+    }
+  }
+
+  @Override
+  public boolean claim(VehicleType vehicleType, FreeSpots freeSpots, long[] into) {
+    for (ParkingSpotType type : smallestFirst.get(vehicleType)) {
+      if (freeSpots.claimFragment(type, into)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
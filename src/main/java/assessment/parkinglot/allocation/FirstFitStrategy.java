@@ -0,0 +1,26 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes the first allowed spot type with room, in the order the vehicle type lists them, and
+ * whichever of its spots the pool hands out cheapest. Claims stay lock-free and contending ones
+ * spread over the lot, at the cost of cars taking regular spots out of runs vans could use.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.allocation.strategy", havingValue = "first-fit", matchIfMissing = true)
+public class FirstFitStrategy implements AllocationStrategy {
+
+  @Override
+  public boolean claim(VehicleType vehicleType, FreeSpots freeSpots, long[] into) {
+    for (ParkingSpotType type : vehicleType.getTakeUpSpotTypes()) {
+      if (freeSpots.claim(type, into)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,159 @@
+package assessment.parkinglot.allocation;
+
+import java.util.Arrays;
+
+/**
+ * Segment tree over the words of a {@link SpotPool} bitset that finds the leftmost run of
+ * adjacent free spots of a given length in O(log n).
+ * <p>
+ * Every node keeps the length of the free run touching its low end, the one touching its high
+ * end and the longest one inside it, so runs spanning several words are found and merged as
+ * spots are freed. It also keeps the leftmost run inside it that is too short for the vehicles
+ * the pool serves, so single spots can be taken from such fragments rather than from a run one of
+ * those vehicles could use. Not thread-safe: the owning pool serializes access.
+ */
+final class FreeRunTree {
+
+  private static final int WORD_BITS = 64;
+
+  private final int leaves;
+
+  private final int fragmentLength;
+
+  private final long[] words;
+
+  private final int[] prefix;
+
+  private final int[] suffix;
+
+  private final int[] longest;
+
+  private final int[] fragment;
+
+  /**
+   * @param fragmentLength free runs shorter than this count as fragments
+   */
+  FreeRunTree(int wordCount, int fragmentLength) {
+    int size = 1;
+    while (size < wordCount) {
+      size <<= 1;
+    }
+    leaves = size;
+    words = new long[size];
+    prefix = new int[2 * size];
+    suffix = new int[2 * size];
+    longest = new int[2 * size];
+    fragment = new int[2 * size];
+    Arrays.fill(fragment, -1);
+    this.fragmentLength = fragmentLength;
+  }
+
+  int longestRun() {
+    return longest[1];
+  }
+
+  void update(int wordIndex, long word) {
+    words[wordIndex] = word;
+    int node = leaves + wordIndex;
+    prefix[node] = Long.numberOfTrailingZeros(~word);
+    suffix[node] = Long.numberOfLeadingZeros(~word);
+    longest[node] = longestRun(word);
+    int inWord = fragmentIn(word);
+    fragment[node] = inWord < 0 ? -1 : wordIndex * WORD_BITS + inWord;
+    int length = WORD_BITS;
+    for (node >>>= 1; node > 0; node >>>= 1, length <<= 1) {
+      int left = 2 * node;
+      int right = left + 1;
+      prefix[node] = prefix[left] == length ? length + prefix[right] : prefix[left];
+      suffix[node] = suffix[right] == length ? length + suffix[left] : suffix[right];
+      int middle = suffix[left] + prefix[right];
+      longest[node] = Math.max(Math.max(longest[left], longest[right]), middle);
+      if (fragment[left] >= 0) {
+        fragment[node] = fragment[left];
+      } else if (middle > 0 && middle < fragmentLength && suffix[left] < length && prefix[right] < length) {
+        int start = (node - Integer.highestOneBit(node)) * 2 * length;
+        fragment[node] = start + length - suffix[left];
+      } else {
+        fragment[node] = fragment[right];
+      }
+    }
+  }
+
+  /**
+   * @return the bit index where the leftmost free run shorter than the fragment length starts,
+   *     or {@code -1} if there is none
+   */
+  int findFragment() {
+    if (prefix[1] > 0 && prefix[1] < fragmentLength) {
+      return 0;
+    }
+    if (fragment[1] >= 0) {
+      return fragment[1];
+    }
+    int end = leaves * WORD_BITS;
+    return suffix[1] > 0 && suffix[1] < fragmentLength ? end - suffix[1] : -1;
+  }
+
+  /**
+   * @return the bit index where the leftmost run of at least {@code length} free spots starts,
+   *     or {@code -1} if there is none
+   */
+  int find(int length) {
+    if (longest[1] < length) {
+      return -1;
+    }
+    int node = 1;
+    int start = 0;
+    int span = leaves * WORD_BITS;
+    while (node < leaves) {
+      int left = 2 * node;
+      int right = left + 1;
+      span >>>= 1;
+      if (longest[left] >= length) {
+        node = left;
+      } else if (suffix[left] + prefix[right] >= length) {
+        return start + span - suffix[left];
+      } else {
+        node = right;
+        start += span;
+      }
+    }
+    return start + firstRun(words[node - leaves], length);
+  }
+
+  /**
+   * @return where the leftmost fragment touching neither end of the word starts, or {@code -1}
+   */
+  private int fragmentIn(long word) {
+    long starts = word & ~(word << 1) & ~1L;
+    while (starts != 0) {
+      int start = Long.numberOfTrailingZeros(starts);
+      int length = Long.numberOfTrailingZeros(~(word >>> start));
+      if (start + length == WORD_BITS) {
+        return -1;
+      }
+      if (length < fragmentLength) {
+        return start;
+      }
+      starts &= starts - 1;
+    }
+    return -1;
+  }
+
+  private static int longestRun(long word) {
+    int run = 0;
+    while (word != 0) {
+      word &= word >>> 1;
+      run++;
+    }
+    return run;
+  }
+
+  private static int firstRun(long word, int length) {
+    long starts = word;
+    for (int shift = 1; shift < length; shift++) {
+      starts &= word >>> shift;
+    }
+    return Long.numberOfTrailingZeros(starts);
+  }
+}
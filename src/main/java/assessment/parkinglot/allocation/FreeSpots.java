@@ -0,0 +1,61 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+
+/**
+ * The free spots of one lot as an {@link AllocationStrategy} sees them: one pool per
+ * {@link ParkingSpotType}, each answering what it is asked in constant or logarithmic time.
+ * <p>
+ * Spots are given as their positions in the lot, which order them like their ids, and every
+ * claim fills the whole array it is given with spots of a single type, adjacent ones for a
+ * vehicle taking up several spots, or takes nothing.
+ */
+public final class FreeSpots {
+
+  private final SpotPool[] pools;
+
+  FreeSpots(SpotPool[] pools) {
+    this.pools = pools;
+  }
+
+  public int countFree(ParkingSpotType type) {
+    return pools[type.ordinal()].freeCount();
+  }
+
+  public boolean canFit(ParkingSpotType type, int count) {
+    return pools[type.ordinal()].canFit(count);
+  }
+
+  /**
+   * @return the position the lowest claim of {@code count} spots of the type would start at, or
+   *     {@code -1} if there is no room
+   */
+  public int lowestFree(ParkingSpotType type, int count) {
+    return pools[type.ordinal()].lowestFree(count);
+  }
+
+  /**
+   * Claims whichever free spots of the type are cheapest to take.
+   */
+  public boolean claim(ParkingSpotType type, long[] into) {
+    return pools[type.ordinal()].claim(into, 0, into.length);
+  }
+
+  /**
+   * Claims the free spots of the type with the lowest positions.
+   */
+  public boolean claimLowest(ParkingSpotType type, long[] into) {
+    return pools[type.ordinal()].claimLowest(into, 0, into.length);
+  }
+
+  /**
+   * Claims a single spot of the type without splitting a run of free spots that a vehicle taking
+   * up several of them could use, preferring runs too short for such a vehicle.
+   */
+  public boolean claimFragment(ParkingSpotType type, long[] into) {
+    if (into.length != 1) {
+      return claim(type, into);
+    }
+    return pools[type.ordinal()].claimFragment(into, 0);
+  }
+}
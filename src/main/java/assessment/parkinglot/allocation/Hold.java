@@ -0,0 +1,55 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.VehicleType;
+
+import java.time.Instant;
+
+/**
+ * Spots claimed for a vehicle that has not arrived yet, until it parks or the hold expires.
+ */
+public class Hold {
+
+  private final String vehicleId;
+
+  private final VehicleType vehicleType;
+
+  private final long lotId;
+
+  private final long[] spotIds;
+
+  private final long expiresAtMillis;
+
+  volatile TimingWheel.Timer<Hold> timer;
+
+  public Hold(String vehicleId, VehicleType vehicleType, long lotId, long[] spotIds, long expiresAtMillis) {
+    this.vehicleId = vehicleId;
+    this.vehicleType = vehicleType;
+    this.lotId = lotId;
+    this.spotIds = spotIds;
+    this.expiresAtMillis = expiresAtMillis;
+  }
+
+  public String getVehicleId() {
+    return vehicleId;
+  }
+
+  public VehicleType getVehicleType() {
+    return vehicleType;
+  }
+
+  public long getLotId() {
+    return lotId;
+  }
+
+  public long[] getSpotIds() {
+    return spotIds;
+  }
+
+  public Instant getExpiresAt() {
+    return Instant.ofEpochMilli(expiresAtMillis);
+  }
+
+  long getExpiresAtMillis() {
+    return expiresAtMillis;
+  }
+}
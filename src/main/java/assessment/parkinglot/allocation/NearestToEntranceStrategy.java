@@ -0,0 +1,43 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes the free spots with the lowest ids across all allowed spot types, spots being numbered
+ * from the entrance outwards the way {@code data.sql} and the spot generator lay them out.
+ * Contending claims queue up at the low end of the lot instead of spreading over it.
+ * <p>
+ * The lowest free spot of each type is looked up again after a lost claim rather than kept in an
+ * array, so that claims allocate nothing.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.allocation.strategy", havingValue = "nearest-to-entrance")
+public class NearestToEntranceStrategy implements AllocationStrategy {
+
+  @Override
+  public boolean claim(VehicleType vehicleType, FreeSpots freeSpots, long[] into) {
+    ParkingSpotType[] types = vehicleType.getTakeUpSpotTypes();
+    int exhausted = 0;
+    while (true) {
+      int nearest = -1;
+      int nearestSpot = -1;
+      for (int i = 0; i < types.length; i++) {
+        int lowest = (exhausted & 1 << i) == 0 ? freeSpots.lowestFree(types[i], into.length) : -1;
+        if (lowest >= 0 && (nearest < 0 || lowest < nearestSpot)) {
+          nearest = i;
+          nearestSpot = lowest;
+        }
+      }
+      if (nearest < 0) {
+        return false;
+      }
+      if (freeSpots.claimLowest(types[nearest], into)) {
+        return true;
+      }
+      exhausted |= 1 << nearest;
+    }
+  }
+}
@@ -0,0 +1,821 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import static java.lang.String.format;
+
+/**
+ * In-memory view of which parking spots of one lot are free, kept per {@link ParkingSpotType},
+ * and of which spots every vehicle parked in the lot holds.
+ * <p>
+ * Every spot type has its own lock-free {@link SpotPool}, so claims on different types never
+ * contend. Vehicles are tracked in a {@link VehicleRegistry}, whose striped locking stripes the
+ * duplicate check by vehicle id. Nothing here holds a monitor, so virtual threads never pin on
+ * the allocation path. Which free spots a vehicle gets is up to the
+ * {@link AllocationStrategy}.
+ * <p>
+ * Availability is read from versioned {@link Availability} snapshots. Every write to the pools
+ * is counted as in flight while it runs and bumps the version once it is done; a reader only
+ * builds a snapshot from the pools when no write was in flight and the version did not move
+ * while it read them, and otherwise keeps the last snapshot it could build. Readers therefore
+ * never block writers and never see a multi-spot claim or release half done. As reads far
+ * outnumber writes, most of them just return the snapshot of the current version.
+ * <p>
+ * Spots can be added, retired and retyped while the lot is in use. Added spots within the id
+ * range the pools were sized for are freed word by word like any release. Spots beyond it need
+ * larger pools, which are allocated aside and then filled with a copy of the current ones in an
+ * exclusive section, that parks and leaves wait out instead of entering; they grow by half again
+ * so that further additions fit. Retiring or retyping takes a free spot out of its pool and, when
+ * retyped, frees it in the pool of its new type within one write. An occupied or held spot is
+ * left alone and changed when it is released.
+ */
+public class OccupancyIndex {
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  private static final int READ_ATTEMPTS = 8;
+
+  private static final int[] RUN_LENGTHS = new int[SPOT_TYPES.length];
+
+  static {
+    for (VehicleType vehicleType : VehicleType.values()) {
+      for (ParkingSpotType type : vehicleType.getTakeUpSpotTypes()) {
+        RUN_LENGTHS[type.ordinal()] = Math.max(RUN_LENGTHS[type.ordinal()], vehicleType.takeUpSpots());
+      }
+    }
+  }
+
+  private final VehicleRegistry parkedVehicles = new VehicleRegistry();
+
+  private final OccupancyListener listener;
+
+  /**
+   * Tells the listener about an assignment, per vehicle type by ordinal, and last for vehicles of
+   * no known type, so that assigning allocates nothing.
+   */
+  private final BiConsumer<String, long[]>[] assigned;
+
+  private final BiConsumer<String, long[]> unassigned;
+
+  private final AllocationStrategy strategy;
+
+  private final ReentrantLock rebuildLock = new ReentrantLock();
+
+  private volatile Layout layout = new Layout(0, 0);
+
+  private volatile boolean exclusive;
+
+  private final Map<Long, SpotChange> pendingChanges = new ConcurrentHashMap<>();
+
+  private final AtomicInteger writesInFlight = new AtomicInteger();
+
+  private final AtomicLong version = new AtomicLong();
+
+  private final AtomicReference<Availability> availability =
+      new AtomicReference<>(new Availability(0, new int[SPOT_TYPES.length], new boolean[VEHICLE_TYPES.length]));
+
+  public OccupancyIndex() {
+    this(null);
+  }
+
+  /**
+   * @param listener told about every assignment made after the index is built, or {@code null}
+   */
+  public OccupancyIndex(OccupancyListener listener) {
+    this(listener, new FirstFitStrategy());
+  }
+
+  @SuppressWarnings("unchecked")
+  public OccupancyIndex(OccupancyListener listener, AllocationStrategy strategy) {
+    this.listener = listener;
+    this.strategy = strategy;
+    if (listener == null) {
+      assigned = null;
+    } else {
+      assigned = new BiConsumer[VEHICLE_TYPES.length + 1];
+      for (VehicleType vehicleType : VEHICLE_TYPES) {
+        assigned[vehicleType.ordinal()] = (vehicleId, spotIds) -> listener.assigned(vehicleId, vehicleType, spotIds);
+      }
+      assigned[VEHICLE_TYPES.length] = (vehicleId, spotIds) -> listener.assigned(vehicleId, null, spotIds);
+    }
+    unassigned = listener == null ? null : listener::unassigned;
+  }
+
+  /**
+   * @return the vehicles the index was rebuilt with
+   */
+  public Map<String, long[]> rebuild(Iterable<ParkingSpot> spots) {
+    long[] counts = new long[SPOT_TYPES.length];
+    List<Long> retiring = new ArrayList<>();
+    for (ParkingSpot spot : spots) {
+      if (isInLot(spot)) {
+        counts[spot.getType().ordinal()]++;
+        if (spot.isRetired()) {
+          retiring.add(spot.getId());
+        }
+      }
+    }
+    long[][] spotIds = new long[SPOT_TYPES.length][];
+    for (int i = 0; i < spotIds.length; i++) {
+      spotIds[i] = new long[Math.toIntExact(counts[i])];
+    }
+    int[] filled = new int[SPOT_TYPES.length];
+    Map<String, List<Long>> occupied = new HashMap<>();
+    for (ParkingSpot spot : spots) {
+      if (!isInLot(spot)) {
+        continue;
+      }
+      int type = spot.getType().ordinal();
+      spotIds[type][filled[type]++] = spot.getId();
+      if (spot.getVehicle() != null) {
+        occupied.computeIfAbsent(spot.getVehicle().getId(), id -> new ArrayList<>()).add(spot.getId());
+      }
+    }
+    Map<String, long[]> vehicles = new HashMap<>();
+    occupied.forEach((vehicleId, ids) -> vehicles.put(vehicleId, ids.stream().mapToLong(Long::longValue).toArray()));
+    rebuild(spotIds, vehicles);
+    retireSpots(retiring.stream().mapToLong(Long::longValue).toArray());
+    return vehicles;
+  }
+
+  /**
+   * @return whether the spot is part of the lot, which retired spots only are until vacated
+   */
+  private static boolean isInLot(ParkingSpot spot) {
+    return !spot.isRetired() || spot.getVehicle() != null;
+  }
+
+  /**
+   * Rebuilds the index from the ids of the spots of every type, indexed by
+   * {@link ParkingSpotType#ordinal()}, and the spots every parked vehicle holds. The arrays of
+   * the vehicles are kept as they are.
+   */
+  public void rebuild(long[][] spotIds, Map<String, long[]> vehicles) {
+    rebuildLock.lock();
+    try {
+      rebuildLocked(spotIds, vehicles);
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  private void rebuildLocked(long[][] spotIds, Map<String, long[]> vehicles) {
+    Layout rebuilt = layOut(spotIds, vehicles);
+    beginExclusive();
+    try {
+      pendingChanges.clear();
+      parkedVehicles.clear();
+      vehicles.forEach((vehicleId, held) -> parkedVehicles.putIfAbsent(vehicleId, held, null));
+      layout = rebuilt;
+    } finally {
+      endExclusive();
+    }
+  }
+
+  private static Layout layOut(long[][] spotIds, Map<String, long[]> vehicles) {
+    long first = Long.MAX_VALUE;
+    long last = -1;
+    for (long[] ids : spotIds) {
+      for (long id : ids) {
+        first = Math.min(first, id);
+        last = Math.max(last, id);
+      }
+    }
+    long base = last < 0 ? 0 : first & -Long.SIZE;
+    Layout rebuilt = new Layout(base, Math.toIntExact(last - base + 1));
+    long[][] freeWords = new long[SPOT_TYPES.length][rebuilt.pools[0].capacity() >>> 6];
+    for (int type = 0; type < spotIds.length; type++) {
+      for (long id : spotIds[type]) {
+        int index = rebuilt.toIndex(id);
+        rebuilt.spotTypes[index] = SPOT_TYPES[type];
+        freeWords[type][index >>> 6] |= 1L << index;
+      }
+      rebuilt.spotCounts.set(type, spotIds[type].length);
+    }
+    for (long[] held : vehicles.values()) {
+      for (long id : held) {
+        int index = rebuilt.toIndex(id);
+        freeWords[rebuilt.spotTypes[index].ordinal()][index >>> 6] &= ~(1L << index);
+      }
+    }
+    for (int type = 0; type < freeWords.length; type++) {
+      rebuilt.pools[type].initialize(freeWords[type]);
+    }
+    return rebuilt;
+  }
+
+  /**
+   * @return the ids of the spots of every type, indexed by {@link ParkingSpotType#ordinal()}
+   */
+  public long[][] getSpotIds() {
+    Layout current = layout;
+    ParkingSpotType[] spotTypes = current.spotTypes.clone();
+    int[] counts = new int[SPOT_TYPES.length];
+    for (ParkingSpotType type : spotTypes) {
+      if (type != null) {
+        counts[type.ordinal()]++;
+      }
+    }
+    long[][] spotIds = new long[SPOT_TYPES.length][];
+    int[] filled = new int[SPOT_TYPES.length];
+    for (int i = 0; i < spotIds.length; i++) {
+      spotIds[i] = new long[counts[i]];
+    }
+    for (int index = 0; index < spotTypes.length; index++) {
+      ParkingSpotType type = spotTypes[index];
+      if (type != null) {
+        spotIds[type.ordinal()][filled[type.ordinal()]++] = current.base + index;
+      }
+    }
+    return spotIds;
+  }
+
+  /**
+   * @return a copy of the spots every parked vehicle holds
+   */
+  public Map<String, long[]> getParkedVehicles() {
+    return parkedVehicles.toMap();
+  }
+
+  /**
+   * Corrects the index where the given spots disagree with what it was rebuilt from, while it
+   * keeps serving parks and leaves. Only assignments still exactly as rebuilt are taken back, and
+   * vehicles are only put back on spots that are still free, so changes made since the rebuild
+   * are never undone.
+   *
+   * @param rebuiltFrom the vehicles the index was last rebuilt with
+   * @return {@code false}, without changing anything, if the spots themselves differ, which
+   * needs a rebuild
+   */
+  public boolean reconcile(Iterable<ParkingSpot> spots, Map<String, long[]> rebuiltFrom) {
+    return reconcile(spots, rebuiltFrom, null);
+  }
+
+  /**
+   * Reconciles like {@link #reconcile(Iterable, Map)}, telling {@code changes}, if given, about
+   * every vehicle taken back or put back.
+   */
+  public boolean reconcile(Iterable<ParkingSpot> spots, Map<String, long[]> rebuiltFrom, OccupancyListener changes) {
+    Layout current = layout;
+    int[] counts = new int[SPOT_TYPES.length];
+    Map<String, List<Long>> occupied = new HashMap<>();
+    Map<String, VehicleType> vehicleTypes = new HashMap<>();
+    List<Long> retiring = new ArrayList<>();
+    for (ParkingSpot spot : spots) {
+      if (!isInLot(spot)) {
+        continue;
+      }
+      if (spot.isRetired()) {
+        retiring.add(spot.getId());
+      }
+      long index = spot.getId() - current.base;
+      if (index < 0 || index >= current.spotTypes.length || current.spotTypes[(int) index] != spot.getType()) {
+        return false;
+      }
+      counts[spot.getType().ordinal()]++;
+      if (spot.getVehicle() != null) {
+        occupied.computeIfAbsent(spot.getVehicle().getId(), id -> new ArrayList<>()).add(spot.getId());
+        vehicleTypes.put(spot.getVehicle().getId(), spot.getVehicle().getType());
+      }
+    }
+    for (int type = 0; type < counts.length; type++) {
+      if (counts[type] != current.spotCounts.get(type)) {
+        return false;
+      }
+    }
+    rebuiltFrom.forEach((vehicleId, held) -> {
+      List<Long> stored = occupied.get(vehicleId);
+      if (!matches(stored, held) && unassign(vehicleId, held)) {
+        release(held);
+        if (changes != null) {
+          changes.unassigned(vehicleId, held);
+        }
+      }
+    });
+    occupied.forEach((vehicleId, stored) -> {
+      if (!matches(stored, rebuiltFrom.get(vehicleId))) {
+        long[] spotIds = stored.stream().mapToLong(Long::longValue).toArray();
+        boolean taken;
+        try {
+          taken = take(beginWrite(), spotIds);
+        } finally {
+          endWrite();
+        }
+        if (taken && !assign(vehicleId, vehicleTypes.get(vehicleId), spotIds)) {
+          release(spotIds);
+        } else if (taken && changes != null) {
+          changes.assigned(vehicleId, vehicleTypes.get(vehicleId), spotIds);
+        }
+      }
+    });
+    retireSpots(retiring.stream().mapToLong(Long::longValue).toArray());
+    return true;
+  }
+
+  private static boolean take(Layout current, long[] spotIds) {
+    for (int i = 0; i < spotIds.length; i++) {
+      int index = current.toIndex(spotIds[i]);
+      if (!current.pools[current.spotTypes[index].ordinal()].take(index)) {
+        for (int j = 0; j < i; j++) {
+          int taken = current.toIndex(spotIds[j]);
+          current.pools[current.spotTypes[taken].ordinal()].release(taken);
+        }
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matches(List<Long> stored, long[] held) {
+    if (stored == null || held == null || stored.size() != held.length) {
+      return stored == null && held == null;
+    }
+    for (long spotId : held) {
+      if (!stored.contains(spotId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the availability as of the latest write that could be read whole
+   */
+  public Availability getAvailability() {
+    Availability cached = availability.get();
+    for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+      long before = version.get();
+      if (cached.getVersion() == before) {
+        return cached;
+      }
+      if (writesInFlight.get() == 0) {
+        Layout current = layout;
+        int[] freeSpots = new int[SPOT_TYPES.length];
+        for (int type = 0; type < freeSpots.length; type++) {
+          freeSpots[type] = current.pools[type].freeCount();
+        }
+        boolean[] capacity = new boolean[VEHICLE_TYPES.length];
+        for (VehicleType vehicleType : VEHICLE_TYPES) {
+          capacity[vehicleType.ordinal()] = hasCapacity(current, vehicleType);
+        }
+        if (writesInFlight.get() == 0 && version.get() == before) {
+          Availability read = new Availability(before, freeSpots, capacity);
+          publish(read);
+          return read;
+        }
+      }
+      Thread.onSpinWait();
+      cached = availability.get();
+    }
+    return cached;
+  }
+
+  public int getRemainingSpots() {
+    return getAvailability().getRemainingSpots();
+  }
+
+  public int countFree(ParkingSpotType type) {
+    return getAvailability().countFree(type);
+  }
+
+  public int countSpots(ParkingSpotType type) {
+    return layout.spotCounts.get(type.ordinal());
+  }
+
+  /**
+   * @return the type of the spot, or {@code null} if it is not in the lot
+   */
+  public ParkingSpotType getSpotType(long spotId) {
+    Layout current = layout;
+    return current.covers(spotId) ? current.spotTypes[current.toIndex(spotId)] : null;
+  }
+
+  public boolean hasCapacity(VehicleType vehicleType) {
+    return getAvailability().hasCapacity(vehicleType);
+  }
+
+  /**
+   * Reads whether the vehicle fits straight from the pools rather than from a snapshot, so that
+   * it allocates nothing even right after a write, at the cost of possibly seeing the pools of
+   * the vehicle's spot types at slightly different moments.
+   */
+  public boolean canFit(VehicleType vehicleType) {
+    return hasCapacity(layout, vehicleType);
+  }
+
+  private static boolean hasCapacity(Layout current, VehicleType vehicleType) {
+    for (ParkingSpotType type : vehicleType.getTakeUpSpotTypes()) {
+      if (current.pools[type.ordinal()].canFit(vehicleType.takeUpSpots())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void publish(Availability read) {
+    Availability cached;
+    do {
+      cached = availability.get();
+      if (cached.getVersion() >= read.getVersion()) {
+        return;
+      }
+    } while (!availability.compareAndSet(cached, read));
+  }
+
+  /**
+   * @return the layout to write to, which stays current until {@link #endWrite()}
+   */
+  private Layout beginWrite() {
+    while (true) {
+      writesInFlight.incrementAndGet();
+      if (!exclusive) {
+        return layout;
+      }
+      writesInFlight.decrementAndGet();
+      while (exclusive) {
+        Thread.yield();
+      }
+    }
+  }
+
+  private void endWrite() {
+    version.incrementAndGet();
+    writesInFlight.decrementAndGet();
+  }
+
+  /**
+   * Waits for the writes in flight to finish and keeps new ones out until
+   * {@link #endExclusive()}, for replacing the layout. Only called under the rebuild lock.
+   */
+  private void beginExclusive() {
+    exclusive = true;
+    while (writesInFlight.get() != 0) {
+      Thread.onSpinWait();
+    }
+    writesInFlight.incrementAndGet();
+  }
+
+  private void endExclusive() {
+    version.incrementAndGet();
+    writesInFlight.decrementAndGet();
+    exclusive = false;
+  }
+
+  /**
+   * Marks as occupied as many free spots as the vehicle type takes up, all of one of its allowed
+   * spot types, as chosen by the allocation strategy. Vehicles taking up several spots get
+   * adjacent ones.
+   *
+   * @return the ids of the claimed spots, or {@code null} if there is not enough room
+   */
+  public long[] claim(VehicleType vehicleType) {
+    long[] spotIds = new long[vehicleType.takeUpSpots()];
+    return claim(vehicleType, spotIds) ? spotIds : null;
+  }
+
+  /**
+   * Claims spots like {@link #claim(VehicleType)}, writing their ids to {@code into} instead of
+   * a new array.
+   *
+   * @param into exactly as long as the number of spots the vehicle type takes up
+   * @return {@code false}, without claiming anything, if there is not enough room
+   */
+  public boolean claim(VehicleType vehicleType, long[] into) {
+    Layout current = beginWrite();
+    try {
+      if (!strategy.claim(vehicleType, current.freeSpots, into)) {
+        return false;
+      }
+    } finally {
+      endWrite();
+    }
+    for (int i = 0; i < into.length; i++) {
+      into[i] += current.base;
+    }
+    return true;
+  }
+
+  public void release(long... spotIds) {
+    release(spotIds, spotIds.length);
+  }
+
+  /**
+   * Frees the first {@code count} of the spots.
+   */
+  public void release(long[] spotIds, int count) {
+    Layout current = beginWrite();
+    try {
+      for (int i = 0; i < count; i++) {
+        int index = current.toIndex(spotIds[i]);
+        current.pools[current.spotTypes[index].ordinal()].release(index);
+      }
+    } finally {
+      endWrite();
+    }
+    if (!pendingChanges.isEmpty()) {
+      for (int i = 0; i < count; i++) {
+        if (pendingChanges.containsKey(spotIds[i])) {
+          settle(spotIds[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds free spots of the type to the lot, growing the pools first if the spots lie beyond the
+   * id range they were sized for.
+   *
+   * @throws IllegalArgumentException if one of the spots is in the lot already
+   */
+  public void addSpots(ParkingSpotType type, long[] spotIds) {
+    if (spotIds.length == 0) {
+      return;
+    }
+    long[] sorted = spotIds.clone();
+    Arrays.sort(sorted);
+    rebuildLock.lock();
+    try {
+      Layout current = layout;
+      for (int i = 0; i < sorted.length; i++) {
+        if (current.contains(sorted[i]) || i > 0 && sorted[i] == sorted[i - 1]) {
+          throw new IllegalArgumentException(format("Spot %d is in the lot already", sorted[i]));
+        }
+      }
+      if (!current.covers(sorted[0]) || !current.covers(sorted[sorted.length - 1])) {
+        current = grow(current, sorted[0], sorted[sorted.length - 1]);
+      }
+      int i = 0;
+      while (i < sorted.length) {
+        int word = current.toIndex(sorted[i]) >>> 6;
+        int from = i;
+        long mask = 0;
+        beginWrite();
+        try {
+          for (; i < sorted.length && current.toIndex(sorted[i]) >>> 6 == word; i++) {
+            int index = current.toIndex(sorted[i]);
+            current.spotTypes[index] = type;
+            mask |= 1L << index;
+          }
+          current.spotCounts.addAndGet(type.ordinal(), i - from);
+          current.pools[type.ordinal()].add(word, mask);
+        } finally {
+          endWrite();
+        }
+      }
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  /**
+   * Takes the spots out of the lot, the occupied or held ones once they are released.
+   *
+   * @return the ids of the spots that are only retired once released
+   * @throws IllegalArgumentException if one of the spots is not in the lot
+   */
+  public long[] retireSpots(long[] spotIds) {
+    return change(spotIds, SpotChange.RETIRE);
+  }
+
+  /**
+   * Changes the type of the spots, of the occupied or held ones once they are released.
+   *
+   * @return the ids of the spots that are only retyped once released
+   * @throws IllegalArgumentException if one of the spots is not in the lot
+   */
+  public long[] retypeSpots(long[] spotIds, ParkingSpotType type) {
+    return change(spotIds, SpotChange.retype(type));
+  }
+
+  /**
+   * Records the change for each spot before trying to take it, so that either the take succeeds
+   * and the change is made at once, or the spot is released later and sees the change.
+   */
+  private long[] change(long[] spotIds, SpotChange change) {
+    if (spotIds.length == 0) {
+      return spotIds;
+    }
+    rebuildLock.lock();
+    try {
+      Layout current = layout;
+      for (long spotId : spotIds) {
+        if (!current.contains(spotId)) {
+          throw new IllegalArgumentException(format("Spot %d is not in the lot", spotId));
+        }
+      }
+      long[] deferred = new long[spotIds.length];
+      int count = 0;
+      for (long spotId : spotIds) {
+        if (current.spotTypes[current.toIndex(spotId)] == change.type()) {
+          pendingChanges.remove(spotId);
+          continue;
+        }
+        pendingChanges.put(spotId, change);
+        if (!takeAndChange(spotId)) {
+          deferred[count++] = spotId;
+        }
+      }
+      return Arrays.copyOf(deferred, count);
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  /**
+   * Makes the pending change of a spot just released, unless it was claimed again in between.
+   */
+  private void settle(long spotId) {
+    rebuildLock.lock();
+    try {
+      if (pendingChanges.containsKey(spotId)) {
+        takeAndChange(spotId);
+      }
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  /**
+   * Takes the spot if it is free and makes its pending change, in one write. Only called under
+   * the rebuild lock.
+   *
+   * @return {@code false} if the spot is not free
+   */
+  private boolean takeAndChange(long spotId) {
+    Layout current = beginWrite();
+    try {
+      int index = current.toIndex(spotId);
+      ParkingSpotType type = current.spotTypes[index];
+      if (!current.pools[type.ordinal()].take(index)) {
+        return false;
+      }
+      SpotChange change = pendingChanges.remove(spotId);
+      current.spotCounts.decrementAndGet(type.ordinal());
+      current.spotTypes[index] = change.type();
+      if (change.type() != null) {
+        current.spotCounts.incrementAndGet(change.type().ordinal());
+        current.pools[change.type().ordinal()].release(index);
+      }
+      return true;
+    } finally {
+      endWrite();
+    }
+  }
+
+  /**
+   * Replaces the layout with one covering {@code first} to {@code last} as well, and half as many
+   * spots again as the current one for further additions.
+   */
+  private Layout grow(Layout current, long first, long last) {
+    int length = current.spotTypes.length;
+    long base = length == 0 ? first & -Long.SIZE : Math.min(current.base, first & -Long.SIZE);
+    long end = Math.max(length == 0 ? 0 : current.base + length, last + 1);
+    Layout grown = new Layout(base, Math.toIntExact(Math.max(end - base, (long) length + length / 2)));
+    int offset = Math.toIntExact(current.base - base);
+    long[][] freeWords = new long[SPOT_TYPES.length][grown.pools[0].capacity() >>> 6];
+    beginExclusive();
+    try {
+      if (length > 0) {
+        System.arraycopy(current.spotTypes, 0, grown.spotTypes, offset, length);
+        for (int type = 0; type < freeWords.length; type++) {
+          current.pools[type].copyTo(freeWords[type], offset >>> 6);
+          grown.spotCounts.set(type, current.spotCounts.get(type));
+        }
+      }
+      for (int type = 0; type < freeWords.length; type++) {
+        grown.pools[type].initialize(freeWords[type]);
+      }
+      layout = grown;
+    } finally {
+      endExclusive();
+    }
+    return grown;
+  }
+
+  public boolean isParked(String vehicleId) {
+    return parkedVehicles.contains(vehicleId);
+  }
+
+  public int countParkedVehicles() {
+    return parkedVehicles.size();
+  }
+
+  public long[] getSpotIds(String vehicleId) {
+    return parkedVehicles.get(vehicleId);
+  }
+
+  /**
+   * Records that a vehicle of no known type holds the given spots, as when it is put back on the
+   * spots it was just taken off.
+   *
+   * @return {@code false} if the vehicle already holds spots
+   */
+  public boolean assign(String vehicleId, long[] spotIds) {
+    return assign(vehicleId, null, spotIds);
+  }
+
+  /**
+   * Records that the vehicle holds the given spots.
+   *
+   * @return {@code false} if the vehicle already holds spots
+   */
+  public boolean assign(String vehicleId, VehicleType vehicleType, long[] spotIds) {
+    return parkedVehicles.putIfAbsent(vehicleId, spotIds,
+        assigned == null ? null : assigned[vehicleType == null ? VEHICLE_TYPES.length : vehicleType.ordinal()]);
+  }
+
+  /**
+   * Forgets that the vehicle holds the given spots, without freeing them.
+   *
+   * @return {@code false} if the vehicle does not hold exactly these spots
+   */
+  public boolean unassign(String vehicleId, long[] spotIds) {
+    return parkedVehicles.remove(vehicleId, spotIds, unassigned);
+  }
+
+  /**
+   * Forgets whichever spots the vehicle holds, without freeing them, and writes them to
+   * {@code into}.
+   *
+   * @return how many spots the vehicle held, {@code 0} if it holds none, or more than
+   *     {@code into} has room for, leaving the vehicle in place, if they do not fit
+   */
+  public int vacate(String vehicleId, long[] into) {
+    return parkedVehicles.take(vehicleId, into, unassigned);
+  }
+
+  /**
+   * Pools and spot types of the lot, indexed by spot id minus a base that keeps the bitsets as
+   * small as the lot's id range while leaving ids on the same word boundaries.
+   */
+  private static final class Layout {
+
+    private final long base;
+
+    private final SpotPool[] pools = new SpotPool[SPOT_TYPES.length];
+
+    private final FreeSpots freeSpots = new FreeSpots(pools);
+
+    private final ParkingSpotType[] spotTypes;
+
+    private final AtomicIntegerArray spotCounts = new AtomicIntegerArray(SPOT_TYPES.length);
+
+    private Layout(long base, int capacity) {
+      this.base = base;
+      for (int i = 0; i < pools.length; i++) {
+        pools[i] = new SpotPool(capacity, RUN_LENGTHS[i]);
+      }
+      spotTypes = new ParkingSpotType[capacity];
+    }
+
+    private int toIndex(long spotId) {
+      return Math.toIntExact(spotId - base);
+    }
+
+    private boolean covers(long spotId) {
+      return spotId >= base && spotId - base < spotTypes.length;
+    }
+
+    private boolean contains(long spotId) {
+      return covers(spotId) && spotTypes[toIndex(spotId)] != null;
+    }
+  }
+
+  /**
+   * A change waiting for an occupied spot to be released: the spot's new type, or {@code null}
+   * to retire it.
+   */
+  private record SpotChange(ParkingSpotType type) {
+
+    private static final SpotChange RETIRE = new SpotChange(null);
+
+    private static final SpotChange[] RETYPES = new SpotChange[SPOT_TYPES.length];
+
+    static {
+      for (ParkingSpotType type : SPOT_TYPES) {
+        RETYPES[type.ordinal()] = new SpotChange(type);
+      }
+    }
+
+    private static SpotChange retype(ParkingSpotType type) {
+      return RETYPES[type.ordinal()];
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package assessment.parkinglot.allocation;
+
+/**
+ * Records the assignments of every lot, for persistence modes that keep occupancy in memory.
+ */
+public interface OccupancyJournal {
+
+  OccupancyListener forLot(long lotId);
+}
@@ -0,0 +1,19 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.VehicleType;
+
+/**
+ * Told about every change of which spots a vehicle holds in an {@link OccupancyIndex}. Calls
+ * are made while the vehicle's entry is locked, so the calls for one vehicle arrive in the order
+ * the changes took effect. Implementations must therefore return quickly and never block.
+ */
+public interface OccupancyListener {
+
+  /**
+   * @param vehicleType the type of the vehicle, or {@code null} if it is not known, as when a
+   *     vehicle is put back on the spots it was just taken off
+   */
+  void assigned(String vehicleId, VehicleType vehicleType, long[] spotIds);
+
+  void unassigned(String vehicleId, long[] spotIds);
+}
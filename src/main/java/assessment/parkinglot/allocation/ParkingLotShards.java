@@ -0,0 +1,294 @@
+package assessment.parkinglot.allocation;
+
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One {@link OccupancyIndex} per parking lot. Lots never share pools or spot maps, so claiming
+ * spots in one lot does not contend with claiming spots in another, and lot-wide counts are the
+ * sums of the counters every shard already maintains.
+ * <p>
+ * The shards are kept in arrays sorted by lot id, replaced whole under a lock when a lot comes or
+ * goes, so that looking a lot up neither boxes its id nor allocates an iterator.
+ * <p>
+ * Which lot every vehicle is parked in is kept once for all lots, and a vehicle is
+ * {@link #claim claimed} there before it is given spots in a lot, so that it can only be parked
+ * in one lot at a time even while it tries to park in several at once. This is the one place
+ * parks and leaves in different lots meet: they contend there only when their vehicle ids fall
+ * in the same stripe of the registry, which is the price of a vehicle never being parked in two
+ * lots. A lot rebuilt with a vehicle that is claimed for another lot drops the vehicle, keeping
+ * it where it was claimed. The vehicles of a {@link #rebuildReplica replica}, a copy of a lot
+ * another node parks in, are not claimed until the lot is {@link #promote promoted}.
+ */
+@Component
+public class ParkingLotShards {
+
+  @Autowired(required = false)
+  private OccupancyJournal occupancyJournal;
+
+  @Autowired(required = false)
+  private AllocationStrategy allocationStrategy = new FirstFitStrategy();
+
+  /**
+   * Per thread, room for the id of one lot.
+   */
+  private static final ThreadLocal<long[]> LOT_BUFFER = ThreadLocal.withInitial(() -> new long[1]);
+
+  private static final Logger log = LoggerFactory.getLogger(ParkingLotShards.class);
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * The lot of every vehicle, kept as the one spot the vehicle holds.
+   */
+  private final VehicleRegistry vehicleLots = new VehicleRegistry();
+
+  /**
+   * The lots kept only as a copy of another node's, whose vehicles are not claimed.
+   */
+  private final Set<Long> replicaLots = ConcurrentHashMap.newKeySet();
+
+  private volatile Directory directory = new Directory(new long[0], new OccupancyIndex[0]);
+
+  /**
+   * @return the vehicles the lot was rebuilt with
+   */
+  public Map<String, long[]> rebuild(long lotId, Iterable<ParkingSpot> spots) {
+    OccupancyIndex shard = shard(lotId);
+    Map<String, long[]> parked = shard.getParkedVehicles();
+    Map<String, long[]> vehicles = shard.rebuild(spots);
+    replicaLots.remove(lotId);
+    reclaim(lotId, shard, parked, vehicles);
+    return vehicles;
+  }
+
+  /**
+   * @see OccupancyIndex#rebuild(long[][], Map)
+   */
+  public void rebuild(long lotId, long[][] spotIds, Map<String, long[]> vehicles) {
+    OccupancyIndex shard = shard(lotId);
+    Map<String, long[]> parked = shard.getParkedVehicles();
+    shard.rebuild(spotIds, vehicles);
+    replicaLots.remove(lotId);
+    reclaim(lotId, shard, parked, vehicles);
+  }
+
+  /**
+   * Rebuilds the lot as a copy of another node's, without claiming its vehicles, which stay
+   * free to park in the lots this node parks in.
+   *
+   * @see OccupancyIndex#rebuild(long[][], Map)
+   */
+  public void rebuildReplica(long lotId, long[][] spotIds, Map<String, long[]> vehicles) {
+    demote(lotId);
+    shard(lotId).rebuild(spotIds, vehicles);
+  }
+
+  /**
+   * Keeps the lot as a copy of another node's from now on, giving up the claims of its vehicles.
+   */
+  public void demote(long lotId) {
+    OccupancyIndex shard = shard(lotId);
+    if (replicaLots.add(lotId)) {
+      for (String vehicleId : shard.getParkedVehicles().keySet()) {
+        unclaim(vehicleId, lotId);
+      }
+    }
+  }
+
+  /**
+   * Claims the vehicles of a lot this node parks in from now on, after keeping it as a copy of
+   * another node's. Vehicles claimed for another lot meanwhile are dropped from it.
+   */
+  public void promote(long lotId) {
+    OccupancyIndex shard = get(lotId);
+    if (shard != null && replicaLots.remove(lotId)) {
+      shard.getParkedVehicles().forEach((vehicleId, spotIds) -> reclaim(lotId, shard, vehicleId, spotIds));
+    }
+  }
+
+  public boolean isReplica(long lotId) {
+    return replicaLots.contains(lotId);
+  }
+
+  /**
+   * @see OccupancyIndex#reconcile(Iterable, Map)
+   */
+  public boolean reconcile(long lotId, Iterable<ParkingSpot> spots, Map<String, long[]> rebuiltFrom) {
+    OccupancyIndex shard = get(lotId);
+    return shard != null && shard.reconcile(spots, rebuiltFrom, new OccupancyListener() {
+
+      @Override
+      public void assigned(String vehicleId, VehicleType vehicleType, long[] spotIds) {
+        reclaim(lotId, shard, vehicleId, spotIds);
+      }
+
+      @Override
+      public void unassigned(String vehicleId, long[] spotIds) {
+        unclaim(vehicleId, lotId);
+      }
+    });
+  }
+
+  /**
+   * Moves the vehicles of a rebuilt lot over from those it was parked with before. Vehicles
+   * claimed for another lot stay there.
+   */
+  private void reclaim(long lotId, OccupancyIndex shard, Map<String, long[]> parked, Map<String, long[]> vehicles) {
+    for (String vehicleId : parked.keySet()) {
+      if (!vehicles.containsKey(vehicleId)) {
+        unclaim(vehicleId, lotId);
+      }
+    }
+    vehicles.forEach((vehicleId, spotIds) -> reclaim(lotId, shard, vehicleId, spotIds));
+  }
+
+  /**
+   * Claims a vehicle the lot was rebuilt or reconciled with for the lot, unless it is claimed for
+   * another lot, in which case it is taken off its spots in this one.
+   */
+  private void reclaim(long lotId, OccupancyIndex shard, String vehicleId, long[] spotIds) {
+    while (!claim(vehicleId, lotId)) {
+      long[] claimed = vehicleLots.get(vehicleId);
+      if (claimed != null && claimed[0] == lotId) {
+        return;
+      }
+      if (claimed != null) {
+        log.warn("Vehicle {} of parking lot {} is parked in parking lot {}, dropping it from parking lot {}",
+            vehicleId, lotId, claimed[0], lotId);
+        if (shard.unassign(vehicleId, spotIds)) {
+          shard.release(spotIds);
+        }
+        return;
+      }
+    }
+  }
+
+  public void remove(long lotId) {
+    lock.lock();
+    try {
+      Directory current = directory;
+      int i = Arrays.binarySearch(current.lotIds, lotId);
+      if (i >= 0) {
+        for (String vehicleId : current.shards[i].getParkedVehicles().keySet()) {
+          unclaim(vehicleId, lotId);
+        }
+        replicaLots.remove(lotId);
+        long[] lotIds = new long[current.lotIds.length - 1];
+        OccupancyIndex[] shards = new OccupancyIndex[lotIds.length];
+        System.arraycopy(current.lotIds, 0, lotIds, 0, i);
+        System.arraycopy(current.lotIds, i + 1, lotIds, i, lotIds.length - i);
+        System.arraycopy(current.shards, 0, shards, 0, i);
+        System.arraycopy(current.shards, i + 1, shards, i, shards.length - i);
+        directory = new Directory(lotIds, shards);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the shard of the lot, or {@code null} if there is no such lot
+   */
+  public OccupancyIndex get(long lotId) {
+    Directory current = directory;
+    int i = Arrays.binarySearch(current.lotIds, lotId);
+    return i >= 0 ? current.shards[i] : null;
+  }
+
+  public Set<Long> getLotIds() {
+    Set<Long> lotIds = new LinkedHashSet<>();
+    for (long lotId : directory.lotIds) {
+      lotIds.add(lotId);
+    }
+    return lotIds;
+  }
+
+  /**
+   * Claims the vehicle for the lot, before it is given spots there.
+   *
+   * @return {@code false} if the vehicle is already claimed for a lot, this one or another
+   */
+  public boolean claim(String vehicleId, long lotId) {
+    long[] lot = LOT_BUFFER.get();
+    lot[0] = lotId;
+    return vehicleLots.putIfAbsent(vehicleId, lot, null);
+  }
+
+  /**
+   * Gives up the claim of the vehicle for the lot, once it no longer holds spots there, if it
+   * has one.
+   */
+  public void unclaim(String vehicleId, long lotId) {
+    long[] lot = LOT_BUFFER.get();
+    lot[0] = lotId;
+    vehicleLots.remove(vehicleId, lot, null);
+  }
+
+  /**
+   * @return whether the vehicle is claimed for a lot, which it is from before it is given spots
+   *     until after it has left
+   */
+  public boolean isParked(String vehicleId) {
+    return vehicleLots.contains(vehicleId);
+  }
+
+  public int countFree(ParkingSpotType type) {
+    int free = 0;
+    for (OccupancyIndex shard : directory.shards) {
+      free += shard.countFree(type);
+    }
+    return free;
+  }
+
+  public int countSpots(ParkingSpotType type) {
+    int spots = 0;
+    for (OccupancyIndex shard : directory.shards) {
+      spots += shard.countSpots(type);
+    }
+    return spots;
+  }
+
+  private OccupancyIndex shard(long lotId) {
+    OccupancyIndex shard = get(lotId);
+    if (shard != null) {
+      return shard;
+    }
+    lock.lock();
+    try {
+      Directory current = directory;
+      int i = Arrays.binarySearch(current.lotIds, lotId);
+      if (i >= 0) {
+        return current.shards[i];
+      }
+      shard = new OccupancyIndex(occupancyJournal == null ? null : occupancyJournal.forLot(lotId), allocationStrategy);
+      int at = -i - 1;
+      long[] lotIds = new long[current.lotIds.length + 1];
+      OccupancyIndex[] shards = new OccupancyIndex[lotIds.length];
+      System.arraycopy(current.lotIds, 0, lotIds, 0, at);
+      System.arraycopy(current.lotIds, at, lotIds, at + 1, current.lotIds.length - at);
+      System.arraycopy(current.shards, 0, shards, 0, at);
+      System.arraycopy(current.shards, at, shards, at + 1, current.shards.length - at);
+      lotIds[at] = lotId;
+      shards[at] = shard;
+      directory = new Directory(lotIds, shards);
+      return shard;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private record Directory(long[] lotIds, OccupancyIndex[] shards) {}
+}
@@ -0,0 +1,75 @@
+package assessment.parkinglot.allocation;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outstanding {@link Hold}s by vehicle id, each with a timer on a {@link TimingWheel}.
+ * <p>
+ * A hold is owned by whoever removes it from the map first, so a park converting a hold and its
+ * expiry never both get its spots.
+ */
+@Component
+public class SpotHolds {
+
+  public static final long TICK_MILLIS = 100;
+
+  private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+
+  private final TimingWheel<Hold> expiry = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+
+  /**
+   * @return {@code false} if the vehicle already has a hold
+   */
+  public boolean add(Hold hold) {
+    if (holds.putIfAbsent(hold.getVehicleId(), hold) != null) {
+      return false;
+    }
+    hold.timer = expiry.schedule(hold, hold.getExpiresAtMillis());
+    return true;
+  }
+
+  /**
+   * @return the hold of the vehicle, or {@code null} if it has none
+   */
+  public Hold get(String vehicleId) {
+    return holds.get(vehicleId);
+  }
+
+  /**
+   * Takes the hold away, leaving its spots claimed for the caller.
+   *
+   * @return {@code false} if the hold was already removed or expired
+   */
+  public boolean remove(Hold hold) {
+    if (!holds.remove(hold.getVehicleId(), hold)) {
+      return false;
+    }
+    TimingWheel.Timer<Hold> timer = hold.timer;
+    if (timer != null) {
+      expiry.cancel(timer);
+    }
+    return true;
+  }
+
+  /**
+   * Takes away the holds that expired by the given time, leaving their spots to be released.
+   */
+  public List<Hold> expire(long nowMillis) {
+    List<Hold> expired = new ArrayList<>();
+    for (Hold hold : expiry.advance(nowMillis)) {
+      if (holds.remove(hold.getVehicleId(), hold)) {
+        expired.add(hold);
+      }
+    }
+    return expired;
+  }
+
+  public int size() {
+    return holds.size();
+  }
+}
@@ -0,0 +1,341 @@
+package assessment.parkinglot.allocation;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock-free set of free spots of a single {@link assessment.parkinglot.domain.ParkingSpotType}.
+ * <p>
+ * Spots are claimed in two steps: the requested amount is first reserved by a CAS on the free
+ * count, then the spots themselves are taken by CAS-clearing their bits. Because releases set
+ * the bit before bumping the count, a successful reservation always finds enough set bits.
+ * Claims start at the lowest word that may hold a free spot and move to a random word after
+ * losing a CAS, so contending threads spread over different parts of the lot.
+ * <p>
+ * Pools serving vehicles that take up several spots also keep a {@link FreeRunTree}, so those
+ * vehicles get adjacent spot ids. The tree is refreshed from the bitset after every change,
+ * under a lock that only claims choosing their spots from the tree hold for longer than a tree
+ * update.
+ */
+final class SpotPool {
+
+  private final AtomicLongArray words;
+
+  private final AtomicInteger freeCount = new AtomicInteger();
+
+  private final AtomicInteger lowestFreeWord = new AtomicInteger();
+
+  private final FreeRunTree freeRuns;
+
+  private final ReentrantLock freeRunsLock = new ReentrantLock();
+
+  private volatile int longestFreeRun;
+
+  /**
+   * @param runLength the most adjacent spots a single vehicle takes up in this pool
+   */
+  SpotPool(int capacity, int runLength) {
+    words = new AtomicLongArray(Math.max(1, (capacity + 63) >>> 6));
+    freeRuns = runLength > 1 ? new FreeRunTree(words.length(), runLength) : null;
+  }
+
+  /**
+   * Frees every spot whose bit is set in {@code freeWords} at once. Only valid before the pool is
+   * shared, as it overwrites whatever is in the pool.
+   */
+  void initialize(long[] freeWords) {
+    int free = 0;
+    for (int i = 0; i < freeWords.length; i++) {
+      words.set(i, freeWords[i]);
+      free += Long.bitCount(freeWords[i]);
+    }
+    freeCount.set(free);
+    lowestFreeWord.set(0);
+    refreshFreeRuns(0, words.length() - 1);
+  }
+
+  /**
+   * Copies the words of the pool into {@code freeWords} from {@code offset} on. Only valid while
+   * nothing changes the pool.
+   */
+  void copyTo(long[] freeWords, int offset) {
+    for (int i = 0; i < words.length(); i++) {
+      freeWords[offset + i] = words.get(i);
+    }
+  }
+
+  int capacity() {
+    return words.length() << 6;
+  }
+
+  int freeCount() {
+    return freeCount.get();
+  }
+
+  boolean isFree(int index) {
+    return (words.get(index >>> 6) & (1L << index)) != 0;
+  }
+
+  boolean canFit(int count) {
+    return count > 1 && freeRuns != null ? longestFreeRun >= count : freeCount.get() >= count;
+  }
+
+  /**
+   * Takes {@code count} free spots and writes their indexes to {@code into} starting at
+   * {@code offset}. Pools keeping free runs hand out adjacent spots for a count above one.
+   *
+   * @return {@code false}, without taking anything, if the spots are not available
+   */
+  boolean claim(long[] into, int offset, int count) {
+    return claim(into, offset, count, true);
+  }
+
+  /**
+   * Takes the {@code count} free spots with the lowest indexes, or the leftmost run of them for
+   * pools keeping free runs. Unlike {@link #claim(long[], int, int)} a claim losing a CAS retries
+   * the same word, so contending claims queue up at the low end of the pool.
+   */
+  boolean claimLowest(long[] into, int offset, int count) {
+    return claim(into, offset, count, false);
+  }
+
+  /**
+   * Takes a single spot out of the leftmost free run too short for the vehicles taking up several
+   * spots, or else the first spot of the leftmost run, so no run is split in two. Pools not
+   * keeping free runs fall back to {@link #claim(long[], int, int)}.
+   */
+  boolean claimFragment(long[] into, int offset) {
+    return freeRuns == null ? claim(into, offset, 1) : claimRun(into, offset, 1, true);
+  }
+
+  /**
+   * @return the lowest index a claim of {@code count} spots would start at right now, or
+   *     {@code -1} if there is no room
+   */
+  int lowestFree(int count) {
+    if (count > 1 && freeRuns != null) {
+      freeRunsLock.lock();
+      try {
+        return freeRuns.find(count);
+      } finally {
+        freeRunsLock.unlock();
+      }
+    }
+    if (freeCount.get() < count) {
+      return -1;
+    }
+    for (int i = lowestFreeWord.get(); i < words.length(); i++) {
+      long word = words.get(i);
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+      skipEmptyWord(i);
+    }
+    return -1;
+  }
+
+  private boolean claim(long[] into, int offset, int count, boolean scatter) {
+    if (count > 1 && freeRuns != null) {
+      return claimRun(into, offset, count, false);
+    }
+    if (!reserve(count)) {
+      return false;
+    }
+    int length = words.length();
+    int i = lowestFreeWord.get() % length;
+    int claimed = 0;
+    while (claimed < count) {
+      long word = words.get(i);
+      if (word == 0) {
+        skipEmptyWord(i);
+        i = (i + 1) % length;
+        continue;
+      }
+      long taken = lowestBits(word, count - claimed);
+      if (words.compareAndSet(i, word, word & ~taken)) {
+        while (taken != 0) {
+          into[offset + claimed++] = ((long) i << 6) + Long.numberOfTrailingZeros(taken);
+          taken &= taken - 1;
+        }
+        refreshFreeRuns(i, i);
+      } else if (scatter) {
+        i = ThreadLocalRandom.current().nextInt(length);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves the lowest free word past word {@code i}, which was found empty. A release may have
+   * freed a spot in it after it was read but before the move, without lowering the word again as
+   * it was still {@code i}, so the word is read once more and the move undone if it is not empty.
+   */
+  private void skipEmptyWord(int i) {
+    if (lowestFreeWord.compareAndSet(i, i + 1) && words.get(i) != 0) {
+      lowestFreeWord.accumulateAndGet(i, Math::min);
+    }
+  }
+
+  /**
+   * Takes the given spot, reserving it first like any other claim.
+   *
+   * @return {@code false}, without taking anything, if the spot is not free
+   */
+  boolean take(int index) {
+    if (!reserve(1)) {
+      return false;
+    }
+    int i = index >>> 6;
+    long bit = 1L << index;
+    long word;
+    do {
+      word = words.get(i);
+      if ((word & bit) == 0) {
+        freeCount.incrementAndGet();
+        return false;
+      }
+    } while (!words.compareAndSet(i, word, word & ~bit));
+    refreshFreeRuns(i, i);
+    return true;
+  }
+
+  /**
+   * @return {@code false} if the spot was already free
+   */
+  boolean release(int index) {
+    int i = index >>> 6;
+    long bit = 1L << index;
+    long word;
+    do {
+      word = words.get(i);
+      if ((word & bit) != 0) {
+        return false;
+      }
+    } while (!words.compareAndSet(i, word, word | bit));
+    freeCount.incrementAndGet();
+    lowestFreeWord.accumulateAndGet(i, Math::min);
+    refreshFreeRuns(i, i);
+    return true;
+  }
+
+  /**
+   * Frees the spots whose bits are set in {@code mask} in the given word, all of them new to the
+   * pool, with a single CAS.
+   */
+  void add(int wordIndex, long mask) {
+    long word;
+    do {
+      word = words.get(wordIndex);
+    } while (!words.compareAndSet(wordIndex, word, word | mask));
+    freeCount.addAndGet(Long.bitCount(mask));
+    lowestFreeWord.accumulateAndGet(wordIndex, Math::min);
+    refreshFreeRuns(wordIndex, wordIndex);
+  }
+
+  private boolean claimRun(long[] into, int offset, int count, boolean fragmentFirst) {
+    if (longestFreeRun < count || !reserve(count)) {
+      return false;
+    }
+    freeRunsLock.lock();
+    try {
+      while (true) {
+        int start = fragmentFirst ? freeRuns.findFragment() : -1;
+        if (start < 0) {
+          start = freeRuns.find(count);
+        }
+        if (start < 0) {
+          freeCount.addAndGet(count);
+          return false;
+        }
+        int first = start >>> 6;
+        int last = (start + count - 1) >>> 6;
+        boolean taken = takeRange(start, start + count);
+        refreshFreeRunsLocked(first, last);
+        if (taken) {
+          for (int n = 0; n < count; n++) {
+            into[offset + n] = start + n;
+          }
+          return true;
+        }
+      }
+    } finally {
+      freeRunsLock.unlock();
+    }
+  }
+
+  /**
+   * Clears the bits of {@code [from, to)} word by word, putting them back if a word turns out
+   * to be no longer free.
+   *
+   * @return {@code false}, without taking anything, if one of the spots was already taken
+   */
+  private boolean takeRange(int from, int to) {
+    for (int i = from >>> 6; i <= (to - 1) >>> 6; i++) {
+      long mask = rangeMask(i, from, to);
+      long word;
+      do {
+        word = words.get(i);
+        if ((word & mask) != mask) {
+          for (int j = from >>> 6; j < i; j++) {
+            long restore = rangeMask(j, from, to);
+            long current;
+            do {
+              current = words.get(j);
+            } while (!words.compareAndSet(j, current, current | restore));
+          }
+          return false;
+        }
+      } while (!words.compareAndSet(i, word, word & ~mask));
+    }
+    return true;
+  }
+
+  private void refreshFreeRuns(int first, int last) {
+    if (freeRuns == null) {
+      return;
+    }
+    freeRunsLock.lock();
+    try {
+      refreshFreeRunsLocked(first, last);
+    } finally {
+      freeRunsLock.unlock();
+    }
+  }
+
+  private void refreshFreeRunsLocked(int first, int last) {
+    for (int i = first; i <= last; i++) {
+      freeRuns.update(i, words.get(i));
+    }
+    longestFreeRun = freeRuns.longestRun();
+  }
+
+  private boolean reserve(int count) {
+    int free;
+    do {
+      free = freeCount.get();
+      if (free < count) {
+        return false;
+      }
+    } while (!freeCount.compareAndSet(free, free - count));
+    return true;
+  }
+
+  private static long rangeMask(int wordIndex, int from, int to) {
+    int low = Math.max(from - (wordIndex << 6), 0);
+    int high = Math.min(to - (wordIndex << 6), 64);
+    long upTo = high == 64 ? -1L : (1L << high) - 1;
+    return upTo & (-1L << low);
+  }
+
+  private static long lowestBits(long word, int count) {
+    long bits = 0;
+    for (int n = 0; n < count && word != 0; n++) {
+      long lowest = word & -word;
+      bits |= lowest;
+      word ^= lowest;
+    }
+    return bits;
+  }
+}
@@ -0,0 +1,182 @@
+package assessment.parkinglot.allocation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel: {@value #LEVELS} wheels of {@value #SLOTS} slots, each slot of a
+ * wheel spanning a whole turn of the wheel below it.
+ * <p>
+ * A timer goes into the slot of the lowest wheel whose span covers its deadline and moves down a
+ * wheel each time the wheel above reaches its slot, so scheduling, cancelling and every tick are
+ * constant time however many timers are pending. Deadlines beyond the top wheel wait in its last
+ * slot and are placed again when it comes round.
+ */
+public class TimingWheel<T> {
+
+  private static final int LEVELS = 4;
+
+  private static final int SLOT_BITS = 6;
+
+  private static final int SLOTS = 1 << SLOT_BITS;
+
+  private static final int SLOT_MASK = SLOTS - 1;
+
+  private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+  private final long tickMillis;
+
+  private final long startMillis;
+
+  private final Timer<T>[][] slots;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private long currentTick;
+
+  private int size;
+
+  @SuppressWarnings("unchecked")
+  public TimingWheel(long tickMillis, long startMillis) {
+    this.tickMillis = tickMillis;
+    this.startMillis = startMillis;
+    slots = new Timer[LEVELS][SLOTS];
+    for (Timer<T>[] level : slots) {
+      for (int slot = 0; slot < SLOTS; slot++) {
+        level[slot] = new Timer<>(null, 0);
+        level[slot].prev = level[slot];
+        level[slot].next = level[slot];
+      }
+    }
+  }
+
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  /**
+   * Schedules the item to expire on the first tick at or after the deadline, and never on the
+   * tick that is current.
+   */
+  public Timer<T> schedule(T item, long deadlineMillis) {
+    long ticks = Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis);
+    lock.lock();
+    try {
+      Timer<T> timer = new Timer<>(item, Math.max(ticks, currentTick + 1));
+      place(timer);
+      size++;
+      return timer;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return {@code false} if the timer already expired or was cancelled
+   */
+  public boolean cancel(Timer<T> timer) {
+    lock.lock();
+    try {
+      if (timer.prev == null) {
+        return false;
+      }
+      unlink(timer);
+      size--;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Ticks the wheel up to the given time.
+   *
+   * @return the items that expired, in no particular order
+   */
+  public List<T> advance(long nowMillis) {
+    long target = Math.floorDiv(nowMillis - startMillis, tickMillis);
+    List<T> expired = new ArrayList<>();
+    lock.lock();
+    try {
+      while (currentTick < target) {
+        currentTick++;
+        for (int level = LEVELS - 1; level > 0; level--) {
+          if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+            cascade(slots[level][(int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK]);
+          }
+        }
+        Timer<T> head = slots[0][(int) currentTick & SLOT_MASK];
+        while (head.next != head) {
+          Timer<T> timer = head.next;
+          unlink(timer);
+          size--;
+          expired.add(timer.item);
+        }
+      }
+      return expired;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void cascade(Timer<T> head) {
+    Timer<T> timer = head.next;
+    head.prev = head;
+    head.next = head;
+    while (timer != head) {
+      Timer<T> next = timer.next;
+      place(timer);
+      timer = next;
+    }
+  }
+
+  private void place(Timer<T> timer) {
+    long delta = timer.expiryTick - currentTick;
+    long tick = delta < SPAN ? timer.expiryTick : currentTick + SPAN - 1;
+    int level = 0;
+    while (level < LEVELS - 1 && tick - currentTick >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    Timer<T> head = slots[level][(int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK];
+    timer.prev = head.prev;
+    timer.next = head;
+    head.prev.next = timer;
+    head.prev = timer;
+  }
+
+  private static <T> void unlink(Timer<T> timer) {
+    timer.prev.next = timer.next;
+    timer.next.prev = timer.prev;
+    timer.prev = null;
+    timer.next = null;
+  }
+
+  /**
+   * A pending item, linked into the slot it waits in.
+   */
+  public static final class Timer<T> {
+
+    private final T item;
+
+    private final long expiryTick;
+
+    private Timer<T> prev;
+
+    private Timer<T> next;
+
+    private Timer(T item, long expiryTick) {
+      this.item = item;
+      this.expiryTick = expiryTick;
+    }
+  }
+}
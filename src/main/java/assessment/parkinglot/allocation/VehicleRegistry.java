@@ -0,0 +1,615 @@
+package assessment.parkinglot.allocation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * The spots every parked vehicle holds, without an object per vehicle.
+ * <p>
+ * Vehicles are spread over {@value #STRIPES} stripes by the hash of their id. Within a stripe
+ * every vehicle is interned into an int handle that indexes primitive columns: where its id is
+ * stored in a byte arena (one byte per char for Latin-1 ids, two otherwise) and where its spot
+ * ids are stored in a long arena. An open-addressing table of hashes and handles with linear
+ * probing finds the handle of an id, and removals shift the following entries back rather than
+ * leaving tombstones. Removed vehicles stay in the arenas until they are compacted, which happens
+ * once removed vehicles take up half of them. Vehicles are linked in the order they were stored,
+ * which is the order of their offsets in both arenas, so compaction slides them down within the
+ * same arrays and a registry whose size holds steady stops allocating.
+ * <p>
+ * Writes lock their stripe. Reads are optimistic: they validate the stripe's stamp afterwards
+ * and only take the read lock if a write got in between, so they normally never wait.
+ */
+public final class VehicleRegistry {
+
+  private static final int STRIPE_BITS = 6;
+
+  private static final int STRIPES = 1 << STRIPE_BITS;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  public VehicleRegistry() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * @return the spots the vehicle holds, or {@code null} if it holds none
+   */
+  public long[] get(String vehicleId) {
+    int hash = hash(vehicleId);
+    Stripe stripe = stripe(hash);
+    long stamp = stripe.lock.tryOptimisticRead();
+    long[] spotIds = stripe.get(vehicleId, hash);
+    if (stripe.lock.validate(stamp)) {
+      return spotIds;
+    }
+    stamp = stripe.lock.readLock();
+    try {
+      return stripe.get(vehicleId, hash);
+    } finally {
+      stripe.lock.unlockRead(stamp);
+    }
+  }
+
+  public boolean contains(String vehicleId) {
+    int hash = hash(vehicleId);
+    Stripe stripe = stripe(hash);
+    long stamp = stripe.lock.tryOptimisticRead();
+    boolean contains = stripe.lookup(vehicleId, hash) >= 0;
+    if (stripe.lock.validate(stamp)) {
+      return contains;
+    }
+    stamp = stripe.lock.readLock();
+    try {
+      return stripe.lookup(vehicleId, hash) >= 0;
+    } finally {
+      stripe.lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Records the spots of the vehicle unless it already holds some, calling the listener, if
+   * any, while the vehicle's stripe is locked.
+   *
+   * @return {@code false} if the vehicle already holds spots
+   */
+  public boolean putIfAbsent(String vehicleId, long[] spotIds, BiConsumer<String, long[]> listener) {
+    int hash = hash(vehicleId);
+    Stripe stripe = stripe(hash);
+    long stamp = stripe.lock.writeLock();
+    try {
+      if (stripe.find(vehicleId, hash) >= 0) {
+        return false;
+      }
+      if (listener != null) {
+        listener.accept(vehicleId, spotIds);
+      }
+      stripe.insert(vehicleId, hash, spotIds);
+      return true;
+    } finally {
+      stripe.lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Forgets the spots of the vehicle if they are exactly the given ones, calling the listener,
+   * if any, while the vehicle's stripe is locked.
+   *
+   * @return {@code false} if the vehicle does not hold exactly these spots
+   */
+  public boolean remove(String vehicleId, long[] spotIds, BiConsumer<String, long[]> listener) {
+    int hash = hash(vehicleId);
+    Stripe stripe = stripe(hash);
+    long stamp = stripe.lock.writeLock();
+    try {
+      int slot = stripe.find(vehicleId, hash);
+      if (slot < 0 || !stripe.holds(stripe.handleAt(slot), spotIds)) {
+        return false;
+      }
+      if (listener != null) {
+        listener.accept(vehicleId, spotIds);
+      }
+      stripe.delete(slot);
+      return true;
+    } finally {
+      stripe.lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Forgets whichever spots the vehicle holds, writing them to {@code into}, and calls the
+   * listener, if any, with a copy of them while the vehicle's stripe is locked.
+   *
+   * @return how many spots the vehicle held, {@code 0} if it holds none, or more than
+   *     {@code into} has room for, leaving the vehicle in place, if they do not fit
+   */
+  public int take(String vehicleId, long[] into, BiConsumer<String, long[]> listener) {
+    int hash = hash(vehicleId);
+    Stripe stripe = stripe(hash);
+    long stamp = stripe.lock.writeLock();
+    try {
+      int slot = stripe.find(vehicleId, hash);
+      if (slot < 0) {
+        return 0;
+      }
+      int count = stripe.copySpotIds(stripe.handleAt(slot), into);
+      if (count > into.length) {
+        return count;
+      }
+      if (listener != null) {
+        listener.accept(vehicleId, Arrays.copyOf(into, count));
+      }
+      stripe.delete(slot);
+      return count;
+    } finally {
+      stripe.lock.unlockWrite(stamp);
+    }
+  }
+
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      long stamp = stripe.lock.writeLock();
+      try {
+        stripe.reset();
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      long stamp = stripe.lock.readLock();
+      try {
+        size += stripe.size;
+      } finally {
+        stripe.lock.unlockRead(stamp);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return a copy of the spots every vehicle holds
+   */
+  public Map<String, long[]> toMap() {
+    Map<String, long[]> vehicles = new HashMap<>();
+    for (Stripe stripe : stripes) {
+      long stamp = stripe.lock.readLock();
+      try {
+        for (int slot = 0; slot < stripe.slots.length; slot++) {
+          if (stripe.slots[slot] != 0) {
+            vehicles.put(stripe.key(stripe.handleAt(slot)), stripe.spotIds(stripe.handleAt(slot)));
+          }
+        }
+      } finally {
+        stripe.lock.unlockRead(stamp);
+      }
+    }
+    return vehicles;
+  }
+
+  /**
+   * @return the bytes taken by the arrays of the registry, whether in use or not
+   */
+  public long footprintBytes() {
+    long bytes = 0;
+    for (Stripe stripe : stripes) {
+      long stamp = stripe.lock.readLock();
+      try {
+        bytes += stripe.footprintBytes();
+      } finally {
+        stripe.lock.unlockRead(stamp);
+      }
+    }
+    return bytes;
+  }
+
+  private Stripe stripe(int hash) {
+    return stripes[hash >>> (Integer.SIZE - STRIPE_BITS)];
+  }
+
+  private static int hash(String vehicleId) {
+    return vehicleId.hashCode() * 0x9E3779B9;
+  }
+
+  private static final class Stripe {
+
+    private static final int KEY_OFFSET = 0;
+
+    /**
+     * Length in chars of the id, complemented for ids stored with two bytes per char.
+     */
+    private static final int KEY_LENGTH = 1;
+
+    private static final int SPOT_OFFSET = 2;
+
+    /**
+     * Number of spots, {@code -1} for a free handle.
+     */
+    private static final int SPOT_COUNT = 3;
+
+    /**
+     * The handles stored before and after, {@code -1} for none.
+     */
+    private static final int PREVIOUS = 4;
+
+    private static final int NEXT = 5;
+
+    private static final int FIELDS = 6;
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Hash of the vehicle in the high and its handle plus one in the low half of every slot,
+     * {@code 0} for an empty slot, so probes only leave the table on a matching hash.
+     */
+    private long[] slots;
+
+    /**
+     * The {@link #FIELDS} columns of every handle side by side, so a lookup reads them from
+     * one cache line.
+     */
+    private int[] handles;
+
+    private byte[] keys;
+
+    private int keysUsed;
+
+    private int keysGarbage;
+
+    private long[] spots;
+
+    private int spotsUsed;
+
+    private int spotsGarbage;
+
+    private int[] freeHandles;
+
+    private int freeCount;
+
+    private int handleCount;
+
+    private int first;
+
+    private int last;
+
+    private int size;
+
+    private Stripe() {
+      reset();
+    }
+
+    private void reset() {
+      slots = new long[INITIAL_CAPACITY * 2];
+      handles = new int[INITIAL_CAPACITY * FIELDS];
+      keys = new byte[INITIAL_CAPACITY * 8];
+      spots = new long[INITIAL_CAPACITY];
+      freeHandles = new int[INITIAL_CAPACITY];
+      keysUsed = 0;
+      keysGarbage = 0;
+      spotsUsed = 0;
+      spotsGarbage = 0;
+      freeCount = 0;
+      handleCount = 0;
+      first = -1;
+      last = -1;
+      size = 0;
+    }
+
+    /**
+     * Tolerates running concurrently with a write, which the caller detects and retries: every
+     * array is read once into a local and every index is checked against it.
+     */
+    private long[] get(String vehicleId, int hash) {
+      int base = lookup(vehicleId, hash);
+      int[] handles = this.handles;
+      long[] spots = this.spots;
+      if (base < 0 || base + FIELDS > handles.length) {
+        return null;
+      }
+      int offset = handles[base + SPOT_OFFSET];
+      int count = handles[base + SPOT_COUNT];
+      if (count < 0 || offset < 0 || offset + count > spots.length) {
+        return null;
+      }
+      return Arrays.copyOfRange(spots, offset, offset + count);
+    }
+
+    /**
+     * Tolerates running concurrently with a write like {@link #get}.
+     *
+     * @return where the columns of the vehicle's handle start, or {@code -1} if it is not here
+     */
+    private int lookup(String vehicleId, int hash) {
+      long[] slots = this.slots;
+      int[] handles = this.handles;
+      byte[] keys = this.keys;
+      int mask = slots.length - 1;
+      for (int probe = 0, slot = hash & mask; probe < slots.length; probe++, slot = (slot + 1) & mask) {
+        long entry = slots[slot];
+        if (entry == 0) {
+          return -1;
+        }
+        int base = ((int) entry - 1) * FIELDS;
+        if ((int) (entry >>> 32) == hash && base >= 0 && base + FIELDS <= handles.length
+            && keyEquals(handles, keys, base, vehicleId)) {
+          return base;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return the slot of the vehicle, or {@code -1} if it is not here
+     */
+    private int find(String vehicleId, int hash) {
+      int mask = slots.length - 1;
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        long entry = slots[slot];
+        if (entry == 0) {
+          return -1;
+        }
+        if ((int) (entry >>> 32) == hash && keyEquals(handles, keys, handleAt(slot) * FIELDS, vehicleId)) {
+          return slot;
+        }
+      }
+    }
+
+    private int handleAt(int slot) {
+      return (int) slots[slot] - 1;
+    }
+
+    private void insert(String vehicleId, int hash, long[] spotIds) {
+      if ((size + 1) * 4 > slots.length * 3) {
+        rehash(slots.length * 2);
+      }
+      int handle = allocateHandle();
+      storeKey(handle, vehicleId);
+      storeSpots(handle, spotIds);
+      int mask = slots.length - 1;
+      int slot = hash & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = (long) hash << 32 | (handle + 1);
+      handles[handle * FIELDS + PREVIOUS] = last;
+      handles[handle * FIELDS + NEXT] = -1;
+      if (last >= 0) {
+        handles[last * FIELDS + NEXT] = handle;
+      } else {
+        first = handle;
+      }
+      last = handle;
+      size++;
+    }
+
+    private void delete(int slot) {
+      int base = handleAt(slot) * FIELDS;
+      spotsGarbage += handles[base + SPOT_COUNT];
+      keysGarbage += keyBytes(base);
+      handles[base + SPOT_COUNT] = -1;
+      unlink(base);
+      freeHandles[freeCount++] = handleAt(slot);
+      size--;
+      int mask = slots.length - 1;
+      int hole = slot;
+      slots[hole] = 0;
+      for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+        int home = (int) (slots[next] >>> 32) & mask;
+        boolean reachable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+        if (reachable) {
+          slots[hole] = slots[next];
+          slots[next] = 0;
+          hole = next;
+        }
+      }
+    }
+
+    private void unlink(int base) {
+      int previous = handles[base + PREVIOUS];
+      int next = handles[base + NEXT];
+      if (previous >= 0) {
+        handles[previous * FIELDS + NEXT] = next;
+      } else {
+        first = next;
+      }
+      if (next >= 0) {
+        handles[next * FIELDS + PREVIOUS] = previous;
+      } else {
+        last = previous;
+      }
+    }
+
+    private boolean holds(int handle, long[] spotIds) {
+      int base = handle * FIELDS;
+      if (handles[base + SPOT_COUNT] != spotIds.length) {
+        return false;
+      }
+      int offset = handles[base + SPOT_OFFSET];
+      return Arrays.equals(spots, offset, offset + spotIds.length, spotIds, 0, spotIds.length);
+    }
+
+    /**
+     * @return how many spots the handle holds, copied to {@code into} only if they fit
+     */
+    private int copySpotIds(int handle, long[] into) {
+      int count = handles[handle * FIELDS + SPOT_COUNT];
+      if (count <= into.length) {
+        System.arraycopy(spots, handles[handle * FIELDS + SPOT_OFFSET], into, 0, count);
+      }
+      return count;
+    }
+
+    private long[] spotIds(int handle) {
+      int offset = handles[handle * FIELDS + SPOT_OFFSET];
+      return Arrays.copyOfRange(spots, offset, offset + handles[handle * FIELDS + SPOT_COUNT]);
+    }
+
+    private int allocateHandle() {
+      if (freeCount > 0) {
+        return freeHandles[--freeCount];
+      }
+      if (handleCount * FIELDS == handles.length) {
+        handles = Arrays.copyOf(handles, handles.length * 2);
+        freeHandles = Arrays.copyOf(freeHandles, freeHandles.length * 2);
+      }
+      handles[handleCount * FIELDS + SPOT_COUNT] = -1;
+      return handleCount++;
+    }
+
+    private void rehash(int capacity) {
+      long[] rehashed = new long[capacity];
+      int mask = capacity - 1;
+      for (long entry : slots) {
+        if (entry != 0) {
+          int slot = (int) (entry >>> 32) & mask;
+          while (rehashed[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          rehashed[slot] = entry;
+        }
+      }
+      slots = rehashed;
+    }
+
+    private void storeSpots(int handle, long[] spotIds) {
+      if (spotsUsed + spotIds.length > spots.length) {
+        if (spotsGarbage * 2 >= spotsUsed) {
+          compactSpots(spotIds.length);
+        } else {
+          spots = Arrays.copyOf(spots, Math.max(spots.length * 2, spotsUsed + spotIds.length));
+        }
+      }
+      System.arraycopy(spotIds, 0, spots, spotsUsed, spotIds.length);
+      handles[handle * FIELDS + SPOT_OFFSET] = spotsUsed;
+      handles[handle * FIELDS + SPOT_COUNT] = spotIds.length;
+      spotsUsed += spotIds.length;
+    }
+
+    /**
+     * Slides the spots of the vehicles still here down to the start of the arena, or copies
+     * them to a larger one if that leaves no room for {@code extra} more.
+     */
+    private void compactSpots(int extra) {
+      int needed = spotsUsed - spotsGarbage + extra;
+      long[] compacted = needed <= spots.length ? spots : new long[needed];
+      int used = 0;
+      for (int handle = first; handle >= 0; handle = handles[handle * FIELDS + NEXT]) {
+        int base = handle * FIELDS;
+        int count = handles[base + SPOT_COUNT];
+        System.arraycopy(spots, handles[base + SPOT_OFFSET], compacted, used, count);
+        handles[base + SPOT_OFFSET] = used;
+        used += count;
+      }
+      spots = compacted;
+      spotsUsed = used;
+      spotsGarbage = 0;
+    }
+
+    /**
+     * Called before the handle is linked, so it is left out of a compaction.
+     */
+    private void storeKey(int handle, String vehicleId) {
+      int length = vehicleId.length();
+      boolean latin1 = true;
+      for (int i = 0; i < length && latin1; i++) {
+        latin1 = vehicleId.charAt(i) <= 0xFF;
+      }
+      int bytes = latin1 ? length : 2 * length;
+      if (keysUsed + bytes > keys.length) {
+        if (keysGarbage * 2 >= keysUsed) {
+          compactKeys(bytes);
+        } else {
+          keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keysUsed + bytes));
+        }
+      }
+      int offset = keysUsed;
+      for (int i = 0; i < length; i++) {
+        char c = vehicleId.charAt(i);
+        if (latin1) {
+          keys[offset + i] = (byte) c;
+        } else {
+          keys[offset + 2 * i] = (byte) (c >>> 8);
+          keys[offset + 2 * i + 1] = (byte) c;
+        }
+      }
+      handles[handle * FIELDS + KEY_OFFSET] = offset;
+      handles[handle * FIELDS + KEY_LENGTH] = latin1 ? length : ~length;
+      keysUsed += bytes;
+    }
+
+    /**
+     * Slides the ids of the vehicles still here down to the start of the arena, or copies them
+     * to a larger one if that leaves no room for {@code extra} more bytes.
+     */
+    private void compactKeys(int extra) {
+      int needed = keysUsed - keysGarbage + extra;
+      byte[] compacted = needed <= keys.length ? keys : new byte[needed];
+      int used = 0;
+      for (int handle = first; handle >= 0; handle = handles[handle * FIELDS + NEXT]) {
+        int base = handle * FIELDS;
+        int bytes = keyBytes(base);
+        System.arraycopy(keys, handles[base + KEY_OFFSET], compacted, used, bytes);
+        handles[base + KEY_OFFSET] = used;
+        used += bytes;
+      }
+      keys = compacted;
+      keysUsed = used;
+      keysGarbage = 0;
+    }
+
+    private int keyBytes(int base) {
+      int length = handles[base + KEY_LENGTH];
+      return length >= 0 ? length : 2 * ~length;
+    }
+
+    private static boolean keyEquals(int[] handles, byte[] keys, int base, String vehicleId) {
+      int length = handles[base + KEY_LENGTH];
+      boolean latin1 = length >= 0;
+      int chars = latin1 ? length : ~length;
+      int offset = handles[base + KEY_OFFSET];
+      if (chars != vehicleId.length() || offset < 0 || offset + (latin1 ? chars : 2 * chars) > keys.length) {
+        return false;
+      }
+      for (int i = 0; i < chars; i++) {
+        char c = latin1
+            ? (char) (keys[offset + i] & 0xFF)
+            : (char) ((keys[offset + 2 * i] & 0xFF) << 8 | (keys[offset + 2 * i + 1] & 0xFF));
+        if (c != vehicleId.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private String key(int handle) {
+      int base = handle * FIELDS;
+      int length = handles[base + KEY_LENGTH];
+      int offset = handles[base + KEY_OFFSET];
+      if (length >= 0) {
+        return new String(keys, offset, length, StandardCharsets.ISO_8859_1);
+      }
+      char[] chars = new char[~length];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = (char) ((keys[offset + 2 * i] & 0xFF) << 8 | (keys[offset + 2 * i + 1] & 0xFF));
+      }
+      return new String(chars);
+    }
+
+    private long footprintBytes() {
+      return (long) slots.length * Long.BYTES
+          + (long) (handles.length + freeHandles.length) * Integer.BYTES
+          + (long) spots.length * Long.BYTES
+          + keys.length;
+    }
+  }
+}
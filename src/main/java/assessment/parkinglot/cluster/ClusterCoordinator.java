@@ -0,0 +1,400 @@
+package assessment.parkinglot.cluster;
+
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.persistence.ParkingStore;
+import assessment.parkinglot.persistence.WarmStartSnapshot;
+import assessment.parkinglot.response.NodeStatus;
+import assessment.parkinglot.response.RemainingSpots;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Keeps this node's view of the {@link ClusterMembership} current and moves the occupancy of lots
+ * between nodes.
+ * <p>
+ * Every {@code heartbeat-ms}, each node asks every other one whether it is ready. A node joining
+ * the cluster first takes over the lots it ranks first for from their current owners, which
+ * forward them to it from then on. Every {@code replication-ms}, the owner of a lot sends its
+ * occupancy to the lot's backup if it changed, so that when the owner fails, the backup takes
+ * over missing at most that much of the lot's parks and leaves. As every node has a database of
+ * its own, the occupancy only lives in memory, and cluster mode needs
+ * {@code parking-lot.persistence=memory}.
+ * <p>
+ * A node only claims the vehicles of the lots it owns: the copies it keeps of the others' lots
+ * are {@linkplain ParkingLotShards#rebuildReplica replicas}, claimed once it takes them over.
+ * A vehicle is thus only kept from parking in two lots at once among the lots of one node, and
+ * may be parked in a lot of each of two nodes.
+ * <p>
+ * Heartbeats and replication run on a thread of their own rather than on the scheduler shared
+ * with holds, availability updates and admission control, and never wait for a peer: a peer
+ * that does not answer can neither hold up the heartbeats to the others nor those jobs.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.cluster.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClusterCoordinator {
+
+  private static final Logger log = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+  private static final TypeReference<Map<Long, Integer>> REMAINING_SPOTS = new TypeReference<>() {};
+
+  @Autowired
+  private ClusterMembership membership;
+
+  @Autowired
+  private ParkingLotShards parkingLotShards;
+
+  @Autowired
+  private ParkingStore parkingStore;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${parking-lot.cluster.heartbeat-ms:500}")
+  private long heartbeatMillis;
+
+  @Value("${parking-lot.cluster.replication-ms:1000}")
+  private long replicationMillis;
+
+  /**
+   * What was last sent to the backup of every lot this node owns.
+   */
+  private final Map<Long, Replica> replicas = new ConcurrentHashMap<>();
+
+  /**
+   * The lots being sent to their backup, which are not sent again until the backup answered.
+   */
+  private final Set<Long> replicating = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The answers awaited from the peers asked whether they are ready, which are not asked again
+   * until they answered or timed out.
+   */
+  private final Map<String, CompletableFuture<Void>> asking = new ConcurrentHashMap<>();
+
+  private Duration timeout;
+
+  private HttpClient httpClient;
+
+  private ScheduledExecutorService executor;
+
+  public ClusterCoordinator() {}
+
+  public ClusterCoordinator(ClusterMembership membership, ParkingLotShards parkingLotShards, ParkingStore parkingStore,
+      ObjectMapper objectMapper, long heartbeatMillis, long replicationMillis) {
+    this.membership = membership;
+    this.parkingLotShards = parkingLotShards;
+    this.parkingStore = parkingStore;
+    this.objectMapper = objectMapper;
+    this.heartbeatMillis = heartbeatMillis;
+    this.replicationMillis = replicationMillis;
+    initialize();
+  }
+
+  @PostConstruct
+  void initialize() {
+    if (parkingStore.isDurable()) {
+      throw new IllegalStateException("Cluster mode keeps the occupancy in memory and needs parking-lot.persistence=memory");
+    }
+    timeout = Duration.ofMillis(membership.getFailureTimeoutMillis());
+    httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(timeout).build();
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "cluster-coordinator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(() -> run(this::heartbeat), 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+    executor.scheduleWithFixedDelay(() -> run(this::replicate), replicationMillis, replicationMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Runs a job, keeping its failure from cancelling the later runs.
+   */
+  private static void run(Runnable job) {
+    try {
+      job.run();
+    } catch (RuntimeException e) {
+      log.warn("Cluster job failed", e);
+    }
+  }
+
+  /**
+   * Takes over the lots this node ranks first for from the live nodes owning them, once every
+   * lot has been loaded.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void join() throws InterruptedException {
+    heartbeat().join();
+    List<String> peers = membership.getLiveNodes(System.nanoTime());
+    List<String> joined = new ArrayList<>(peers);
+    joined.add(membership.getNodeId());
+    Map<Long, String> handoffs = new TreeMap<>();
+    for (long lotId : parkingLotShards.getLotIds()) {
+      String owner = ClusterMembership.getOwner(lotId, peers);
+      if (owner != null && membership.getNodeId().equals(ClusterMembership.getOwner(lotId, joined))) {
+        handoffs.put(lotId, owner);
+        membership.markPending(lotId);
+      }
+    }
+    membership.setReady(true);
+    for (Map.Entry<Long, String> handoff : handoffs.entrySet()) {
+      long lotId = handoff.getKey();
+      ClusterNode owner = membership.getNode(handoff.getValue());
+      try {
+        HttpRequest request = HttpRequest.newBuilder(uri(owner, format("/cluster/lots/%d?handoffTo=%s", lotId, membership.getNodeId())))
+            .timeout(timeout)
+            .GET()
+            .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+          throw new IOException(format("Node %s answered %d", owner.id(), response.statusCode()));
+        }
+        WarmStartSnapshot.Lot lot = decode(lotId, response.body());
+        parkingLotShards.rebuild(lotId, lot.getSpotIds(), lot.getVehicles());
+      } catch (IOException | IllegalArgumentException e) {
+        log.warn("Could not take parking lot {} over from node {}, keeping this node's occupancy", lotId, owner.id(), e);
+      } finally {
+        membership.clearPending(lotId);
+      }
+    }
+    log.info("Node {} joined the cluster, taking {} lots over", membership.getNodeId(), handoffs.size());
+  }
+
+  /**
+   * Asks every other node whether it is ready, taking those that say not out of the live nodes
+   * at once. Those that do not answer are taken out once they have not answered for
+   * {@code failure-timeout-ms}.
+   *
+   * @return when every peer answered or timed out
+   */
+  public CompletableFuture<Void> heartbeat() {
+    List<CompletableFuture<Void>> replies = new ArrayList<>();
+    for (ClusterNode peer : membership.getPeers()) {
+      CompletableFuture<Void> reply = new CompletableFuture<>();
+      CompletableFuture<Void> awaited = asking.putIfAbsent(peer.id(), reply);
+      if (awaited != null) {
+        replies.add(awaited);
+        continue;
+      }
+      replies.add(reply);
+      HttpRequest request = HttpRequest.newBuilder(uri(peer, "/cluster/status")).timeout(timeout).GET().build();
+      httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+          .thenAccept(response -> {
+            NodeStatus status = response.statusCode() == 200 ? read(response.body(), NodeStatus.class) : null;
+            if (status != null && status.isReady() && peer.id().equals(status.getNodeId())) {
+              membership.seen(peer.id(), System.nanoTime());
+            } else {
+              membership.lost(peer.id());
+            }
+          })
+          .exceptionally(failure -> null)
+          .whenComplete((done, failure) -> {
+            asking.remove(peer.id(), reply);
+            reply.complete(null);
+          });
+    }
+    return CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * Starts sending the occupancy of every lot this node owns to the lot's backup, unless the
+   * backup already has it as it is or is still being sent it. Replicas of lots this node has
+   * taken over are promoted first.
+   */
+  public void replicate() {
+    if (!membership.isReady()) {
+      return;
+    }
+    for (long lotId : parkingLotShards.getLotIds()) {
+      long now = System.nanoTime();
+      OccupancyIndex shard = parkingLotShards.get(lotId);
+      String backup = membership.getBackup(lotId, now);
+      if (shard == null || !membership.isOwner(lotId, now) || membership.isPending(lotId)) {
+        replicas.remove(lotId);
+        continue;
+      }
+      parkingLotShards.promote(lotId);
+      if (backup == null) {
+        replicas.remove(lotId);
+        continue;
+      }
+      // Read before the occupancy is, so that a write racing with it is sent next time.
+      Replica replica = new Replica(backup, shard.getAvailability().getVersion(), shard.countParkedVehicles());
+      if (replica.equals(replicas.get(lotId)) || !replicating.add(lotId)) {
+        continue;
+      }
+      HttpRequest request = HttpRequest.newBuilder(uri(membership.getNode(backup), "/cluster/lots/" + lotId))
+          .timeout(timeout)
+          .header("Content-Type", "application/octet-stream")
+          .PUT(HttpRequest.BodyPublishers.ofByteArray(encode(lotId, shard)))
+          .build();
+      httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+        if (failure != null) {
+          log.debug("Could not send parking lot {} to node {}", lotId, backup, failure);
+        } else if (response.statusCode() == 200) {
+          replicas.put(lotId, replica);
+        }
+        replicating.remove(lotId);
+      });
+    }
+  }
+
+  /**
+   * @param handoffTo the node taking the lot over, taken as live at once, so that this node
+   *     forwards the lot to it from now on and keeps the lot as a replica, as its backup
+   * @return the occupancy of the lot, as read by {@link #restore}
+   */
+  public byte[] export(long lotId, String handoffTo) throws ParkingLotNotFoundException {
+    if (handoffTo != null) {
+      membership.seen(handoffTo, System.nanoTime());
+    }
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard == null) {
+      throw new ParkingLotNotFoundException(lotId);
+    }
+    byte[] occupancy = encode(lotId, shard);
+    if (handoffTo != null) {
+      parkingLotShards.demote(lotId);
+    }
+    return occupancy;
+  }
+
+  /**
+   * Replaces this node's occupancy of a lot it keeps a backup of with the owner's, as a replica
+   * whose vehicles are not claimed until this node takes the lot over.
+   *
+   * @return {@code false}, changing nothing, if this node owns the lot itself
+   * @throws IllegalArgumentException if the occupancy cannot be read
+   */
+  public boolean restore(long lotId, byte[] occupancy) {
+    if (membership.isOwner(lotId, System.nanoTime())) {
+      return false;
+    }
+    WarmStartSnapshot.Lot lot = decode(lotId, occupancy);
+    parkingLotShards.rebuildReplica(lotId, lot.getSpotIds(), lot.getVehicles());
+    return true;
+  }
+
+  /**
+   * @return the remaining spots of every lot of the cluster, each counted by its owner
+   */
+  public RemainingSpots getRemainingSpots() {
+    Map<Long, Integer> lots = new TreeMap<>(getOwnedRemainingSpots());
+    List<String> unreachable = new ArrayList<>();
+    Map<String, CompletableFuture<Map<Long, Integer>>> replies = new TreeMap<>();
+    for (String nodeId : membership.getLiveNodes(System.nanoTime())) {
+      if (!nodeId.equals(membership.getNodeId())) {
+        HttpRequest request = HttpRequest.newBuilder(uri(membership.getNode(nodeId), "/cluster/owned-remaining-spots"))
+            .timeout(timeout)
+            .GET()
+            .build();
+        replies.put(nodeId, httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> response.statusCode() == 200 ? read(response.body(), REMAINING_SPOTS) : null)
+            .exceptionally(failure -> null));
+      }
+    }
+    replies.forEach((nodeId, reply) -> {
+      Map<Long, Integer> owned = reply.join();
+      if (owned == null) {
+        unreachable.add(nodeId);
+      } else {
+        lots.putAll(owned);
+      }
+    });
+    int total = 0;
+    for (int remaining : lots.values()) {
+      total += remaining;
+    }
+    return new RemainingSpots(total, lots, unreachable);
+  }
+
+  /**
+   * @return the remaining spots of the lots this node owns and serves
+   */
+  public Map<Long, Integer> getOwnedRemainingSpots() {
+    long now = System.nanoTime();
+    Map<Long, Integer> remaining = new TreeMap<>();
+    for (long lotId : parkingLotShards.getLotIds()) {
+      OccupancyIndex shard = parkingLotShards.get(lotId);
+      if (shard != null && membership.isOwner(lotId, now) && !membership.isPending(lotId)) {
+        remaining.put(lotId, shard.getRemainingSpots());
+      }
+    }
+    return remaining;
+  }
+
+  private static WarmStartSnapshot.Lot decode(long lotId, byte[] occupancy) {
+    WarmStartSnapshot snapshot = WarmStartSnapshot.decode(occupancy);
+    if (snapshot == null || snapshot.getLots().size() != 1 || snapshot.getLots().get(0).getLotId() != lotId) {
+      throw new IllegalArgumentException(format("Occupancy of parking lot %d cannot be read", lotId));
+    }
+    return snapshot.getLots().get(0);
+  }
+
+  private static byte[] encode(long lotId, OccupancyIndex shard) {
+    return WarmStartSnapshot.encode(new WarmStartSnapshot(List.of(
+        new WarmStartSnapshot.Lot(lotId, shard.getSpotIds(), shard.getParkedVehicles()))));
+  }
+
+  private <T> T read(byte[] body, Class<T> type) {
+    try {
+      return objectMapper.readValue(body, type);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private <T> T read(byte[] body, TypeReference<T> type) {
+    try {
+      return objectMapper.readValue(body, type);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static URI uri(ClusterNode node, String path) {
+    return URI.create(node.uri() + path);
+  }
+
+  /**
+   * The backup a lot was last sent to, and the version and parked vehicles it was sent at.
+   */
+  private record Replica(String backup, long version, int parkedVehicles) {}
+}
@@ -0,0 +1,217 @@
+package assessment.parkinglot.cluster;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Which nodes of the cluster are live, and which of them owns every lot.
+ * <p>
+ * The nodes are listed in {@code parking-lot.cluster.nodes} as {@code id=uri} pairs, the same
+ * list on every node. A node is live once it has said it is ready within the last
+ * {@code failure-timeout-ms}, and this node once it has joined. Every lot is ranked over the
+ * live nodes by rendezvous hashing: the first owns it and the second keeps a backup of it. When a
+ * node fails, only the lots it owned move, each to its backup, and when it comes back, only the
+ * lots it ranks first for move back to it. Lots handed to this node are pending until their
+ * occupancy has arrived.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.cluster.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClusterMembership {
+
+  @Value("${parking-lot.cluster.node-id}")
+  private String nodeId;
+
+  @Value("${parking-lot.cluster.nodes}")
+  private String nodes;
+
+  @Value("${parking-lot.cluster.failure-timeout-ms:2000}")
+  private long failureTimeoutMillis;
+
+  private final Map<String, ClusterNode> nodesById = new TreeMap<>();
+
+  private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+
+  private final Set<Long> pendingLots = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean ready;
+
+  private long failureTimeoutNanos;
+
+  public ClusterMembership() {}
+
+  public ClusterMembership(String nodeId, String nodes, long failureTimeoutMillis) {
+    this.nodeId = nodeId;
+    this.nodes = nodes;
+    this.failureTimeoutMillis = failureTimeoutMillis;
+    initialize();
+  }
+
+  @PostConstruct
+  void initialize() {
+    for (String node : nodes.split(",")) {
+      String[] idAndUri = node.trim().split("=", 2);
+      if (idAndUri.length != 2 || idAndUri[0].isBlank()) {
+        throw new IllegalStateException(format("Cluster node %s is not given as id=uri", node));
+      }
+      String id = idAndUri[0].trim();
+      nodesById.put(id, new ClusterNode(id, URI.create(idAndUri[1].trim().replaceAll("/+$", ""))));
+    }
+    if (!nodesById.containsKey(nodeId)) {
+      throw new IllegalStateException(format("Node %s is not one of the cluster nodes %s", nodeId, nodesById.keySet()));
+    }
+    failureTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(failureTimeoutMillis);
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public ClusterNode getNode(String id) {
+    return nodesById.get(id);
+  }
+
+  public long getFailureTimeoutMillis() {
+    return failureTimeoutMillis;
+  }
+
+  /**
+   * @return every node but this one, live or not
+   */
+  public List<ClusterNode> getPeers() {
+    List<ClusterNode> peers = new ArrayList<>(nodesById.values());
+    peers.removeIf(node -> node.id().equals(nodeId));
+    return peers;
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  public void setReady(boolean ready) {
+    this.ready = ready;
+  }
+
+  /**
+   * Records that the peer said it is ready.
+   */
+  public void seen(String peerId, long nowNanos) {
+    if (nodesById.containsKey(peerId) && !peerId.equals(nodeId)) {
+      lastSeen.put(peerId, nowNanos);
+    }
+  }
+
+  /**
+   * Takes the peer out of the live nodes at once, as when it said it is not ready or could not
+   * be reached.
+   */
+  public void lost(String peerId) {
+    lastSeen.remove(peerId);
+  }
+
+  /**
+   * @return the live nodes, sorted by id
+   */
+  public List<String> getLiveNodes(long nowNanos) {
+    List<String> live = new ArrayList<>(nodesById.size());
+    for (String id : nodesById.keySet()) {
+      if (id.equals(nodeId) ? ready : isSeen(id, nowNanos)) {
+        live.add(id);
+      }
+    }
+    return live;
+  }
+
+  private boolean isSeen(String peerId, long nowNanos) {
+    Long seen = lastSeen.get(peerId);
+    return seen != null && nowNanos - seen < failureTimeoutNanos;
+  }
+
+  /**
+   * @return the node owning the lot, or {@code null} if no node is live
+   */
+  public String getOwner(long lotId, long nowNanos) {
+    return getOwner(lotId, getLiveNodes(nowNanos));
+  }
+
+  /**
+   * @return the node keeping a backup of the lot, or {@code null} if fewer than two nodes are live
+   */
+  public String getBackup(long lotId, long nowNanos) {
+    List<String> ranked = rank(lotId, getLiveNodes(nowNanos));
+    return ranked.size() > 1 ? ranked.get(1) : null;
+  }
+
+  public boolean isOwner(long lotId, long nowNanos) {
+    return nodeId.equals(getOwner(lotId, nowNanos));
+  }
+
+  /**
+   * @return the one of the nodes owning the lot, or {@code null} if there are none
+   */
+  public static String getOwner(long lotId, Collection<String> nodeIds) {
+    String owner = null;
+    long highest = 0;
+    for (String id : nodeIds) {
+      long score = score(id, lotId);
+      if (owner == null || Long.compareUnsigned(score, highest) > 0) {
+        owner = id;
+        highest = score;
+      }
+    }
+    return owner;
+  }
+
+  /**
+   * @return the nodes in the order they take the lot over, its owner first
+   */
+  public static List<String> rank(long lotId, Collection<String> nodeIds) {
+    List<String> ranked = new ArrayList<>(nodeIds);
+    ranked.sort((a, b) -> Long.compareUnsigned(score(b, lotId), score(a, lotId)));
+    return ranked;
+  }
+
+  /**
+   * Mixes the node id and the lot id like the finalizer of MurmurHash3, so that every node is
+   * as likely to rank first for a lot whatever the ids look like.
+   */
+  private static long score(String id, long lotId) {
+    long h = lotId ^ (id.hashCode() * 0x9e3779b97f4a7c15L);
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  public void markPending(long lotId) {
+    pendingLots.add(lotId);
+  }
+
+  public void clearPending(long lotId) {
+    pendingLots.remove(lotId);
+  }
+
+  /**
+   * @return whether the lot was handed to this node and its occupancy has not arrived yet
+   */
+  public boolean isPending(long lotId) {
+    return pendingLots.contains(lotId);
+  }
+}
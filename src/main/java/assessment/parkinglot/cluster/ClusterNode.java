@@ -0,0 +1,9 @@
+package assessment.parkinglot.cluster;
+
+import java.net.URI;
+
+/**
+ * A node of the cluster, named by its {@code parking-lot.cluster.node-id} and reached at the base
+ * URI it serves the API under.
+ */
+public record ClusterNode(String id, URI uri) {}
@@ -0,0 +1,203 @@
+package assessment.parkinglot.controllers;
+
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.metrics.ParkingMetrics.Rejection;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
+import assessment.parkinglot.services.ParkingLotService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+/**
+ * Decides which parks get to the {@link ParkingLotService}.
+ * <p>
+ * Every client, a gate sending its id or else a remote address, has a token bucket of
+ * {@code burst} parks refilled at {@code rate-per-second}. A bucket is kept as the time it will
+ * be full again, which a park moves on by one refill interval with a compare-and-set, and parks
+ * that would move it more than a burst ahead are refused with {@code 429}. Full buckets are swept
+ * away every minute, and clients beyond {@code max-clients} share one bucket. Parks beyond
+ * {@code max-in-flight} running at once are shed with {@code 503}. Both carry a
+ * {@code Retry-After}. Parks that would find no spot for their vehicle type are refused from the
+ * lot's availability counters before taking a place in flight.
+ */
+@Component
+public class AdmissionControl {
+
+  private static final String SHARED_CLIENT = "";
+
+  @Value("${parking-lot.admission.rate-per-second:0}")
+  private double ratePerSecond;
+
+  @Value("${parking-lot.admission.burst:20}")
+  private int burst;
+
+  @Value("${parking-lot.admission.max-clients:100000}")
+  private int maxClients;
+
+  @Value("${parking-lot.admission.max-in-flight:0}")
+  private int maxInFlight;
+
+  @Value("${parking-lot.admission.overload-retry-after-seconds:1}")
+  private long overloadRetryAfterSeconds;
+
+  @Autowired
+  private ParkingLotService parkingLotService;
+
+  @Autowired
+  private ParkingMetrics parkingMetrics;
+
+  private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private long refillNanos;
+
+  private final Permit permit = inFlight::decrementAndGet;
+
+  public AdmissionControl() {}
+
+  public AdmissionControl(double ratePerSecond, int burst, int maxClients, int maxInFlight,
+      ParkingLotService parkingLotService, ParkingMetrics parkingMetrics) {
+    this.ratePerSecond = ratePerSecond;
+    this.burst = burst;
+    this.maxClients = maxClients;
+    this.maxInFlight = maxInFlight;
+    this.overloadRetryAfterSeconds = 1;
+    this.parkingLotService = parkingLotService;
+    this.parkingMetrics = parkingMetrics;
+    initialize();
+  }
+
+  @PostConstruct
+  void initialize() {
+    refillNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+  }
+
+  /**
+   * @see #admit(String, long, ParkVehicleRequest, long)
+   */
+  public Permit admit(String client, long lotId, ParkVehicleRequest request) throws NoAvailableSpotsException {
+    return admit(client, lotId, request, System.nanoTime());
+  }
+
+  /**
+   * Admits a park.
+   *
+   * @return the place in flight, to be closed once the park is done
+   * @throws NoAvailableSpotsException if the lot has no spot for the vehicle
+   * @throws RetryAfterException if the client is over its rate or too many parks are in flight
+   */
+  public Permit admit(String client, long lotId, ParkVehicleRequest request, long nowNanos)
+      throws NoAvailableSpotsException {
+    limitRate(client, nowNanos);
+    if (isFull(lotId, request)) {
+      parkingMetrics.recordRejection(Rejection.FULL);
+      throw new NoAvailableSpotsException();
+    }
+    return enter();
+  }
+
+  /**
+   * Admits a batch of parks as one park, whether or not the lot has room for them.
+   *
+   * @see #admit(String, long, ParkVehicleRequest, long)
+   */
+  public Permit admitBatch(String client) {
+    limitRate(client, System.nanoTime());
+    return enter();
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Drops the buckets that are full again, which admit the same as a new one.
+   */
+  @Scheduled(fixedDelay = 60_000)
+  public void sweep() {
+    long now = System.nanoTime();
+    buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+  }
+
+  private void limitRate(String client, long nowNanos) {
+    if (refillNanos > 0) {
+      long waitNanos = take(client, nowNanos);
+      if (waitNanos > 0) {
+        parkingMetrics.recordRejection(Rejection.RATE_LIMITED);
+        throw new RetryAfterException(TOO_MANY_REQUESTS, "Too many parks, retry later", toSeconds(waitNanos));
+      }
+    }
+  }
+
+  private Permit enter() {
+    if (maxInFlight <= 0) {
+      return () -> {};
+    }
+    if (inFlight.incrementAndGet() > maxInFlight) {
+      inFlight.decrementAndGet();
+      parkingMetrics.recordRejection(Rejection.OVERLOADED);
+      throw new RetryAfterException(SERVICE_UNAVAILABLE, "Too many parks in flight, retry later",
+          overloadRetryAfterSeconds);
+    }
+    return permit;
+  }
+
+  /**
+   * @return {@code 0} if the client had a token, otherwise how long until it has one
+   */
+  private long take(String client, long nowNanos) {
+    AtomicLong bucket = buckets.get(client);
+    if (bucket == null) {
+      if (buckets.size() >= maxClients) {
+        client = SHARED_CLIENT;
+      }
+      bucket = buckets.computeIfAbsent(client, key -> new AtomicLong(nowNanos));
+    }
+    long capacityNanos = burst * refillNanos;
+    while (true) {
+      long fullAt = bucket.get();
+      long next = Math.max(fullAt - nowNanos, 0) + refillNanos;
+      if (next > capacityNanos) {
+        return next - capacityNanos;
+      }
+      if (bucket.compareAndSet(fullAt, nowNanos + next)) {
+        return 0;
+      }
+    }
+  }
+
+  private boolean isFull(long lotId, ParkVehicleRequest request) {
+    try {
+      return parkingLotService.isFull(lotId, request);
+    } catch (ParkingLotNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static long toSeconds(long nanos) {
+    return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * A park's place in flight.
+   */
+  public interface Permit extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+}
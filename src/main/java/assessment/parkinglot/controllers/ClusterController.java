@@ -0,0 +1,72 @@
+package assessment.parkinglot.controllers;
+
+import assessment.parkinglot.cluster.ClusterCoordinator;
+import assessment.parkinglot.cluster.ClusterMembership;
+import assessment.parkinglot.response.NodeStatus;
+import assessment.parkinglot.response.RemainingSpots;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+/**
+ * Answers the other nodes of the cluster, see {@link ClusterCoordinator}, and counts the
+ * remaining spots of every lot across the cluster.
+ */
+@RestController
+@RequestMapping("cluster")
+@ConditionalOnProperty(name = "parking-lot.cluster.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClusterController {
+
+  @Autowired
+  private ClusterMembership membership;
+
+  @Autowired
+  private ClusterCoordinator clusterCoordinator;
+
+  @GetMapping("status")
+  public NodeStatus getStatus() {
+    return new NodeStatus(membership.getNodeId(), membership.isReady());
+  }
+
+  @GetMapping(path = "lots/{lotId}", produces = APPLICATION_OCTET_STREAM_VALUE)
+  public byte[] exportLot(@PathVariable long lotId, @RequestParam(required = false) String handoffTo) {
+    try {
+      return clusterCoordinator.export(lotId, handoffTo);
+    } catch (ParkingLotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  @PutMapping(path = "lots/{lotId}", consumes = APPLICATION_OCTET_STREAM_VALUE)
+  public void restoreLot(@PathVariable long lotId, @RequestBody byte[] occupancy) {
+    try {
+      if (!clusterCoordinator.restore(lotId, occupancy)) {
+        throw new ResponseStatusException(CONFLICT, format("Node %s owns parking lot %d", membership.getNodeId(), lotId));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @GetMapping("remaining-spots")
+  public RemainingSpots getRemainingSpots() {
+    return clusterCoordinator.getRemainingSpots();
+  }
+
+  @GetMapping("owned-remaining-spots")
+  public Map<Long, Integer> getOwnedRemainingSpots() {
+    return clusterCoordinator.getOwnedRemainingSpots();
+  }
+}
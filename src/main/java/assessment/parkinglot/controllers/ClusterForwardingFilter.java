@@ -0,0 +1,168 @@
+package assessment.parkinglot.controllers;
+
+import assessment.parkinglot.cluster.ClusterMembership;
+import assessment.parkinglot.cluster.ClusterNode;
+import assessment.parkinglot.domain.ParkingLot;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Forwards the requests for a lot this node does not own to the node that does, so that every
+ * lot is served from the occupancy of one node whichever node a request arrives at. Requests for
+ * a lot still being handed to this node, and requests forwarded more than once, as while nodes
+ * disagree about who owns a lot, are refused with {@code 503} and a {@code Retry-After}.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.cluster.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClusterForwardingFilter extends OncePerRequestFilter {
+
+  private static final String HOPS = "X-Cluster-Hops";
+
+  private static final int MAX_HOPS = 2;
+
+  private static final String CLIENT_ID = "X-Client-Id";
+
+  private static final Pattern LOT_PATH = Pattern.compile("/parking-lot(?:/.*)?|/parking-lots/(\\d{1,18})(?:/.*)?");
+
+  /**
+   * Headers about the connection rather than the request, which the HTTP client sets itself.
+   */
+  private static final Set<String> HOP_BY_HOP = Set.of("connection", "content-length", "expect", "host",
+      "keep-alive", "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade");
+
+  @Autowired
+  private ClusterMembership membership;
+
+  private HttpClient httpClient;
+
+  @PostConstruct
+  void initialize() {
+    httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofMillis(membership.getFailureTimeoutMillis()))
+        .build();
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    Long lotId = lotOf(request.getRequestURI().substring(request.getContextPath().length()));
+    if (lotId == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    if (membership.isPending(lotId)) {
+      retryLater(response, format("Parking lot %d is being handed to this node", lotId));
+      return;
+    }
+    String owner = membership.getOwner(lotId, System.nanoTime());
+    if (owner == null || owner.equals(membership.getNodeId())) {
+      chain.doFilter(request, response);
+      return;
+    }
+    int hops = request.getIntHeader(HOPS);
+    if (hops >= MAX_HOPS) {
+      retryLater(response, format("Nodes disagree about who owns parking lot %d", lotId));
+      return;
+    }
+    forward(request, response, membership.getNode(owner), Math.max(hops, 0) + 1);
+  }
+
+  private void forward(HttpServletRequest request, HttpServletResponse response, ClusterNode owner, int hops)
+      throws IOException {
+    String query = request.getQueryString();
+    HttpRequest.Builder forwarded = HttpRequest.newBuilder(URI.create(owner.uri()
+        + request.getRequestURI().substring(request.getContextPath().length()) + (query == null ? "" : "?" + query)));
+    for (String name : Collections.list(request.getHeaderNames())) {
+      if (!HOP_BY_HOP.contains(name.toLowerCase()) && !name.equalsIgnoreCase(HOPS)) {
+        for (String value : Collections.list(request.getHeaders(name))) {
+          forwarded.header(name, value);
+        }
+      }
+    }
+    forwarded.header(HOPS, Integer.toString(hops));
+    if (request.getHeader(CLIENT_ID) == null) {
+      forwarded.header(CLIENT_ID, request.getRemoteAddr());
+    }
+    byte[] body = request.getInputStream().readAllBytes();
+    forwarded.method(request.getMethod(), body.length == 0
+        ? HttpRequest.BodyPublishers.noBody()
+        : HttpRequest.BodyPublishers.ofByteArray(body));
+
+    HttpResponse<InputStream> answer;
+    try {
+      answer = httpClient.send(forwarded.build(), HttpResponse.BodyHandlers.ofInputStream());
+    } catch (ConnectException e) {
+      membership.lost(owner.id());
+      retryLater(response, format("Node %s owning the parking lot cannot be reached", owner.id()));
+      return;
+    } catch (IOException e) {
+      retryLater(response, format("Node %s owning the parking lot did not answer", owner.id()));
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      retryLater(response, "Interrupted while forwarding to the node owning the parking lot");
+      return;
+    }
+    response.setStatus(answer.statusCode());
+    answer.headers().map().forEach((name, values) -> {
+      if (!HOP_BY_HOP.contains(name.toLowerCase())) {
+        values.forEach(value -> response.addHeader(name, value));
+      }
+    });
+    // Flushes whenever the owner pauses, so that streamed availability updates arrive as sent.
+    try (InputStream in = answer.body()) {
+      OutputStream out = response.getOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+        if (in.available() == 0) {
+          out.flush();
+        }
+      }
+    }
+  }
+
+  private static void retryLater(HttpServletResponse response, String message) throws IOException {
+    response.setHeader("Retry-After", "1");
+    response.sendError(SERVICE_UNAVAILABLE.value(), message);
+  }
+
+  /**
+   * @return the lot the path is served for, or {@code null} if it is not a lot's
+   */
+  private static Long lotOf(String path) {
+    Matcher matcher = LOT_PATH.matcher(path);
+    if (!matcher.matches()) {
+      return null;
+    }
+    return matcher.group(1) == null ? ParkingLot.DEFAULT_ID : Long.parseLong(matcher.group(1));
+  }
+}
@@ -0,0 +1,173 @@
+package assessment.parkinglot.controllers;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+/**
+ * Outcomes of requests by {@code Idempotency-Key}, so a retried request gets the original
+ * response instead of being run again.
+ * <p>
+ * Every key lives for the same time, so keys expire in the order they came in: they are kept in
+ * a fixed ring of {@code max-entries} slots next to the lookup map, and each new key first evicts
+ * the oldest ones that expired or no longer fit. Memory stays bounded by the ring whatever the
+ * request rate, and a key costs one entry and its outcome. A retry arriving while the original is
+ * still running waits for its outcome. Failures other than a {@link ResponseStatusException} are
+ * not kept, so such a request can be retried.
+ */
+@Component
+public class IdempotencyCache {
+
+  @Value("${parking-lot.idempotency.max-entries:100000}")
+  private int maxEntries;
+
+  @Value("${parking-lot.idempotency.ttl-seconds:300}")
+  private long ttlSeconds;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final ReentrantLock ringLock = new ReentrantLock();
+
+  private Entry[] ring;
+
+  private long ttlNanos;
+
+  private int oldest;
+
+  private int size;
+
+  public IdempotencyCache() {}
+
+  public IdempotencyCache(int maxEntries, long ttlSeconds) {
+    this.maxEntries = maxEntries;
+    this.ttlSeconds = ttlSeconds;
+    initialize();
+  }
+
+  @PostConstruct
+  void initialize() {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException(format("parking-lot.idempotency.max-entries must be at least 1, was %d", maxEntries));
+    }
+    if (ttlSeconds < 1) {
+      throw new IllegalArgumentException(format("parking-lot.idempotency.ttl-seconds must be at least 1, was %d", ttlSeconds));
+    }
+    ring = new Entry[maxEntries];
+    ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+  }
+
+  public <T> T execute(String key, String fingerprint, Supplier<T> action) {
+    return execute(key, fingerprint, action, System.nanoTime());
+  }
+
+  /**
+   * Runs the action, unless the key was seen for the same request before, in which case the
+   * outcome it had is returned or thrown again.
+   *
+   * @param fingerprint what the request was, so a key reused for another request is refused
+   */
+  public <T> T execute(String key, String fingerprint, Supplier<T> action, long nowNanos) {
+    Entry entry = new Entry(key, fingerprint, nowNanos);
+    Entry existing;
+    while ((existing = entries.putIfAbsent(key, entry)) != null) {
+      if (nowNanos - existing.createdNanos < ttlNanos) {
+        if (!existing.fingerprint.equals(fingerprint)) {
+          throw new ResponseStatusException(UNPROCESSABLE_ENTITY, "Idempotency-Key was used for a different request");
+        }
+        return replay(existing);
+      }
+      entries.remove(key, existing);
+    }
+    admit(entry, nowNanos);
+    T result;
+    try {
+      result = action.get();
+    } catch (ResponseStatusException e) {
+      entry.outcome.complete(e);
+      throw e;
+    } catch (RuntimeException e) {
+      entries.remove(key, entry);
+      entry.outcome.completeExceptionally(e);
+      throw e;
+    }
+    entry.outcome.complete(result);
+    return result;
+  }
+
+  public boolean isKnown(String key) {
+    return isKnown(key, System.nanoTime());
+  }
+
+  /**
+   * @return whether the key was seen within its time to live, so that executing a request with it
+   *     replays an outcome, or waits for it, rather than running anything
+   */
+  public boolean isKnown(String key, long nowNanos) {
+    Entry existing = entries.get(key);
+    return existing != null && nowNanos - existing.createdNanos < ttlNanos;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T replay(Entry entry) {
+    Object outcome;
+    try {
+      outcome = entry.outcome.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+    if (outcome instanceof ResponseStatusException e) {
+      throw new ResponseStatusException(e.getStatusCode(), e.getReason());
+    }
+    return (T) outcome;
+  }
+
+  private void admit(Entry entry, long nowNanos) {
+    ringLock.lock();
+    try {
+      while (size > 0 && (size == ring.length || nowNanos - ring[oldest].createdNanos >= ttlNanos)) {
+        Entry evicted = ring[oldest];
+        entries.remove(evicted.key, evicted);
+        ring[oldest] = null;
+        oldest = (oldest + 1) % ring.length;
+        size--;
+      }
+      ring[(oldest + size) % ring.length] = entry;
+      size++;
+    } finally {
+      ringLock.unlock();
+    }
+  }
+
+  private static final class Entry {
+
+    private final String key;
+
+    private final String fingerprint;
+
+    private final long createdNanos;
+
+    private final CompletableFuture<Object> outcome = new CompletableFuture<>();
+
+    private Entry(String key, String fingerprint, long createdNanos) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+      this.createdNanos = createdNanos;
+    }
+  }
+}
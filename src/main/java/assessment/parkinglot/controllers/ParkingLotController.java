@@ -1,51 +1,282 @@
 package assessment.parkinglot.controllers;
 
+import assessment.parkinglot.allocation.Hold;
+import assessment.parkinglot.domain.ParkingLot;
 import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.history.Interval;
+import assessment.parkinglot.history.OccupancyHistory;
+import assessment.parkinglot.request.LeaveVehiclesRequest;
 import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.request.ParkVehiclesRequest;
+import assessment.parkinglot.response.OccupancyStats;
+import assessment.parkinglot.response.ParkingResult;
+import assessment.parkinglot.response.VehicleLocation;
+import assessment.parkinglot.services.AvailabilityBroadcaster;
+import assessment.parkinglot.services.HoldExistsException;
+import assessment.parkinglot.services.HoldNotFoundException;
 import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
 import assessment.parkinglot.services.ParkingLotService;
 import assessment.parkinglot.services.VehicleAlreadyParkedException;
 import assessment.parkinglot.services.VehicleNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
+/**
+ * Serves every parking lot under {@code /parking-lots/{lotId}}. The original {@code /parking-lot}
+ * routes keep working against the default lot.
+ * <p>
+ * Parks and leaves given an {@code Idempotency-Key} header answer retries with the outcome of the
+ * first request carrying that key, see {@link IdempotencyCache}. Other parks go through
+ * {@link AdmissionControl} first, per client as named by the {@code X-Client-Id} header, or else
+ * per remote address, so that a retry is never refused for a park that already went through.
+ * Where vehicles are parked is answered from memory, for one vehicle or up to a thousand at once.
+ * In the in-memory allocation mode, single parks, leaves and is-full checks are served by the
+ * status-returning calls of {@link ParkingLotService}. The {@code reactive} profile serves
+ * {@link ReactiveParkingLotController} instead.
+ */
 @RestController
-@RequestMapping("parking-lot")
+@RequestMapping({ "parking-lot", "parking-lots/{lotId}" })
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ParkingLotController {
 
+  private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+  private static final String CLIENT_ID = "X-Client-Id";
+
+  private static final int MAX_LOOKUPS = 1000;
+
   @Autowired
   private ParkingLotService parkingLotService;
 
+  @Autowired
+  private AvailabilityBroadcaster availabilityBroadcaster;
+
+  @Autowired
+  private IdempotencyCache idempotencyCache;
+
+  @Autowired
+  private AdmissionControl admissionControl;
+
   @PostMapping("park")
-  public void park(@Validated @RequestBody ParkVehicleRequest request) {
-    try {
-      parkingLotService.park(request);
-    } catch (VehicleAlreadyParkedException | NoAvailableSpotsException e) {
+  public void park(@PathVariable(required = false) Long lotId, @Validated @RequestBody ParkVehicleRequest request,
+      @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+      @RequestHeader(name = CLIENT_ID, required = false) String clientId, HttpServletRequest servletRequest) {
+    String fingerprint = "park " + lot(lotId) + " " + request.getId() + " " + request.getType();
+    Supplier<Void> park = () -> {
+      try {
+        if (parkingLotService.isInMemoryAllocation()) {
+          switch (parkingLotService.tryPark(lot(lotId), request.getId(), request.getType())) {
+            case ALREADY_PARKED -> throw new VehicleAlreadyParkedException(request.getId());
+            case NO_AVAILABLE_SPOTS -> throw new NoAvailableSpotsException();
+          }
+          return null;
+        }
+        parkingLotService.park(lot(lotId), request);
+        return null;
+      } catch (ParkingLotNotFoundException e) {
+        throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+      } catch (VehicleAlreadyParkedException | NoAvailableSpotsException e) {
+        throw new ResponseStatusException(CONFLICT, e.getMessage());
+      }
+    };
+    if (isReplay(idempotencyKey)) {
+      idempotent(idempotencyKey, fingerprint, park);
+      return;
+    }
+    try (AdmissionControl.Permit permit = admissionControl.admit(client(clientId, servletRequest), lot(lotId), request)) {
+      idempotent(idempotencyKey, fingerprint, park);
+    } catch (NoAvailableSpotsException e) {
       throw new ResponseStatusException(CONFLICT, e.getMessage());
     }
   }
 
+  @PostMapping("park/batch")
+  public List<ParkingResult> parkAll(@PathVariable(required = false) Long lotId,
+      @Validated @RequestBody ParkVehiclesRequest request,
+      @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+      @RequestHeader(name = CLIENT_ID, required = false) String clientId, HttpServletRequest servletRequest) {
+    StringBuilder fingerprint = new StringBuilder("park/batch ").append(lot(lotId));
+    for (ParkVehicleRequest vehicle : request.getVehicles()) {
+      fingerprint.append(' ').append(vehicle.getId()).append(' ').append(vehicle.getType());
+    }
+    Supplier<List<ParkingResult>> parkAll = () -> {
+      try {
+        return parkingLotService.parkAll(lot(lotId), request.getVehicles());
+      } catch (ParkingLotNotFoundException e) {
+        throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+      }
+    };
+    if (isReplay(idempotencyKey)) {
+      return idempotent(idempotencyKey, fingerprint.toString(), parkAll);
+    }
+    try (AdmissionControl.Permit permit = admissionControl.admitBatch(client(clientId, servletRequest))) {
+      return idempotent(idempotencyKey, fingerprint.toString(), parkAll);
+    }
+  }
+
   @PostMapping("leave/{vehicleId}")
-  public void leave(@PathVariable String vehicleId) {
+  public void leave(@PathVariable(required = false) Long lotId, @PathVariable String vehicleId,
+      @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    idempotent(idempotencyKey, "leave " + lot(lotId) + " " + vehicleId, () -> {
+      try {
+        if (parkingLotService.isInMemoryAllocation()) {
+          if (parkingLotService.tryLeave(lot(lotId), vehicleId) == ParkingResult.Status.NOT_FOUND) {
+            throw new VehicleNotFoundException(vehicleId);
+          }
+          return null;
+        }
+        parkingLotService.leave(lot(lotId), vehicleId);
+        return null;
+      } catch (ParkingLotNotFoundException | VehicleNotFoundException e) {
+        throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+      }
+    });
+  }
+
+  @PostMapping("leave/batch")
+  public List<ParkingResult> leaveAll(@PathVariable(required = false) Long lotId,
+      @Validated @RequestBody LeaveVehiclesRequest request,
+      @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    return idempotent(idempotencyKey, "leave/batch " + lot(lotId) + " " + request.getVehicleIds(), () -> {
+      try {
+        return parkingLotService.leaveAll(lot(lotId), request.getVehicleIds());
+      } catch (ParkingLotNotFoundException e) {
+        throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+      }
+    });
+  }
+
+  @PostMapping("hold")
+  public Hold hold(@PathVariable(required = false) Long lotId, @Validated @RequestBody ParkVehicleRequest request,
+      @RequestParam(defaultValue = "${parking-lot.holds.default-ttl-seconds:600}") long ttlSeconds) {
+    if (ttlSeconds <= 0) {
+      throw new ResponseStatusException(BAD_REQUEST, "ttlSeconds must be positive");
+    }
+    try {
+      return parkingLotService.hold(lot(lotId), request, ttlSeconds);
+    } catch (ParkingLotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    } catch (VehicleAlreadyParkedException | HoldExistsException | NoAvailableSpotsException e) {
+      throw new ResponseStatusException(CONFLICT, e.getMessage());
+    }
+  }
+
+  @PostMapping("release-hold/{vehicleId}")
+  public void releaseHold(@PathVariable(required = false) Long lotId, @PathVariable String vehicleId) {
     try {
-      parkingLotService.leave(vehicleId);
-    } catch (VehicleNotFoundException e) {
+      parkingLotService.releaseHold(lot(lotId), vehicleId);
+    } catch (HoldNotFoundException e) {
       throw new ResponseStatusException(NOT_FOUND, e.getMessage());
     }
   }
 
   @GetMapping("remaining-spots")
-  public Integer getRemainingSpots() {
-    return parkingLotService.getRemainingSpots();
+  public Integer getRemainingSpots(@PathVariable(required = false) Long lotId) {
+    try {
+      return parkingLotService.getRemainingSpots(lot(lotId));
+    } catch (ParkingLotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
   }
 
   @GetMapping("{type}/is-full")
-  public Boolean isFull(@PathVariable VehicleType type) {
-    return parkingLotService.isFull(type);
+  public Boolean isFull(@PathVariable(required = false) Long lotId, @PathVariable VehicleType type) {
+    try {
+      if (parkingLotService.isInMemoryAllocation()) {
+        return parkingLotService.isFullNow(lot(lotId), type);
+      }
+      return parkingLotService.isFull(lot(lotId), type);
+    } catch (ParkingLotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  @GetMapping("vehicles/{vehicleId}")
+  public VehicleLocation findVehicle(@PathVariable(required = false) Long lotId, @PathVariable String vehicleId) {
+    try {
+      return parkingLotService.findVehicle(lot(lotId), vehicleId);
+    } catch (ParkingLotNotFoundException | VehicleNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  @GetMapping("vehicles")
+  public List<VehicleLocation> findVehicles(@PathVariable(required = false) Long lotId,
+      @RequestParam("ids") List<String> vehicleIds) {
+    if (vehicleIds.size() > MAX_LOOKUPS) {
+      throw new ResponseStatusException(BAD_REQUEST, format("At most %d vehicles can be looked up at once", MAX_LOOKUPS));
+    }
+    try {
+      return parkingLotService.findVehicles(lot(lotId), vehicleIds);
+    } catch (ParkingLotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  @GetMapping("stats")
+  public OccupancyStats getStats(@PathVariable(required = false) Long lotId,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+      @RequestParam(defaultValue = "HOUR") Interval interval) {
+    if (!from.isBefore(to)) {
+      throw new ResponseStatusException(BAD_REQUEST, "from must be before to");
+    }
+    if (Duration.between(from, to).toMillis() / interval.getMillis() >= OccupancyHistory.MAX_POINTS) {
+      throw new ResponseStatusException(BAD_REQUEST,
+          format("At most %d %s intervals can be queried at once", OccupancyHistory.MAX_POINTS, interval));
+    }
+    try {
+      return parkingLotService.getStats(lot(lotId), from, to, interval);
+    } catch (ParkingLotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  @GetMapping(path = "availability", produces = TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamAvailability(@PathVariable(required = false) Long lotId) throws IOException {
+    try {
+      return availabilityBroadcaster.subscribe(lot(lotId));
+    } catch (ParkingLotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  private <T> T idempotent(String idempotencyKey, String fingerprint, Supplier<T> action) {
+    return idempotencyKey == null ? action.get() : idempotencyCache.execute(idempotencyKey, fingerprint, action);
+  }
+
+  /**
+   * @return whether the request only replays the outcome of an earlier one, which needs no
+   *     admission
+   */
+  private boolean isReplay(String idempotencyKey) {
+    return idempotencyKey != null && idempotencyCache.isKnown(idempotencyKey);
+  }
+
+  private static String client(String clientId, HttpServletRequest servletRequest) {
+    return clientId != null ? clientId : servletRequest.getRemoteAddr();
+  }
+
+  private static long lot(Long lotId) {
+    return lotId == null ? ParkingLot.DEFAULT_ID : lotId;
   }
 }
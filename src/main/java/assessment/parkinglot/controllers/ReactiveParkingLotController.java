@@ -0,0 +1,65 @@
+package assessment.parkinglot.controllers;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
+import assessment.parkinglot.services.ReactiveParkingLotService;
+import assessment.parkinglot.services.VehicleAlreadyParkedException;
+import assessment.parkinglot.services.VehicleNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Serves parks, leaves, the remaining spots and whether a lot is full on WebFlux, under the same
+ * routes and with the same statuses as {@link ParkingLotController}. Started with the
+ * {@code reactive} profile.
+ */
+@RestController
+@RequestMapping({ "parking-lot", "parking-lots/{lotId}" })
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveParkingLotController {
+
+  @Autowired
+  private ReactiveParkingLotService reactiveParkingLotService;
+
+  @PostMapping("park")
+  public Mono<Void> park(@PathVariable(required = false) Long lotId,
+      @Validated @RequestBody ParkVehicleRequest request) {
+    return reactiveParkingLotService.park(lot(lotId), request)
+        .onErrorMap(ParkingLotNotFoundException.class, e -> new ResponseStatusException(NOT_FOUND, e.getMessage()))
+        .onErrorMap(e -> e instanceof VehicleAlreadyParkedException || e instanceof NoAvailableSpotsException,
+            e -> new ResponseStatusException(CONFLICT, e.getMessage()));
+  }
+
+  @PostMapping("leave/{vehicleId}")
+  public Mono<Void> leave(@PathVariable(required = false) Long lotId, @PathVariable String vehicleId) {
+    return reactiveParkingLotService.leave(lot(lotId), vehicleId)
+        .onErrorMap(e -> e instanceof ParkingLotNotFoundException || e instanceof VehicleNotFoundException,
+            e -> new ResponseStatusException(NOT_FOUND, e.getMessage()));
+  }
+
+  @GetMapping("remaining-spots")
+  public Mono<Integer> getRemainingSpots(@PathVariable(required = false) Long lotId) {
+    return reactiveParkingLotService.getRemainingSpots(lot(lotId))
+        .onErrorMap(ParkingLotNotFoundException.class, e -> new ResponseStatusException(NOT_FOUND, e.getMessage()));
+  }
+
+  @GetMapping("{type}/is-full")
+  public Mono<Boolean> isFull(@PathVariable(required = false) Long lotId, @PathVariable VehicleType type) {
+    return reactiveParkingLotService.isFull(lot(lotId), type)
+        .onErrorMap(ParkingLotNotFoundException.class, e -> new ResponseStatusException(NOT_FOUND, e.getMessage()));
+  }
+
+  private static long lot(Long lotId) {
+    return lotId == null ? ParkingLot.DEFAULT_ID : lotId;
+  }
+}
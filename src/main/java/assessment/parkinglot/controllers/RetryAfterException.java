@@ -0,0 +1,29 @@
+package assessment.parkinglot.controllers;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A refusal telling the client in a {@code Retry-After} header when to try again.
+ */
+public class RetryAfterException extends ResponseStatusException {
+
+  private final long retryAfterSeconds;
+
+  public RetryAfterException(HttpStatusCode status, String reason, long retryAfterSeconds) {
+    super(status, reason);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  @Override
+  public HttpHeaders getHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    return headers;
+  }
+}
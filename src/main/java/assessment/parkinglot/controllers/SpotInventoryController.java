@@ -0,0 +1,71 @@
+package assessment.parkinglot.controllers;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.request.AddSpotsRequest;
+import assessment.parkinglot.request.ChangeSpotsRequest;
+import assessment.parkinglot.response.SpotChanges;
+import assessment.parkinglot.services.LevelNotFoundException;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
+import assessment.parkinglot.services.SpotInventoryService;
+import assessment.parkinglot.services.SpotNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Adds, retires and retypes the spots of a lot while it is in use. Occupied or held spots are
+ * only retired or retyped once released, and are listed as deferred.
+ */
+@RestController
+@RequestMapping({ "parking-lot/spots", "parking-lots/{lotId}/spots" })
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class SpotInventoryController {
+
+  @Autowired
+  private SpotInventoryService spotInventoryService;
+
+  @PostMapping
+  public long[] addSpots(@PathVariable(required = false) Long lotId, @Validated @RequestBody AddSpotsRequest request) {
+    try {
+      return spotInventoryService.addSpots(lot(lotId), request.getLevelId(), request.getType(), request.getCount());
+    } catch (ParkingLotNotFoundException | LevelNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  @PostMapping("retire")
+  public SpotChanges retireSpots(@PathVariable(required = false) Long lotId,
+      @Validated @RequestBody ChangeSpotsRequest request) {
+    try {
+      return spotInventoryService.retireSpots(lot(lotId), spotIds(request));
+    } catch (ParkingLotNotFoundException | SpotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  @PostMapping("retype")
+  public SpotChanges retypeSpots(@PathVariable(required = false) Long lotId,
+      @Validated @RequestBody ChangeSpotsRequest request) {
+    if (request.getType() == null) {
+      throw new ResponseStatusException(BAD_REQUEST, "A type to retype the spots to is required");
+    }
+    try {
+      return spotInventoryService.retypeSpots(lot(lotId), spotIds(request), request.getType());
+    } catch (ParkingLotNotFoundException | SpotNotFoundException e) {
+      throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+    }
+  }
+
+  private static long[] spotIds(ChangeSpotsRequest request) {
+    return request.getSpotIds().stream().mapToLong(Long::longValue).distinct().toArray();
+  }
+
+  private static long lot(Long lotId) {
+    return lotId == null ? ParkingLot.DEFAULT_ID : lotId;
+  }
+}
@@ -0,0 +1,37 @@
+package assessment.parkinglot.domain;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "parking_level")
+public class Level {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(fetch = FetchType.LAZY, optional = false)
+  private ParkingLot lot;
+
+  private String name;
+
+  protected Level() {}
+
+  public Level(Long id, ParkingLot lot, String name) {
+    this.id = id;
+    this.lot = lot;
+    this.name = name;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public ParkingLot getLot() {
+    return lot;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,36 @@
+package assessment.parkinglot.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+@Entity
+public class ParkingLot {
+
+  /**
+   * The lot served by the routes that do not name one.
+   */
+  public static final long DEFAULT_ID = 1;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private String name;
+
+  protected ParkingLot() {}
+
+  public ParkingLot(Long id, String name) {
+    this.id = id;
+    this.name = name;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
@@ -9,24 +9,43 @@ public class ParkingSpot {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
+  @ManyToOne(fetch = FetchType.LAZY)
+  private Level level;
+
   @Enumerated(EnumType.STRING)
   private ParkingSpotType type;
 
   @ManyToOne
   private Vehicle vehicle;
 
+  private boolean retired;
+
   protected ParkingSpot() {}
 
   public ParkingSpot(Long id, ParkingSpotType type, Vehicle vehicle) {
+    this(id, null, type, vehicle);
+  }
+
+  public ParkingSpot(Long id, Level level, ParkingSpotType type, Vehicle vehicle) {
+    this(id, level, type, vehicle, false);
+  }
+
+  public ParkingSpot(Long id, Level level, ParkingSpotType type, Vehicle vehicle, boolean retired) {
     this.id = id;
+    this.level = level;
     this.type = type;
     this.vehicle = vehicle;
+    this.retired = retired;
   }
 
   public Long getId() {
     return id;
   }
 
+  public Level getLevel() {
+    return level;
+  }
+
   public ParkingSpotType getType() {
     return type;
   }
@@ -38,4 +57,11 @@ public class ParkingSpot {
   public void setVehicle(Vehicle vehicle) {
     this.vehicle = vehicle;
   }
+
+  /**
+   * @return whether the spot was taken out of the lot, which only happens once it is vacated
+   */
+  public boolean isRetired() {
+    return retired;
+  }
 }
@@ -4,9 +4,13 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
 
 @Entity
-public class Vehicle {
+public class Vehicle implements Persistable<String> {
 
   @Id
   private String id;
@@ -14,6 +18,9 @@ public class Vehicle {
   @Enumerated(EnumType.STRING)
   private VehicleType type;
 
+  @Transient
+  private boolean isNew = true;
+
   protected Vehicle() {}
 
   public Vehicle(String id, VehicleType type) {
@@ -28,4 +35,15 @@ public class Vehicle {
   public VehicleType getType() {
     return type;
   }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    isNew = false;
+  }
 }
@@ -0,0 +1,75 @@
+package assessment.parkinglot.factories;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds large lots for load testing by adding spots on a level of their own in the default lot,
+ * topping it up to the requested number, so that a persistent database keeps the same layout over
+ * restarts. Spots are laid out in rows of {@value #ROW}, with the same one motorcycle row, two
+ * compact rows and two regular rows ratio as {@code data.sql}.
+ */
+@Component
+public class ParkingSpotGenerator implements ApplicationRunner {
+
+  private static final int ROW = 10;
+
+  private static final int CHUNK = 10_000;
+
+  private static final String LEVEL = "Generated";
+
+  private static final ParkingSpotType[] ROW_TYPES = {
+      ParkingSpotType.MOTORCYCLE,
+      ParkingSpotType.COMPACT, ParkingSpotType.COMPACT,
+      ParkingSpotType.REGULAR, ParkingSpotType.REGULAR };
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Value("${parking-lot.generated-spots:0}")
+  private int generatedSpots;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    generate(generatedSpots);
+  }
+
+  /**
+   * Adds the spots the generated level is missing to have the given number, if any.
+   */
+  public void generate(int spots) {
+    if (spots == 0) {
+      return;
+    }
+    long levelId = level();
+    Integer generated = jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM parking_spot WHERE level_id = ?", Integer.class, levelId);
+    List<Object[]> rows = new ArrayList<>(Math.min(spots, CHUNK));
+    for (int i = generated; i < spots; i++) {
+      rows.add(new Object[] { levelId, ROW_TYPES[i / ROW % ROW_TYPES.length].name() });
+      if (rows.size() == CHUNK || i == spots - 1) {
+        jdbcTemplate.batchUpdate("INSERT INTO parking_spot (level_id, type) VALUES (?, ?)", rows);
+        rows.clear();
+      }
+    }
+  }
+
+  private long level() {
+    String query = "SELECT MIN(id) FROM parking_level WHERE lot_id = ? AND name = ?";
+    Long levelId = jdbcTemplate.queryForObject(query, Long.class, ParkingLot.DEFAULT_ID, LEVEL);
+    if (levelId == null) {
+      jdbcTemplate.update("INSERT INTO parking_level (lot_id, name) VALUES (?, ?)", ParkingLot.DEFAULT_ID, LEVEL);
+      levelId = jdbcTemplate.queryForObject(query, Long.class, ParkingLot.DEFAULT_ID, LEVEL);
+    }
+    return levelId;
+  }
+}
@@ -0,0 +1,146 @@
+package assessment.parkinglot.history;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only store of park and leave events, kept column by column.
+ * <p>
+ * Events go into chunks of {@value #CHUNK_ROWS} rows holding one primitive array per column.
+ * Vehicle ids are dictionary-encoded per chunk and the spot ids of all rows share one column
+ * with an end offset per row, so an event costs a few dozen bytes and no object of its own. Once
+ * more than the configured number of chunks are kept, the oldest is dropped with its dictionary.
+ * Not thread-safe: the {@link OccupancyHistory} recorder is its only writer.
+ */
+public class EventColumns {
+
+  static final int CHUNK_ROWS = 1 << 14;
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  private final int maxChunks;
+
+  private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+
+  private long dropped;
+
+  public EventColumns(int maxChunks) {
+    this.maxChunks = maxChunks;
+  }
+
+  void append(OccupancyEvent event) {
+    Chunk chunk = chunks.peekLast();
+    if (chunk == null || chunk.rows == CHUNK_ROWS) {
+      if (chunks.size() == maxChunks) {
+        dropped += chunks.removeFirst().rows;
+      }
+      chunk = new Chunk();
+      chunks.addLast(chunk);
+    }
+    chunk.append(event);
+  }
+
+  /**
+   * @return the number of events kept
+   */
+  public long size() {
+    long size = 0;
+    for (Chunk chunk : chunks) {
+      size += chunk.rows;
+    }
+    return size;
+  }
+
+  /**
+   * @return the number of events dropped to keep the store within its chunks
+   */
+  public long getDropped() {
+    return dropped;
+  }
+
+  /**
+   * Visits the kept events of the lot that happened in {@code [fromMillis, toMillis)}, oldest
+   * first. Chunks entirely outside the range are skipped without reading their rows.
+   */
+  public void scan(long lotId, long fromMillis, long toMillis, Visitor visitor) {
+    for (Chunk chunk : chunks) {
+      if (chunk.rows == 0 || chunk.maxTime < fromMillis || chunk.minTime >= toMillis) {
+        continue;
+      }
+      for (int row = 0; row < chunk.rows; row++) {
+        if (chunk.lotIds[row] != lotId || chunk.times[row] < fromMillis || chunk.times[row] >= toMillis) {
+          continue;
+        }
+        int from = row == 0 ? 0 : chunk.spotEnds[row - 1];
+        visitor.visit(chunk.times[row], chunk.parks[row], chunk.dictionary.get(chunk.vehicles[row]),
+            VEHICLE_TYPES[chunk.vehicleTypes[row]], SPOT_TYPES[chunk.spotTypes[row]],
+            Arrays.copyOfRange(chunk.spots, from, chunk.spotEnds[row]));
+      }
+    }
+  }
+
+  public interface Visitor {
+
+    void visit(long timeMillis, boolean park, String vehicleId, VehicleType vehicleType, ParkingSpotType spotType,
+        long[] spotIds);
+  }
+
+  private static final class Chunk {
+
+    private final long[] times = new long[CHUNK_ROWS];
+
+    private final long[] lotIds = new long[CHUNK_ROWS];
+
+    private final boolean[] parks = new boolean[CHUNK_ROWS];
+
+    private final int[] vehicles = new int[CHUNK_ROWS];
+
+    private final byte[] vehicleTypes = new byte[CHUNK_ROWS];
+
+    private final byte[] spotTypes = new byte[CHUNK_ROWS];
+
+    private final int[] spotEnds = new int[CHUNK_ROWS];
+
+    private long[] spots = new long[CHUNK_ROWS];
+
+    private final List<String> dictionary = new ArrayList<>();
+
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    private int rows;
+
+    private long minTime = Long.MAX_VALUE;
+
+    private long maxTime = Long.MIN_VALUE;
+
+    private void append(OccupancyEvent event) {
+      int start = rows == 0 ? 0 : spotEnds[rows - 1];
+      if (start + event.spotIds.length > spots.length) {
+        spots = Arrays.copyOf(spots, spots.length * 2);
+      }
+      System.arraycopy(event.spotIds, 0, spots, start, event.spotIds.length);
+      times[rows] = event.timeMillis;
+      lotIds[rows] = event.lotId;
+      parks[rows] = event.park;
+      vehicles[rows] = codes.computeIfAbsent(event.vehicleId, id -> {
+        dictionary.add(id);
+        return dictionary.size() - 1;
+      });
+      vehicleTypes[rows] = (byte) event.vehicleType.ordinal();
+      spotTypes[rows] = (byte) event.spotType.ordinal();
+      spotEnds[rows] = start + event.spotIds.length;
+      minTime = Math.min(minTime, event.timeMillis);
+      maxTime = Math.max(maxTime, event.timeMillis);
+      rows++;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package assessment.parkinglot.history;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Granularity of the occupancy rollups.
+ */
+public enum Interval {
+
+  MINUTE(TimeUnit.MINUTES.toMillis(1)),
+  HOUR(TimeUnit.HOURS.toMillis(1));
+
+  private final long millis;
+
+  Interval(long millis) {
+    this.millis = millis;
+  }
+
+  public long getMillis() {
+    return millis;
+  }
+
+  /**
+   * @return the start of the interval the time falls in
+   */
+  public long floor(long timeMillis) {
+    return Math.floorDiv(timeMillis, millis) * millis;
+  }
+
+  /**
+   * @return the start of the first interval starting at or after the time
+   */
+  public long ceil(long timeMillis) {
+    return -Math.floorDiv(-timeMillis, millis) * millis;
+  }
+}
@@ -0,0 +1,44 @@
+package assessment.parkinglot.history;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+
+/**
+ * A park or leave on its way to the recorder.
+ */
+final class OccupancyEvent {
+
+  final long timeMillis;
+
+  final long lotId;
+
+  final boolean park;
+
+  final String vehicleId;
+
+  /**
+   * Filled in by the recorder for leaves, from the park that started the stay.
+   */
+  VehicleType vehicleType;
+
+  final ParkingSpotType spotType;
+
+  final long[] spotIds;
+
+  final int occupied;
+
+  /**
+   * @param occupied how many spots of the type were taken in the lot right after the event
+   */
+  OccupancyEvent(long timeMillis, long lotId, boolean park, String vehicleId, VehicleType vehicleType,
+      ParkingSpotType spotType, long[] spotIds, int occupied) {
+    this.timeMillis = timeMillis;
+    this.lotId = lotId;
+    this.park = park;
+    this.vehicleId = vehicleId;
+    this.vehicleType = vehicleType;
+    this.spotType = spotType;
+    this.spotIds = spotIds;
+    this.occupied = occupied;
+  }
+}
@@ -0,0 +1,247 @@
+package assessment.parkinglot.history;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.response.OccupancyStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * History of every park and leave, kept as {@link EventColumns} and rolled up into
+ * {@link OccupancyRollups} for {@code /parking-lot/stats}.
+ * <p>
+ * Recording only offers the event to a bounded queue, which a single recorder thread drains, so
+ * parks and leaves never wait for the history. When the recorder falls behind far enough to fill
+ * the queue, further events are dropped and counted rather than slowing parks down. The recorder
+ * pairs every leave with the park it ends to work out dwell times; stays that started before the
+ * service did are counted as leaves without a dwell time. So are stays older than the hour
+ * retention, which are forgotten so that the stays of leaves that were dropped do not pile up,
+ * and never outnumber the events kept.
+ */
+@Component
+public class OccupancyHistory {
+
+  /**
+   * The most points a query may return, a week of minutes.
+   */
+  public static final int MAX_POINTS = 7 * 24 * 60;
+
+  private static final Logger log = LoggerFactory.getLogger(OccupancyHistory.class);
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  @Value("${parking-lot.history.queue-capacity:65536}")
+  private int queueCapacity;
+
+  @Value("${parking-lot.history.max-events:4000000}")
+  private long maxEvents;
+
+  @Value("${parking-lot.history.minute-retention-hours:48}")
+  private long minuteRetentionHours;
+
+  @Value("${parking-lot.history.hour-retention-days:400}")
+  private long hourRetentionDays;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * The stays of the parked vehicles, oldest first.
+   */
+  private final Map<String, Stay> stays = new LinkedHashMap<>();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private BlockingQueue<OccupancyEvent> queue;
+
+  private EventColumns events;
+
+  private OccupancyRollups rollups;
+
+  private Thread recorder;
+
+  private long stayRetentionMillis;
+
+  public OccupancyHistory() {}
+
+  /**
+   * Builds a history without a recorder thread, which records what is queued on {@link #drain()}.
+   */
+  public OccupancyHistory(int queueCapacity, long maxEvents, long minuteRetentionHours, long hourRetentionDays) {
+    this.queueCapacity = queueCapacity;
+    this.maxEvents = maxEvents;
+    this.minuteRetentionHours = minuteRetentionHours;
+    this.hourRetentionDays = hourRetentionDays;
+    initialize();
+  }
+
+  private void initialize() {
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    events = new EventColumns(Math.toIntExact(Math.max(1, (maxEvents + EventColumns.CHUNK_ROWS - 1) / EventColumns.CHUNK_ROWS)));
+    Map<Interval, Long> retention = new EnumMap<>(Interval.class);
+    retention.put(Interval.MINUTE, TimeUnit.HOURS.toMillis(minuteRetentionHours));
+    retention.put(Interval.HOUR, TimeUnit.DAYS.toMillis(hourRetentionDays));
+    rollups = new OccupancyRollups(retention);
+    stayRetentionMillis = retention.get(Interval.HOUR);
+  }
+
+  @PostConstruct
+  void start() {
+    initialize();
+    recorder = new Thread(this::record, "occupancy-history");
+    recorder.setDaemon(true);
+    recorder.start();
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    recorder.interrupt();
+    recorder.join();
+  }
+
+  /**
+   * @param occupied how many spots of the type are taken in the lot after the park
+   */
+  public void recordPark(long timeMillis, long lotId, String vehicleId, VehicleType vehicleType,
+      ParkingSpotType spotType, long[] spotIds, int occupied) {
+    offer(new OccupancyEvent(timeMillis, lotId, true, vehicleId, vehicleType, spotType, spotIds, occupied));
+  }
+
+  /**
+   * @param occupied how many spots of the type are taken in the lot after the leave
+   */
+  public void recordLeave(long timeMillis, long lotId, String vehicleId, ParkingSpotType spotType, long[] spotIds,
+      int occupied) {
+    offer(new OccupancyEvent(timeMillis, lotId, false, vehicleId, null, spotType, spotIds, occupied));
+  }
+
+  /**
+   * Records everything queued so far on the calling thread.
+   */
+  public void drain() {
+    lock.lock();
+    try {
+      OccupancyEvent event;
+      while ((event = queue.poll()) != null) {
+        apply(event);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public OccupancyStats query(long lotId, long fromMillis, long toMillis, Interval interval) {
+    lock.lock();
+    try {
+      return rollups.query(lotId, fromMillis, toMillis, interval);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @see EventColumns#scan(long, long, long, EventColumns.Visitor)
+   */
+  public void scan(long lotId, long fromMillis, long toMillis, EventColumns.Visitor visitor) {
+    lock.lock();
+    try {
+      events.scan(lotId, fromMillis, toMillis, visitor);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of events dropped because the recorder could not keep up
+   */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  private void offer(OccupancyEvent event) {
+    if (!queue.offer(event) && dropped.getAndIncrement() == 0) {
+      log.warn("Occupancy history cannot keep up, dropping events");
+    }
+  }
+
+  private void record() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        OccupancyEvent event = queue.take();
+        lock.lock();
+        try {
+          apply(event);
+          while ((event = queue.poll()) != null) {
+            apply(event);
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    } catch (InterruptedException e) {
+      drain();
+    }
+  }
+
+  private void apply(OccupancyEvent event) {
+    long dwellMillis = -1;
+    if (event.park) {
+      stays.remove(event.vehicleId);
+      stays.put(event.vehicleId, new Stay(event.timeMillis, event.vehicleType));
+      forgetStays(event.timeMillis);
+    } else {
+      Stay stay = stays.remove(event.vehicleId);
+      if (stay != null) {
+        dwellMillis = Math.max(0, event.timeMillis - stay.parkedAtMillis);
+        event.vehicleType = stay.vehicleType;
+      } else {
+        event.vehicleType = vehicleType(event.spotType, event.spotIds.length);
+      }
+    }
+    events.append(event);
+    rollups.add(event, dwellMillis);
+  }
+
+  /**
+   * Forgets the oldest stays while they are older than the hour retention or more than the events
+   * kept.
+   */
+  private void forgetStays(long nowMillis) {
+    Iterator<Stay> oldest = stays.values().iterator();
+    while (oldest.hasNext()) {
+      Stay stay = oldest.next();
+      if (stays.size() <= maxEvents && nowMillis - stay.parkedAtMillis <= stayRetentionMillis) {
+        return;
+      }
+      oldest.remove();
+    }
+  }
+
+  /**
+   * @return the vehicle type that takes up that many spots of the type
+   */
+  private static VehicleType vehicleType(ParkingSpotType spotType, int spots) {
+    for (VehicleType vehicleType : VEHICLE_TYPES) {
+      if (vehicleType.takeUpSpots() == spots && Arrays.asList(vehicleType.getTakeUpSpotTypes()).contains(spotType)) {
+        return vehicleType;
+      }
+    }
+    return VEHICLE_TYPES[0];
+  }
+
+  private record Stay(long parkedAtMillis, VehicleType vehicleType) {}
+}
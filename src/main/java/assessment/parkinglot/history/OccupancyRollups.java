@@ -0,0 +1,156 @@
+package assessment.parkinglot.history;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.response.OccupancyStats;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-minute and per-hour aggregates of the parks, leaves, peak occupancy and dwell times of
+ * every lot, updated as events are recorded so queries never look at the events themselves.
+ * <p>
+ * A bucket only exists once an event falls into it. It starts from the occupancy the bucket
+ * before it ended with, so a quiet interval still reports what stayed parked through it. Not
+ * thread-safe: the {@link OccupancyHistory} serializes access.
+ */
+public class OccupancyRollups {
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  private final Map<Interval, Long> retentionMillis = new EnumMap<>(Interval.class);
+
+  private final Map<Long, Lot> lots = new HashMap<>();
+
+  /**
+   * @param retentionMillis how long buckets of every interval are kept, counted back from the
+   *     newest event
+   */
+  public OccupancyRollups(Map<Interval, Long> retentionMillis) {
+    this.retentionMillis.putAll(retentionMillis);
+  }
+
+  void add(OccupancyEvent event, long dwellMillis) {
+    Lot lot = lots.computeIfAbsent(event.lotId, id -> new Lot());
+    for (Interval interval : Interval.values()) {
+      TreeMap<Long, Bucket> buckets = lot.buckets.get(interval);
+      long start = interval.floor(event.timeMillis);
+      Bucket bucket = buckets.get(start);
+      if (bucket == null) {
+        Map.Entry<Long, Bucket> previous = buckets.lowerEntry(start);
+        bucket = new Bucket(previous == null ? new int[SPOT_TYPES.length] : previous.getValue().closingOccupied);
+        buckets.put(start, bucket);
+        buckets.headMap(start - retentionMillis.get(interval)).clear();
+      }
+      bucket.add(event, dwellMillis);
+    }
+  }
+
+  /**
+   * Aggregates the lot over {@code [fromMillis, toMillis)}, widened to whole intervals, with a
+   * point for every interval of it.
+   */
+  public OccupancyStats query(long lotId, long fromMillis, long toMillis, Interval interval) {
+    long start = interval.floor(fromMillis);
+    long end = interval.ceil(toMillis);
+    OccupancyStats stats = new OccupancyStats(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), interval);
+    Bucket total = new Bucket(new int[SPOT_TYPES.length]);
+    Lot lot = lots.get(lotId);
+    TreeMap<Long, Bucket> buckets = lot == null ? new TreeMap<>() : lot.buckets.get(interval);
+    Map.Entry<Long, Bucket> before = buckets.lowerEntry(start);
+    int[] occupied = before == null ? new int[SPOT_TYPES.length] : before.getValue().closingOccupied;
+    for (long time = start; time < end; time += interval.getMillis()) {
+      Bucket bucket = buckets.get(time);
+      if (bucket == null) {
+        bucket = new Bucket(occupied);
+      }
+      occupied = bucket.closingOccupied;
+      total.merge(bucket);
+      OccupancyStats.Point point = new OccupancyStats.Point(Instant.ofEpochMilli(time));
+      bucket.copyTo(point.getParks(), point.getLeaves(), point.getPeakOccupied());
+      stats.getSeries().add(point);
+    }
+    total.copyTo(stats.getParks(), stats.getLeaves(), stats.getPeakOccupied());
+    for (VehicleType vehicleType : VEHICLE_TYPES) {
+      long stays = total.stays[vehicleType.ordinal()];
+      stats.getStays().put(vehicleType, stays);
+      if (stays > 0) {
+        stats.getAverageDwellSeconds().put(vehicleType, total.dwellMillis[vehicleType.ordinal()] / 1000.0 / stays);
+      }
+    }
+    return stats;
+  }
+
+  private static final class Lot {
+
+    private final Map<Interval, TreeMap<Long, Bucket>> buckets = new EnumMap<>(Interval.class);
+
+    private Lot() {
+      for (Interval interval : Interval.values()) {
+        buckets.put(interval, new TreeMap<>());
+      }
+    }
+  }
+
+  private static final class Bucket {
+
+    private final long[] parks = new long[SPOT_TYPES.length];
+
+    private final long[] leaves = new long[SPOT_TYPES.length];
+
+    private final int[] peakOccupied;
+
+    private final int[] closingOccupied;
+
+    private final long[] stays = new long[VEHICLE_TYPES.length];
+
+    private final long[] dwellMillis = new long[VEHICLE_TYPES.length];
+
+    private Bucket(int[] openingOccupied) {
+      peakOccupied = openingOccupied.clone();
+      closingOccupied = openingOccupied.clone();
+    }
+
+    private void add(OccupancyEvent event, long dwell) {
+      int type = event.spotType.ordinal();
+      if (event.park) {
+        parks[type]++;
+      } else {
+        leaves[type]++;
+        if (dwell >= 0) {
+          stays[event.vehicleType.ordinal()]++;
+          dwellMillis[event.vehicleType.ordinal()] += dwell;
+        }
+      }
+      closingOccupied[type] = event.occupied;
+      peakOccupied[type] = Math.max(peakOccupied[type], event.occupied);
+    }
+
+    private void merge(Bucket other) {
+      for (int type = 0; type < SPOT_TYPES.length; type++) {
+        parks[type] += other.parks[type];
+        leaves[type] += other.leaves[type];
+        peakOccupied[type] = Math.max(peakOccupied[type], other.peakOccupied[type]);
+      }
+      for (int type = 0; type < VEHICLE_TYPES.length; type++) {
+        stays[type] += other.stays[type];
+        dwellMillis[type] += other.dwellMillis[type];
+      }
+    }
+
+    private void copyTo(Map<ParkingSpotType, Long> parks, Map<ParkingSpotType, Long> leaves,
+        Map<ParkingSpotType, Integer> peakOccupied) {
+      for (ParkingSpotType type : SPOT_TYPES) {
+        parks.put(type, this.parks[type.ordinal()]);
+        leaves.put(type, this.leaves[type.ordinal()]);
+        peakOccupied.put(type, this.peakOccupied[type.ordinal()]);
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package assessment.parkinglot.metrics;
+
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.response.ParkingResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the parking lot.
+ * <p>
+ * Timers are registered up front for every tag combination so that recording is an array
+ * lookup. The spot gauges add up the counters maintained by the {@link ParkingLotShards}, so
+ * scraping them never reaches the database.
+ */
+@Component
+public class ParkingMetrics {
+
+  public enum Outcome {
+
+    SUCCESS, ALREADY_PARKED, NO_AVAILABLE_SPOTS, NOT_FOUND, ERROR;
+
+    public static Outcome of(ParkingResult.Status status) {
+      return switch (status) {
+        case PARKED, LEFT -> SUCCESS;
+        case ALREADY_PARKED -> ALREADY_PARKED;
+        case NO_AVAILABLE_SPOTS -> NO_AVAILABLE_SPOTS;
+        case NOT_FOUND -> NOT_FOUND;
+      };
+    }
+  }
+
+  public enum Operation {
+
+    PARK, LEAVE, PARK_BATCH, LEAVE_BATCH;
+  }
+
+  public enum Rejection {
+
+    FULL, RATE_LIMITED, OVERLOADED;
+  }
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private ParkingLotShards parkingLotShards;
+
+  @Autowired
+  private StatementCounter statementCounter;
+
+  private final Timer[][] parkTimers = new Timer[VehicleType.values().length][Outcome.values().length];
+
+  private final Timer[] leaveTimers = new Timer[Outcome.values().length];
+
+  private final Timer[] batchTimers = new Timer[Operation.values().length];
+
+  private final Counter[] statementCounters = new Counter[Operation.values().length];
+
+  private final Counter[] rejectionCounters = new Counter[Rejection.values().length];
+
+  @PostConstruct
+  void registerMeters() {
+    for (VehicleType vehicleType : VehicleType.values()) {
+      for (Outcome outcome : Outcome.values()) {
+        parkTimers[vehicleType.ordinal()][outcome.ordinal()] = Timer.builder("parking.park")
+            .description("Time to park a vehicle")
+            .tag("vehicle.type", vehicleType.name())
+            .tag("outcome", outcome.name())
+            .register(meterRegistry);
+      }
+    }
+    for (Outcome outcome : Outcome.values()) {
+      leaveTimers[outcome.ordinal()] = Timer.builder("parking.leave")
+          .description("Time for a vehicle to leave")
+          .tag("outcome", outcome.name())
+          .register(meterRegistry);
+    }
+    for (Operation operation : Operation.values()) {
+      batchTimers[operation.ordinal()] = Timer.builder("parking.batch")
+          .description("Time to process a batch of parks or leaves")
+          .tag("operation", operation.name())
+          .register(meterRegistry);
+      statementCounters[operation.ordinal()] = Counter.builder("parking.db.statements")
+          .description("SQL statements issued by parking operations")
+          .tag("operation", operation.name())
+          .register(meterRegistry);
+    }
+    for (Rejection rejection : Rejection.values()) {
+      rejectionCounters[rejection.ordinal()] = Counter.builder("parking.admission.rejected")
+          .description("Parks refused before reaching the service")
+          .tag("reason", rejection.name())
+          .register(meterRegistry);
+    }
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      Gauge.builder("parking.spots", parkingLotShards, shards -> shards.countFree(type))
+          .description("Parking spots by type and state")
+          .tag("type", type.name())
+          .tag("state", "free")
+          .register(meterRegistry);
+      Gauge.builder("parking.spots", parkingLotShards, shards -> shards.countSpots(type) - shards.countFree(type))
+          .description("Parking spots by type and state")
+          .tag("type", type.name())
+          .tag("state", "occupied")
+          .register(meterRegistry);
+    }
+  }
+
+  /**
+   * Starts measuring an operation on the current thread.
+   *
+   * @return the start time to pass back when recording the operation
+   */
+  public long start() {
+    statementCounter.reset();
+    return System.nanoTime();
+  }
+
+  public void recordPark(VehicleType vehicleType, Outcome outcome, long start) {
+    parkTimers[vehicleType.ordinal()][outcome.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    countStatements(Operation.PARK);
+  }
+
+  public void recordLeave(Outcome outcome, long start) {
+    leaveTimers[outcome.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    countStatements(Operation.LEAVE);
+  }
+
+  public void recordBatch(Operation operation, long start) {
+    batchTimers[operation.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    countStatements(operation);
+  }
+
+  public void recordRejection(Rejection rejection) {
+    rejectionCounters[rejection.ordinal()].increment();
+  }
+
+  private void countStatements(Operation operation) {
+    int statements = statementCounter.count();
+    if (statements > 0) {
+      statementCounters[operation.ordinal()].increment(statements);
+    }
+  }
+}
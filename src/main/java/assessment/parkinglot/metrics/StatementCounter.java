@@ -0,0 +1,42 @@
+package assessment.parkinglot.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Counts the SQL statements issued by the current thread, so they can be attributed to the
+ * operation running on it. Hibernate reports its statements through {@link #inspect(String)},
+ * while JDBC batch writes report theirs through {@link #add(int)}.
+ */
+@Component
+public class StatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+  private static final ThreadLocal<int[]> STATEMENTS = ThreadLocal.withInitial(() -> new int[1]);
+
+  @Override
+  public String inspect(String sql) {
+    STATEMENTS.get()[0]++;
+    return sql;
+  }
+
+  @Override
+  public void customize(Map<String, Object> hibernateProperties) {
+    hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+  }
+
+  public void add(int statements) {
+    STATEMENTS.get()[0] += statements;
+  }
+
+  public void reset() {
+    STATEMENTS.get()[0] = 0;
+  }
+
+  public int count() {
+    return STATEMENTS.get()[0];
+  }
+}
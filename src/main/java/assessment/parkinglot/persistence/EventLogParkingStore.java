@@ -0,0 +1,122 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.allocation.OccupancyJournal;
+import assessment.parkinglot.allocation.OccupancyListener;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.persistence.ParkingEventLog.FsyncPolicy;
+import assessment.parkinglot.repositories.ParkingSpotRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps occupancy in memory and persists it as a {@link ParkingEventLog} instead of updating the
+ * database. The database still holds the lots, levels and spots, but not who is parked where.
+ * <p>
+ * Events are appended by the {@link assessment.parkinglot.allocation.OccupancyIndex} of every
+ * lot as assignments change, in the order they take effect. Parks and leaves then only wait for
+ * the log as far as its fsync policy asks them to.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.persistence", havingValue = "event-log")
+public class EventLogParkingStore implements ParkingStore, OccupancyJournal {
+
+  @Autowired
+  private ParkingSpotRepository parkingSpotRepository;
+
+  @Value("${parking-lot.event-log.directory:data/event-log}")
+  private Path directory;
+
+  @Value("${parking-lot.event-log.fsync:interval}")
+  private FsyncPolicy fsyncPolicy;
+
+  @Value("${parking-lot.event-log.fsync-interval-ms:10}")
+  private long fsyncIntervalMillis;
+
+  @Value("${parking-lot.event-log.snapshot-every:100000}")
+  private long snapshotEvery;
+
+  private ParkingEventLog eventLog;
+
+  @PostConstruct
+  public void open() throws IOException {
+    eventLog = ParkingEventLog.open(directory, fsyncPolicy, fsyncIntervalMillis, snapshotEvery);
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    eventLog.close();
+  }
+
+  @Override
+  public OccupancyListener forLot(long lotId) {
+    return new OccupancyListener() {
+
+      @Override
+      public void assigned(String vehicleId, VehicleType vehicleType, long[] spotIds) {
+        eventLog.appendPark(lotId, vehicleId, vehicleType, spotIds);
+      }
+
+      @Override
+      public void unassigned(String vehicleId, long[] spotIds) {
+        eventLog.appendLeave(lotId, vehicleId, spotIds);
+      }
+    };
+  }
+
+  /**
+   * @return the spots of the lot, with the vehicles the event log recovered for them, of the type
+   *     they parked as
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public List<ParkingSpot> loadSpots(long lotId) {
+    Map<Long, Vehicle> vehicles = new HashMap<>();
+    Map<String, VehicleType> types = eventLog.getRecoveredTypes().getOrDefault(lotId, Map.of());
+    eventLog.getRecoveredState().getOrDefault(lotId, Map.of()).forEach((vehicleId, spotIds) -> {
+      Vehicle vehicle = new Vehicle(vehicleId, types.get(vehicleId));
+      for (long spotId : spotIds) {
+        vehicles.put(spotId, vehicle);
+      }
+    });
+    List<ParkingSpot> spots = new ArrayList<>();
+    for (ParkingSpot spot : parkingSpotRepository.findByLevelLotId(lotId)) {
+      spots.add(new ParkingSpot(spot.getId(), spot.getLevel(), spot.getType(), vehicles.get(spot.getId()),
+          spot.isRetired()));
+    }
+    return spots;
+  }
+
+  @Override
+  public void park(long lotId, Vehicle vehicle, long[] spotIds) {
+    eventLog.awaitDurable();
+  }
+
+  @Override
+  public void parkAll(long lotId, List<Vehicle> vehicles, List<long[]> spotIds) {
+    eventLog.awaitDurable();
+  }
+
+  @Override
+  public void leave(long lotId, String vehicleId, long[] spotIds) {
+    eventLog.awaitDurable();
+  }
+
+  @Override
+  public void leaveAll(long lotId, List<String> vehicleIds, List<long[]> spotIds) {
+    eventLog.awaitDurable();
+  }
+}
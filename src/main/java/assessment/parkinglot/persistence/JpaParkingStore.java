@@ -0,0 +1,70 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.repositories.ParkingBatchRepository;
+import assessment.parkinglot.repositories.ParkingSpotRepository;
+import assessment.parkinglot.repositories.VehicleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Writes every park and leave through to the database before returning.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.persistence", havingValue = "jpa", matchIfMissing = true)
+public class JpaParkingStore implements ParkingStore {
+
+  @Autowired
+  private ParkingSpotRepository parkingSpotRepository;
+
+  @Autowired
+  private VehicleRepository vehicleRepository;
+
+  @Autowired
+  private ParkingBatchRepository parkingBatchRepository;
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<ParkingSpot> loadSpots(long lotId) {
+    return parkingSpotRepository.findByLevelLotId(lotId);
+  }
+
+  @Override
+  @Transactional
+  public void park(long lotId, Vehicle vehicle, long[] spotIds) {
+    Vehicle saved = vehicleRepository.save(vehicle);
+    List<Long> ids = Arrays.stream(spotIds).boxed().toList();
+    if (parkingSpotRepository.claimFreeSpots(saved, ids) != ids.size()) {
+      throw new IllegalStateException(format("Spots %s are no longer free", ids));
+    }
+  }
+
+  @Override
+  @Transactional
+  public void parkAll(long lotId, List<Vehicle> vehicles, List<long[]> spotIds) {
+    parkingBatchRepository.park(vehicles, spotIds);
+  }
+
+  @Override
+  @Transactional
+  public void leave(long lotId, String vehicleId, long[] spotIds) {
+    if (parkingSpotRepository.releaseSpots(vehicleId) != spotIds.length) {
+      throw new IllegalStateException(format("Vehicle %s does not hold spots %s", vehicleId, Arrays.toString(spotIds)));
+    }
+    vehicleRepository.deleteAllByIdInBatch(List.of(vehicleId));
+  }
+
+  @Override
+  @Transactional
+  public void leaveAll(long lotId, List<String> vehicleIds, List<long[]> spotIds) {
+    parkingBatchRepository.leave(vehicleIds, spotIds);
+  }
+}
@@ -0,0 +1,49 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.repositories.ParkingSpotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Keeps occupancy in memory only. Lots are loaded from the database on startup, parks and leaves
+ * are never written anywhere, and a restart starts over from the database. This lets
+ * {@link assessment.parkinglot.services.ParkingLotService#tryPark tryPark} and
+ * {@link assessment.parkinglot.services.ParkingLotService#tryLeave tryLeave} run without
+ * allocating.
+ */
+@Component
+@ConditionalOnProperty(name = "parking-lot.persistence", havingValue = "memory")
+public class MemoryParkingStore implements ParkingStore {
+
+  @Autowired
+  private ParkingSpotRepository parkingSpotRepository;
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<ParkingSpot> loadSpots(long lotId) {
+    return parkingSpotRepository.findByLevelLotId(lotId);
+  }
+
+  @Override
+  public void park(long lotId, Vehicle vehicle, long[] spotIds) {}
+
+  @Override
+  public void parkAll(long lotId, List<Vehicle> vehicles, List<long[]> spotIds) {}
+
+  @Override
+  public void leave(long lotId, String vehicleId, long[] spotIds) {}
+
+  @Override
+  public void leaveAll(long lotId, List<String> vehicleIds, List<long[]> spotIds) {}
+
+  @Override
+  public boolean isDurable() {
+    return false;
+  }
+}
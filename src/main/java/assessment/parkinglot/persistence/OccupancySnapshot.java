@@ -0,0 +1,199 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.domain.VehicleType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static java.lang.String.format;
+
+/**
+ * The spots every vehicle of every lot held, and the type of the vehicle, once all event log
+ * segments before {@link #getSegment()} had been written.
+ * <p>
+ * Snapshots are written to a temporary file that is forced and then atomically renamed, and end
+ * with a CRC32C of their contents, so a snapshot that is found is either complete or ignored.
+ */
+public class OccupancySnapshot {
+
+  private static final int MAGIC = 0x504b5332;
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  private static final byte UNKNOWN_TYPE = -1;
+
+  private static final Pattern FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+  private final long segment;
+
+  private final Map<Long, Map<String, long[]>> vehicles;
+
+  private final Map<Long, Map<String, VehicleType>> vehicleTypes;
+
+  /**
+   * @param vehicleTypes the type of every vehicle, left out where it is not known
+   */
+  public OccupancySnapshot(long segment, Map<Long, Map<String, long[]>> vehicles,
+      Map<Long, Map<String, VehicleType>> vehicleTypes) {
+    this.segment = segment;
+    this.vehicles = vehicles;
+    this.vehicleTypes = vehicleTypes;
+  }
+
+  /**
+   * @return the first event log segment that is not covered by the snapshot
+   */
+  public long getSegment() {
+    return segment;
+  }
+
+  public Map<Long, Map<String, long[]>> getVehicles() {
+    return vehicles;
+  }
+
+  public Map<Long, Map<String, VehicleType>> getVehicleTypes() {
+    return vehicleTypes;
+  }
+
+  public static void write(Path directory, OccupancySnapshot snapshot) throws IOException {
+    ByteBuffer out = ByteBuffer.allocate(sizeOf(snapshot));
+    out.putInt(MAGIC).putLong(snapshot.segment).putInt(snapshot.vehicles.size());
+    for (Map.Entry<Long, Map<String, long[]>> lot : snapshot.vehicles.entrySet()) {
+      out.putLong(lot.getKey()).putInt(lot.getValue().size());
+      Map<String, VehicleType> types = snapshot.vehicleTypes.getOrDefault(lot.getKey(), Map.of());
+      for (Map.Entry<String, long[]> vehicle : lot.getValue().entrySet()) {
+        byte[] vehicleId = vehicle.getKey().getBytes(StandardCharsets.UTF_8);
+        VehicleType type = types.get(vehicle.getKey());
+        out.putShort((short) vehicleId.length).put(vehicleId)
+            .put(type == null ? UNKNOWN_TYPE : (byte) type.ordinal())
+            .put((byte) vehicle.getValue().length);
+        for (long spotId : vehicle.getValue()) {
+          out.putLong(spotId);
+        }
+      }
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(out.array(), 0, out.position());
+    out.putInt((int) crc.getValue());
+    out.flip();
+
+    Path target = path(directory, snapshot.segment);
+    Path temporary = directory.resolve(target.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * @return the newest snapshot in the directory that can be read, or {@code null} if there is none
+   */
+  public static OccupancySnapshot readLatest(Path directory) throws IOException {
+    for (long segment : segments(directory).stream().sorted(Comparator.reverseOrder()).toList()) {
+      OccupancySnapshot snapshot = read(path(directory, segment));
+      if (snapshot != null) {
+        return snapshot;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Deletes the snapshots older than the given one, along with any left-over temporary files.
+   */
+  public static void deleteBefore(Path directory, long segment) throws IOException {
+    for (long older : segments(directory)) {
+      if (older < segment) {
+        Files.deleteIfExists(path(directory, older));
+      }
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : files.filter(file -> file.getFileName().toString().endsWith(".bin.tmp")).toList()) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private static OccupancySnapshot read(Path path) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+    if (in.remaining() < Integer.BYTES * 3 + Long.BYTES) {
+      return null;
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(in.array(), 0, in.limit() - Integer.BYTES);
+    if ((int) crc.getValue() != in.getInt(in.limit() - Integer.BYTES) || in.getInt() != MAGIC) {
+      return null;
+    }
+    long segment = in.getLong();
+    int lots = in.getInt();
+    Map<Long, Map<String, long[]>> vehicles = new HashMap<>();
+    Map<Long, Map<String, VehicleType>> vehicleTypes = new HashMap<>();
+    for (int i = 0; i < lots; i++) {
+      long lotId = in.getLong();
+      int count = in.getInt();
+      Map<String, long[]> lot = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+      Map<String, VehicleType> types = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+      for (int j = 0; j < count; j++) {
+        byte[] vehicleId = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(vehicleId);
+        byte type = in.get();
+        long[] spotIds = new long[Byte.toUnsignedInt(in.get())];
+        for (int k = 0; k < spotIds.length; k++) {
+          spotIds[k] = in.getLong();
+        }
+        String id = new String(vehicleId, StandardCharsets.UTF_8);
+        lot.put(id, spotIds);
+        if (type >= 0 && type < VEHICLE_TYPES.length) {
+          types.put(id, VEHICLE_TYPES[type]);
+        }
+      }
+      vehicles.put(lotId, lot);
+      vehicleTypes.put(lotId, types);
+    }
+    return new OccupancySnapshot(segment, vehicles, vehicleTypes);
+  }
+
+  private static int sizeOf(OccupancySnapshot snapshot) {
+    int size = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    for (Map<String, long[]> lot : snapshot.vehicles.values()) {
+      size += Long.BYTES + Integer.BYTES;
+      for (Map.Entry<String, long[]> vehicle : lot.entrySet()) {
+        size += Short.BYTES + vehicle.getKey().getBytes(StandardCharsets.UTF_8).length + 1 + 1
+            + vehicle.getValue().length * Long.BYTES;
+      }
+    }
+    return size;
+  }
+
+  private static List<Long> segments(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(path -> FILE.matcher(path.getFileName().toString()))
+          .filter(Matcher::matches)
+          .map(matcher -> Long.parseLong(matcher.group(1)))
+          .toList();
+    }
+  }
+
+  private static Path path(Path directory, long segment) {
+    return directory.resolve(format("snapshot-%019d.bin", segment));
+  }
+}
@@ -0,0 +1,599 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.domain.VehicleType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static java.lang.String.format;
+
+/**
+ * Append-only log of parks and leaves, kept in numbered segment files next to periodic
+ * {@link OccupancySnapshot}s.
+ * <p>
+ * Appending only queues the event. A single writer thread drains the queue, writes everything
+ * queued so far with one {@link FileChannel#write} and, depending on the {@link FsyncPolicy},
+ * forces it to disk, so concurrent appends share one fsync. The writer also applies the events
+ * to its own copy of the occupancy, which is what snapshots are taken from: a snapshot therefore
+ * covers exactly the segments before it, and those are deleted once it is on disk.
+ * <p>
+ * Every record is framed by its length and a CRC32C, and parks record the type of the vehicle
+ * along with its spots. A park whose vehicle id or spots do not fit a record is not queued, and
+ * {@link #awaitDurable()} refuses it instead. Recovery loads the newest readable snapshot,
+ * replays the segments after it and truncates a record torn by a crash at the end of the last
+ * segment. A bad record in any earlier segment cannot come from a crash, which only ever tears
+ * the segment being appended to, and fails the open instead, as dropping it would silently lose
+ * the events after it.
+ */
+public class ParkingEventLog implements AutoCloseable {
+
+  public enum FsyncPolicy {
+
+    /**
+     * Every append waits until its event has been forced to disk.
+     */
+    ALWAYS,
+
+    /**
+     * Appends return at once and the log is forced at a fixed interval, so a crash loses at
+     * most one interval of events.
+     */
+    INTERVAL,
+
+    /**
+     * The log is only written, leaving it to the operating system when to flush it.
+     */
+    NEVER
+  }
+
+  private static final byte PARK = 1;
+
+  private static final byte LEAVE = 2;
+
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  /**
+   * Recorded instead of the ordinal of a vehicle type that is not known.
+   */
+  private static final byte UNKNOWN_TYPE = -1;
+
+  private static final int MAX_BATCH = 4096;
+
+  /**
+   * The longest vehicle id a record has room for, in UTF-8 bytes.
+   */
+  static final int MAX_VEHICLE_ID_BYTES = 0xFFFF;
+
+  /**
+   * The most spots a record has room for.
+   */
+  static final int MAX_SPOTS = 0xFF;
+
+  private static final Pattern SEGMENT = Pattern.compile("events-(\\d+)\\.log");
+
+  private final Path directory;
+
+  private final FsyncPolicy fsyncPolicy;
+
+  private final long fsyncIntervalNanos;
+
+  private final long snapshotEvery;
+
+  private final Map<Long, Map<String, long[]>> state;
+
+  private final Map<Long, Map<String, VehicleType>> types;
+
+  private final Map<Long, Map<String, long[]>> recoveredState;
+
+  private final Map<Long, Map<String, VehicleType>> recoveredTypes;
+
+  private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+
+  private final ThreadLocal<Event> lastAppended = new ThreadLocal<>();
+
+  /**
+   * Per thread, the first park not queued since the last {@link #awaitDurable()}, because it
+   * does not fit a record, unless its leave undid it since.
+   */
+  private final ThreadLocal<Event> refused = new ThreadLocal<>();
+
+  private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "parking-event-log-snapshot");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Thread writer;
+
+  private FileChannel channel;
+
+  private long segment;
+
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+  private long lastForce = System.nanoTime();
+
+  private boolean forcePending;
+
+  private long eventsSinceSnapshot;
+
+  private volatile boolean writerIdle;
+
+  private volatile boolean writerDone;
+
+  private volatile boolean closed;
+
+  private volatile Throwable failure;
+
+  private ParkingEventLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalNanos, long snapshotEvery)
+      throws IOException {
+    this.directory = directory;
+    this.fsyncPolicy = fsyncPolicy;
+    this.fsyncIntervalNanos = fsyncIntervalNanos;
+    this.snapshotEvery = snapshotEvery;
+    Files.createDirectories(directory);
+    OccupancySnapshot snapshot = OccupancySnapshot.readLatest(directory);
+    state = snapshot == null ? new HashMap<>() : snapshot.getVehicles();
+    types = snapshot == null ? new HashMap<>() : snapshot.getVehicleTypes();
+    long next = snapshot == null ? 0 : snapshot.getSegment();
+    List<Long> segments = segments(next);
+    for (int i = 0; i < segments.size(); i++) {
+      replay(segments.get(i), i == segments.size() - 1);
+      next = segments.get(i) + 1;
+    }
+    recoveredState = copy(state);
+    recoveredTypes = copy(types);
+    openSegment(next);
+    writer = new Thread(this::write, "parking-event-log");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Recovers the occupancy recorded in the directory and opens a new segment to append to.
+   *
+   * @throws IOException also if a segment other than the last has a bad record
+   */
+  public static ParkingEventLog open(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+      long snapshotEvery) throws IOException {
+    return new ParkingEventLog(directory, fsyncPolicy, TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis),
+        snapshotEvery);
+  }
+
+  /**
+   * @return the spots held by every vehicle of every lot when the log was opened
+   */
+  public Map<Long, Map<String, long[]>> getRecoveredState() {
+    return recoveredState;
+  }
+
+  /**
+   * @return the type of every vehicle of every lot when the log was opened, left out where it was
+   *     not known when the vehicle parked
+   */
+  public Map<Long, Map<String, VehicleType>> getRecoveredTypes() {
+    return recoveredTypes;
+  }
+
+  /**
+   * @param vehicleType the type of the vehicle, or {@code null} if it is not known
+   */
+  public void appendPark(long lotId, String vehicleId, VehicleType vehicleType, long[] spotIds) {
+    append(new Event(PARK, lotId, vehicleId, vehicleType, spotIds));
+  }
+
+  public void appendLeave(long lotId, String vehicleId, long[] spotIds) {
+    append(new Event(LEAVE, lotId, vehicleId, null, spotIds));
+  }
+
+  /**
+   * Waits, if the fsync policy asks for it, until the last event appended by the calling thread
+   * is on disk. Events are written in the order they were queued, so the earlier events of the
+   * thread are on disk as well.
+   *
+   * @throws IllegalStateException if the log can no longer be written
+   * @throws IllegalArgumentException if a park the calling thread appended since it last called
+   *     this does not fit a record
+   */
+  public void awaitDurable() {
+    Event event = lastAppended.get();
+    lastAppended.remove();
+    Event refusedEvent = refused.get();
+    if (refusedEvent != null) {
+      refused.remove();
+      throw new IllegalArgumentException(format("Vehicle %.64s with %d spots does not fit a record of the event log",
+          refusedEvent.vehicleId, refusedEvent.spotIds.length));
+    }
+    if (event == null || fsyncPolicy != FsyncPolicy.ALWAYS) {
+      checkHealthy();
+      if (closed) {
+        throw new IllegalStateException("Event log is closed");
+      }
+      return;
+    }
+    await(event);
+  }
+
+  /**
+   * Rolls over to a new segment and snapshots the occupancy written so far, waiting until the
+   * snapshot is on disk.
+   */
+  public void snapshot() throws IOException {
+    Event marker = new Event((byte) 0, 0, null, null, null);
+    append(marker);
+    if (lastAppended.get() != marker) {
+      checkHealthy();
+      throw new IllegalStateException("Event log is closed");
+    }
+    lastAppended.remove();
+    await(marker);
+    try {
+      snapshotWriter.submit(() -> null).get();
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+      snapshotWriter.shutdown();
+      snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+  }
+
+  /**
+   * Queues the event unless the log is closed or broken, or the event does not fit a record,
+   * which {@link #awaitDurable()} reports instead: appends are made while vehicle entries are
+   * locked and must not throw.
+   */
+  private void append(Event event) {
+    if (closed || failure != null) {
+      lastAppended.remove();
+      return;
+    }
+    if (event.vehicleIdBytes != null
+        && (event.vehicleIdBytes.length > MAX_VEHICLE_ID_BYTES || event.spotIds.length > MAX_SPOTS)) {
+      // The leave of a park that did not fit can only undo it.
+      Event refusedEvent = refused.get();
+      if (event.kind == PARK && refusedEvent == null) {
+        refused.set(event);
+      } else if (event.kind == LEAVE && refusedEvent != null && refusedEvent.vehicleId.equals(event.vehicleId)) {
+        refused.remove();
+      }
+      return;
+    }
+    queue.offer(event);
+    lastAppended.set(event);
+    if (writerIdle) {
+      LockSupport.unpark(writer);
+    }
+    if (writerDone) {
+      event.abandon();
+    }
+  }
+
+  /**
+   * Waits until the writer has written the event, or given it up.
+   *
+   * @throws IllegalStateException if the log was closed or broke before the event was written
+   */
+  private void await(Event event) {
+    event.waiter = Thread.currentThread();
+    while (!event.durable && !event.abandoned) {
+      LockSupport.park(this);
+    }
+    checkHealthy();
+    if (!event.durable) {
+      throw new IllegalStateException("Event log is closed");
+    }
+  }
+
+  private void checkHealthy() {
+    if (failure != null) {
+      throw new IllegalStateException("Event log can no longer be written", failure);
+    }
+  }
+
+  private void write() {
+    List<Event> batch = new ArrayList<>();
+    try {
+      while (!closed || !queue.isEmpty()) {
+        Event event;
+        while (batch.size() < MAX_BATCH && (event = queue.poll()) != null) {
+          batch.add(event);
+        }
+        if (batch.isEmpty()) {
+          forceIfDue();
+          writerIdle = true;
+          if (queue.isEmpty() && !closed) {
+            if (forcePending && fsyncPolicy == FsyncPolicy.INTERVAL) {
+              LockSupport.parkNanos(this, lastForce + fsyncIntervalNanos - System.nanoTime());
+            } else {
+              LockSupport.park(this);
+            }
+          }
+          writerIdle = false;
+          continue;
+        }
+        writeBatch(batch);
+        batch.clear();
+      }
+      channel.force(false);
+    } catch (Throwable e) {
+      failure = e;
+      batch.forEach(Event::abandon);
+    } finally {
+      writerDone = true;
+      Event event;
+      while ((event = queue.poll()) != null) {
+        event.abandon();
+      }
+    }
+  }
+
+  private void writeBatch(List<Event> batch) throws IOException {
+    boolean snapshotRequested = false;
+    buffer.clear();
+    for (Event event : batch) {
+      if (event.kind == 0) {
+        snapshotRequested = true;
+        continue;
+      }
+      byte[] vehicleId = event.vehicleIdBytes;
+      int payloadBytes = 1 + Long.BYTES + 1 + Short.BYTES + vehicleId.length + 1 + event.spotIds.length * Long.BYTES;
+      ensureCapacity(HEADER_BYTES + payloadBytes);
+      int start = buffer.position();
+      buffer.position(start + HEADER_BYTES);
+      buffer.put(event.kind).putLong(event.lotId)
+          .put(event.vehicleType == null ? UNKNOWN_TYPE : (byte) event.vehicleType.ordinal())
+          .putShort((short) vehicleId.length).put(vehicleId);
+      buffer.put((byte) event.spotIds.length);
+      for (long spotId : event.spotIds) {
+        buffer.putLong(spotId);
+      }
+      CRC32C crc = new CRC32C();
+      crc.update(buffer.duplicate().position(start + HEADER_BYTES).limit(buffer.position()));
+      buffer.putInt(start, payloadBytes).putInt(start + Integer.BYTES, (int) crc.getValue());
+      apply(state, types, event.kind, event.lotId, event.vehicleId, event.vehicleType, event.spotIds);
+    }
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    forcePending = true;
+    if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+      force();
+    } else {
+      forceIfDue();
+    }
+    eventsSinceSnapshot += batch.size();
+    if (snapshotRequested || eventsSinceSnapshot >= snapshotEvery) {
+      rollOver();
+    }
+    batch.forEach(Event::complete);
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (buffer.remaining() < bytes) {
+      ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+    }
+  }
+
+  private void forceIfDue() throws IOException {
+    if (forcePending && fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastForce >= fsyncIntervalNanos) {
+      force();
+    }
+  }
+
+  private void force() throws IOException {
+    channel.force(false);
+    forcePending = false;
+    lastForce = System.nanoTime();
+  }
+
+  /**
+   * Starts a new segment and hands a copy of the occupancy written so far to the snapshot thread,
+   * which deletes the older segments and snapshots once the new snapshot is on disk.
+   */
+  private void rollOver() throws IOException {
+    force();
+    channel.close();
+    long covered = segment + 1;
+    openSegment(covered);
+    eventsSinceSnapshot = 0;
+    Map<Long, Map<String, long[]>> vehicles = copy(state);
+    Map<Long, Map<String, VehicleType>> vehicleTypes = copy(types);
+    snapshotWriter.execute(() -> {
+      try {
+        OccupancySnapshot.write(directory, new OccupancySnapshot(covered, vehicles, vehicleTypes));
+        for (long old : segments(0)) {
+          if (old < covered) {
+            Files.deleteIfExists(segmentPath(old));
+          }
+        }
+        OccupancySnapshot.deleteBefore(directory, covered);
+      } catch (IOException e) {
+        failure = e;
+      }
+    });
+  }
+
+  private void openSegment(long number) throws IOException {
+    segment = number;
+    channel = FileChannel.open(segmentPath(number),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * @param last whether the segment is the last one, in which a bad record is a torn append and
+   *     is truncated along with everything after it
+   */
+  private void replay(long number, boolean last) throws IOException {
+    Path path = segmentPath(number);
+    try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer in = ByteBuffer.allocate(Math.toIntExact(file.size()));
+      while (in.hasRemaining() && file.read(in) >= 0) {
+        // reads the whole segment
+      }
+      in.flip();
+      while (in.hasRemaining()) {
+        int start = in.position();
+        if (in.remaining() < HEADER_BYTES) {
+          truncate(file, path, start, last);
+          return;
+        }
+        int payloadBytes = in.getInt();
+        int checksum = in.getInt();
+        if (payloadBytes <= 0 || payloadBytes > in.remaining()) {
+          truncate(file, path, start, last);
+          return;
+        }
+        ByteBuffer payload = in.slice(in.position(), payloadBytes);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+          truncate(file, path, start, last);
+          return;
+        }
+        in.position(in.position() + payloadBytes);
+        byte kind = payload.get();
+        long lotId = payload.getLong();
+        byte type = payload.get();
+        byte[] vehicleId = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(vehicleId);
+        long[] spotIds = new long[Byte.toUnsignedInt(payload.get())];
+        for (int i = 0; i < spotIds.length; i++) {
+          spotIds[i] = payload.getLong();
+        }
+        apply(state, types, kind, lotId, new String(vehicleId, StandardCharsets.UTF_8),
+            type >= 0 && type < VEHICLE_TYPES.length ? VEHICLE_TYPES[type] : null, spotIds);
+      }
+    }
+  }
+
+  private static void truncate(FileChannel file, Path path, long position, boolean last) throws IOException {
+    if (!last) {
+      throw new IOException(format("Event log segment %s has a bad record at byte %d", path, position));
+    }
+    file.truncate(position);
+  }
+
+  private List<Long> segments(long from) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(path -> SEGMENT.matcher(path.getFileName().toString()))
+          .filter(Matcher::matches)
+          .map(matcher -> Long.parseLong(matcher.group(1)))
+          .filter(number -> number >= from)
+          .sorted()
+          .toList();
+    }
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(format("events-%019d.log", number));
+  }
+
+  private static void apply(Map<Long, Map<String, long[]>> state, Map<Long, Map<String, VehicleType>> types,
+      byte kind, long lotId, String vehicleId, VehicleType vehicleType, long[] spotIds) {
+    Map<String, long[]> vehicles = state.computeIfAbsent(lotId, id -> new HashMap<>());
+    Map<String, VehicleType> vehicleTypes = types.computeIfAbsent(lotId, id -> new HashMap<>());
+    if (kind == PARK) {
+      vehicles.put(vehicleId, spotIds);
+      if (vehicleType != null) {
+        vehicleTypes.put(vehicleId, vehicleType);
+      } else {
+        vehicleTypes.remove(vehicleId);
+      }
+    } else {
+      vehicles.remove(vehicleId);
+      vehicleTypes.remove(vehicleId);
+    }
+  }
+
+  private static <T> Map<Long, Map<String, T>> copy(Map<Long, Map<String, T>> state) {
+    Map<Long, Map<String, T>> copy = new HashMap<>();
+    state.forEach((lotId, vehicles) -> copy.put(lotId, new HashMap<>(vehicles)));
+    return copy;
+  }
+
+  private static final class Event {
+
+    private final byte kind;
+
+    private final long lotId;
+
+    private final String vehicleId;
+
+    private final byte[] vehicleIdBytes;
+
+    private final VehicleType vehicleType;
+
+    private final long[] spotIds;
+
+    private volatile boolean durable;
+
+    private volatile boolean abandoned;
+
+    private volatile Thread waiter;
+
+    private Event(byte kind, long lotId, String vehicleId, VehicleType vehicleType, long[] spotIds) {
+      this.kind = kind;
+      this.lotId = lotId;
+      this.vehicleId = vehicleId;
+      this.vehicleIdBytes = vehicleId == null ? null : vehicleId.getBytes(StandardCharsets.UTF_8);
+      this.vehicleType = vehicleType;
+      this.spotIds = spotIds;
+    }
+
+    private void complete() {
+      durable = true;
+      wake();
+    }
+
+    /**
+     * Marks the event as never to be written, as when the log closed or broke first.
+     */
+    private void abandon() {
+      abandoned = true;
+      wake();
+    }
+
+    private void wake() {
+      Thread thread = waiter;
+      if (thread != null) {
+        LockSupport.unpark(thread);
+      }
+    }
+  }
+}
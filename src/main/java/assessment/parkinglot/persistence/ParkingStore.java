@@ -0,0 +1,34 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.Vehicle;
+
+import java.util.List;
+
+/**
+ * Persists the parks and leaves once they have been allocated in memory. Implementations throw
+ * a {@link RuntimeException}, having persisted nothing, if an outcome cannot be persisted.
+ */
+public interface ParkingStore {
+
+  /**
+   * @return the spots of the lot, with the vehicles holding them
+   */
+  List<ParkingSpot> loadSpots(long lotId);
+
+  void park(long lotId, Vehicle vehicle, long[] spotIds);
+
+  void parkAll(long lotId, List<Vehicle> vehicles, List<long[]> spotIds);
+
+  void leave(long lotId, String vehicleId, long[] spotIds);
+
+  void leaveAll(long lotId, List<String> vehicleIds, List<long[]> spotIds);
+
+  /**
+   * @return whether parks and leaves outlive the process, {@code false} letting callers skip
+   *     this store on parks and leaves altogether
+   */
+  default boolean isDurable() {
+    return true;
+  }
+}
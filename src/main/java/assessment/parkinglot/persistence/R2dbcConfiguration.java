@@ -0,0 +1,36 @@
+package assessment.parkinglot.persistence;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Connects the reactive API to the database. The R2DBC transaction manager is kept out of the
+ * context, behind the {@link TransactionalOperator}, as {@code @Transactional} would otherwise
+ * have two to choose from.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class R2dbcConfiguration {
+
+  @Bean
+  public ConnectionFactory connectionFactory(@Value("${spring.r2dbc.url}") String url) {
+    return ConnectionFactories.get(url);
+  }
+
+  @Bean
+  public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+    return DatabaseClient.create(connectionFactory);
+  }
+
+  @Bean
+  public TransactionalOperator transactionalOperator(ConnectionFactory connectionFactory) {
+    return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+  }
+}
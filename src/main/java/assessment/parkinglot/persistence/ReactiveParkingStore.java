@@ -0,0 +1,52 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.repositories.ReactiveParkingSpotRepository;
+import assessment.parkinglot.repositories.ReactiveVehicleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Writes parks and leaves through to the database without blocking, each in a reactive
+ * transaction, the same as {@link JpaParkingStore} does.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveParkingStore {
+
+  @Autowired
+  private ReactiveParkingSpotRepository reactiveParkingSpotRepository;
+
+  @Autowired
+  private ReactiveVehicleRepository reactiveVehicleRepository;
+
+  @Autowired
+  private TransactionalOperator transactionalOperator;
+
+  public Mono<Void> park(Vehicle vehicle, long[] spotIds) {
+    List<Long> ids = Arrays.stream(spotIds).boxed().toList();
+    return reactiveVehicleRepository.insert(vehicle.getId(), vehicle.getType().name())
+        .then(reactiveParkingSpotRepository.claimFreeSpots(vehicle.getId(), ids))
+        .flatMap(claimed -> claimed == ids.size()
+            ? Mono.<Void>empty()
+            : Mono.<Void>error(new IllegalStateException(format("Spots %s are no longer free", ids))))
+        .as(transactionalOperator::transactional);
+  }
+
+  public Mono<Void> leave(String vehicleId, long[] spotIds) {
+    return reactiveParkingSpotRepository.releaseSpots(vehicleId)
+        .flatMap(released -> released == spotIds.length
+            ? reactiveVehicleRepository.deleteById(vehicleId)
+            : Mono.<Void>error(new IllegalStateException(
+                format("Vehicle %s does not hold spots %s", vehicleId, Arrays.toString(spotIds)))))
+        .as(transactionalOperator::transactional);
+  }
+}
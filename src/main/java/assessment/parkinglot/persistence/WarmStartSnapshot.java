@@ -0,0 +1,223 @@
+package assessment.parkinglot.persistence;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import static java.lang.String.format;
+
+/**
+ * Spot layout and occupancy of every lot, for warming the in-memory indexes on startup without
+ * reading the spots from the database.
+ * <p>
+ * The spot ids of every {@link ParkingSpotType} are stored sorted as runs of consecutive ids, so
+ * a lot laid out in rows takes a few bytes per row rather than per spot. The file ends with a
+ * CRC32C of its contents and is replaced atomically, so it is either read whole or not at all.
+ */
+public class WarmStartSnapshot {
+
+  private static final int MAGIC = 0x504b5753;
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  private final List<Lot> lots;
+
+  public WarmStartSnapshot(List<Lot> lots) {
+    this.lots = lots;
+  }
+
+  public List<Lot> getLots() {
+    return lots;
+  }
+
+  public static void write(Path file, WarmStartSnapshot snapshot) throws IOException {
+    ByteBuffer encoded = ByteBuffer.wrap(encode(snapshot));
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (encoded.hasRemaining()) {
+        channel.write(encoded);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * @return the snapshot in the file, or {@code null} if there is none or it cannot be read
+   */
+  public static WarmStartSnapshot read(Path file) throws IOException {
+    try {
+      return decode(Files.readAllBytes(file));
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the snapshot as written to a file, also how lots are handed between cluster nodes
+   * @throws IllegalArgumentException if a vehicle id is longer than 65535 UTF-8 bytes or a
+   *     vehicle holds more than 255 spots
+   */
+  public static byte[] encode(WarmStartSnapshot snapshot) {
+    Out out = new Out();
+    out.buffer.putInt(MAGIC).putInt(snapshot.lots.size());
+    for (Lot lot : snapshot.lots) {
+      out.ensure(Long.BYTES);
+      out.buffer.putLong(lot.lotId);
+      for (long[] ids : lot.spotIds) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        List<long[]> runs = new ArrayList<>();
+        for (int i = 0; i < sorted.length; ) {
+          int j = i + 1;
+          while (j < sorted.length && sorted[j] == sorted[j - 1] + 1) {
+            j++;
+          }
+          runs.add(new long[] { sorted[i], j - i });
+          i = j;
+        }
+        out.ensure(Integer.BYTES + runs.size() * (Long.BYTES + Integer.BYTES));
+        out.buffer.putInt(runs.size());
+        for (long[] run : runs) {
+          out.buffer.putLong(run[0]).putInt((int) run[1]);
+        }
+      }
+      out.ensure(Integer.BYTES);
+      out.buffer.putInt(lot.vehicles.size());
+      for (Map.Entry<String, long[]> vehicle : lot.vehicles.entrySet()) {
+        byte[] vehicleId = vehicle.getKey().getBytes(StandardCharsets.UTF_8);
+        if (vehicleId.length > 0xFFFF || vehicle.getValue().length > 0xFF) {
+          throw new IllegalArgumentException(format("Vehicle %.64s of parking lot %d with %d spots does not fit a snapshot",
+              vehicle.getKey(), lot.lotId, vehicle.getValue().length));
+        }
+        out.ensure(Short.BYTES + vehicleId.length + 1 + vehicle.getValue().length * Long.BYTES);
+        out.buffer.putShort((short) vehicleId.length).put(vehicleId).put((byte) vehicle.getValue().length);
+        for (long spotId : vehicle.getValue()) {
+          out.buffer.putLong(spotId);
+        }
+      }
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(out.buffer.array(), 0, out.buffer.position());
+    out.ensure(Integer.BYTES);
+    out.buffer.putInt((int) crc.getValue());
+    return Arrays.copyOf(out.buffer.array(), out.buffer.position());
+  }
+
+  /**
+   * @return the snapshot, or {@code null} if it cannot be read
+   * @see #encode(WarmStartSnapshot)
+   */
+  public static WarmStartSnapshot decode(byte[] bytes) {
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    if (in.remaining() < 3 * Integer.BYTES) {
+      return null;
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(in.array(), 0, in.limit() - Integer.BYTES);
+    if ((int) crc.getValue() != in.getInt(in.limit() - Integer.BYTES) || in.getInt() != MAGIC) {
+      return null;
+    }
+    int lotCount = in.getInt();
+    List<Lot> lots = new ArrayList<>(lotCount);
+    for (int l = 0; l < lotCount; l++) {
+      long lotId = in.getLong();
+      long[][] spotIds = new long[SPOT_TYPES.length][];
+      for (int type = 0; type < spotIds.length; type++) {
+        int runCount = in.getInt();
+        long[] starts = new long[runCount];
+        int[] lengths = new int[runCount];
+        int total = 0;
+        for (int r = 0; r < runCount; r++) {
+          starts[r] = in.getLong();
+          lengths[r] = in.getInt();
+          total += lengths[r];
+        }
+        long[] ids = new long[total];
+        for (int r = 0, i = 0; r < runCount; r++) {
+          for (int n = 0; n < lengths[r]; n++) {
+            ids[i++] = starts[r] + n;
+          }
+        }
+        spotIds[type] = ids;
+      }
+      int vehicleCount = in.getInt();
+      Map<String, long[]> vehicles = new HashMap<>(Math.max(16, vehicleCount * 4 / 3 + 1));
+      for (int v = 0; v < vehicleCount; v++) {
+        int length = Short.toUnsignedInt(in.getShort());
+        String vehicleId = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        long[] held = new long[Byte.toUnsignedInt(in.get())];
+        for (int i = 0; i < held.length; i++) {
+          held[i] = in.getLong();
+        }
+        vehicles.put(vehicleId, held);
+      }
+      lots.add(new Lot(lotId, spotIds, vehicles));
+    }
+    return new WarmStartSnapshot(lots);
+  }
+
+  /**
+   * Layout and occupancy of one lot.
+   */
+  public static class Lot {
+
+    private final long lotId;
+
+    private final long[][] spotIds;
+
+    private final Map<String, long[]> vehicles;
+
+    /**
+     * @param spotIds the ids of the spots of every type, indexed by {@link ParkingSpotType#ordinal()}
+     */
+    public Lot(long lotId, long[][] spotIds, Map<String, long[]> vehicles) {
+      this.lotId = lotId;
+      this.spotIds = spotIds;
+      this.vehicles = vehicles;
+    }
+
+    public long getLotId() {
+      return lotId;
+    }
+
+    public long[][] getSpotIds() {
+      return spotIds;
+    }
+
+    public Map<String, long[]> getVehicles() {
+      return vehicles;
+    }
+  }
+
+  private static final class Out {
+
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    private void ensure(int bytes) {
+      if (buffer.remaining() < bytes) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+      }
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package assessment.parkinglot.repositories;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.metrics.StatementCounter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Writes the outcome of batch park and leave calls with JDBC batch statements, bypassing the
+ * entity loading and dirty checking of the JPA repositories. Like the single park and leave,
+ * they only take free spots and only free spots held by the vehicle, and fail if any spot is not.
+ */
+@Repository
+public class ParkingBatchRepository {
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private StatementCounter statementCounter;
+
+  public void park(List<Vehicle> vehicles, List<long[]> spotIds) {
+    jdbcTemplate.batchUpdate("INSERT INTO vehicle (id, type) VALUES (?, ?)", vehicles, vehicles.size(),
+        (statement, vehicle) -> {
+          statement.setString(1, vehicle.getId());
+          statement.setString(2, vehicle.getType().name());
+        });
+    List<Object[]> assignments = new ArrayList<>();
+    for (int i = 0; i < vehicles.size(); i++) {
+      for (long spotId : spotIds.get(i)) {
+        assignments.add(new Object[] { vehicles.get(i).getId(), spotId });
+      }
+    }
+    int[] counts = jdbcTemplate.batchUpdate(
+        "UPDATE parking_spot SET vehicle_id = ? WHERE id = ? AND vehicle_id IS NULL", assignments);
+    statementCounter.add(2);
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 1) {
+        throw new IllegalStateException(format("Spot %d is no longer free", assignments.get(i)[1]));
+      }
+    }
+  }
+
+  public void leave(List<String> vehicleIds, List<long[]> spotIds) {
+    List<Object[]> releases = new ArrayList<>();
+    for (int i = 0; i < vehicleIds.size(); i++) {
+      for (long spotId : spotIds.get(i)) {
+        releases.add(new Object[] { spotId, vehicleIds.get(i) });
+      }
+    }
+    int[] counts = jdbcTemplate.batchUpdate(
+        "UPDATE parking_spot SET vehicle_id = NULL WHERE id = ? AND vehicle_id = ?", releases);
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 1) {
+        throw new IllegalStateException(format("Vehicle %s does not hold spot %d", releases.get(i)[1], releases.get(i)[0]));
+      }
+    }
+    jdbcTemplate.batchUpdate("DELETE FROM vehicle WHERE id = ?", vehicleIds, vehicleIds.size(),
+        (statement, vehicleId) -> statement.setString(1, vehicleId));
+    statementCounter.add(2);
+  }
+}
@@ -0,0 +1,9 @@
+package assessment.parkinglot.repositories;
+
+import assessment.parkinglot.domain.ParkingLot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ParkingLotRepository extends JpaRepository<ParkingLot, Long> {
+}
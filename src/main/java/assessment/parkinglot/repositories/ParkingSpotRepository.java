@@ -1,18 +1,28 @@
 package assessment.parkinglot.repositories;
 
 import assessment.parkinglot.domain.ParkingSpot;
-import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.Vehicle;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ParkingSpotRepository extends JpaRepository<ParkingSpot, Long> {
 
-  List<ParkingSpot> findByVehicleId(String vehicleId);
-
   Integer countByVehicleIsNull();
 
-  List<ParkingSpot> findByVehicleIsNullAndTypeIn(ParkingSpotType[] types);
+  List<ParkingSpot> findByLevelLotId(Long lotId);
+
+  @Modifying(flushAutomatically = true)
+  @Query("UPDATE ParkingSpot s SET s.vehicle = :vehicle WHERE s.id IN :ids AND s.vehicle IS NULL")
+  int claimFreeSpots(@Param("vehicle") Vehicle vehicle, @Param("ids") Collection<Long> ids);
+
+  @Modifying
+  @Query("UPDATE ParkingSpot s SET s.vehicle = NULL WHERE s.vehicle.id = :vehicleId")
+  int releaseSpots(@Param("vehicleId") String vehicleId);
 }
@@ -0,0 +1,29 @@
+package assessment.parkinglot.repositories;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * The parking spots as seen by the reactive API, see {@link ParkingSpotRepository}.
+ */
+@Repository
+public interface ReactiveParkingSpotRepository extends R2dbcRepository<ReactiveParkingSpotRepository.Row, Long> {
+
+  @Modifying
+  @Query("UPDATE parking_spot SET vehicle_id = :vehicleId WHERE id IN (:ids) AND vehicle_id IS NULL")
+  Mono<Integer> claimFreeSpots(String vehicleId, Collection<Long> ids);
+
+  @Modifying
+  @Query("UPDATE parking_spot SET vehicle_id = NULL WHERE vehicle_id = :vehicleId")
+  Mono<Integer> releaseSpots(String vehicleId);
+
+  @Table("parking_spot")
+  record Row(@Id Long id, Long levelId, String type, String vehicleId) {}
+}
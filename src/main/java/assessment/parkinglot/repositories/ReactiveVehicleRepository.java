@@ -0,0 +1,23 @@
+package assessment.parkinglot.repositories;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * The parked vehicles as seen by the reactive API, see {@link VehicleRepository}.
+ */
+@Repository
+public interface ReactiveVehicleRepository extends R2dbcRepository<ReactiveVehicleRepository.Row, String> {
+
+  @Modifying
+  @Query("INSERT INTO vehicle (id, type) VALUES (:id, :type)")
+  Mono<Integer> insert(String id, String type);
+
+  @Table("vehicle")
+  record Row(@Id String id, String type) {}
+}
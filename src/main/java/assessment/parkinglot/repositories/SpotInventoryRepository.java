@@ -0,0 +1,89 @@
+package assessment.parkinglot.repositories;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds, retires and retypes spots with JDBC batch statements, in chunks of {@value #CHUNK}.
+ * Retired spots are only flagged, so that a vehicle still on one can leave as usual.
+ */
+@Repository
+public class SpotInventoryRepository {
+
+  private static final int CHUNK = 10_000;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  /**
+   * @return the lot the level is on, or {@code null} if there is no such level
+   */
+  public Long findLotOfLevel(long levelId) {
+    List<Long> lotIds = jdbcTemplate.queryForList("SELECT lot_id FROM parking_level WHERE id = ?", Long.class, levelId);
+    return lotIds.isEmpty() ? null : lotIds.get(0);
+  }
+
+  /**
+   * @return the ids of the new spots
+   */
+  @Transactional
+  public long[] add(long levelId, ParkingSpotType type, int count) {
+    long[] spotIds = new long[count];
+    int added = 0;
+    while (added < count) {
+      int size = Math.min(CHUNK, count - added);
+      KeyHolder keys = new GeneratedKeyHolder();
+      jdbcTemplate.batchUpdate(
+          connection -> connection.prepareStatement("INSERT INTO parking_spot (level_id, type) VALUES (?, ?)",
+              new String[] { "id" }),
+          new BatchPreparedStatementSetter() {
+
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+              statement.setLong(1, levelId);
+              statement.setString(2, type.name());
+            }
+
+            @Override
+            public int getBatchSize() {
+              return size;
+            }
+          },
+          keys);
+      for (Map<String, Object> key : keys.getKeyList()) {
+        spotIds[added++] = ((Number) key.values().iterator().next()).longValue();
+      }
+    }
+    return spotIds;
+  }
+
+  @Transactional
+  public void retire(long[] spotIds) {
+    List<Object[]> rows = new ArrayList<>(spotIds.length);
+    for (long spotId : spotIds) {
+      rows.add(new Object[] { spotId });
+    }
+    jdbcTemplate.batchUpdate("UPDATE parking_spot SET retired = TRUE WHERE id = ?", rows);
+  }
+
+  @Transactional
+  public void retype(long[] spotIds, ParkingSpotType type) {
+    List<Object[]> rows = new ArrayList<>(spotIds.length);
+    for (long spotId : spotIds) {
+      rows.add(new Object[] { type.name(), spotId });
+    }
+    jdbcTemplate.batchUpdate("UPDATE parking_spot SET type = ? WHERE id = ?", rows);
+  }
+}
@@ -0,0 +1,39 @@
+package assessment.parkinglot.request;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class AddSpotsRequest {
+
+  @NotNull
+  private Long levelId;
+
+  @NotNull
+  private ParkingSpotType type;
+
+  @Min(1)
+  @Max(100_000)
+  private int count;
+
+  protected AddSpotsRequest() {}
+
+  public AddSpotsRequest(Long levelId, ParkingSpotType type, int count) {
+    this.levelId = levelId;
+    this.type = type;
+    this.count = count;
+  }
+
+  public Long getLevelId() {
+    return levelId;
+  }
+
+  public ParkingSpotType getType() {
+    return type;
+  }
+
+  public int getCount() {
+    return count;
+  }
+}
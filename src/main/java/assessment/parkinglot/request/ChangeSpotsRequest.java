@@ -0,0 +1,35 @@
+package assessment.parkinglot.request;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Spots to retire, or to retype when a {@code type} is given.
+ */
+public class ChangeSpotsRequest {
+
+  @NotEmpty
+  @Size(max = 100_000)
+  private List<@NotNull Long> spotIds;
+
+  private ParkingSpotType type;
+
+  protected ChangeSpotsRequest() {}
+
+  public ChangeSpotsRequest(List<Long> spotIds, ParkingSpotType type) {
+    this.spotIds = spotIds;
+    this.type = type;
+  }
+
+  public List<Long> getSpotIds() {
+    return spotIds;
+  }
+
+  public ParkingSpotType getType() {
+    return type;
+  }
+}
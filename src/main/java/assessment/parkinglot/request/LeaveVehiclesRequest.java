@@ -0,0 +1,24 @@
+package assessment.parkinglot.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class LeaveVehiclesRequest {
+
+  @NotEmpty
+  @Size(max = 1000)
+  private List<@NotNull String> vehicleIds;
+
+  protected LeaveVehiclesRequest() {}
+
+  public LeaveVehiclesRequest(List<String> vehicleIds) {
+    this.vehicleIds = vehicleIds;
+  }
+
+  public List<String> getVehicleIds() {
+    return vehicleIds;
+  }
+}
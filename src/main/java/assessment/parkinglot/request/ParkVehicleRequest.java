@@ -2,10 +2,12 @@ package assessment.parkinglot.request;
 
 import assessment.parkinglot.domain.VehicleType;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 public class ParkVehicleRequest {
 
   @NotNull
+  @Size(max = 255)
   private String id;
 
   @NotNull
@@ -0,0 +1,25 @@
+package assessment.parkinglot.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class ParkVehiclesRequest {
+
+  @NotEmpty
+  @Size(max = 1000)
+  @Valid
+  private List<ParkVehicleRequest> vehicles;
+
+  protected ParkVehiclesRequest() {}
+
+  public ParkVehiclesRequest(List<ParkVehicleRequest> vehicles) {
+    this.vehicles = vehicles;
+  }
+
+  public List<ParkVehicleRequest> getVehicles() {
+    return vehicles;
+  }
+}
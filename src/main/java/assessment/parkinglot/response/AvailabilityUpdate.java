@@ -0,0 +1,26 @@
+package assessment.parkinglot.response;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class AvailabilityUpdate {
+
+  private final Map<ParkingSpotType, Integer> freeSpots = new EnumMap<>(ParkingSpotType.class);
+
+  private final Map<VehicleType, Boolean> full = new EnumMap<>(VehicleType.class);
+
+  public Map<ParkingSpotType, Integer> getFreeSpots() {
+    return freeSpots;
+  }
+
+  public Map<VehicleType, Boolean> getFull() {
+    return full;
+  }
+
+  public boolean isEmpty() {
+    return freeSpots.isEmpty() && full.isEmpty();
+  }
+}
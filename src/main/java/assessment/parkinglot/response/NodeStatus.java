@@ -0,0 +1,26 @@
+package assessment.parkinglot.response;
+
+public class NodeStatus {
+
+  private String nodeId;
+
+  private boolean ready;
+
+  protected NodeStatus() {}
+
+  public NodeStatus(String nodeId, boolean ready) {
+    this.nodeId = nodeId;
+    this.ready = ready;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * @return whether the node has joined the cluster and can own lots
+   */
+  public boolean isReady() {
+    return ready;
+  }
+}
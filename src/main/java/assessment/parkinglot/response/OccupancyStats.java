@@ -0,0 +1,111 @@
+package assessment.parkinglot.response;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.history.Interval;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class OccupancyStats {
+
+  private final Instant from;
+
+  private final Instant to;
+
+  private final Interval interval;
+
+  private final Map<ParkingSpotType, Long> parks = new EnumMap<>(ParkingSpotType.class);
+
+  private final Map<ParkingSpotType, Long> leaves = new EnumMap<>(ParkingSpotType.class);
+
+  private final Map<ParkingSpotType, Integer> peakOccupied = new EnumMap<>(ParkingSpotType.class);
+
+  private final Map<VehicleType, Long> stays = new EnumMap<>(VehicleType.class);
+
+  private final Map<VehicleType, Double> averageDwellSeconds = new EnumMap<>(VehicleType.class);
+
+  private final List<Point> series = new ArrayList<>();
+
+  public OccupancyStats(Instant from, Instant to, Interval interval) {
+    this.from = from;
+    this.to = to;
+    this.interval = interval;
+  }
+
+  public Instant getFrom() {
+    return from;
+  }
+
+  public Instant getTo() {
+    return to;
+  }
+
+  public Interval getInterval() {
+    return interval;
+  }
+
+  public Map<ParkingSpotType, Long> getParks() {
+    return parks;
+  }
+
+  public Map<ParkingSpotType, Long> getLeaves() {
+    return leaves;
+  }
+
+  public Map<ParkingSpotType, Integer> getPeakOccupied() {
+    return peakOccupied;
+  }
+
+  /**
+   * @return the number of stays that ended in the range and whose start was recorded
+   */
+  public Map<VehicleType, Long> getStays() {
+    return stays;
+  }
+
+  public Map<VehicleType, Double> getAverageDwellSeconds() {
+    return averageDwellSeconds;
+  }
+
+  public List<Point> getSeries() {
+    return series;
+  }
+
+  /**
+   * Parks, leaves and peak occupancy of one interval.
+   */
+  public static class Point {
+
+    private final Instant start;
+
+    private final Map<ParkingSpotType, Long> parks = new EnumMap<>(ParkingSpotType.class);
+
+    private final Map<ParkingSpotType, Long> leaves = new EnumMap<>(ParkingSpotType.class);
+
+    private final Map<ParkingSpotType, Integer> peakOccupied = new EnumMap<>(ParkingSpotType.class);
+
+    public Point(Instant start) {
+      this.start = start;
+    }
+
+    public Instant getStart() {
+      return start;
+    }
+
+    public Map<ParkingSpotType, Long> getParks() {
+      return parks;
+    }
+
+    public Map<ParkingSpotType, Long> getLeaves() {
+      return leaves;
+    }
+
+    public Map<ParkingSpotType, Integer> getPeakOccupied() {
+      return peakOccupied;
+    }
+  }
+}
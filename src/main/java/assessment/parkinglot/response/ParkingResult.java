@@ -0,0 +1,39 @@
+package assessment.parkinglot.response;
+
+public class ParkingResult {
+
+  public enum Status {
+
+    PARKED, LEFT, ALREADY_PARKED, NO_AVAILABLE_SPOTS, NOT_FOUND;
+  }
+
+  private static final long[] NO_SPOTS = new long[0];
+
+  private final String vehicleId;
+
+  private final Status status;
+
+  private final long[] spotIds;
+
+  public ParkingResult(String vehicleId, Status status, long[] spotIds) {
+    this.vehicleId = vehicleId;
+    this.status = status;
+    this.spotIds = spotIds;
+  }
+
+  public ParkingResult(String vehicleId, Status status) {
+    this(vehicleId, status, NO_SPOTS);
+  }
+
+  public String getVehicleId() {
+    return vehicleId;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public long[] getSpotIds() {
+    return spotIds;
+  }
+}
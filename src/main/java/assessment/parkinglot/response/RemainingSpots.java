@@ -0,0 +1,37 @@
+package assessment.parkinglot.response;
+
+import java.util.List;
+import java.util.Map;
+
+public class RemainingSpots {
+
+  private final int total;
+
+  private final Map<Long, Integer> lots;
+
+  private final List<String> unreachableNodes;
+
+  public RemainingSpots(int total, Map<Long, Integer> lots, List<String> unreachableNodes) {
+    this.total = total;
+    this.lots = lots;
+    this.unreachableNodes = unreachableNodes;
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * @return the remaining spots of every lot, as counted by its owner
+   */
+  public Map<Long, Integer> getLots() {
+    return lots;
+  }
+
+  /**
+   * @return the nodes that did not answer, whose lots are left out
+   */
+  public List<String> getUnreachableNodes() {
+    return unreachableNodes;
+  }
+}
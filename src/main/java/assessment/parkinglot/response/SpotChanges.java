@@ -0,0 +1,27 @@
+package assessment.parkinglot.response;
+
+public class SpotChanges {
+
+  private final long[] applied;
+
+  private final long[] deferred;
+
+  public SpotChanges(long[] applied, long[] deferred) {
+    this.applied = applied;
+    this.deferred = deferred;
+  }
+
+  /**
+   * @return the spots changed at once
+   */
+  public long[] getApplied() {
+    return applied;
+  }
+
+  /**
+   * @return the spots occupied or held, changed once they are released
+   */
+  public long[] getDeferred() {
+    return deferred;
+  }
+}
@@ -0,0 +1,28 @@
+package assessment.parkinglot.response;
+
+public class VehicleLocation {
+
+  private final String vehicleId;
+
+  private final long lotId;
+
+  private final long[] spotIds;
+
+  public VehicleLocation(String vehicleId, long lotId, long[] spotIds) {
+    this.vehicleId = vehicleId;
+    this.lotId = lotId;
+    this.spotIds = spotIds;
+  }
+
+  public String getVehicleId() {
+    return vehicleId;
+  }
+
+  public long getLotId() {
+    return lotId;
+  }
+
+  public long[] getSpotIds() {
+    return spotIds;
+  }
+}
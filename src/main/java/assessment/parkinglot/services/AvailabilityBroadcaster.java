@@ -0,0 +1,329 @@
+package assessment.parkinglot.services;
+
+import assessment.parkinglot.allocation.Availability;
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.response.AvailabilityUpdate;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Pushes availability changes of every parking lot to its server-sent event subscribers.
+ * <p>
+ * Once per window the maintained counters of each lot's {@link OccupancyIndex} are compared with
+ * what was last sent, so any burst of parks and leaves within a window reaches every subscriber
+ * as a single delta. The delta is serialized once and the same payload is written to all
+ * emitters of the lot by a small pool of sender threads, so that a slow subscriber holds up
+ * neither the scheduler nor the service.
+ * <p>
+ * Every subscriber has at most one send queued or under way. A subscriber still busy with an
+ * earlier send when a delta comes is marked stale instead, and once its send is done it is sent
+ * the availability the latest delta of its lot left behind, so that every later delta applies to
+ * what it has. New subscribers start out stale. A subscriber whose send has not finished within
+ * {@code send-timeout-ms} is dropped, and its emitter completed once the send gives up.
+ */
+@Service
+public class AvailabilityBroadcaster {
+
+  private static final ParkingSpotType[] SPOT_TYPES = ParkingSpotType.values();
+
+  private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+  private static final int SENDER_THREADS = 4;
+
+  @Autowired
+  private ParkingLotShards parkingLotShards;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${parking-lot.availability.timeout-ms:1800000}")
+  private long timeoutMillis;
+
+  @Value("${parking-lot.availability.send-timeout-ms:10000}")
+  private long sendTimeoutMillis;
+
+  private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+  private final AtomicInteger senderThreads = new AtomicInteger();
+
+  private final ExecutorService sender = Executors.newFixedThreadPool(SENDER_THREADS, runnable -> {
+    Thread thread = new Thread(runnable, "availability-sender-" + senderThreads.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public SseEmitter subscribe(long lotId) throws ParkingLotNotFoundException, JsonProcessingException {
+    shard(lotId);
+    Channel channel = channels.computeIfAbsent(lotId, id -> new Channel());
+    Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis));
+    SseEmitter emitter = subscriber.emitter;
+    emitter.onCompletion(() -> channel.subscribers.remove(subscriber));
+    emitter.onTimeout(() -> channel.subscribers.remove(subscriber));
+    emitter.onError(e -> channel.subscribers.remove(subscriber));
+    channel.lock.lock();
+    try {
+      publish(lotId, channel);
+      subscriber.stale = true;
+      subscriber.busy.set(true);
+      channel.subscribers.add(subscriber);
+    } finally {
+      channel.lock.unlock();
+    }
+    sender.execute(() -> deliver(channel, subscriber, null));
+    return emitter;
+  }
+
+  public int getSubscriberCount() {
+    int subscribers = 0;
+    for (Channel channel : channels.values()) {
+      subscribers += channel.subscribers.size();
+    }
+    return subscribers;
+  }
+
+  @Scheduled(fixedDelayString = "${parking-lot.availability.window-ms:250}")
+  public void broadcast() throws JsonProcessingException {
+    long now = System.nanoTime();
+    for (Map.Entry<Long, Channel> entry : channels.entrySet()) {
+      Channel channel = entry.getValue();
+      dropStalled(channel, now);
+      channel.lock.lock();
+      try {
+        publish(entry.getKey(), channel);
+      } finally {
+        channel.lock.unlock();
+      }
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    sender.shutdownNow();
+  }
+
+  /**
+   * Collects the changes of the lot and hands them to the sender for its idle subscribers,
+   * marking the busy ones stale. Called holding the lock of the channel.
+   */
+  private void publish(long lotId, Channel channel) throws JsonProcessingException {
+    AvailabilityUpdate update = collectChanges(lotId);
+    if (update == null) {
+      return;
+    }
+    channel.snapshot = null;
+    if (channel.subscribers.isEmpty()) {
+      return;
+    }
+    String payload = objectMapper.writeValueAsString(update);
+    for (Subscriber subscriber : channel.subscribers) {
+      if (subscriber.busy.compareAndSet(false, true)) {
+        sender.execute(() -> deliver(channel, subscriber, payload));
+      } else {
+        subscriber.stale = true;
+        // The send under way may have finished without seeing the mark.
+        if (subscriber.busy.compareAndSet(false, true)) {
+          sender.execute(() -> deliver(channel, subscriber, null));
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends the subscriber the payload, or the availability its lot was last sent if it is stale,
+   * until it is neither busy nor stale.
+   */
+  private void deliver(Channel channel, Subscriber subscriber, String payload) {
+    while (true) {
+      if (subscriber.stale) {
+        try {
+          payload = snapshot(channel, subscriber);
+        } catch (JsonProcessingException e) {
+          drop(channel, subscriber);
+          subscriber.emitter.completeWithError(e);
+          return;
+        }
+      }
+      if (payload != null && !send(channel, subscriber, payload)) {
+        return;
+      }
+      payload = null;
+      subscriber.busy.set(false);
+      if (!subscriber.stale || !subscriber.busy.compareAndSet(false, true)) {
+        return;
+      }
+    }
+  }
+
+  private boolean send(Channel channel, Subscriber subscriber, String payload) {
+    subscriber.sendingSince = System.nanoTime();
+    try {
+      subscriber.emitter.send(SseEmitter.event().name("availability").data(payload, APPLICATION_JSON));
+    } catch (IOException | IllegalStateException e) {
+      drop(channel, subscriber);
+      return false;
+    } finally {
+      subscriber.sendingSince = 0;
+    }
+    if (subscriber.dropped) {
+      subscriber.emitter.complete();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Drops the subscribers whose send has been under way for longer than the send timeout. Their
+   * emitters are completed by the sender once the send gives up, as completing one waits for the
+   * send.
+   */
+  private void dropStalled(Channel channel, long nowNanos) {
+    if (sendTimeoutMillis <= 0) {
+      return;
+    }
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+    for (Subscriber subscriber : channel.subscribers) {
+      long since = subscriber.sendingSince;
+      if (since != 0 && nowNanos - since > timeoutNanos) {
+        drop(channel, subscriber);
+      }
+    }
+  }
+
+  private static void drop(Channel channel, Subscriber subscriber) {
+    subscriber.dropped = true;
+    channel.subscribers.remove(subscriber);
+  }
+
+  /**
+   * Clears the stale mark of the subscriber under the lock of its channel.
+   *
+   * @return the availability the channel's subscribers were last sent, serialized once for all
+   *     stale subscribers until the next delta
+   */
+  private String snapshot(Channel channel, Subscriber subscriber) throws JsonProcessingException {
+    channel.lock.lock();
+    try {
+      subscriber.stale = false;
+      if (channel.snapshot == null) {
+        channel.snapshot = objectMapper.writeValueAsString(snapshot(channel));
+      }
+      return channel.snapshot;
+    } finally {
+      channel.lock.unlock();
+    }
+  }
+
+  /**
+   * @return what changed in the lot since the previous call, or {@code null} if nothing did
+   */
+  public AvailabilityUpdate collectChanges(long lotId) {
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard == null) {
+      return null;
+    }
+    Channel channel = channels.computeIfAbsent(lotId, id -> new Channel());
+    channel.lock.lock();
+    try {
+      Availability availability = shard.getAvailability();
+      AvailabilityUpdate update = new AvailabilityUpdate();
+      for (ParkingSpotType type : SPOT_TYPES) {
+        int free = availability.countFree(type);
+        if (!channel.sentOnce || free != channel.sentFreeSpots[type.ordinal()]) {
+          channel.sentFreeSpots[type.ordinal()] = free;
+          update.getFreeSpots().put(type, free);
+        }
+      }
+      for (VehicleType type : VEHICLE_TYPES) {
+        boolean full = !availability.hasCapacity(type);
+        if (!channel.sentOnce || full != channel.sentFull[type.ordinal()]) {
+          channel.sentFull[type.ordinal()] = full;
+          update.getFull().put(type, full);
+        }
+      }
+      channel.sentOnce = true;
+      return update.isEmpty() ? null : update;
+    } finally {
+      channel.lock.unlock();
+    }
+  }
+
+  private OccupancyIndex shard(long lotId) throws ParkingLotNotFoundException {
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard == null) {
+      throw new ParkingLotNotFoundException(lotId);
+    }
+    return shard;
+  }
+
+  /**
+   * @return the availability the channel's subscribers were last sent
+   */
+  private static AvailabilityUpdate snapshot(Channel channel) {
+    AvailabilityUpdate snapshot = new AvailabilityUpdate();
+    for (ParkingSpotType type : SPOT_TYPES) {
+      snapshot.getFreeSpots().put(type, channel.sentFreeSpots[type.ordinal()]);
+    }
+    for (VehicleType type : VEHICLE_TYPES) {
+      snapshot.getFull().put(type, channel.sentFull[type.ordinal()]);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Subscribers of one lot and the availability they were last sent.
+   */
+  private static final class Channel {
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final int[] sentFreeSpots = new int[SPOT_TYPES.length];
+
+    private final boolean[] sentFull = new boolean[VEHICLE_TYPES.length];
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private boolean sentOnce;
+
+    private String snapshot;
+  }
+
+  private static final class Subscriber {
+
+    private final SseEmitter emitter;
+
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    private volatile boolean stale;
+
+    private volatile boolean dropped;
+
+    private volatile long sendingSince;
+
+    private Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package assessment.parkinglot.services;
+
+import static java.lang.String.format;
+
+public class HoldExistsException extends Exception {
+
+  public HoldExistsException(String vehicleId) {
+    super(format("Vehicle %s already holds spots", vehicleId));
+  }
+}
@@ -0,0 +1,10 @@
+package assessment.parkinglot.services;
+
+import static java.lang.String.format;
+
+public class HoldNotFoundException extends Exception {
+
+  public HoldNotFoundException(String vehicleId) {
+    super(format("Vehicle %s holds no spots", vehicleId));
+  }
+}
@@ -0,0 +1,10 @@
+package assessment.parkinglot.services;
+
+import static java.lang.String.format;
+
+public class LevelNotFoundException extends Exception {
+
+  public LevelNotFoundException(long levelId) {
+    super(format("Level %d not found", levelId));
+  }
+}
@@ -0,0 +1,123 @@
+package assessment.parkinglot.services;
+
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.persistence.ParkingStore;
+import assessment.parkinglot.persistence.WarmStartSnapshot;
+import assessment.parkinglot.repositories.ParkingLotRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Warms the occupancy indexes from a {@link WarmStartSnapshot} on startup, so the service is
+ * ready without first reading every spot from the database, and writes the snapshot on shutdown.
+ * <p>
+ * The database stays the source of truth: once the snapshot is loaded, every lot is read from
+ * the {@link ParkingStore} in the background and reconciled with what the snapshot said, while
+ * parks and leaves are already being served. Until then a park may be handed a spot the snapshot
+ * wrongly had as free, which the store rejects like any other conflict. A lot whose spots
+ * themselves changed is rebuilt from the store and then reconciled once more, to put back what
+ * was parked while it was being read.
+ */
+@Component
+public class OccupancyWarmStart {
+
+  private static final Logger log = LoggerFactory.getLogger(OccupancyWarmStart.class);
+
+  @Autowired
+  private ParkingLotRepository parkingLotRepository;
+
+  @Autowired
+  private ParkingStore parkingStore;
+
+  @Autowired
+  private ParkingLotShards parkingLotShards;
+
+  /**
+   * The snapshot file, or empty to always load the lots from the database.
+   */
+  @Value("${parking-lot.warm-start.file:}")
+  private String file;
+
+  /**
+   * Loads the snapshot, if there is one, and starts reconciling it with the database.
+   *
+   * @return the reconciliation, or {@code null} if no snapshot was loaded
+   */
+  public CompletableFuture<Void> load() throws IOException {
+    if (file.isEmpty()) {
+      return null;
+    }
+    WarmStartSnapshot snapshot = WarmStartSnapshot.read(Path.of(file));
+    if (snapshot == null) {
+      return null;
+    }
+    Map<Long, Map<String, long[]>> loaded = new HashMap<>();
+    for (WarmStartSnapshot.Lot lot : snapshot.getLots()) {
+      parkingLotShards.rebuild(lot.getLotId(), lot.getSpotIds(), lot.getVehicles());
+      loaded.put(lot.getLotId(), lot.getVehicles());
+    }
+    CompletableFuture<Void> reconciliation = new CompletableFuture<>();
+    Thread reconciler = new Thread(() -> {
+      try {
+        reconcile(loaded);
+        reconciliation.complete(null);
+      } catch (RuntimeException e) {
+        log.error("Could not reconcile occupancy with the database", e);
+        reconciliation.completeExceptionally(e);
+      }
+    }, "occupancy-reconciler");
+    reconciler.setDaemon(true);
+    reconciler.start();
+    return reconciliation;
+  }
+
+  @PreDestroy
+  public void save() throws IOException {
+    if (file.isEmpty()) {
+      return;
+    }
+    List<WarmStartSnapshot.Lot> lots = new ArrayList<>();
+    for (long lotId : parkingLotShards.getLotIds()) {
+      OccupancyIndex shard = parkingLotShards.get(lotId);
+      lots.add(new WarmStartSnapshot.Lot(lotId, shard.getSpotIds(), shard.getParkedVehicles()));
+    }
+    WarmStartSnapshot.write(Path.of(file), new WarmStartSnapshot(lots));
+  }
+
+  private void reconcile(Map<Long, Map<String, long[]>> loaded) {
+    Set<Long> lotIds = new HashSet<>();
+    for (ParkingLot lot : parkingLotRepository.findAll()) {
+      lotIds.add(lot.getId());
+      List<ParkingSpot> spots = parkingStore.loadSpots(lot.getId());
+      Map<String, long[]> vehicles = loaded.get(lot.getId());
+      if (vehicles == null || !parkingLotShards.reconcile(lot.getId(), spots, vehicles)) {
+        log.warn("Spots of parking lot {} differ from the warm start snapshot, rebuilding it", lot.getId());
+        Map<String, long[]> rebuilt = parkingLotShards.rebuild(lot.getId(), spots);
+        parkingLotShards.reconcile(lot.getId(), parkingStore.loadSpots(lot.getId()), rebuilt);
+      }
+    }
+    for (long lotId : loaded.keySet()) {
+      if (!lotIds.contains(lotId)) {
+        log.warn("Parking lot {} of the warm start snapshot no longer exists", lotId);
+        parkingLotShards.remove(lotId);
+      }
+    }
+  }
+}
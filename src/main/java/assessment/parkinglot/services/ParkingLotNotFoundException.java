@@ -0,0 +1,10 @@
+package assessment.parkinglot.services;
+
+import static java.lang.String.format;
+
+public class ParkingLotNotFoundException extends Exception {
+
+  public ParkingLotNotFoundException(long lotId) {
+    super(format("Parking lot %d not found", lotId));
+  }
+}
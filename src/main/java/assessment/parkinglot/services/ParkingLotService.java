@@ -1,68 +1,628 @@
 package assessment.parkinglot.services;
 
-import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.allocation.Hold;
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.allocation.SpotHolds;
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.ParkingSpotType;
 import assessment.parkinglot.domain.Vehicle;
 import assessment.parkinglot.domain.VehicleType;
 import assessment.parkinglot.factories.VehicleFactory;
-import assessment.parkinglot.repositories.ParkingSpotRepository;
-import assessment.parkinglot.repositories.VehicleRepository;
+import assessment.parkinglot.history.Interval;
+import assessment.parkinglot.history.OccupancyHistory;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.metrics.ParkingMetrics.Operation;
+import assessment.parkinglot.metrics.ParkingMetrics.Outcome;
+import assessment.parkinglot.persistence.ParkingStore;
+import assessment.parkinglot.repositories.ParkingLotRepository;
 import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.response.OccupancyStats;
+import assessment.parkinglot.response.ParkingResult;
+import assessment.parkinglot.response.VehicleLocation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static assessment.parkinglot.response.ParkingResult.Status.ALREADY_PARKED;
+import static assessment.parkinglot.response.ParkingResult.Status.LEFT;
+import static assessment.parkinglot.response.ParkingResult.Status.NOT_FOUND;
+import static assessment.parkinglot.response.ParkingResult.Status.NO_AVAILABLE_SPOTS;
+import static assessment.parkinglot.response.ParkingResult.Status.PARKED;
 
 @Service
 public class ParkingLotService {
 
+  private static final int LEAVE_BUFFER = VehicleType.values().length;
+
+  /**
+   * Per thread, a buffer for the spots of each vehicle type, by ordinal, and one more at
+   * {@link #LEAVE_BUFFER} with room for as many spots as any vehicle type takes up.
+   */
+  private static final ThreadLocal<long[][]> SPOT_BUFFERS = ThreadLocal.withInitial(() -> {
+    long[][] buffers = new long[LEAVE_BUFFER + 1][];
+    int most = 0;
+    for (VehicleType vehicleType : VehicleType.values()) {
+      buffers[vehicleType.ordinal()] = new long[vehicleType.takeUpSpots()];
+      most = Math.max(most, vehicleType.takeUpSpots());
+    }
+    buffers[LEAVE_BUFFER] = new long[most];
+    return buffers;
+  });
+
   @Autowired
   private VehicleFactory vehicleFactory;
 
   @Autowired
-  private ParkingSpotRepository parkingSpotRepository;
+  private ParkingLotRepository parkingLotRepository;
+
+  @Autowired
+  private ParkingStore parkingStore;
+
+  @Autowired
+  private ParkingLotShards parkingLotShards;
 
   @Autowired
-  private VehicleRepository vehicleRepository;
+  private ParkingMetrics parkingMetrics;
+
+  @Autowired
+  private OccupancyWarmStart occupancyWarmStart;
+
+  @Autowired
+  private SpotHolds spotHolds;
+
+  @Autowired
+  private OccupancyHistory occupancyHistory;
+
+  @Value("${parking-lot.in-memory-allocation:false}")
+  private boolean inMemoryAllocation;
 
-  @Transactional
-  public void park(ParkVehicleRequest request) throws VehicleAlreadyParkedException, NoAvailableSpotsException {
-    if (vehicleRepository.existsById(request.getId())) {
-      throw new VehicleAlreadyParkedException(request.getId());
+  /**
+   * The holds parks took their spots from, by vehicle id, until the park is stored, so that a
+   * park that fails to be stored gives the spots back to the hold.
+   */
+  private final Map<String, Hold> takenHolds = new ConcurrentHashMap<>();
+
+  /**
+   * Loads the occupancy of every lot, from the warm start snapshot if there is one, before the
+   * cluster, if any, is joined.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public void warmUp() throws IOException {
+    if (occupancyWarmStart.load() == null) {
+      loadOccupancy();
+    }
+  }
+
+  @Transactional(readOnly = true)
+  public void loadOccupancy() {
+    for (ParkingLot lot : parkingLotRepository.findAll()) {
+      parkingLotShards.rebuild(lot.getId(), parkingStore.loadSpots(lot.getId()));
     }
-    VehicleType vehicleType = request.getType();
-    List<ParkingSpot> availableSpots = findAvailableSpots(vehicleType);
-    if (availableSpots.size() < vehicleType.takeUpSpots()) {
-      throw new NoAvailableSpotsException();
+  }
+
+  public void park(long lotId, ParkVehicleRequest request)
+      throws ParkingLotNotFoundException, VehicleAlreadyParkedException, NoAvailableSpotsException {
+    OccupancyIndex shard = shard(lotId);
+    long start = parkingMetrics.start();
+    ParkingResult result;
+    try {
+      result = allocate(lotId, shard, request);
+      if (result.getStatus() == PARKED) {
+        occupy(lotId, shard, request, result.getSpotIds());
+        recordPark(lotId, shard, request.getId(), request.getType(), result.getSpotIds());
+      }
+    } catch (RuntimeException e) {
+      parkingMetrics.recordPark(request.getType(), Outcome.ERROR, start);
+      throw e;
+    }
+    parkingMetrics.recordPark(request.getType(), Outcome.of(result.getStatus()), start);
+    switch (result.getStatus()) {
+      case ALREADY_PARKED -> throw new VehicleAlreadyParkedException(request.getId());
+      case NO_AVAILABLE_SPOTS -> throw new NoAvailableSpotsException();
     }
-    Vehicle vehicle = vehicleRepository.save(vehicleFactory.createVehicle(request));
-    availableSpots.stream().limit(vehicleType.takeUpSpots()).forEach(spot -> {
-      spot.setVehicle(vehicle);
-      parkingSpotRepository.save(spot);
-    });
   }
 
-  @Transactional
-  public void leave(String vehicleId) throws VehicleNotFoundException {
-    if (!vehicleRepository.existsById(vehicleId)) {
+  public List<ParkingResult> parkAll(long lotId, List<ParkVehicleRequest> requests) throws ParkingLotNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    long start = parkingMetrics.start();
+    try {
+      List<ParkingResult> results = new ArrayList<>(requests.size());
+      List<long[]> spotIds = new ArrayList<>();
+      List<ParkVehicleRequest> parked = new ArrayList<>();
+      try {
+        for (ParkVehicleRequest request : requests) {
+          ParkingResult result = allocate(lotId, shard, request);
+          if (result.getStatus() == PARKED) {
+            spotIds.add(result.getSpotIds());
+            parked.add(request);
+          }
+          results.add(result);
+        }
+        List<Vehicle> vehicles = new ArrayList<>(parked.size());
+        for (ParkVehicleRequest request : parked) {
+          vehicles.add(vehicleFactory.createVehicle(request));
+        }
+        parkingStore.parkAll(lotId, vehicles, spotIds);
+      } catch (RuntimeException e) {
+        for (int i = 0; i < parked.size(); i++) {
+          undoPark(lotId, shard, parked.get(i).getId(), spotIds.get(i));
+        }
+        throw e;
+      }
+      for (int i = 0; i < parked.size(); i++) {
+        takenHolds.remove(parked.get(i).getId());
+        recordPark(lotId, shard, parked.get(i).getId(), parked.get(i).getType(), spotIds.get(i));
+      }
+      return results;
+    } finally {
+      parkingMetrics.recordBatch(Operation.PARK_BATCH, start);
+    }
+  }
+
+  public void leave(long lotId, String vehicleId) throws ParkingLotNotFoundException, VehicleNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    long start = parkingMetrics.start();
+    ParkingResult result;
+    try {
+      result = vacate(shard, vehicleId);
+      if (result.getStatus() == LEFT) {
+        ParkingSpotType type = shard.getSpotType(result.getSpotIds()[0]);
+        release(lotId, shard, vehicleId, result.getSpotIds());
+        recordLeave(lotId, shard, vehicleId, type, result.getSpotIds());
+      }
+    } catch (RuntimeException e) {
+      parkingMetrics.recordLeave(Outcome.ERROR, start);
+      throw e;
+    }
+    parkingMetrics.recordLeave(Outcome.of(result.getStatus()), start);
+    if (result.getStatus() == NOT_FOUND) {
       throw new VehicleNotFoundException(vehicleId);
     }
-    parkingSpotRepository.findByVehicleId(vehicleId).forEach(spot -> {
-      spot.setVehicle(null);
-      parkingSpotRepository.save(spot);
-    });
-    vehicleRepository.deleteById(vehicleId);
   }
 
-  public Integer getRemainingSpots() {
-    return parkingSpotRepository.countByVehicleIsNull();
+  public List<ParkingResult> leaveAll(long lotId, List<String> vehicleIds) throws ParkingLotNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    long start = parkingMetrics.start();
+    try {
+      List<ParkingResult> results = new ArrayList<>(vehicleIds.size());
+      List<String> leaving = new ArrayList<>();
+      List<long[]> spotIds = new ArrayList<>();
+      try {
+        for (String vehicleId : vehicleIds) {
+          ParkingResult result = vacate(shard, vehicleId);
+          if (result.getStatus() == LEFT) {
+            leaving.add(vehicleId);
+            spotIds.add(result.getSpotIds());
+          }
+          results.add(result);
+        }
+        parkingStore.leaveAll(lotId, leaving, spotIds);
+      } catch (RuntimeException e) {
+        for (int i = 0; i < leaving.size(); i++) {
+          shard.assign(leaving.get(i), spotIds.get(i));
+        }
+        throw e;
+      }
+      for (int i = 0; i < leaving.size(); i++) {
+        ParkingSpotType type = shard.getSpotType(spotIds.get(i)[0]);
+        shard.release(spotIds.get(i));
+        parkingLotShards.unclaim(leaving.get(i), lotId);
+        recordLeave(lotId, shard, leaving.get(i), type, spotIds.get(i));
+      }
+      return results;
+    } finally {
+      parkingMetrics.recordBatch(Operation.LEAVE_BATCH, start);
+    }
+  }
+
+  /**
+   * Parks the vehicle in memory only, for callers persisting the park themselves, who then
+   * either {@link #completePark complete} or {@link #undoPark undo} it.
+   */
+  public ParkingResult allocate(long lotId, ParkVehicleRequest request) throws ParkingLotNotFoundException {
+    return allocate(lotId, shard(lotId), request);
+  }
+
+  public void completePark(long lotId, ParkVehicleRequest request, long[] spotIds) {
+    takenHolds.remove(request.getId());
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard != null) {
+      recordPark(lotId, shard, request.getId(), request.getType(), spotIds);
+    }
+  }
+
+  public void undoPark(long lotId, String vehicleId, long[] spotIds) {
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard != null) {
+      undoPark(lotId, shard, vehicleId, spotIds);
+    } else {
+      takenHolds.remove(vehicleId);
+    }
+  }
+
+  /**
+   * Takes the vehicle off its spots in memory only, for callers persisting the leave themselves,
+   * who then either {@link #completeLeave complete} or {@link #undoLeave undo} it.
+   */
+  public ParkingResult vacate(long lotId, String vehicleId) throws ParkingLotNotFoundException {
+    return vacate(shard(lotId), vehicleId);
+  }
+
+  public void completeLeave(long lotId, String vehicleId, long[] spotIds) {
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard != null) {
+      ParkingSpotType type = shard.getSpotType(spotIds[0]);
+      shard.release(spotIds);
+      parkingLotShards.unclaim(vehicleId, lotId);
+      recordLeave(lotId, shard, vehicleId, type, spotIds);
+    }
+  }
+
+  public void undoLeave(long lotId, String vehicleId, long[] spotIds) {
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard != null) {
+      shard.assign(vehicleId, spotIds);
+    }
+  }
+
+  /**
+   * Parks the vehicle like {@link #park}, answering the expected outcomes with a status instead
+   * of an exception. With a store that is not durable, as with {@code parking-lot.persistence=memory},
+   * its spots are claimed into a buffer of the calling thread and copied into the lot's vehicle
+   * registry. In the in-memory allocation mode, where no park or leave is recorded in the
+   * occupancy history, this then allocates nothing unless the vehicle has a hold.
+   *
+   * @see #isInMemoryAllocation()
+   * @return {@code PARKED}, {@code ALREADY_PARKED} or {@code NO_AVAILABLE_SPOTS}
+   */
+  public ParkingResult.Status tryPark(long lotId, String vehicleId, VehicleType vehicleType)
+      throws ParkingLotNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    if (parkingStore.isDurable() || spotHolds.get(vehicleId) != null) {
+      try {
+        park(lotId, new ParkVehicleRequest(vehicleId, vehicleType));
+        return PARKED;
+      } catch (VehicleAlreadyParkedException e) {
+        return ALREADY_PARKED;
+      } catch (NoAvailableSpotsException e) {
+        return NO_AVAILABLE_SPOTS;
+      }
+    }
+    long start = parkingMetrics.start();
+    ParkingResult.Status status = claim(lotId, shard, vehicleId, vehicleType);
+    if (status == PARKED && !inMemoryAllocation) {
+      recordPark(lotId, shard, vehicleId, vehicleType, SPOT_BUFFERS.get()[vehicleType.ordinal()].clone());
+    }
+    parkingMetrics.recordPark(vehicleType, Outcome.of(status), start);
+    return status;
+  }
+
+  /**
+   * Takes the vehicle out like {@link #leave}, answering the expected outcomes with a status
+   * instead of an exception, and allocating nothing when {@link #tryPark} does not.
+   *
+   * @return {@code LEFT} or {@code NOT_FOUND}
+   */
+  public ParkingResult.Status tryLeave(long lotId, String vehicleId) throws ParkingLotNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    if (!parkingStore.isDurable()) {
+      long start = parkingMetrics.start();
+      long[] spotIds = SPOT_BUFFERS.get()[LEAVE_BUFFER];
+      int count = shard.vacate(vehicleId, spotIds);
+      if (count <= spotIds.length) {
+        if (count > 0) {
+          ParkingSpotType type = inMemoryAllocation ? null : shard.getSpotType(spotIds[0]);
+          shard.release(spotIds, count);
+          parkingLotShards.unclaim(vehicleId, lotId);
+          if (!inMemoryAllocation) {
+            recordLeave(lotId, shard, vehicleId, type, Arrays.copyOf(spotIds, count));
+          }
+        }
+        ParkingResult.Status status = count > 0 ? LEFT : NOT_FOUND;
+        parkingMetrics.recordLeave(Outcome.of(status), start);
+        return status;
+      }
+    }
+    try {
+      leave(lotId, vehicleId);
+      return LEFT;
+    } catch (VehicleNotFoundException e) {
+      return NOT_FOUND;
+    }
+  }
+
+  /**
+   * @return whether single parks, leaves and is-full checks are served by {@link #tryPark},
+   *     {@link #tryLeave} and {@link #isFullNow}, as set by {@code parking-lot.in-memory-allocation},
+   *     leaving every park and leave out of the occupancy history
+   */
+  public boolean isInMemoryAllocation() {
+    return inMemoryAllocation;
   }
 
-  public Boolean isFull(VehicleType vehicleType) {
-    return findAvailableSpots(vehicleType).size() < vehicleType.takeUpSpots();
+  /**
+   * Like {@link #isFull(long, VehicleType)}, but read straight from the lot's pools rather than
+   * from an availability snapshot, so that it allocates nothing.
+   *
+   * @see OccupancyIndex#canFit(VehicleType)
+   */
+  public boolean isFullNow(long lotId, VehicleType vehicleType) throws ParkingLotNotFoundException {
+    return !shard(lotId).canFit(vehicleType);
+  }
+
+  /**
+   * Claims spots for the vehicle until it parks in the lot or the hold expires. Held spots count
+   * as taken for everyone else. The vehicle is claimed for the lot while the hold is made, so
+   * that it cannot park anywhere meanwhile, but not while it holds: parking in another lot
+   * releases the hold.
+   */
+  public Hold hold(long lotId, ParkVehicleRequest request, long ttlSeconds)
+      throws ParkingLotNotFoundException, VehicleAlreadyParkedException, HoldExistsException, NoAvailableSpotsException {
+    OccupancyIndex shard = shard(lotId);
+    String vehicleId = request.getId();
+    if (!parkingLotShards.claim(vehicleId, lotId)) {
+      throw new VehicleAlreadyParkedException(vehicleId);
+    }
+    try {
+      if (spotHolds.get(vehicleId) != null) {
+        throw new HoldExistsException(vehicleId);
+      }
+      long[] spotIds = shard.claim(request.getType());
+      if (spotIds == null) {
+        throw new NoAvailableSpotsException();
+      }
+      Hold hold = new Hold(vehicleId, request.getType(), lotId, spotIds,
+          System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds));
+      if (!spotHolds.add(hold)) {
+        shard.release(spotIds);
+        throw new HoldExistsException(vehicleId);
+      }
+      return hold;
+    } finally {
+      parkingLotShards.unclaim(vehicleId, lotId);
+    }
+  }
+
+  public void releaseHold(long lotId, String vehicleId) throws HoldNotFoundException {
+    Hold hold = spotHolds.get(vehicleId);
+    if (hold == null || hold.getLotId() != lotId || !spotHolds.remove(hold)) {
+      throw new HoldNotFoundException(vehicleId);
+    }
+    releaseSpots(hold);
+  }
+
+  @Scheduled(fixedDelay = SpotHolds.TICK_MILLIS)
+  public void expireHolds() {
+    expireHolds(System.currentTimeMillis());
+  }
+
+  public void expireHolds(long nowMillis) {
+    for (Hold hold : spotHolds.expire(nowMillis)) {
+      releaseSpots(hold);
+    }
+  }
+
+  public Integer getRemainingSpots(long lotId) throws ParkingLotNotFoundException {
+    return shard(lotId).getRemainingSpots();
+  }
+
+  public Boolean isFull(long lotId, VehicleType vehicleType) throws ParkingLotNotFoundException {
+    return !shard(lotId).hasCapacity(vehicleType);
+  }
+
+  /**
+   * @return whether parking the vehicle would certainly fail for want of a spot, because it is
+   * not parked yet, holds no spots and none of its type is free
+   */
+  public boolean isFull(long lotId, ParkVehicleRequest request) throws ParkingLotNotFoundException {
+    return !shard(lotId).hasCapacity(request.getType())
+        && spotHolds.get(request.getId()) == null
+        && !parkingLotShards.isParked(request.getId());
+  }
+
+  /**
+   * @return the spots the vehicle holds in the lot, read from the lot's occupancy in memory
+   */
+  public VehicleLocation findVehicle(long lotId, String vehicleId)
+      throws ParkingLotNotFoundException, VehicleNotFoundException {
+    long[] spotIds = shard(lotId).getSpotIds(vehicleId);
+    if (spotIds == null) {
+      throw new VehicleNotFoundException(vehicleId);
+    }
+    return new VehicleLocation(vehicleId, lotId, spotIds);
+  }
+
+  /**
+   * @return the spots held by those of the vehicles parked in the lot, in the order asked for
+   * @see #findVehicle(long, String)
+   */
+  public List<VehicleLocation> findVehicles(long lotId, List<String> vehicleIds) throws ParkingLotNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    List<VehicleLocation> locations = new ArrayList<>(vehicleIds.size());
+    for (String vehicleId : vehicleIds) {
+      long[] spotIds = shard.getSpotIds(vehicleId);
+      if (spotIds != null) {
+        locations.add(new VehicleLocation(vehicleId, lotId, spotIds));
+      }
+    }
+    return locations;
+  }
+
+  /**
+   * @see OccupancyHistory#query(long, long, long, Interval)
+   */
+  public OccupancyStats getStats(long lotId, Instant from, Instant to, Interval interval)
+      throws ParkingLotNotFoundException {
+    shard(lotId);
+    return occupancyHistory.query(lotId, from.toEpochMilli(), to.toEpochMilli(), interval);
+  }
+
+  private OccupancyIndex shard(long lotId) throws ParkingLotNotFoundException {
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard == null) {
+      throw new ParkingLotNotFoundException(lotId);
+    }
+    return shard;
+  }
+
+  /**
+   * Parks the vehicle in memory into the calling thread's buffer for its type.
+   */
+  private ParkingResult.Status claim(long lotId, OccupancyIndex shard, String vehicleId, VehicleType vehicleType) {
+    if (!parkingLotShards.claim(vehicleId, lotId)) {
+      return ALREADY_PARKED;
+    }
+    long[] spotIds = SPOT_BUFFERS.get()[vehicleType.ordinal()];
+    if (!shard.claim(vehicleType, spotIds)) {
+      parkingLotShards.unclaim(vehicleId, lotId);
+      return NO_AVAILABLE_SPOTS;
+    }
+    if (!shard.assign(vehicleId, vehicleType, spotIds)) {
+      shard.release(spotIds);
+      parkingLotShards.unclaim(vehicleId, lotId);
+      return ALREADY_PARKED;
+    }
+    return PARKED;
+  }
+
+  /**
+   * Claims the vehicle for the lot before giving it spots there, so that it cannot park in two
+   * lots at once.
+   */
+  private ParkingResult allocate(long lotId, OccupancyIndex shard, ParkVehicleRequest request) {
+    String vehicleId = request.getId();
+    if (!parkingLotShards.claim(vehicleId, lotId)) {
+      return new ParkingResult(vehicleId, ALREADY_PARKED);
+    }
+    long[] spotIds = takeHold(lotId, request);
+    if (spotIds == null) {
+      spotIds = shard.claim(request.getType());
+    }
+    if (spotIds == null) {
+      parkingLotShards.unclaim(vehicleId, lotId);
+      return new ParkingResult(vehicleId, NO_AVAILABLE_SPOTS);
+    }
+    if (!shard.assign(vehicleId, request.getType(), spotIds)) {
+      freeSpots(shard, vehicleId, spotIds);
+      parkingLotShards.unclaim(vehicleId, lotId);
+      return new ParkingResult(vehicleId, ALREADY_PARKED);
+    }
+    return new ParkingResult(vehicleId, PARKED, spotIds);
+  }
+
+  /**
+   * Takes away the hold of the vehicle, if it has one, keeping it among the taken holds until
+   * the park is stored. Holds in another lot or for another vehicle type are released instead.
+   *
+   * @return the spots held in the lot, still claimed, or {@code null} if there are none
+   */
+  private long[] takeHold(long lotId, ParkVehicleRequest request) {
+    Hold hold = spotHolds.get(request.getId());
+    if (hold == null || !spotHolds.remove(hold)) {
+      return null;
+    }
+    if (hold.getLotId() == lotId && hold.getVehicleType() == request.getType()) {
+      takenHolds.put(request.getId(), hold);
+      return hold.getSpotIds();
+    }
+    releaseSpots(hold);
+    return null;
+  }
+
+  /**
+   * Frees the spots of a park that did not go through, or gives them back to the hold they were
+   * taken from, which then expires as it would have.
+   */
+  private void freeSpots(OccupancyIndex shard, String vehicleId, long[] spotIds) {
+    Hold hold = takenHolds.remove(vehicleId);
+    if (hold == null || !spotHolds.add(hold)) {
+      shard.release(spotIds);
+    }
+  }
+
+  private void releaseSpots(Hold hold) {
+    OccupancyIndex shard = parkingLotShards.get(hold.getLotId());
+    if (shard != null) {
+      shard.release(hold.getSpotIds());
+    }
+  }
+
+  private void occupy(long lotId, OccupancyIndex shard, ParkVehicleRequest request, long[] spotIds) {
+    try {
+      parkingStore.park(lotId, vehicleFactory.createVehicle(request), spotIds);
+    } catch (RuntimeException e) {
+      undoPark(lotId, shard, request.getId(), spotIds);
+      throw e;
+    }
+    takenHolds.remove(request.getId());
+  }
+
+  private void recordPark(long lotId, OccupancyIndex shard, String vehicleId, VehicleType vehicleType,
+      long[] spotIds) {
+    if (inMemoryAllocation) {
+      return;
+    }
+    ParkingSpotType type = shard.getSpotType(spotIds[0]);
+    occupancyHistory.recordPark(System.currentTimeMillis(), lotId, vehicleId, vehicleType, type, spotIds,
+        shard.countSpots(type) - shard.countFree(type));
+  }
+
+  /**
+   * @param type the type of the spots before they were released, which may have retired or
+   *     retyped them
+   */
+  private void recordLeave(long lotId, OccupancyIndex shard, String vehicleId, ParkingSpotType type,
+      long[] spotIds) {
+    if (inMemoryAllocation) {
+      return;
+    }
+    occupancyHistory.recordLeave(System.currentTimeMillis(), lotId, vehicleId, type, spotIds,
+        shard.countSpots(type) - shard.countFree(type));
+  }
+
+  private void release(long lotId, OccupancyIndex shard, String vehicleId, long[] spotIds) {
+    try {
+      parkingStore.leave(lotId, vehicleId, spotIds);
+    } catch (RuntimeException e) {
+      shard.assign(vehicleId, spotIds);
+      throw e;
+    }
+    shard.release(spotIds);
+    parkingLotShards.unclaim(vehicleId, lotId);
+  }
+
+  /**
+   * Takes the vehicle off its spots without freeing them, so they cannot be handed out before
+   * the leave has been persisted.
+   */
+  private static ParkingResult vacate(OccupancyIndex shard, String vehicleId) {
+    long[] spotIds = shard.getSpotIds(vehicleId);
+    if (spotIds == null || !shard.unassign(vehicleId, spotIds)) {
+      return new ParkingResult(vehicleId, NOT_FOUND);
+    }
+    return new ParkingResult(vehicleId, LEFT, spotIds);
   }
 
-  private List<ParkingSpot> findAvailableSpots(VehicleType vehicleType) {
-    return parkingSpotRepository.findByVehicleIsNullAndTypeIn(vehicleType.getTakeUpSpotTypes());
+  private void undoPark(long lotId, OccupancyIndex shard, String vehicleId, long[] spotIds) {
+    shard.unassign(vehicleId, spotIds);
+    freeSpots(shard, vehicleId, spotIds);
+    parkingLotShards.unclaim(vehicleId, lotId);
   }
 }
@@ -0,0 +1,109 @@
+package assessment.parkinglot.services;
+
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.factories.VehicleFactory;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.metrics.ParkingMetrics.Outcome;
+import assessment.parkinglot.persistence.ReactiveParkingStore;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.response.ParkingResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import static assessment.parkinglot.response.ParkingResult.Status.NOT_FOUND;
+import static assessment.parkinglot.response.ParkingResult.Status.PARKED;
+
+/**
+ * Parks and removes vehicles like {@link ParkingLotService}, without blocking the calling thread.
+ * The spots are taken in memory first, written through the {@link ReactiveParkingStore}, and given
+ * back if the write fails.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveParkingLotService {
+
+  @Autowired
+  private ParkingLotService parkingLotService;
+
+  @Autowired
+  private ReactiveParkingStore reactiveParkingStore;
+
+  @Autowired
+  private VehicleFactory vehicleFactory;
+
+  @Autowired
+  private ParkingMetrics parkingMetrics;
+
+  public Mono<Void> park(long lotId, ParkVehicleRequest request) {
+    return Mono.defer(() -> {
+      long start = parkingMetrics.start();
+      ParkingResult result;
+      try {
+        result = parkingLotService.allocate(lotId, request);
+      } catch (ParkingLotNotFoundException e) {
+        return Mono.error(e);
+      }
+      if (result.getStatus() != PARKED) {
+        parkingMetrics.recordPark(request.getType(), Outcome.of(result.getStatus()), start);
+        return Mono.error(switch (result.getStatus()) {
+          case ALREADY_PARKED -> new VehicleAlreadyParkedException(request.getId());
+          default -> new NoAvailableSpotsException();
+        });
+      }
+      long[] spotIds = result.getSpotIds();
+      return settle(reactiveParkingStore.park(vehicleFactory.createVehicle(request), spotIds)
+          .doOnError(e -> {
+            parkingLotService.undoPark(lotId, request.getId(), spotIds);
+            parkingMetrics.recordPark(request.getType(), Outcome.ERROR, start);
+          })
+          .doOnSuccess(done -> {
+            parkingLotService.completePark(lotId, request, spotIds);
+            parkingMetrics.recordPark(request.getType(), Outcome.SUCCESS, start);
+          }));
+    });
+  }
+
+  public Mono<Void> leave(long lotId, String vehicleId) {
+    return Mono.defer(() -> {
+      long start = parkingMetrics.start();
+      ParkingResult result;
+      try {
+        result = parkingLotService.vacate(lotId, vehicleId);
+      } catch (ParkingLotNotFoundException e) {
+        return Mono.error(e);
+      }
+      if (result.getStatus() == NOT_FOUND) {
+        parkingMetrics.recordLeave(Outcome.NOT_FOUND, start);
+        return Mono.error(new VehicleNotFoundException(vehicleId));
+      }
+      long[] spotIds = result.getSpotIds();
+      return settle(reactiveParkingStore.leave(vehicleId, spotIds)
+          .doOnError(e -> {
+            parkingLotService.undoLeave(lotId, vehicleId, spotIds);
+            parkingMetrics.recordLeave(Outcome.ERROR, start);
+          })
+          .doOnSuccess(done -> {
+            parkingLotService.completeLeave(lotId, vehicleId, spotIds);
+            parkingMetrics.recordLeave(Outcome.SUCCESS, start);
+          }));
+    });
+  }
+
+  public Mono<Integer> getRemainingSpots(long lotId) {
+    return Mono.fromCallable(() -> parkingLotService.getRemainingSpots(lotId));
+  }
+
+  public Mono<Boolean> isFull(long lotId, VehicleType type) {
+    return Mono.fromCallable(() -> parkingLotService.isFull(lotId, type));
+  }
+
+  /**
+   * Lets the write and the bookkeeping after it run to the end even if the client goes away, as
+   * the spots would otherwise stay taken in memory whether or not the write was committed.
+   */
+  private static Mono<Void> settle(Mono<Void> write) {
+    return Mono.fromFuture(write.toFuture(), true);
+  }
+}
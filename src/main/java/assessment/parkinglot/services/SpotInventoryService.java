@@ -0,0 +1,82 @@
+package assessment.parkinglot.services;
+
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.repositories.SpotInventoryRepository;
+import assessment.parkinglot.response.SpotChanges;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/**
+ * Adds, retires and retypes spots while the lot is in use. Each change is written to the
+ * database first and then applied to the lot's {@link OccupancyIndex}, which makes new spots
+ * free at once and changes occupied or held spots once they are released.
+ */
+@Service
+public class SpotInventoryService {
+
+  @Autowired
+  private SpotInventoryRepository spotInventoryRepository;
+
+  @Autowired
+  private ParkingLotShards parkingLotShards;
+
+  /**
+   * @return the ids of the new spots
+   */
+  public long[] addSpots(long lotId, long levelId, ParkingSpotType type, int count)
+      throws ParkingLotNotFoundException, LevelNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    Long levelLotId = spotInventoryRepository.findLotOfLevel(levelId);
+    if (levelLotId == null || levelLotId != lotId) {
+      throw new LevelNotFoundException(levelId);
+    }
+    long[] spotIds = spotInventoryRepository.add(levelId, type, count);
+    shard.addSpots(type, spotIds);
+    return spotIds;
+  }
+
+  public SpotChanges retireSpots(long lotId, long[] spotIds)
+      throws ParkingLotNotFoundException, SpotNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    checkSpots(shard, spotIds);
+    spotInventoryRepository.retire(spotIds);
+    return changes(spotIds, shard.retireSpots(spotIds));
+  }
+
+  public SpotChanges retypeSpots(long lotId, long[] spotIds, ParkingSpotType type)
+      throws ParkingLotNotFoundException, SpotNotFoundException {
+    OccupancyIndex shard = shard(lotId);
+    checkSpots(shard, spotIds);
+    spotInventoryRepository.retype(spotIds, type);
+    return changes(spotIds, shard.retypeSpots(spotIds, type));
+  }
+
+  private OccupancyIndex shard(long lotId) throws ParkingLotNotFoundException {
+    OccupancyIndex shard = parkingLotShards.get(lotId);
+    if (shard == null) {
+      throw new ParkingLotNotFoundException(lotId);
+    }
+    return shard;
+  }
+
+  private static void checkSpots(OccupancyIndex shard, long[] spotIds) throws SpotNotFoundException {
+    for (long spotId : spotIds) {
+      if (shard.getSpotType(spotId) == null) {
+        throw new SpotNotFoundException(spotId);
+      }
+    }
+  }
+
+  private static SpotChanges changes(long[] spotIds, long[] deferred) {
+    long[] sortedDeferred = deferred.clone();
+    Arrays.sort(sortedDeferred);
+    long[] applied = Arrays.stream(spotIds)
+        .filter(spotId -> Arrays.binarySearch(sortedDeferred, spotId) < 0)
+        .toArray();
+    return new SpotChanges(applied, deferred);
+  }
+}
@@ -0,0 +1,10 @@
+package assessment.parkinglot.services;
+
+import static java.lang.String.format;
+
+public class SpotNotFoundException extends Exception {
+
+  public SpotNotFoundException(long spotId) {
+    super(format("Parking spot %d not found", spotId));
+  }
+}
@@ -1,28 +1,34 @@
-INSERT INTO parking_spot (TYPE) VALUES
-('MOTORCYCLE'),
-('MOTORCYCLE'),
-('MOTORCYCLE'),
-('MOTORCYCLE'),
-('MOTORCYCLE'),
+-- Seeds only an empty database, so that a persistent one keeps its lots over restarts.
+INSERT INTO parking_lot (NAME) SELECT 'Main' WHERE NOT EXISTS (SELECT 1 FROM parking_lot);
 
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
-('COMPACT'),
+INSERT INTO parking_level (LOT_ID, NAME) SELECT 1, 'Ground' WHERE NOT EXISTS (SELECT 1 FROM parking_level);
 
-('REGULAR'),
-('REGULAR'),
-('REGULAR'),
-('REGULAR'),
-('REGULAR'),
-('REGULAR'),
-('REGULAR'),
-('REGULAR'),
-('REGULAR'),
-('REGULAR');
\ No newline at end of file
+INSERT INTO parking_spot (LEVEL_ID, TYPE) SELECT * FROM (VALUES
+(1, 'MOTORCYCLE'),
+(1, 'MOTORCYCLE'),
+(1, 'MOTORCYCLE'),
+(1, 'MOTORCYCLE'),
+(1, 'MOTORCYCLE'),
+
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+(1, 'COMPACT'),
+
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR'),
+(1, 'REGULAR')
+) AS seed (LEVEL_ID, TYPE) WHERE NOT EXISTS (SELECT 1 FROM parking_spot);
\ No newline at end of file
@@ -0,0 +1,35 @@
+-- Creates only what is missing, so that it can run on every startup against a persistent database.
+CREATE TABLE IF NOT EXISTS vehicle (
+  id VARCHAR(255) NOT NULL PRIMARY KEY,
+  type VARCHAR(16) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS parking_lot (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  name VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS parking_level (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  lot_id BIGINT NOT NULL REFERENCES parking_lot (id),
+  name VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS parking_spot (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  level_id BIGINT NOT NULL REFERENCES parking_level (id),
+  type VARCHAR(16) NOT NULL,
+  vehicle_id VARCHAR(255) REFERENCES vehicle (id),
+  -- Taken out of the lot; kept until its vehicle, if any, leaves, and ignored from then on.
+  retired BOOLEAN DEFAULT FALSE NOT NULL
+);
+
+-- Levels and spots of a lot, for loading the lot's shard.
+CREATE INDEX IF NOT EXISTS parking_level_lot_idx ON parking_level (lot_id);
+CREATE INDEX IF NOT EXISTS parking_spot_level_idx ON parking_spot (level_id);
+
+-- Spots held by a vehicle, for releasing them on leave.
+CREATE INDEX IF NOT EXISTS parking_spot_vehicle_idx ON parking_spot (vehicle_id);
+
+-- Free spots per type, for counting and listing availability without scanning the table.
+CREATE INDEX IF NOT EXISTS parking_spot_type_vehicle_idx ON parking_spot (type, vehicle_id, id);
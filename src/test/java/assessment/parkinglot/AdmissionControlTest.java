@@ -0,0 +1,98 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.controllers.AdmissionControl;
+import assessment.parkinglot.controllers.RetryAfterException;
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.metrics.ParkingMetrics.Rejection;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotService;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+public class AdmissionControlTest {
+
+  private static final ParkVehicleRequest CAR = new ParkVehicleRequest("Car1", VehicleType.CAR);
+
+  private final ParkingLotService parkingLotService = mock(ParkingLotService.class);
+
+  private final ParkingMetrics parkingMetrics = mock(ParkingMetrics.class);
+
+  @Test
+  void admitShouldRefuseClientsOverTheirBurstUntilRefilled() throws Exception {
+    AdmissionControl admissionControl = new AdmissionControl(10, 5, 100, 0, parkingLotService, parkingMetrics);
+
+    for (int i = 0; i < 5; i++) {
+      admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, 0).close();
+    }
+    RetryAfterException e = assertThrows(RetryAfterException.class,
+        () -> admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, 0));
+
+    assertEquals(TOO_MANY_REQUESTS, e.getStatusCode());
+    assertEquals(1, e.getRetryAfterSeconds());
+    assertEquals("1", e.getHeaders().getFirst("Retry-After"));
+    verify(parkingMetrics).recordRejection(Rejection.RATE_LIMITED);
+    assertDoesNotThrow(() -> admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, TimeUnit.MILLISECONDS.toNanos(100)));
+  }
+
+  @Test
+  void admitShouldKeepABucketPerClient() throws Exception {
+    AdmissionControl admissionControl = new AdmissionControl(1, 1, 100, 0, parkingLotService, parkingMetrics);
+
+    admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, 0);
+    admissionControl.admit("Gate2", ParkingLot.DEFAULT_ID, CAR, 0);
+
+    assertThrows(RetryAfterException.class, () -> admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, 0));
+  }
+
+  @Test
+  void admitShouldShareABucketAmongClientsBeyondTheMaximum() throws Exception {
+    AdmissionControl admissionControl = new AdmissionControl(1, 1, 1, 0, parkingLotService, parkingMetrics);
+
+    admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, 0);
+    admissionControl.admit("Gate2", ParkingLot.DEFAULT_ID, CAR, 0);
+
+    assertThrows(RetryAfterException.class, () -> admissionControl.admit("Gate3", ParkingLot.DEFAULT_ID, CAR, 0));
+  }
+
+  @Test
+  void admitShouldRefuseParksIntoAFullLotWithoutTakingAPlaceInFlight() throws Exception {
+    when(parkingLotService.isFull(anyLong(), any(ParkVehicleRequest.class))).thenReturn(true);
+    AdmissionControl admissionControl = new AdmissionControl(0, 0, 100, 1, parkingLotService, parkingMetrics);
+
+    assertThrows(NoAvailableSpotsException.class, () -> admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, 0));
+
+    assertEquals(0, admissionControl.getInFlight());
+    verify(parkingMetrics).recordRejection(Rejection.FULL);
+  }
+
+  @Test
+  void admitShouldShedParksBeyondTheMaximumInFlight() throws Exception {
+    AdmissionControl admissionControl = new AdmissionControl(0, 0, 100, 2, parkingLotService, parkingMetrics);
+
+    AdmissionControl.Permit first = admissionControl.admit("Gate1", ParkingLot.DEFAULT_ID, CAR, 0);
+    admissionControl.admitBatch("Gate2");
+    RetryAfterException e = assertThrows(RetryAfterException.class,
+        () -> admissionControl.admit("Gate3", ParkingLot.DEFAULT_ID, CAR, 0));
+
+    assertEquals(SERVICE_UNAVAILABLE, e.getStatusCode());
+    assertEquals(2, admissionControl.getInFlight());
+    verify(parkingMetrics).recordRejection(Rejection.OVERLOADED);
+    first.close();
+    assertDoesNotThrow(() -> admissionControl.admit("Gate3", ParkingLot.DEFAULT_ID, CAR, 0));
+  }
+}
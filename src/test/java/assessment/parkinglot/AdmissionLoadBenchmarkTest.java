@@ -0,0 +1,125 @@
+package assessment.parkinglot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Surges parks of new cars over HTTP into a lot until well after it is full, and reports every
+ * second how many parks succeeded or were refused and how many SQL statements they issued.
+ * Once the lot is full the statements must flatline at zero, as full parks are refused by
+ * admission control from the availability counters.
+ * <p>
+ * Run with {@code ./gradlew benchmark --tests '*AdmissionLoad*'}, adding for instance
+ * {@code -PloadTest.spots=20000 -PloadTest.connections=500} to change the lot and the surge.
+ */
+@Tag("benchmark")
+public class AdmissionLoadBenchmarkTest {
+
+  private static final int SPOTS = Integer.getInteger("loadTest.spots", 5_000);
+
+  private static final int CONNECTIONS = Integer.getInteger("loadTest.connections", 200);
+
+  private static final int SECONDS = Integer.getInteger("loadTest.seconds", 10);
+
+  @Test
+  void statementsFlatlineOnceTheLotIsFull() throws Exception {
+    try (ConfigurableApplicationContext context = start()) {
+      URI baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+      Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+      HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+      AtomicInteger parked = new AtomicInteger();
+      AtomicInteger refused = new AtomicInteger();
+      AtomicInteger errors = new AtomicInteger();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+      statistics.clear();
+
+      List<CompletableFuture<Void>> connections = new ArrayList<>();
+      for (int i = 0; i < CONNECTIONS; i++) {
+        connections.add(loop(client, baseUri, "Surge" + i + "-", 0, deadline, parked, refused, errors));
+      }
+      System.out.printf("%d spots, %d connections%n%6s %8s %8s %11s%n", SPOTS, CONNECTIONS,
+          "second", "parked", "refused", "statements");
+      List<long[]> samples = new ArrayList<>();
+      long[] last = new long[3];
+      for (int second = 1; second <= SECONDS; second++) {
+        Thread.sleep(1_000);
+        long[] now = { parked.get(), refused.get(), statistics.getPrepareStatementCount() };
+        long[] sample = { now[0] - last[0], now[1] - last[1], now[2] - last[2] };
+        samples.add(sample);
+        System.out.printf("%6d %8d %8d %11d%n", second, sample[0], sample[1], sample[2]);
+        last = now;
+      }
+      CompletableFuture.allOf(connections.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+      double fastFailed = context.getBean(MeterRegistry.class).counter("parking.admission.rejected", "reason", "FULL").count();
+      System.out.printf("%.0f of %d refusals failed fast in admission control%n", fastFailed, refused.get());
+
+      assertEquals(0, errors.get());
+      boolean full = false;
+      for (long[] sample : samples) {
+        if (full) {
+          assertEquals(0, sample[2], "statements issued while the lot was full");
+        }
+        full |= sample[0] == 0 && sample[1] > 0;
+      }
+      assertTrue(full, "the lot never filled up");
+    }
+  }
+
+  private static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .properties(
+            "server.port=0",
+            "spring.datasource.url=jdbc:h2:mem:admission-load",
+            "spring.jpa.properties.hibernate.generate_statistics=true",
+            "parking-lot.generated-spots=" + SPOTS,
+            "logging.level.root=WARN")
+        .run();
+  }
+
+  /**
+   * Parks new cars one after the other until the deadline.
+   */
+  private static CompletableFuture<Void> loop(HttpClient client, URI baseUri, String prefix, int n, long deadline,
+      AtomicInteger parked, AtomicInteger refused, AtomicInteger errors) {
+    if (System.nanoTime() >= deadline) {
+      return CompletableFuture.completedFuture(null);
+    }
+    HttpRequest park = HttpRequest.newBuilder(baseUri.resolve("/parking-lot/park"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"id\": \"" + prefix + n + "\", \"type\": \"CAR\"}"))
+        .build();
+    return client.sendAsync(park, HttpResponse.BodyHandlers.discarding())
+        .handle((response, failure) -> {
+          if (failure != null) {
+            errors.incrementAndGet();
+          } else if (response.statusCode() == 200) {
+            parked.incrementAndGet();
+          } else if (response.statusCode() == 409) {
+            refused.incrementAndGet();
+          } else {
+            errors.incrementAndGet();
+          }
+          return null;
+        })
+        .thenCompose(done -> loop(client, baseUri, prefix, n + 1, deadline, parked, refused, errors));
+  }
+}
@@ -0,0 +1,176 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.AllocationStrategy;
+import assessment.parkinglot.allocation.BestFitStrategy;
+import assessment.parkinglot.allocation.FirstFitStrategy;
+import assessment.parkinglot.allocation.NearestToEntranceStrategy;
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Replays the same synthetic trace of arrivals and departures against every allocation strategy
+ * and reports the share of vehicles turned away, per vehicle type, and the latency of every
+ * allocation decision.
+ * <p>
+ * The lot is laid out in rows like the spot generator's. Vehicles arrive as a Poisson process and
+ * stay for an exponentially distributed time, sized so the lot is offered about
+ * {@code loadTest.utilization} of its spots. Run with
+ * {@code ./gradlew benchmark --tests '*AllocationSimulation*'}, adding for instance
+ * {@code -PloadTest.spots=100000 -PloadTest.utilization=0.95} to change the lot and the load.
+ */
+@Tag("benchmark")
+public class AllocationSimulationBenchmarkTest {
+
+  private static final int SPOTS = Integer.getInteger("loadTest.spots", 10_000);
+
+  private static final double UTILIZATION = Double.parseDouble(System.getProperty("loadTest.utilization", "0.9"));
+
+  private static final int ARRIVALS = Integer.getInteger("loadTest.arrivals", 1_000_000);
+
+  private static final int ROW = 10;
+
+  private static final ParkingSpotType[] ROW_TYPES = {
+      ParkingSpotType.MOTORCYCLE,
+      ParkingSpotType.COMPACT, ParkingSpotType.COMPACT,
+      ParkingSpotType.REGULAR, ParkingSpotType.REGULAR };
+
+  private static final VehicleType[] MIX = {
+      VehicleType.MOTORCYCLE, VehicleType.MOTORCYCLE,
+      VehicleType.CAR, VehicleType.CAR, VehicleType.CAR, VehicleType.CAR, VehicleType.CAR, VehicleType.CAR,
+      VehicleType.VAN, VehicleType.VAN };
+
+  @Test
+  void replayTraceWithEveryStrategy() {
+    Trace trace = new Trace(42);
+    Map<String, AllocationStrategy> strategies = new LinkedHashMap<>();
+    strategies.put("first-fit", new FirstFitStrategy());
+    strategies.put("best-fit", new BestFitStrategy());
+    strategies.put("nearest-to-entrance", new NearestToEntranceStrategy());
+
+    Map<String, Result> results = new HashMap<>();
+    for (int round = 0; round < 2; round++) {
+      for (Map.Entry<String, AllocationStrategy> strategy : strategies.entrySet()) {
+        results.put(strategy.getKey(), replay(trace, strategy.getValue()));
+      }
+    }
+    System.out.printf("%d spots, %d arrivals, %.0f%% offered load%n", SPOTS, ARRIVALS, UTILIZATION * 100);
+    strategies.keySet().forEach(name -> System.out.printf("%-20s %s%n", name, results.get(name)));
+  }
+
+  private static Result replay(Trace trace, AllocationStrategy strategy) {
+    OccupancyIndex occupancyIndex = new OccupancyIndex(null, strategy);
+    long[][] spotIds = new long[ParkingSpotType.values().length][];
+    for (ParkingSpotType type : ParkingSpotType.values()) {
+      spotIds[type.ordinal()] = new long[SPOTS];
+    }
+    int[] counts = new int[spotIds.length];
+    for (int i = 0; i < SPOTS; i++) {
+      int type = ROW_TYPES[i / ROW % ROW_TYPES.length].ordinal();
+      spotIds[type][counts[type]++] = i + 1;
+    }
+    for (int type = 0; type < spotIds.length; type++) {
+      spotIds[type] = Arrays.copyOf(spotIds[type], counts[type]);
+    }
+    occupancyIndex.rebuild(spotIds, Map.of());
+
+    Result result = new Result();
+    PriorityQueue<Departure> departures = new PriorityQueue<>();
+    for (int i = 0; i < ARRIVALS; i++) {
+      while (!departures.isEmpty() && departures.peek().time <= trace.times[i]) {
+        occupancyIndex.release(departures.poll().spotIds);
+      }
+      VehicleType vehicleType = trace.types[i];
+      long start = System.nanoTime();
+      long[] claimed = occupancyIndex.claim(vehicleType);
+      result.latencies[i] = System.nanoTime() - start;
+      result.arrivals[vehicleType.ordinal()]++;
+      if (claimed == null) {
+        result.rejections[vehicleType.ordinal()]++;
+      } else {
+        departures.add(new Departure(trace.times[i] + trace.stays[i], claimed));
+      }
+    }
+    while (!departures.isEmpty()) {
+      occupancyIndex.release(departures.poll().spotIds);
+    }
+    assertEquals(SPOTS, occupancyIndex.getRemainingSpots());
+    return result;
+  }
+
+  /**
+   * Arrival times, vehicle types and lengths of stay, drawn once from a fixed seed.
+   */
+  private static final class Trace {
+
+    private final double[] times = new double[ARRIVALS];
+
+    private final VehicleType[] types = new VehicleType[ARRIVALS];
+
+    private final double[] stays = new double[ARRIVALS];
+
+    private Trace(long seed) {
+      Random random = new Random(seed);
+      double spotsPerVehicle = 0;
+      for (VehicleType vehicleType : MIX) {
+        spotsPerVehicle += (double) vehicleType.takeUpSpots() / MIX.length;
+      }
+      double meanStay = 1;
+      double arrivalRate = UTILIZATION * SPOTS / spotsPerVehicle / meanStay;
+      double time = 0;
+      for (int i = 0; i < ARRIVALS; i++) {
+        time += -Math.log(1 - random.nextDouble()) / arrivalRate;
+        times[i] = time;
+        types[i] = MIX[random.nextInt(MIX.length)];
+        stays[i] = -Math.log(1 - random.nextDouble()) * meanStay;
+      }
+    }
+  }
+
+  private record Departure(double time, long[] spotIds) implements Comparable<Departure> {
+
+    @Override
+    public int compareTo(Departure other) {
+      return Double.compare(time, other.time);
+    }
+  }
+
+  private static final class Result {
+
+    private final long[] latencies = new long[ARRIVALS];
+
+    private final int[] arrivals = new int[VehicleType.values().length];
+
+    private final int[] rejections = new int[VehicleType.values().length];
+
+    private double rejectionRate(VehicleType vehicleType) {
+      return (double) rejections[vehicleType.ordinal()] / Math.max(1, arrivals[vehicleType.ordinal()]);
+    }
+
+    @Override
+    public String toString() {
+      long[] sorted = latencies.clone();
+      Arrays.sort(sorted);
+      StringBuilder rates = new StringBuilder();
+      int rejected = 0;
+      for (VehicleType vehicleType : VehicleType.values()) {
+        rates.append(String.format("%s %.2f%%, ", vehicleType, rejectionRate(vehicleType) * 100));
+        rejected += rejections[vehicleType.ordinal()];
+      }
+      return String.format("rejected %.2f%% (%sdecision p50 %d ns, p99 %d ns, p99.9 %d ns",
+          100.0 * rejected / ARRIVALS, rates, sorted[sorted.length / 2],
+          sorted[(int) (sorted.length * 0.99)], sorted[(int) (sorted.length * 0.999)]) + ")";
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.BestFitStrategy;
+import assessment.parkinglot.allocation.FirstFitStrategy;
+import assessment.parkinglot.allocation.NearestToEntranceStrategy;
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class AllocationStrategyTest {
+
+  private static final Vehicle PARKED = new Vehicle("Car1", VehicleType.CAR);
+
+  @Test
+  void bestFitShouldKeepRunsFreeForVans() {
+    OccupancyIndex firstFit = new OccupancyIndex(null, new FirstFitStrategy());
+    OccupancyIndex bestFit = new OccupancyIndex(null, new BestFitStrategy());
+    firstFit.rebuild(spots(ParkingSpotType.REGULAR, 1, 11, 5, 8));
+    bestFit.rebuild(spots(ParkingSpotType.REGULAR, 1, 11, 5, 8));
+
+    for (int car = 0; car < 2; car++) {
+      firstFit.claim(VehicleType.CAR);
+      bestFit.claim(VehicleType.CAR);
+    }
+
+    assertNotNull(firstFit.claim(VehicleType.VAN));
+    assertNull(firstFit.claim(VehicleType.VAN));
+    assertArrayEquals(new long[] { 1, 2, 3 }, bestFit.claim(VehicleType.VAN));
+    assertArrayEquals(new long[] { 9, 10, 11 }, bestFit.claim(VehicleType.VAN));
+  }
+
+  @Test
+  void bestFitShouldFindFragmentsSpanningSeveralWords() {
+    OccupancyIndex occupancyIndex = new OccupancyIndex(null, new BestFitStrategy());
+    occupancyIndex.rebuild(spots(ParkingSpotType.REGULAR, 60, 70, 62, 65));
+
+    for (long expected : new long[] { 60, 61, 63, 64, 66 }) {
+      assertArrayEquals(new long[] { expected }, occupancyIndex.claim(VehicleType.CAR));
+    }
+    occupancyIndex.release(63);
+    assertArrayEquals(new long[] { 63 }, occupancyIndex.claim(VehicleType.CAR));
+  }
+
+  @Test
+  void bestFitShouldFillCompactSpotsFirst() {
+    OccupancyIndex occupancyIndex = new OccupancyIndex(null, new BestFitStrategy());
+    List<ParkingSpot> spots = spots(ParkingSpotType.REGULAR, 1, 3);
+    spots.addAll(spots(ParkingSpotType.COMPACT, 20, 20));
+    occupancyIndex.rebuild(spots);
+
+    assertArrayEquals(new long[] { 20 }, occupancyIndex.claim(VehicleType.CAR));
+    assertArrayEquals(new long[] { 1 }, occupancyIndex.claim(VehicleType.CAR));
+  }
+
+  @Test
+  void nearestToEntranceShouldTakeLowestIdOfAnyAllowedType() {
+    OccupancyIndex occupancyIndex = new OccupancyIndex(null, new NearestToEntranceStrategy());
+    List<ParkingSpot> spots = spots(ParkingSpotType.COMPACT, 1, 2, 1);
+    spots.addAll(spots(ParkingSpotType.REGULAR, 3, 4));
+    spots.addAll(spots(ParkingSpotType.COMPACT, 5, 5));
+    occupancyIndex.rebuild(spots);
+
+    assertArrayEquals(new long[] { 2 }, occupancyIndex.claim(VehicleType.CAR));
+    assertArrayEquals(new long[] { 3 }, occupancyIndex.claim(VehicleType.CAR));
+    occupancyIndex.release(2);
+    assertArrayEquals(new long[] { 2 }, occupancyIndex.claim(VehicleType.CAR));
+    assertArrayEquals(new long[] { 4 }, occupancyIndex.claim(VehicleType.CAR));
+    assertArrayEquals(new long[] { 5 }, occupancyIndex.claim(VehicleType.CAR));
+    assertNull(occupancyIndex.claim(VehicleType.CAR));
+  }
+
+  private static List<ParkingSpot> spots(ParkingSpotType type, long from, long to, long... occupied) {
+    List<ParkingSpot> spots = new ArrayList<>();
+    for (long id = from; id <= to; id++) {
+      boolean taken = false;
+      for (long occupiedId : occupied) {
+        taken |= occupiedId == id;
+      }
+      spots.add(new ParkingSpot(id, type, taken ? PARKED : null));
+    }
+    return spots;
+  }
+}
@@ -0,0 +1,102 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.response.AvailabilityUpdate;
+import assessment.parkinglot.services.AvailabilityBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class AvailabilityBroadcasterTest {
+
+  private static final long LOT_ID = 1;
+
+  @Spy
+  private ParkingLotShards parkingLotShards = new ParkingLotShards();
+
+  @Spy
+  private ObjectMapper objectMapper = new ObjectMapper();
+
+  @InjectMocks
+  private AvailabilityBroadcaster availabilityBroadcaster;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null),
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, null),
+        new ParkingSpot(3L, ParkingSpotType.COMPACT, null)));
+    parkingLotShards.rebuild(2, List.of(
+        new ParkingSpot(4L, ParkingSpotType.MOTORCYCLE, null)));
+  }
+
+  @Test
+  void collectChangesShouldReportEverythingFirst() {
+    AvailabilityUpdate update = availabilityBroadcaster.collectChanges(LOT_ID);
+
+    assertEquals(Map.of(ParkingSpotType.MOTORCYCLE, 1, ParkingSpotType.COMPACT, 2, ParkingSpotType.REGULAR, 0),
+        update.getFreeSpots());
+    assertEquals(Map.of(VehicleType.MOTORCYCLE, false, VehicleType.CAR, false, VehicleType.VAN, true),
+        update.getFull());
+  }
+
+  @Test
+  void collectChangesShouldReportNothingWhenOccupancyIsUnchanged() {
+    availabilityBroadcaster.collectChanges(LOT_ID);
+
+    assertNull(availabilityBroadcaster.collectChanges(LOT_ID));
+  }
+
+  @Test
+  void collectChangesShouldCoalesceABurstIntoOneDelta() {
+    availabilityBroadcaster.collectChanges(LOT_ID);
+
+    OccupancyIndex occupancyIndex = parkingLotShards.get(LOT_ID);
+    occupancyIndex.claim(VehicleType.MOTORCYCLE);
+    occupancyIndex.claim(VehicleType.CAR);
+    long[] released = occupancyIndex.claim(VehicleType.CAR);
+    occupancyIndex.release(released);
+
+    AvailabilityUpdate update = availabilityBroadcaster.collectChanges(LOT_ID);
+    assertEquals(Map.of(ParkingSpotType.MOTORCYCLE, 0, ParkingSpotType.COMPACT, 1), update.getFreeSpots());
+    assertEquals(Map.of(VehicleType.MOTORCYCLE, true), update.getFull());
+  }
+
+  @Test
+  void collectChangesShouldKeepLotsApart() {
+    availabilityBroadcaster.collectChanges(LOT_ID);
+    availabilityBroadcaster.collectChanges(2);
+
+    parkingLotShards.get(2).claim(VehicleType.MOTORCYCLE);
+
+    assertNull(availabilityBroadcaster.collectChanges(LOT_ID));
+    assertEquals(Map.of(ParkingSpotType.MOTORCYCLE, 0), availabilityBroadcaster.collectChanges(2).getFreeSpots());
+  }
+
+  @Test
+  void subscribingShouldTakeTheDeltaTheSnapshotIsSentFrom() throws Exception {
+    availabilityBroadcaster.collectChanges(LOT_ID);
+    parkingLotShards.get(LOT_ID).claim(VehicleType.MOTORCYCLE);
+
+    availabilityBroadcaster.subscribe(LOT_ID);
+
+    assertEquals(1, availabilityBroadcaster.getSubscriberCount());
+    assertNull(availabilityBroadcaster.collectChanges(LOT_ID));
+    parkingLotShards.get(LOT_ID).release(new long[] { 1 });
+    assertEquals(Map.of(ParkingSpotType.MOTORCYCLE, 1), availabilityBroadcaster.collectChanges(LOT_ID).getFreeSpots());
+  }
+}
@@ -0,0 +1,122 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.Availability;
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs parks and leaves of vans and motorcycles against readers of the availability. Vans take
+ * up three regular spots, so every regular free count a reader sees must be a multiple of three,
+ * and the free counts must add up to the remaining spots of the same snapshot.
+ */
+public class AvailabilityConsistencyTest {
+
+  private static final int REGULAR_SPOTS = 300;
+
+  private static final int MOTORCYCLE_SPOTS = 50;
+
+  private static final int WRITERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private static final int READERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private static final int ITERATIONS = 20_000;
+
+  @Test
+  void readersShouldNeverSeeTornAvailability() throws Exception {
+    OccupancyIndex occupancyIndex = new OccupancyIndex();
+    List<ParkingSpot> spots = new ArrayList<>();
+    for (long id = 1; id <= REGULAR_SPOTS; id++) {
+      spots.add(new ParkingSpot(id, ParkingSpotType.REGULAR, null));
+    }
+    for (long id = REGULAR_SPOTS + 1; id <= REGULAR_SPOTS + MOTORCYCLE_SPOTS; id++) {
+      spots.add(new ParkingSpot(id, ParkingSpotType.MOTORCYCLE, null));
+    }
+    occupancyIndex.rebuild(spots);
+
+    AtomicBoolean writing = new AtomicBoolean(true);
+    AtomicInteger tornReads = new AtomicInteger();
+    AtomicLong reads = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+    try {
+      List<Future<?>> readers = new ArrayList<>();
+      for (int r = 0; r < READERS; r++) {
+        readers.add(executor.submit(() -> {
+          long lastVersion = -1;
+          while (writing.get()) {
+            Availability availability = occupancyIndex.getAvailability();
+            int regular = availability.countFree(ParkingSpotType.REGULAR);
+            int motorcycle = availability.countFree(ParkingSpotType.MOTORCYCLE);
+            if (regular % 3 != 0 || availability.getVersion() < lastVersion
+                || regular + motorcycle + availability.countFree(ParkingSpotType.COMPACT) != availability.getRemainingSpots()) {
+              tornReads.incrementAndGet();
+            }
+            lastVersion = availability.getVersion();
+            reads.incrementAndGet();
+          }
+        }));
+      }
+      List<Future<?>> writers = new ArrayList<>();
+      for (int w = 0; w < WRITERS; w++) {
+        writers.add(executor.submit(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          List<long[]> held = new ArrayList<>();
+          for (int i = 0; i < ITERATIONS; i++) {
+            if (held.isEmpty() || random.nextBoolean()) {
+              long[] spotIds = occupancyIndex.claim(random.nextInt(4) == 0 ? VehicleType.MOTORCYCLE : VehicleType.VAN);
+              if (spotIds != null) {
+                held.add(spotIds);
+              }
+            } else {
+              occupancyIndex.release(held.remove(random.nextInt(held.size())));
+            }
+          }
+          held.forEach(occupancyIndex::release);
+        }));
+      }
+      for (Future<?> writer : writers) {
+        writer.get(1, TimeUnit.MINUTES);
+      }
+      writing.set(false);
+      for (Future<?> reader : readers) {
+        reader.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(0, tornReads.get());
+    assertTrue(reads.get() > 0);
+    assertEquals(REGULAR_SPOTS + MOTORCYCLE_SPOTS, occupancyIndex.getRemainingSpots());
+  }
+
+  @Test
+  void readsWithoutWritesShouldShareTheSnapshot() {
+    OccupancyIndex occupancyIndex = new OccupancyIndex();
+    occupancyIndex.rebuild(List.of(new ParkingSpot(1L, ParkingSpotType.COMPACT, null)));
+
+    Availability availability = occupancyIndex.getAvailability();
+
+    assertSame(availability, occupancyIndex.getAvailability());
+    occupancyIndex.claim(VehicleType.CAR);
+    assertEquals(0, occupancyIndex.getAvailability().countFree(ParkingSpotType.COMPACT));
+    assertTrue(occupancyIndex.getAvailability().getVersion() > availability.getVersion());
+  }
+}
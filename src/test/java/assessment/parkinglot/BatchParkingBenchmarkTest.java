@@ -0,0 +1,111 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.services.ParkingLotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext
+@Tag("benchmark")
+public class BatchParkingBenchmarkTest {
+
+  private static final int VEHICLES = 1_000;
+
+  private static final int ROUNDS = 5;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private ParkingLotService parkingLotService;
+
+  @BeforeEach
+  void addSpots() {
+    jdbcTemplate.batchUpdate("INSERT INTO parking_spot (level_id, type) VALUES (1, ?)",
+        Collections.nCopies(VEHICLES, new Object[] { "COMPACT" }));
+    parkingLotService.loadOccupancy();
+  }
+
+  @Test
+  void singleCallsVersusOneBatchCall() throws Exception {
+    int remainingSpots = parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID);
+    String parkBody = parkBatchBody();
+    String leaveBody = leaveBatchBody();
+
+    for (int round = 0; round <= ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < VEHICLES; i++) {
+        mockMvc.perform(post("/parking-lot/park")
+                .contentType(APPLICATION_JSON)
+                .content("{\"id\": \"Car" + i + "\", \"type\": \"CAR\"}"))
+            .andExpect(status().isOk());
+      }
+      long singleParks = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < VEHICLES; i++) {
+        mockMvc.perform(post("/parking-lot/leave/Car" + i))
+            .andExpect(status().isOk());
+      }
+      long singleLeaves = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      mockMvc.perform(post("/parking-lot/park/batch").contentType(APPLICATION_JSON).content(parkBody))
+          .andExpect(status().isOk());
+      long batchPark = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      mockMvc.perform(post("/parking-lot/leave/batch").contentType(APPLICATION_JSON).content(leaveBody))
+          .andExpect(status().isOk());
+      long batchLeave = System.nanoTime() - start;
+
+      assertEquals(remainingSpots, parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID));
+      if (round > 0) {
+        System.out.printf("round %d: %d single parks %d ms, one batch park %d ms; "
+                + "%d single leaves %d ms, one batch leave %d ms%n",
+            round, VEHICLES, millis(singleParks), millis(batchPark), VEHICLES, millis(singleLeaves), millis(batchLeave));
+      }
+    }
+  }
+
+  private static String parkBatchBody() {
+    StringJoiner vehicles = new StringJoiner(",", "{\"vehicles\": [", "]}");
+    for (int i = 0; i < VEHICLES; i++) {
+      vehicles.add("{\"id\": \"Car" + i + "\", \"type\": \"CAR\"}");
+    }
+    return vehicles.toString();
+  }
+
+  private static String leaveBatchBody() {
+    StringJoiner vehicleIds = new StringJoiner(",", "{\"vehicleIds\": [", "]}");
+    for (int i = 0; i < VEHICLES; i++) {
+      vehicleIds.add("\"Car" + i + "\"");
+    }
+    return vehicleIds.toString();
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
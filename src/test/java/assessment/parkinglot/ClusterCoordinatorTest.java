@@ -0,0 +1,137 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.cluster.ClusterCoordinator;
+import assessment.parkinglot.cluster.ClusterMembership;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.persistence.MemoryParkingStore;
+import assessment.parkinglot.persistence.WarmStartSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClusterCoordinatorTest {
+
+  private static final long FAILURE_TIMEOUT_MILLIS = 1000;
+
+  private ServerSocket silent;
+
+  private HttpServer answering;
+
+  private ClusterCoordinator coordinator;
+
+  @AfterEach
+  void tearDown() throws IOException {
+    if (coordinator != null) {
+      coordinator.stop();
+    }
+    if (answering != null) {
+      answering.stop(0);
+    }
+    if (silent != null) {
+      silent.close();
+    }
+  }
+
+  @Test
+  void aPeerThatNeverAnswersShouldHoldUpNeitherReplicationNorTheHeartbeatsToTheOthers() throws Exception {
+    // Takes connections but never reads from them, like a node that hangs.
+    silent = new ServerSocket(0, 500);
+    answering = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    answering.createContext("/cluster/status", exchange -> {
+      byte[] body = "{\"nodeId\":\"c\",\"ready\":true}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    answering.start();
+    ClusterMembership membership = new ClusterMembership("a", String.join(",",
+        "a=http://localhost:1",
+        "b=http://localhost:" + silent.getLocalPort(),
+        "c=http://localhost:" + answering.getAddress().getPort()), FAILURE_TIMEOUT_MILLIS);
+    membership.setReady(true);
+    membership.seen("b", System.nanoTime());
+    ParkingLotShards parkingLotShards = new ParkingLotShards();
+    int backedUpOnB = 0;
+    for (long lotId = 1; lotId <= 200; lotId++) {
+      long[][] spotIds = new long[ParkingSpotType.values().length][0];
+      spotIds[ParkingSpotType.REGULAR.ordinal()] = new long[] {lotId * 10, lotId * 10 + 1};
+      parkingLotShards.rebuild(lotId, spotIds, Map.of("Car" + lotId, new long[] {lotId * 10}));
+      if (ClusterMembership.rank(lotId, List.of("a", "b", "c")).subList(0, 2).equals(List.of("a", "b"))) {
+        backedUpOnB++;
+      }
+    }
+    assertTrue(backedUpOnB > 5, backedUpOnB + " lots backed up on b");
+
+    coordinator = new ClusterCoordinator(membership, parkingLotShards, new MemoryParkingStore(), new ObjectMapper(),
+        50, 50);
+    coordinator.heartbeat().join();
+    long started = System.nanoTime();
+    coordinator.replicate();
+    long replicateMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+    assertTrue(replicateMillis < FAILURE_TIMEOUT_MILLIS, "replicate took " + replicateMillis + " ms");
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(3 * FAILURE_TIMEOUT_MILLIS);
+    while (System.nanoTime() < deadline) {
+      List<String> live = membership.getLiveNodes(System.nanoTime());
+      assertTrue(live.contains("c"), "c was taken out of the live nodes " + live);
+      Thread.sleep(20);
+    }
+    assertFalse(membership.getLiveNodes(System.nanoTime()).contains("b"));
+  }
+
+  @Test
+  void replicasShouldOnlyClaimTheirVehiclesOnceTakenOver() throws Exception {
+    ClusterMembership membership = new ClusterMembership("a", "a=http://localhost:1,b=http://localhost:2", 60_000);
+    membership.setReady(true);
+    membership.seen("b", System.nanoTime());
+    long ownedByB = 1;
+    while (!ClusterMembership.getOwner(ownedByB, List.of("a", "b")).equals("b")) {
+      ownedByB++;
+    }
+    long ownedByA = 1;
+    while (!ClusterMembership.getOwner(ownedByA, List.of("a", "b")).equals("a")) {
+      ownedByA++;
+    }
+    ParkingLotShards parkingLotShards = new ParkingLotShards();
+    long[][] spotIds = new long[ParkingSpotType.values().length][0];
+    spotIds[ParkingSpotType.COMPACT.ordinal()] = new long[] {1, 2};
+    parkingLotShards.rebuild(ownedByA, spotIds, Map.of("Car1", new long[] {1}));
+    coordinator = new ClusterCoordinator(membership, parkingLotShards, new MemoryParkingStore(), new ObjectMapper(),
+        60_000, 60_000);
+
+    long[][] replicated = new long[ParkingSpotType.values().length][0];
+    replicated[ParkingSpotType.COMPACT.ordinal()] = new long[] {3, 4};
+    assertTrue(coordinator.restore(ownedByB, WarmStartSnapshot.encode(new WarmStartSnapshot(List.of(
+        new WarmStartSnapshot.Lot(ownedByB, replicated, Map.of("Car2", new long[] {3})))))));
+    coordinator.export(ownedByA, "b");
+
+    assertTrue(parkingLotShards.get(ownedByB).isParked("Car2"));
+    assertFalse(parkingLotShards.isParked("Car2"));
+    assertTrue(parkingLotShards.get(ownedByA).isParked("Car1"));
+    assertFalse(parkingLotShards.isParked("Car1"));
+
+    membership.lost("b");
+    coordinator.replicate();
+
+    assertTrue(parkingLotShards.isParked("Car1"));
+    assertTrue(parkingLotShards.isParked("Car2"));
+    assertEquals(false, parkingLotShards.isReplica(ownedByB));
+  }
+}
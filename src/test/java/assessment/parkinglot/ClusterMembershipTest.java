@@ -0,0 +1,98 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.cluster.ClusterMembership;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClusterMembershipTest {
+
+  private static final String NODES = "a=http://localhost:8081, b=http://localhost:8082/, c=http://localhost:8083";
+
+  private static final long TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(2000);
+
+  @Test
+  void lotsShouldSpreadOverTheNodesAndOnlyTheFailedNodesMoveToTheirBackups() {
+    ClusterMembership membership = new ClusterMembership("a", NODES, 2000);
+    membership.setReady(true);
+    membership.seen("b", 0);
+    membership.seen("c", 0);
+    Map<Long, String> owners = new HashMap<>();
+    Map<Long, String> backups = new HashMap<>();
+    Map<String, Integer> owned = new HashMap<>();
+    for (long lotId = 1; lotId <= 300; lotId++) {
+      owners.put(lotId, membership.getOwner(lotId, 0));
+      backups.put(lotId, membership.getBackup(lotId, 0));
+      owned.merge(owners.get(lotId), 1, Integer::sum);
+    }
+
+    membership.seen("c", TIMEOUT_NANOS);
+
+    for (String nodeId : List.of("a", "b", "c")) {
+      assertTrue(owned.get(nodeId) > 50, nodeId + " owns " + owned.get(nodeId) + " of 300 lots");
+    }
+    for (long lotId = 1; lotId <= 300; lotId++) {
+      String owner = membership.getOwner(lotId, TIMEOUT_NANOS);
+      assertEquals(owners.get(lotId).equals("b") ? backups.get(lotId) : owners.get(lotId), owner);
+      assertEquals(owner.equals("a"), membership.isOwner(lotId, TIMEOUT_NANOS));
+    }
+  }
+
+  @Test
+  void liveNodesShouldLeaveOutNodesNotReadyOrLost() {
+    ClusterMembership membership = new ClusterMembership("a", NODES, 2000);
+    membership.seen("b", 0);
+    membership.seen("c", 0);
+    membership.seen("d", 0);
+
+    assertEquals(List.of("b", "c"), membership.getLiveNodes(0));
+    membership.setReady(true);
+    membership.lost("c");
+    assertEquals(List.of("a", "b"), membership.getLiveNodes(0));
+    assertEquals(List.of("a"), membership.getLiveNodes(TIMEOUT_NANOS));
+    assertNull(membership.getBackup(1, TIMEOUT_NANOS));
+    assertEquals("a", membership.getOwner(1, TIMEOUT_NANOS));
+  }
+
+  @Test
+  void rankShouldPutTheOwnerFirst() {
+    for (long lotId = 1; lotId <= 20; lotId++) {
+      List<String> ranked = ClusterMembership.rank(lotId, List.of("a", "b", "c"));
+
+      assertEquals(ClusterMembership.getOwner(lotId, List.of("c", "a", "b")), ranked.get(0));
+      assertEquals(ranked.get(1), ClusterMembership.getOwner(lotId, List.of(ranked.get(1), ranked.get(2))));
+    }
+  }
+
+  @Test
+  void lotsHandedOverShouldBePendingUntilCleared() {
+    ClusterMembership membership = new ClusterMembership("a", NODES, 2000);
+
+    membership.markPending(3);
+
+    assertTrue(membership.isPending(3));
+    assertFalse(membership.isPending(4));
+    membership.clearPending(3);
+    assertFalse(membership.isPending(3));
+  }
+
+  @Test
+  void nodesShouldBeListedAsIdAndUri() {
+    ClusterMembership membership = new ClusterMembership("b", NODES, 2000);
+
+    assertEquals(URI.create("http://localhost:8082"), membership.getNode("b").uri());
+    assertEquals(List.of("a", "c"), membership.getPeers().stream().map(node -> node.id()).toList());
+    assertThrows(IllegalStateException.class, () -> new ClusterMembership("d", NODES, 2000));
+    assertThrows(IllegalStateException.class, () -> new ClusterMembership("a", "a=http://localhost:8081,b", 2000));
+  }
+}
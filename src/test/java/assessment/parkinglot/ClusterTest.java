@@ -0,0 +1,139 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.cluster.ClusterMembership;
+import assessment.parkinglot.domain.ParkingLot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a cluster of three nodes in one JVM, on localhost ports, each with a database of its own.
+ */
+public class ClusterTest {
+
+  private static final List<String> NODE_IDS = List.of("a", "b", "c");
+
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  private final Map<String, ConfigurableApplicationContext> nodes = new LinkedHashMap<>();
+
+  private final Map<String, URI> uris = new LinkedHashMap<>();
+
+  @AfterEach
+  void tearDown() {
+    nodes.values().forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Test
+  void everyNodeShouldServeTheLotFromItsOwnerAndTheBackupShouldTakeOver() throws Exception {
+    start();
+    int spots = Integer.parseInt(get("a", "/parking-lot/remaining-spots").body());
+
+    assertEquals(200, park("a", "Car1").statusCode());
+    assertEquals(200, park("b", "Car2").statusCode());
+    assertEquals(200, park("c", "Car3").statusCode());
+    assertEquals(409, park("c", "Car1").statusCode());
+    for (String nodeId : NODE_IDS) {
+      assertEquals(Integer.toString(spots - 3), get(nodeId, "/parking-lot/remaining-spots").body());
+    }
+    assertTrue(get("b", "/cluster/remaining-spots").body().contains("\"total\":" + (spots - 3)));
+
+    long now = System.nanoTime();
+    ClusterMembership membership = nodes.get("a").getBean(ClusterMembership.class);
+    String owner = membership.getOwner(ParkingLot.DEFAULT_ID, now);
+    String backup = membership.getBackup(ParkingLot.DEFAULT_ID, now);
+    ParkingLotShards backupShards = nodes.get(backup).getBean(ParkingLotShards.class);
+    await(() -> backupShards.get(ParkingLot.DEFAULT_ID).isParked("Car3"));
+    assertTrue(backupShards.isReplica(ParkingLot.DEFAULT_ID));
+    assertFalse(backupShards.isParked("Car3"));
+    nodes.remove(owner).close();
+
+    String survivor = NODE_IDS.stream().filter(nodes::containsKey).filter(id -> !id.equals(backup)).findFirst().orElseThrow();
+    await(() -> get(survivor, "/parking-lot/vehicles/Car1").statusCode() == 200);
+    assertEquals(200, post(survivor, "/parking-lot/leave/Car2").statusCode());
+    assertEquals(Integer.toString(spots - 2), get(backup, "/parking-lot/remaining-spots").body());
+    await(() -> !backupShards.isReplica(ParkingLot.DEFAULT_ID));
+    assertTrue(backupShards.isParked("Car1"));
+    assertFalse(backupShards.isParked("Car2"));
+  }
+
+  private void start() throws IOException, InterruptedException {
+    for (String nodeId : NODE_IDS) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        uris.put(nodeId, URI.create("http://localhost:" + socket.getLocalPort()));
+      }
+    }
+    List<String> list = new ArrayList<>();
+    uris.forEach((nodeId, uri) -> list.add(nodeId + "=" + uri));
+    for (String nodeId : NODE_IDS) {
+      nodes.put(nodeId, new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+          .properties(
+              "server.port=" + uris.get(nodeId).getPort(),
+              "spring.datasource.url=jdbc:h2:mem:cluster-" + nodeId,
+              "parking-lot.persistence=memory",
+              "parking-lot.cluster.enabled=true",
+              "parking-lot.cluster.node-id=" + nodeId,
+              "parking-lot.cluster.nodes=" + String.join(",", list),
+              "parking-lot.cluster.heartbeat-ms=100",
+              "parking-lot.cluster.failure-timeout-ms=500",
+              "parking-lot.cluster.replication-ms=100",
+              "logging.level.root=WARN")
+          .run());
+    }
+    for (String nodeId : NODE_IDS) {
+      ClusterMembership membership = nodes.get(nodeId).getBean(ClusterMembership.class);
+      await(() -> membership.getLiveNodes(System.nanoTime()).size() == NODE_IDS.size());
+    }
+  }
+
+  private HttpResponse<String> park(String nodeId, String vehicleId) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(uris.get(nodeId).resolve("/parking-lot/park"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"id\": \"" + vehicleId + "\", \"type\": \"CAR\"}"))
+        .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private HttpResponse<String> post(String nodeId, String path) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(uris.get(nodeId).resolve(path))
+        .POST(HttpRequest.BodyPublishers.noBody())
+        .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private HttpResponse<String> get(String nodeId, String path) {
+    try {
+      return client.send(HttpRequest.newBuilder(uris.get(nodeId).resolve(path)).build(),
+          HttpResponse.BodyHandlers.ofString());
+    } catch (IOException | InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "timed out");
+      Thread.sleep(50);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.controllers.IdempotencyCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+public class IdempotencyCacheTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final IdempotencyCache cache = new IdempotencyCache(3, 10);
+
+  private final AtomicInteger runs = new AtomicInteger();
+
+  @Test
+  void retryShouldReplayResultWithoutRunningAgain() {
+    assertEquals(1, (int) cache.execute("key", "park Car1", runs::incrementAndGet, 0));
+    assertEquals(1, (int) cache.execute("key", "park Car1", runs::incrementAndGet, SECOND));
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  void retryShouldReplayFailure() {
+    ResponseStatusException first = assertThrows(ResponseStatusException.class, () -> cache.execute("key", "park Car1", () -> {
+      runs.incrementAndGet();
+      throw new ResponseStatusException(CONFLICT, "Car1 is already parked");
+    }, 0));
+    ResponseStatusException retry = assertThrows(ResponseStatusException.class,
+        () -> cache.execute("key", "park Car1", runs::incrementAndGet, SECOND));
+
+    assertEquals(first.getStatusCode(), retry.getStatusCode());
+    assertEquals(first.getReason(), retry.getReason());
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  void keysShouldBeKnownUntilTheyExpire() {
+    cache.execute("key", "park Car1", runs::incrementAndGet, 0);
+
+    assertTrue(cache.isKnown("key", SECOND));
+    assertFalse(cache.isKnown("other", SECOND));
+    assertFalse(cache.isKnown("key", 10 * SECOND));
+  }
+
+  @Test
+  void unexpectedFailureShouldNotBeKept() {
+    assertThrows(IllegalStateException.class, () -> cache.execute("key", "park Car1", () -> {
+      throw new IllegalStateException();
+    }, 0));
+
+    assertEquals(1, (int) cache.execute("key", "park Car1", runs::incrementAndGet, SECOND));
+  }
+
+  @Test
+  void keyReusedForAnotherRequestShouldBeRefused() {
+    cache.execute("key", "park Car1", runs::incrementAndGet, 0);
+
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> cache.execute("key", "leave Car1", runs::incrementAndGet, SECOND));
+    assertEquals(UNPROCESSABLE_ENTITY, e.getStatusCode());
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  void keysShouldExpire() {
+    cache.execute("key", "park Car1", runs::incrementAndGet, 0);
+    cache.execute("other", "park Car2", runs::incrementAndGet, 5 * SECOND);
+
+    assertEquals(3, (int) cache.execute("key", "park Car1", runs::incrementAndGet, 10 * SECOND));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void oldestKeysShouldBeEvictedBeyondMaxEntries() {
+    for (int i = 0; i < 5; i++) {
+      cache.execute("key" + i, "park Car" + i, runs::incrementAndGet, i);
+    }
+
+    assertEquals(3, cache.size());
+    assertEquals(6, (int) cache.execute("key0", "park Car0", runs::incrementAndGet, 5));
+    assertEquals(5, (int) cache.execute("key4", "park Car4", runs::incrementAndGet, 6));
+  }
+
+  @Test
+  void settingsThatCannotKeepAKeyShouldBeRefused() {
+    assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(0, 10));
+    assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(-1, 10));
+    assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(3, 0));
+  }
+}
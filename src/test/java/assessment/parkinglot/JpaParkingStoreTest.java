@@ -0,0 +1,98 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.persistence.JpaParkingStore;
+import assessment.parkinglot.repositories.ParkingBatchRepository;
+import assessment.parkinglot.repositories.ParkingSpotRepository;
+import assessment.parkinglot.repositories.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+public class JpaParkingStoreTest {
+
+  private static final long LOT_ID = 1;
+
+  @Mock
+  private ParkingSpotRepository parkingSpotRepository;
+
+  @Mock
+  private VehicleRepository vehicleRepository;
+
+  @Mock
+  private ParkingBatchRepository parkingBatchRepository;
+
+  @InjectMocks
+  private JpaParkingStore jpaParkingStore;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void parkShouldSaveVehicleAndClaimSpots() {
+    Vehicle vehicle = new Vehicle("Van1", VehicleType.VAN);
+    when(vehicleRepository.save(vehicle))
+        .thenReturn(vehicle);
+    when(parkingSpotRepository.claimFreeSpots(vehicle, List.of(1L, 2L, 3L)))
+        .thenReturn(3);
+
+    jpaParkingStore.park(LOT_ID, vehicle, new long[] { 1, 2, 3 });
+
+    verify(vehicleRepository).save(vehicle);
+    verify(parkingSpotRepository).claimFreeSpots(vehicle, List.of(1L, 2L, 3L));
+  }
+
+  @Test
+  void parkShouldFailWhenSpotsWereTakenInTheDatabase() {
+    Vehicle vehicle = new Vehicle("Motorcycle1", VehicleType.MOTORCYCLE);
+    when(vehicleRepository.save(vehicle))
+        .thenReturn(vehicle);
+    when(parkingSpotRepository.claimFreeSpots(vehicle, List.of(1L)))
+        .thenReturn(0);
+
+    assertThrows(IllegalStateException.class, () -> jpaParkingStore.park(LOT_ID, vehicle, new long[] { 1 }));
+  }
+
+  @Test
+  void leaveShouldReleaseSpotsAndDeleteVehicle() {
+    when(parkingSpotRepository.releaseSpots("Car1"))
+        .thenReturn(1);
+
+    jpaParkingStore.leave(LOT_ID, "Car1", new long[] { 1 });
+
+    verify(parkingSpotRepository).releaseSpots("Car1");
+    verify(vehicleRepository).deleteAllByIdInBatch(List.of("Car1"));
+  }
+
+  @Test
+  void leaveShouldFailWhenTheDatabaseDisagrees() {
+    when(parkingSpotRepository.releaseSpots("Van1"))
+        .thenReturn(1);
+
+    assertThrows(IllegalStateException.class, () -> jpaParkingStore.leave(LOT_ID, "Van1", new long[] { 1, 2, 3 }));
+    verify(vehicleRepository, never()).deleteAllByIdInBatch(any());
+  }
+
+  @Test
+  void batchesShouldGoToTheBatchRepository() {
+    List<Vehicle> vehicles = List.of(new Vehicle("Car1", VehicleType.CAR));
+    List<long[]> spotIds = List.of(new long[] { 4 });
+
+    jpaParkingStore.parkAll(LOT_ID, vehicles, spotIds);
+    jpaParkingStore.leaveAll(LOT_ID, List.of("Car1"), spotIds);
+
+    verify(parkingBatchRepository).park(vehicles, spotIds);
+    verify(parkingBatchRepository).leave(List.of("Car1"), spotIds);
+    verifyNoInteractions(parkingSpotRepository, vehicleRepository);
+  }
+}
@@ -0,0 +1,132 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.history.Interval;
+import assessment.parkinglot.history.OccupancyHistory;
+import assessment.parkinglot.response.OccupancyStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class OccupancyHistoryTest {
+
+  private static final long LOT_ID = 1;
+
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+  private final OccupancyHistory history = new OccupancyHistory(1024, 1_000_000, 48, 400);
+
+  @Test
+  void statsShouldRollUpParksLeavesAndPeaksPerHour() {
+    history.recordPark(10 * MINUTE, LOT_ID, "Car1", VehicleType.CAR, ParkingSpotType.COMPACT, new long[] { 6 }, 1);
+    history.recordPark(20 * MINUTE, LOT_ID, "Car2", VehicleType.CAR, ParkingSpotType.COMPACT, new long[] { 7 }, 2);
+    history.recordLeave(30 * MINUTE, LOT_ID, "Car1", ParkingSpotType.COMPACT, new long[] { 6 }, 1);
+    history.recordLeave(HOUR + 20 * MINUTE, LOT_ID, "Car2", ParkingSpotType.COMPACT, new long[] { 7 }, 0);
+    history.drain();
+
+    OccupancyStats stats = history.query(LOT_ID, 0, 2 * HOUR, Interval.HOUR);
+
+    assertEquals(2, stats.getSeries().size());
+    assertEquals(2, stats.getSeries().get(0).getParks().get(ParkingSpotType.COMPACT));
+    assertEquals(2, stats.getSeries().get(0).getPeakOccupied().get(ParkingSpotType.COMPACT));
+    assertEquals(1, stats.getSeries().get(1).getLeaves().get(ParkingSpotType.COMPACT));
+    assertEquals(1, stats.getSeries().get(1).getPeakOccupied().get(ParkingSpotType.COMPACT));
+    assertEquals(2, stats.getLeaves().get(ParkingSpotType.COMPACT));
+    assertEquals(2, stats.getStays().get(VehicleType.CAR));
+    assertEquals(TimeUnit.MINUTES.toSeconds(40), stats.getAverageDwellSeconds().get(VehicleType.CAR));
+    assertNull(stats.getAverageDwellSeconds().get(VehicleType.VAN));
+  }
+
+  @Test
+  void quietIntervalsShouldCarryOccupancyOver() {
+    history.recordPark(5 * MINUTE, LOT_ID, "Van1", VehicleType.VAN, ParkingSpotType.REGULAR, new long[] { 1, 2, 3 }, 3);
+    history.drain();
+
+    OccupancyStats stats = history.query(LOT_ID, 2 * HOUR, 4 * HOUR, Interval.HOUR);
+
+    assertEquals(Instant.ofEpochMilli(2 * HOUR), stats.getSeries().get(0).getStart());
+    assertEquals(3, stats.getSeries().get(1).getPeakOccupied().get(ParkingSpotType.REGULAR));
+    assertEquals(0, stats.getParks().get(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void statsShouldWidenRangeToWholeIntervals() {
+    history.recordPark(90 * 1000, LOT_ID, "Motorcycle1", VehicleType.MOTORCYCLE, ParkingSpotType.MOTORCYCLE,
+        new long[] { 1 }, 1);
+    history.drain();
+
+    OccupancyStats stats = history.query(LOT_ID, 61 * 1000, 119 * 1000, Interval.MINUTE);
+
+    assertEquals(Instant.ofEpochMilli(MINUTE), stats.getFrom());
+    assertEquals(Instant.ofEpochMilli(2 * MINUTE), stats.getTo());
+    assertEquals(1, stats.getParks().get(ParkingSpotType.MOTORCYCLE));
+  }
+
+  @Test
+  void leavesOfStaysStartedBeforeRecordingShouldHaveNoDwellTime() {
+    history.recordLeave(MINUTE, LOT_ID, "Van1", ParkingSpotType.REGULAR, new long[] { 1, 2, 3 }, 0);
+    history.drain();
+
+    OccupancyStats stats = history.query(LOT_ID, 0, HOUR, Interval.HOUR);
+
+    assertEquals(1, stats.getLeaves().get(ParkingSpotType.REGULAR));
+    assertEquals(0, stats.getStays().get(VehicleType.VAN));
+  }
+
+  @Test
+  void staysOlderThanTheHourRetentionShouldBeForgotten() {
+    OccupancyHistory daily = new OccupancyHistory(1024, 1_000_000, 48, 1);
+
+    daily.recordPark(MINUTE, LOT_ID, "Car1", VehicleType.CAR, ParkingSpotType.COMPACT, new long[] { 6 }, 1);
+    daily.recordPark(25 * HOUR, LOT_ID, "Car2", VehicleType.CAR, ParkingSpotType.COMPACT, new long[] { 7 }, 2);
+    daily.recordLeave(26 * HOUR, LOT_ID, "Car1", ParkingSpotType.COMPACT, new long[] { 6 }, 1);
+    daily.recordLeave(26 * HOUR, LOT_ID, "Car2", ParkingSpotType.COMPACT, new long[] { 7 }, 0);
+    daily.drain();
+
+    OccupancyStats stats = daily.query(LOT_ID, 26 * HOUR, 27 * HOUR, Interval.HOUR);
+
+    assertEquals(2, stats.getLeaves().get(ParkingSpotType.COMPACT));
+    assertEquals(1, stats.getStays().get(VehicleType.CAR));
+    assertEquals(3600.0, stats.getAverageDwellSeconds().get(VehicleType.CAR));
+  }
+
+  @Test
+  void scanShouldReturnRawEventsOfTheLot() {
+    history.recordPark(MINUTE, LOT_ID, "Van1", VehicleType.VAN, ParkingSpotType.REGULAR, new long[] { 1, 2, 3 }, 3);
+    history.recordPark(MINUTE, 2, "Car1", VehicleType.CAR, ParkingSpotType.COMPACT, new long[] { 40 }, 1);
+    history.recordLeave(2 * MINUTE, LOT_ID, "Van1", ParkingSpotType.REGULAR, new long[] { 1, 2, 3 }, 0);
+    history.drain();
+
+    List<String> scanned = new ArrayList<>();
+    List<long[]> spotIds = new ArrayList<>();
+    history.scan(LOT_ID, 0, HOUR, (time, park, vehicleId, vehicleType, spotType, spots) -> {
+      scanned.add((park ? "park " : "leave ") + vehicleId + " " + vehicleType);
+      spotIds.add(spots);
+    });
+
+    assertEquals(List.of("park Van1 VAN", "leave Van1 VAN"), scanned);
+    assertArrayEquals(new long[] { 1, 2, 3 }, spotIds.get(1));
+  }
+
+  @Test
+  void fullQueueShouldDropEventsInsteadOfBlocking() {
+    OccupancyHistory small = new OccupancyHistory(1, 1_000_000, 48, 400);
+
+    small.recordPark(MINUTE, LOT_ID, "Car1", VehicleType.CAR, ParkingSpotType.COMPACT, new long[] { 6 }, 1);
+    small.recordPark(MINUTE, LOT_ID, "Car2", VehicleType.CAR, ParkingSpotType.COMPACT, new long[] { 7 }, 2);
+    small.drain();
+
+    assertEquals(1, small.getDropped());
+    assertEquals(1, small.query(LOT_ID, 0, HOUR, Interval.HOUR).getParks().get(ParkingSpotType.COMPACT));
+  }
+}
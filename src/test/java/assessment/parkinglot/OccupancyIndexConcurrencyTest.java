@@ -0,0 +1,220 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.NearestToEntranceStrategy;
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OccupancyIndexConcurrencyTest {
+
+  private static final int SPOTS = 3_000;
+
+  private static final int ROW = 10;
+
+  private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final int ITERATIONS = 20_000;
+
+  private OccupancyIndex occupancyIndex;
+
+  @BeforeEach
+  void setUp() {
+    List<ParkingSpot> spots = new ArrayList<>();
+    for (long id = 1; id <= SPOTS; id++) {
+      spots.add(new ParkingSpot(id, ParkingSpotType.values()[(int) ((id - 1) / ROW % 3)], null));
+    }
+    occupancyIndex = new OccupancyIndex();
+    occupancyIndex.rebuild(spots);
+  }
+
+  @Test
+  void concurrentClaimsShouldNeverHandOutTheSameSpotTwice() throws Exception {
+    AtomicIntegerArray holders = new AtomicIntegerArray(SPOTS + 1);
+    AtomicInteger doubleAllocations = new AtomicInteger();
+
+    runConcurrently(() -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      List<long[]> held = new ArrayList<>();
+      for (int i = 0; i < ITERATIONS; i++) {
+        if (held.isEmpty() || random.nextBoolean()) {
+          long[] spotIds = occupancyIndex.claim(VehicleType.values()[random.nextInt(3)]);
+          if (spotIds != null) {
+            for (long spotId : spotIds) {
+              if (!holders.compareAndSet((int) spotId, 0, 1)) {
+                doubleAllocations.incrementAndGet();
+              }
+            }
+            held.add(spotIds);
+          }
+        } else {
+          long[] spotIds = held.remove(random.nextInt(held.size()));
+          for (long spotId : spotIds) {
+            holders.set((int) spotId, 0);
+          }
+          occupancyIndex.release(spotIds);
+        }
+      }
+      held.forEach(spotIds -> {
+        for (long spotId : spotIds) {
+          holders.set((int) spotId, 0);
+        }
+        occupancyIndex.release(spotIds);
+      });
+    });
+
+    assertEquals(0, doubleAllocations.get());
+    assertEquals(SPOTS, occupancyIndex.getRemainingSpots());
+  }
+
+  @Test
+  void concurrentParksOfTheSameVehicleShouldAssignItOnce() throws Exception {
+    AtomicInteger assigned = new AtomicInteger();
+
+    runConcurrently(() -> {
+      long[] spotIds = occupancyIndex.claim(VehicleType.VAN);
+      if (occupancyIndex.assign("Van1", spotIds)) {
+        assigned.incrementAndGet();
+      } else {
+        occupancyIndex.release(spotIds);
+      }
+    });
+
+    assertEquals(1, assigned.get());
+    assertEquals(SPOTS - VehicleType.VAN.takeUpSpots(), occupancyIndex.getRemainingSpots());
+  }
+
+  @Test
+  void concurrentClaimsShouldStopExactlyWhenTheLotIsFull() throws Exception {
+    AtomicInteger claimed = new AtomicInteger();
+
+    runConcurrently(() -> {
+      while (occupancyIndex.claim(VehicleType.MOTORCYCLE) != null) {
+        claimed.incrementAndGet();
+      }
+    });
+
+    assertEquals(SPOTS / 3, claimed.get());
+    assertEquals(0, occupancyIndex.countFree(ParkingSpotType.MOTORCYCLE));
+  }
+
+  @Test
+  void claimsShouldCarryOnWhileSpotsAreAddedAndRetired() throws Exception {
+    int added = 20 * ROW * 100;
+    AtomicIntegerArray holders = new AtomicIntegerArray(SPOTS + added + 1);
+    AtomicInteger doubleAllocations = new AtomicInteger();
+    AtomicInteger threads = new AtomicInteger();
+    List<Long> retired = new ArrayList<>();
+
+    runConcurrently(() -> {
+      if (threads.getAndIncrement() == 0) {
+        for (long from = SPOTS + 1; from <= SPOTS + added; from += added / 20) {
+          long[] spotIds = new long[added / 20];
+          for (int i = 0; i < spotIds.length; i++) {
+            spotIds[i] = from + i;
+          }
+          occupancyIndex.addSpots(ParkingSpotType.MOTORCYCLE, spotIds);
+          long spotId = 1 + retired.size() * 3L * ROW;
+          occupancyIndex.retireSpots(new long[] { spotId });
+          retired.add(spotId);
+        }
+        return;
+      }
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      List<long[]> held = new ArrayList<>();
+      for (int i = 0; i < ITERATIONS; i++) {
+        if (held.isEmpty() || random.nextBoolean()) {
+          long[] spotIds = occupancyIndex.claim(VehicleType.values()[random.nextInt(3)]);
+          if (spotIds != null) {
+            for (long spotId : spotIds) {
+              if (!holders.compareAndSet((int) spotId, 0, 1)) {
+                doubleAllocations.incrementAndGet();
+              }
+            }
+            held.add(spotIds);
+          }
+        } else {
+          long[] spotIds = held.remove(random.nextInt(held.size()));
+          for (long spotId : spotIds) {
+            holders.set((int) spotId, 0);
+          }
+          occupancyIndex.release(spotIds);
+        }
+      }
+      held.forEach(spotIds -> {
+        for (long spotId : spotIds) {
+          holders.set((int) spotId, 0);
+        }
+        occupancyIndex.release(spotIds);
+      });
+    });
+
+    assertEquals(0, doubleAllocations.get());
+    assertEquals(SPOTS + added - retired.size(), occupancyIndex.getRemainingSpots());
+    for (long spotId : retired) {
+      assertEquals(null, occupancyIndex.getSpotType(spotId));
+    }
+  }
+
+  @Test
+  void nearestToEntranceShouldNeverRefuseAFreeSpotAfterParksAndLeaves() throws Exception {
+    OccupancyIndex nearest = new OccupancyIndex(null, new NearestToEntranceStrategy());
+    List<ParkingSpot> spots = new ArrayList<>();
+    for (long id = 1; id <= THREADS; id++) {
+      spots.add(new ParkingSpot(id, ParkingSpotType.MOTORCYCLE, null));
+    }
+    nearest.rebuild(spots);
+
+    // As many spots as threads, so the lot keeps filling up and the free spots keep moving.
+    runConcurrently(() -> {
+      for (int i = 0; i < ITERATIONS * 5; i++) {
+        long[] spotIds = nearest.claim(VehicleType.MOTORCYCLE);
+        if (spotIds != null) {
+          nearest.release(spotIds);
+        }
+      }
+    });
+
+    assertEquals(THREADS, nearest.getRemainingSpots());
+    for (long expected = 1; expected <= THREADS; expected++) {
+      assertArrayEquals(new long[] { expected }, nearest.claim(VehicleType.MOTORCYCLE));
+    }
+  }
+
+  private static void runConcurrently(Runnable task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          task.run();
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
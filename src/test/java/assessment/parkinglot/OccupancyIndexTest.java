@@ -0,0 +1,262 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.domain.ParkingSpot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OccupancyIndexTest {
+
+  private static final Vehicle PARKED = new Vehicle("Car1", VehicleType.CAR);
+
+  private OccupancyIndex occupancyIndex;
+
+  @BeforeEach
+  void setUp() {
+    occupancyIndex = new OccupancyIndex();
+  }
+
+  @Test
+  void claimShouldGiveVanAdjacentSpots() {
+    occupancyIndex.rebuild(regularSpots(1, 10, 2, 5, 9));
+
+    assertArrayEquals(new long[] { 6, 7, 8 }, occupancyIndex.claim(VehicleType.VAN));
+  }
+
+  @Test
+  void claimShouldRejectVanWhenFreeSpotsAreScattered() {
+    occupancyIndex.rebuild(regularSpots(1, 9, 3, 6, 9));
+
+    assertEquals(6, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+    assertEquals(false, occupancyIndex.hasCapacity(VehicleType.VAN));
+    assertNull(occupancyIndex.claim(VehicleType.VAN));
+    assertEquals(6, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void releaseShouldMergeFreeRuns() {
+    occupancyIndex.rebuild(regularSpots(1, 5, 3));
+
+    occupancyIndex.release(3);
+
+    assertEquals(true, occupancyIndex.hasCapacity(VehicleType.VAN));
+    assertArrayEquals(new long[] { 1, 2, 3 }, occupancyIndex.claim(VehicleType.VAN));
+  }
+
+  @Test
+  void claimShouldFindRunsSpanningSeveralWords() {
+    occupancyIndex.rebuild(regularSpots(58, 70, 58, 59, 60, 61, 65, 66, 67, 68, 69, 70));
+
+    assertArrayEquals(new long[] { 62, 63, 64 }, occupancyIndex.claim(VehicleType.VAN));
+    assertEquals(0, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void claimShouldNotMixSpotTypesForVan() {
+    List<ParkingSpot> spots = new ArrayList<>(regularSpots(1, 2));
+    spots.add(new ParkingSpot(3L, ParkingSpotType.COMPACT, null));
+    spots.addAll(regularSpots(4, 4));
+    occupancyIndex.rebuild(spots);
+
+    assertNull(occupancyIndex.claim(VehicleType.VAN));
+  }
+
+  @Test
+  void claimShouldReturnSpotIdsOfLotsNotStartingAtOne() {
+    occupancyIndex.rebuild(regularSpots(1_000_000, 1_000_004, 1_000_000, 1_000_004));
+
+    assertArrayEquals(new long[] { 1_000_001, 1_000_002, 1_000_003 }, occupancyIndex.claim(VehicleType.VAN));
+    occupancyIndex.release(1_000_002);
+    assertEquals(1, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void rebuildFromSpotIdsShouldMatchRebuildFromSpots() {
+    List<ParkingSpot> spots = new ArrayList<>(regularSpots(1, 5, 2));
+    spots.add(new ParkingSpot(70L, ParkingSpotType.COMPACT, null));
+    occupancyIndex.rebuild(spots);
+    OccupancyIndex copy = new OccupancyIndex();
+
+    copy.rebuild(occupancyIndex.getSpotIds(), occupancyIndex.getParkedVehicles());
+
+    assertArrayEquals(new long[] { 1, 2, 3, 4, 5 }, copy.getSpotIds()[ParkingSpotType.REGULAR.ordinal()]);
+    assertArrayEquals(new long[] { 70 }, copy.getSpotIds()[ParkingSpotType.COMPACT.ordinal()]);
+    assertArrayEquals(new long[] { 2 }, copy.getSpotIds("Car1"));
+    assertEquals(4, copy.countFree(ParkingSpotType.REGULAR));
+    assertArrayEquals(new long[] { 3, 4, 5 }, copy.claim(VehicleType.VAN));
+  }
+
+  @Test
+  void reconcileShouldCorrectWhatTheRebuildGotWrong() {
+    Map<String, long[]> rebuiltFrom = occupancyIndex.rebuild(regularSpots(1, 5, 1));
+    List<ParkingSpot> stored = new ArrayList<>(regularSpots(1, 5));
+    stored.set(3, new ParkingSpot(4L, ParkingSpotType.REGULAR, new Vehicle("Car2", VehicleType.CAR)));
+
+    assertEquals(true, occupancyIndex.reconcile(stored, rebuiltFrom));
+
+    assertEquals(false, occupancyIndex.isParked("Car1"));
+    assertArrayEquals(new long[] { 4 }, occupancyIndex.getSpotIds("Car2"));
+    assertEquals(4, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void reconcileShouldKeepChangesMadeSinceTheRebuild() {
+    Map<String, long[]> rebuiltFrom = occupancyIndex.rebuild(regularSpots(1, 5, 1));
+    List<ParkingSpot> stored = regularSpots(1, 5, 1);
+    long[] spotIds = occupancyIndex.claim(VehicleType.CAR);
+    occupancyIndex.assign("Car2", spotIds);
+    occupancyIndex.unassign("Car1", occupancyIndex.getSpotIds("Car1"));
+    occupancyIndex.release(1);
+
+    assertEquals(true, occupancyIndex.reconcile(stored, rebuiltFrom));
+
+    assertArrayEquals(spotIds, occupancyIndex.getSpotIds("Car2"));
+    assertEquals(false, occupancyIndex.isParked("Car1"));
+    assertEquals(4, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void reconcileShouldRefuseWhenSpotsDiffer() {
+    Map<String, long[]> rebuiltFrom = occupancyIndex.rebuild(regularSpots(1, 5, 1));
+
+    assertEquals(false, occupancyIndex.reconcile(regularSpots(1, 6), rebuiltFrom));
+    assertArrayEquals(new long[] { 1 }, occupancyIndex.getSpotIds("Car1"));
+  }
+
+  @Test
+  void claimIntoABufferShouldRoundTripThroughVacate() {
+    occupancyIndex.rebuild(regularSpots(1, 4));
+    long[] spotIds = new long[3];
+    long[] vacated = { 0, 0, 0, 9 };
+
+    assertEquals(true, occupancyIndex.claim(VehicleType.VAN, spotIds));
+    assertEquals(true, occupancyIndex.assign("Van1", spotIds));
+    assertEquals(false, occupancyIndex.canFit(VehicleType.VAN));
+    assertEquals(3, occupancyIndex.vacate("Van1", vacated));
+    occupancyIndex.release(vacated, 3);
+
+    assertArrayEquals(new long[] { 1, 2, 3 }, spotIds);
+    assertEquals(0, occupancyIndex.vacate("Van1", vacated));
+    assertEquals(4, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+    assertEquals(true, occupancyIndex.canFit(VehicleType.VAN));
+  }
+
+  @Test
+  void addSpotsShouldMakeThemFreeAtOnce() {
+    occupancyIndex.rebuild(regularSpots(1, 5, 1));
+
+    occupancyIndex.addSpots(ParkingSpotType.COMPACT, new long[] { 7, 6 });
+
+    assertEquals(2, occupancyIndex.countSpots(ParkingSpotType.COMPACT));
+    assertEquals(2, occupancyIndex.countFree(ParkingSpotType.COMPACT));
+    assertEquals(ParkingSpotType.COMPACT, occupancyIndex.getSpotType(6));
+    assertArrayEquals(new long[] { 6 }, occupancyIndex.claim(VehicleType.CAR));
+  }
+
+  @Test
+  void addSpotsShouldGrowTheLotBeyondItsIdRange() {
+    occupancyIndex.rebuild(regularSpots(100, 105, 100));
+    long[] added = { 3, 4, 5, 1_000, 1_001, 1_002 };
+
+    occupancyIndex.addSpots(ParkingSpotType.REGULAR, added);
+
+    assertEquals(12, occupancyIndex.countSpots(ParkingSpotType.REGULAR));
+    assertEquals(11, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+    assertArrayEquals(new long[] { 100 }, occupancyIndex.getSpotIds("Car1"));
+    assertArrayEquals(new long[] { 3, 4, 5 }, occupancyIndex.claim(VehicleType.VAN));
+    assertArrayEquals(new long[] { 101, 102, 103 }, occupancyIndex.claim(VehicleType.VAN));
+    assertArrayEquals(new long[] { 1_000, 1_001, 1_002 }, occupancyIndex.claim(VehicleType.VAN));
+  }
+
+  @Test
+  void addSpotsShouldRefuseSpotsInTheLotAlready() {
+    occupancyIndex.rebuild(regularSpots(1, 5));
+
+    assertThrows(IllegalArgumentException.class,
+        () -> occupancyIndex.addSpots(ParkingSpotType.COMPACT, new long[] { 6, 5 }));
+    assertEquals(0, occupancyIndex.countSpots(ParkingSpotType.COMPACT));
+  }
+
+  @Test
+  void retireSpotsShouldTakeFreeSpotsOutAtOnce() {
+    occupancyIndex.rebuild(regularSpots(1, 5));
+
+    assertArrayEquals(new long[0], occupancyIndex.retireSpots(new long[] { 2 }));
+
+    assertNull(occupancyIndex.getSpotType(2));
+    assertEquals(4, occupancyIndex.countSpots(ParkingSpotType.REGULAR));
+    assertEquals(4, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+    assertArrayEquals(new long[] { 3, 4, 5 }, occupancyIndex.claim(VehicleType.VAN));
+  }
+
+  @Test
+  void retireSpotsShouldWaitForOccupiedSpotsToBeReleased() {
+    occupancyIndex.rebuild(regularSpots(1, 5, 3));
+
+    assertArrayEquals(new long[] { 3 }, occupancyIndex.retireSpots(new long[] { 3 }));
+    assertEquals(ParkingSpotType.REGULAR, occupancyIndex.getSpotType(3));
+    occupancyIndex.unassign("Car1", new long[] { 3 });
+    occupancyIndex.release(3);
+
+    assertNull(occupancyIndex.getSpotType(3));
+    assertEquals(4, occupancyIndex.countSpots(ParkingSpotType.REGULAR));
+    assertEquals(4, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+    assertEquals(false, occupancyIndex.hasCapacity(VehicleType.VAN));
+  }
+
+  @Test
+  void retypeSpotsShouldMoveSpotsToTheirNewType() {
+    occupancyIndex.rebuild(regularSpots(1, 5, 5));
+
+    assertArrayEquals(new long[] { 5 }, occupancyIndex.retypeSpots(new long[] { 1, 5 }, ParkingSpotType.COMPACT));
+    assertEquals(ParkingSpotType.COMPACT, occupancyIndex.getSpotType(1));
+    assertEquals(1, occupancyIndex.countFree(ParkingSpotType.COMPACT));
+    occupancyIndex.unassign("Car1", new long[] { 5 });
+    occupancyIndex.release(5);
+
+    assertEquals(ParkingSpotType.COMPACT, occupancyIndex.getSpotType(5));
+    assertEquals(2, occupancyIndex.countSpots(ParkingSpotType.COMPACT));
+    assertEquals(2, occupancyIndex.countFree(ParkingSpotType.COMPACT));
+    assertEquals(3, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+  }
+
+  @Test
+  void rebuildShouldLeaveRetiredSpotsOutOnceFree() {
+    List<ParkingSpot> spots = new ArrayList<>(regularSpots(1, 3));
+    spots.add(new ParkingSpot(4L, null, ParkingSpotType.REGULAR, null, true));
+    spots.add(new ParkingSpot(5L, null, ParkingSpotType.REGULAR, PARKED, true));
+
+    occupancyIndex.rebuild(spots);
+
+    assertNull(occupancyIndex.getSpotType(4));
+    assertEquals(4, occupancyIndex.countSpots(ParkingSpotType.REGULAR));
+    occupancyIndex.unassign("Car1", new long[] { 5 });
+    occupancyIndex.release(5);
+    assertNull(occupancyIndex.getSpotType(5));
+    assertEquals(3, occupancyIndex.countFree(ParkingSpotType.REGULAR));
+  }
+
+  private static List<ParkingSpot> regularSpots(long from, long to, long... occupied) {
+    List<ParkingSpot> spots = new ArrayList<>();
+    for (long id = from; id <= to; id++) {
+      boolean taken = false;
+      for (long occupiedId : occupied) {
+        taken |= occupiedId == id;
+      }
+      spots.add(new ParkingSpot(id, ParkingSpotType.REGULAR, taken ? PARKED : null));
+    }
+    return spots;
+  }
+}
@@ -0,0 +1,70 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.factories.ParkingSpotGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest
+@DirtiesContext
+@Tag("benchmark")
+public class OccupancyQueryBenchmarkTest {
+
+  private static final int ITERATIONS = 200;
+
+  private static final String[] QUERIES = {
+      "SELECT COUNT(*) FROM parking_spot WHERE vehicle_id IS NULL",
+      "SELECT COUNT(*) FROM parking_spot WHERE type = 'REGULAR' AND vehicle_id IS NULL",
+      "SELECT COUNT(*) FROM (SELECT id FROM parking_spot WHERE type = 'REGULAR' AND vehicle_id IS NULL ORDER BY id LIMIT 3)",
+      "SELECT COUNT(*) FROM parking_spot WHERE vehicle_id = 'V999'" };
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private ParkingSpotGenerator parkingSpotGenerator;
+
+  @ParameterizedTest
+  @ValueSource(ints = { 100_000, 1_000_000 })
+  void queryLatencyWithoutAndWithIndexes(int spots) {
+    jdbcTemplate.update("UPDATE parking_spot SET vehicle_id = NULL");
+    jdbcTemplate.update("DELETE FROM vehicle");
+    jdbcTemplate.update("DELETE FROM parking_spot");
+    parkingSpotGenerator.generate(spots);
+    jdbcTemplate.update("INSERT INTO vehicle (id, type) SELECT 'V' || id, 'CAR' FROM parking_spot WHERE MOD(id, 3) = 0");
+    jdbcTemplate.update("UPDATE parking_spot SET vehicle_id = 'V' || id WHERE MOD(id, 3) = 0");
+
+    jdbcTemplate.execute("DROP INDEX parking_spot_vehicle_idx");
+    jdbcTemplate.execute("DROP INDEX parking_spot_type_vehicle_idx");
+    long[] before = measure();
+    jdbcTemplate.execute("CREATE INDEX parking_spot_vehicle_idx ON parking_spot (vehicle_id)");
+    jdbcTemplate.execute("CREATE INDEX parking_spot_type_vehicle_idx ON parking_spot (type, vehicle_id, id)");
+    long[] after = measure();
+
+    for (int i = 0; i < QUERIES.length; i++) {
+      System.out.printf("%,d spots: %s%n  without indexes %,d us, with indexes %,d us%n",
+          spots, QUERIES[i], before[i], after[i]);
+    }
+  }
+
+  private long[] measure() {
+    long[] micros = new long[QUERIES.length];
+    for (int i = 0; i < QUERIES.length; i++) {
+      for (int warmup = 0; warmup < ITERATIONS / 10; warmup++) {
+        jdbcTemplate.queryForObject(QUERIES[i], Integer.class);
+      }
+      long start = System.nanoTime();
+      for (int n = 0; n < ITERATIONS; n++) {
+        jdbcTemplate.queryForObject(QUERIES[i], Integer.class);
+      }
+      micros[i] = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / ITERATIONS;
+    }
+    return micros;
+  }
+}
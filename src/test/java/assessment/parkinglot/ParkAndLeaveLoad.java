@@ -0,0 +1,150 @@
+package assessment.parkinglot;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP load for the benchmarks comparing how the service is served, with every connection
+ * parking and then removing its own car in a loop. The connections, warmup and measurement are
+ * set with the {@code loadTest.connections}, {@code loadTest.warmupSeconds} and
+ * {@code loadTest.seconds} properties.
+ */
+final class ParkAndLeaveLoad {
+
+  static final int CONNECTIONS = Integer.getInteger("loadTest.connections", 10_000);
+
+  static final Duration WARMUP = Duration.ofSeconds(Long.getLong("loadTest.warmupSeconds", 10));
+
+  static final Duration MEASUREMENT = Duration.ofSeconds(Long.getLong("loadTest.seconds", 30));
+
+  private final List<LatencyLog> logs = new ArrayList<>();
+
+  private final List<CompletableFuture<Void>> connections = new ArrayList<>();
+
+  private final AtomicInteger errors = new AtomicInteger();
+
+  private final Duration duration;
+
+  private final long start = System.nanoTime();
+
+  private ParkAndLeaveLoad(URI baseUri, Duration duration) {
+    this.duration = duration;
+    HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(30))
+        .build();
+    long deadline = start + duration.toNanos();
+    for (int i = 0; i < CONNECTIONS; i++) {
+      LatencyLog log = new LatencyLog();
+      logs.add(log);
+      connections.add(loop(client, baseUri, "Load" + i, deadline, log));
+    }
+  }
+
+  static URI baseUri(ConfigurableApplicationContext context) {
+    return URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+  }
+
+  /**
+   * Opens the connections, which keep going until the duration is over.
+   */
+  static ParkAndLeaveLoad start(URI baseUri, Duration duration) {
+    return new ParkAndLeaveLoad(baseUri, duration);
+  }
+
+  static Result run(URI baseUri, Duration duration) throws Exception {
+    return start(baseUri, duration).finish();
+  }
+
+  /**
+   * Waits for the connections to finish.
+   */
+  Result finish() throws Exception {
+    CompletableFuture.allOf(connections.toArray(CompletableFuture[]::new)).get(duration.toSeconds() + 60, TimeUnit.SECONDS);
+    long elapsed = System.nanoTime() - start;
+    return new Result(LatencyLog.merge(logs), elapsed, errors.get());
+  }
+
+  private CompletableFuture<Void> loop(HttpClient client, URI baseUri, String vehicleId, long deadline,
+      LatencyLog log) {
+    if (System.nanoTime() >= deadline) {
+      return CompletableFuture.completedFuture(null);
+    }
+    HttpRequest park = HttpRequest.newBuilder(baseUri.resolve("/parking-lot/park"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"id\": \"" + vehicleId + "\", \"type\": \"CAR\"}"))
+        .build();
+    HttpRequest leave = HttpRequest.newBuilder(baseUri.resolve("/parking-lot/leave/" + vehicleId))
+        .POST(HttpRequest.BodyPublishers.noBody())
+        .build();
+    return send(client, park, log)
+        .thenCompose(parked -> send(client, leave, log))
+        .thenCompose(left -> loop(client, baseUri, vehicleId, deadline, log));
+  }
+
+  private CompletableFuture<Void> send(HttpClient client, HttpRequest request, LatencyLog log) {
+    long start = System.nanoTime();
+    return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+        .handle((response, failure) -> {
+          log.add(System.nanoTime() - start);
+          if (failure != null || response.statusCode() != 200) {
+            errors.incrementAndGet();
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Latencies of a single connection, which only ever records one request at a time.
+   */
+  private static final class LatencyLog {
+
+    private long[] nanos = new long[64];
+
+    private int size;
+
+    void add(long latency) {
+      if (size == nanos.length) {
+        nanos = Arrays.copyOf(nanos, size * 2);
+      }
+      nanos[size++] = latency;
+    }
+
+    static long[] merge(List<LatencyLog> logs) {
+      long[] merged = new long[logs.stream().mapToInt(log -> log.size).sum()];
+      int offset = 0;
+      for (LatencyLog log : logs) {
+        System.arraycopy(log.nanos, 0, merged, offset, log.size);
+        offset += log.size;
+      }
+      Arrays.sort(merged);
+      return merged;
+    }
+  }
+
+  record Result(long[] sortedNanos, long elapsedNanos, int errors) {
+
+    double throughput() {
+      return sortedNanos.length * 1e9 / elapsedNanos;
+    }
+
+    double percentile(int percent) {
+      if (sortedNanos.length == 0) {
+        return Double.NaN;
+      }
+      int index = (int) Math.ceil(percent / 100.0 * sortedNanos.length) - 1;
+      return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+  }
+}
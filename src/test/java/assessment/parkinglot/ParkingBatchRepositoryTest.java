@@ -0,0 +1,54 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.metrics.StatementCounter;
+import assessment.parkinglot.repositories.ParkingBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+public class ParkingBatchRepositoryTest {
+
+  @Mock
+  private JdbcTemplate jdbcTemplate;
+
+  @Mock
+  private StatementCounter statementCounter;
+
+  @InjectMocks
+  private ParkingBatchRepository parkingBatchRepository;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void parkShouldFailWhenASpotWasTakenInTheDatabase() {
+    List<Vehicle> vehicles = List.of(new Vehicle("Car1", VehicleType.CAR), new Vehicle("Car2", VehicleType.CAR));
+    when(jdbcTemplate.batchUpdate(eq("UPDATE parking_spot SET vehicle_id = ? WHERE id = ? AND vehicle_id IS NULL"), anyList()))
+        .thenReturn(new int[] { 1, 0 });
+
+    assertThrows(IllegalStateException.class,
+        () -> parkingBatchRepository.park(vehicles, List.of(new long[] { 4 }, new long[] { 5 })));
+  }
+
+  @Test
+  void leaveShouldFailWhenTheVehicleDoesNotHoldASpot() {
+    when(jdbcTemplate.batchUpdate(eq("UPDATE parking_spot SET vehicle_id = NULL WHERE id = ? AND vehicle_id = ?"), anyList()))
+        .thenReturn(new int[] { 1, 0 });
+
+    assertThrows(IllegalStateException.class,
+        () -> parkingBatchRepository.leave(List.of("Car1", "Car2"), List.of(new long[] { 4 }, new long[] { 5 })));
+    verify(jdbcTemplate, never()).batchUpdate(eq("DELETE FROM vehicle WHERE id = ?"), anyList(), anyInt(), any());
+  }
+}
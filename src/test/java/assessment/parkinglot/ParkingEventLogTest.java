@@ -0,0 +1,217 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.persistence.ParkingEventLog;
+import assessment.parkinglot.persistence.ParkingEventLog.FsyncPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParkingEventLogTest {
+
+  private static final long LOT_ID = 1;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void reopeningShouldRecoverParksAndLeaves() throws Exception {
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      log.appendPark(LOT_ID, "Car1", VehicleType.CAR, new long[] { 1 });
+      log.appendPark(LOT_ID, "Van1", VehicleType.VAN, new long[] { 2, 3, 4 });
+      log.appendPark(2, "Car2", VehicleType.CAR, new long[] { 9 });
+      log.appendLeave(LOT_ID, "Car1", new long[] { 1 });
+      log.awaitDurable();
+    }
+
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      Map<Long, Map<String, long[]>> recovered = log.getRecoveredState();
+
+      assertEquals(Set.of("Van1"), recovered.get(LOT_ID).keySet());
+      assertArrayEquals(new long[] { 2, 3, 4 }, recovered.get(LOT_ID).get("Van1"));
+      assertArrayEquals(new long[] { 9 }, recovered.get(2L).get("Car2"));
+      assertEquals(Map.of("Van1", VehicleType.VAN), log.getRecoveredTypes().get(LOT_ID));
+    }
+  }
+
+  @Test
+  void snapshotsShouldReplaceOlderSegments() throws Exception {
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.INTERVAL, 1, 100)) {
+      for (int i = 0; i < 1000; i++) {
+        log.appendPark(LOT_ID, "Car" + i, VehicleType.CAR, new long[] { i });
+        if (i % 2 == 0) {
+          log.appendLeave(LOT_ID, "Car" + i, new long[] { i });
+        }
+      }
+      log.snapshot();
+    }
+
+    try (Stream<Path> files = Files.list(directory)) {
+      List<String> names = files.map(path -> path.getFileName().toString()).sorted().toList();
+      assertEquals(1, names.stream().filter(name -> name.startsWith("snapshot-")).count(), names::toString);
+      assertEquals(1, names.stream().filter(name -> name.startsWith("events-")).count(), names::toString);
+    }
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.INTERVAL, 1, 100)) {
+      Map<String, long[]> recovered = log.getRecoveredState().get(LOT_ID);
+
+      assertEquals(500, recovered.size());
+      assertArrayEquals(new long[] { 999 }, recovered.get("Car999"));
+      assertFalse(recovered.containsKey("Car998"));
+      assertEquals(VehicleType.CAR, log.getRecoveredTypes().get(LOT_ID).get("Car999"));
+    }
+  }
+
+  @Test
+  void parksThatDoNotFitARecordShouldBeRefused() throws Exception {
+    String longId = "Car".repeat(30_000);
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.INTERVAL, 10, 1000)) {
+      log.appendPark(LOT_ID, "Car1", VehicleType.CAR, new long[] { 1 });
+      log.appendPark(LOT_ID, longId, VehicleType.CAR, new long[] { 2 });
+      assertThrows(IllegalArgumentException.class, log::awaitDurable);
+      log.appendPark(LOT_ID, "Car2", VehicleType.CAR, new long[300]);
+      log.appendLeave(LOT_ID, "Car2", new long[300]);
+      log.appendPark(LOT_ID, "Car3", VehicleType.CAR, new long[] { 3 });
+      log.awaitDurable();
+    }
+
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.INTERVAL, 10, 1000)) {
+      assertEquals(Set.of("Car1", "Car3"), log.getRecoveredState().get(LOT_ID).keySet());
+    }
+  }
+
+  @Test
+  void anIdleWriterShouldWakeUpForTheNextAppend() throws Exception {
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.INTERVAL, 10, 1000)) {
+      log.appendPark(LOT_ID, "Car1", VehicleType.CAR, new long[] { 1 });
+      log.awaitDurable();
+      Thread.sleep(100);
+      log.appendPark(LOT_ID, "Car2", VehicleType.CAR, new long[] { 2 });
+      log.awaitDurable();
+    }
+
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      assertEquals(Set.of("Car1", "Car2"), log.getRecoveredState().get(LOT_ID).keySet());
+    }
+  }
+
+  @Test
+  void parksOfNoKnownTypeShouldRecoverWithoutOne() throws Exception {
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      log.appendPark(LOT_ID, "Motorcycle1", VehicleType.MOTORCYCLE, new long[] { 1 });
+      log.appendLeave(LOT_ID, "Motorcycle1", new long[] { 1 });
+      log.appendPark(LOT_ID, "Motorcycle1", null, new long[] { 1 });
+      log.appendPark(LOT_ID, "Car1", VehicleType.CAR, new long[] { 2 });
+      log.awaitDurable();
+    }
+
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      assertEquals(Set.of("Motorcycle1", "Car1"), log.getRecoveredState().get(LOT_ID).keySet());
+      assertEquals(Map.of("Car1", VehicleType.CAR), log.getRecoveredTypes().get(LOT_ID));
+    }
+  }
+
+  @Test
+  void recoveryShouldDropTornRecordAtTheEnd() throws Exception {
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      log.appendPark(LOT_ID, "Car1", VehicleType.CAR, new long[] { 1 });
+      log.awaitDurable();
+    }
+    Path segment;
+    try (Stream<Path> files = Files.list(directory)) {
+      segment = files.filter(path -> path.getFileName().toString().startsWith("events-")).findFirst().orElseThrow();
+    }
+    long intact = Files.size(segment);
+    Files.write(segment, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      assertArrayEquals(new long[] { 1 }, log.getRecoveredState().get(LOT_ID).get("Car1"));
+      assertEquals(intact, Files.size(segment));
+    }
+  }
+
+  @Test
+  void recoveryShouldRefuseABadRecordBeforeTheLastSegment() throws Exception {
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      log.appendPark(LOT_ID, "Car1", VehicleType.CAR, new long[] { 1 });
+      log.awaitDurable();
+    }
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      log.appendPark(LOT_ID, "Car2", VehicleType.CAR, new long[] { 2 });
+      log.awaitDurable();
+    }
+    Path first;
+    try (Stream<Path> files = Files.list(directory)) {
+      first = files.filter(path -> path.getFileName().toString().startsWith("events-")).sorted().findFirst().orElseThrow();
+    }
+    byte[] bytes = Files.readAllBytes(first);
+    bytes[bytes.length - 1] ^= 1;
+    Files.write(first, bytes);
+
+    assertThrows(IOException.class, () -> ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000));
+    assertEquals(bytes.length, Files.size(first));
+  }
+
+  @Test
+  void acknowledgedParksShouldSurviveKillingTheProcess() throws Exception {
+    Process process = new ProcessBuilder(
+        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path"),
+        Writer.class.getName(), directory.toString())
+        .redirectErrorStream(true)
+        .start();
+    List<String> acknowledged = new ArrayList<>();
+    try (BufferedReader acks = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while (acknowledged.size() < 5000 && (line = acks.readLine()) != null) {
+        acknowledged.add(line);
+      }
+      process.destroyForcibly();
+      assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+    }
+    assertEquals(5000, acknowledged.size(), () -> String.join("\n", acknowledged));
+
+    try (ParkingEventLog log = ParkingEventLog.open(directory, FsyncPolicy.ALWAYS, 10, 1000)) {
+      Map<String, long[]> recovered = log.getRecoveredState().get(LOT_ID);
+
+      assertNotNull(recovered);
+      for (String vehicleId : acknowledged) {
+        assertTrue(recovered.containsKey(vehicleId), vehicleId);
+      }
+    }
+  }
+
+  /**
+   * Parks cars until it is killed, printing the id of every car once its park is durable.
+   */
+  public static class Writer {
+
+    public static void main(String[] args) throws Exception {
+      ParkingEventLog log = ParkingEventLog.open(Path.of(args[0]), FsyncPolicy.ALWAYS, 10, 1000);
+      for (long i = 0; ; i++) {
+        log.appendPark(LOT_ID, "Car" + i, VehicleType.CAR, new long[] { i });
+        log.awaitDurable();
+        System.out.println("Car" + i);
+      }
+    }
+  }
+}
@@ -1,7 +1,23 @@
 package assessment.parkinglot;
 
+import assessment.parkinglot.allocation.Hold;
+import assessment.parkinglot.controllers.AdmissionControl;
+import assessment.parkinglot.controllers.IdempotencyCache;
 import assessment.parkinglot.controllers.ParkingLotController;
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.history.Interval;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.response.OccupancyStats;
+import assessment.parkinglot.response.ParkingResult;
+import assessment.parkinglot.response.VehicleLocation;
+import assessment.parkinglot.services.AvailabilityBroadcaster;
+import assessment.parkinglot.services.HoldExistsException;
+import assessment.parkinglot.services.HoldNotFoundException;
 import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
 import assessment.parkinglot.services.ParkingLotService;
 import assessment.parkinglot.services.VehicleAlreadyParkedException;
 import assessment.parkinglot.services.VehicleNotFoundException;
@@ -9,18 +25,32 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(ParkingLotController.class)
+@Import({ IdempotencyCache.class, AdmissionControl.class })
 public class ParkingLotControllerTest {
 
   @Autowired
@@ -29,6 +59,12 @@ public class ParkingLotControllerTest {
   @MockBean
   private ParkingLotService parkingLotService;
 
+  @MockBean
+  private AvailabilityBroadcaster availabilityBroadcaster;
+
+  @MockBean
+  private ParkingMetrics parkingMetrics;
+
   @Test
   void parkShouldReturnBadRequestStatusCodeWhenMissingId() throws Exception {
     String body = """
@@ -63,7 +99,7 @@ public class ParkingLotControllerTest {
   void parkShouldReturnConflictStatusCodeWhenVehicleAlreadyParked() throws Exception {
     doThrow(VehicleAlreadyParkedException.class)
         .when(parkingLotService)
-        .park(any());
+        .park(eq(ParkingLot.DEFAULT_ID), any());
 
     String body = """
         {
@@ -83,7 +119,7 @@ public class ParkingLotControllerTest {
   void parkShouldReturnConflictStatusCodeWhenNoAvailableSpots() throws Exception {
     doThrow(NoAvailableSpotsException.class)
         .when(parkingLotService)
-        .park(any());
+        .park(eq(ParkingLot.DEFAULT_ID), any());
 
     String body = """
         {
@@ -99,6 +135,27 @@ public class ParkingLotControllerTest {
         .andExpect(status().isConflict());
   }
 
+  @Test
+  void parkShouldReturnConflictStatusCodeWithoutParkingWhenLotIsFull() throws Exception {
+    when(parkingLotService.isFull(eq(ParkingLot.DEFAULT_ID), any(ParkVehicleRequest.class))).thenReturn(true);
+
+    String body = """
+        {
+          "id": "Motorcycle1",
+          "type": "MOTORCYCLE"
+        }
+        """;
+
+    this.mockMvc.perform(
+        post("/parking-lot/park")
+            .contentType(APPLICATION_JSON)
+            .header("X-Client-Id", "Gate1")
+            .content(body))
+        .andExpect(status().isConflict());
+
+    verify(parkingLotService, never()).park(anyLong(), any());
+  }
+
   @Test
   void parkShouldReturnOkWhenSuccess() throws Exception {
     String body = """
@@ -115,11 +172,93 @@ public class ParkingLotControllerTest {
         .andExpect(status().isOk());
   }
 
+  @Test
+  void parkBatchShouldReturnBadRequestStatusCodeWhenEmpty() throws Exception {
+    String body = """
+        {
+          "vehicles": []
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/park/batch")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void parkBatchShouldReturnBadRequestStatusCodeWhenVehicleMissingType() throws Exception {
+    String body = """
+        {
+          "vehicles": [
+            { "id": "Motorcycle1", "type": "MOTORCYCLE" },
+            { "id": "Car1" }
+          ]
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/park/batch")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void parkBatchShouldReturnResultPerVehicle() throws Exception {
+    when(parkingLotService.parkAll(eq(ParkingLot.DEFAULT_ID), any()))
+        .thenReturn(List.of(
+            new ParkingResult("Van1", ParkingResult.Status.PARKED, new long[] { 16, 17, 18 }),
+            new ParkingResult("Car1", ParkingResult.Status.NO_AVAILABLE_SPOTS)));
+
+    String body = """
+        {
+          "vehicles": [
+            { "id": "Van1", "type": "VAN" },
+            { "id": "Car1", "type": "CAR" }
+          ]
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/park/batch")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].status").value("PARKED"))
+        .andExpect(jsonPath("$[0].spotIds.length()").value(3))
+        .andExpect(jsonPath("$[1].vehicleId").value("Car1"))
+        .andExpect(jsonPath("$[1].status").value("NO_AVAILABLE_SPOTS"));
+  }
+
+  @Test
+  void leaveBatchShouldReturnResultPerVehicle() throws Exception {
+    when(parkingLotService.leaveAll(ParkingLot.DEFAULT_ID, List.of("Van1", "Car1")))
+        .thenReturn(List.of(
+            new ParkingResult("Van1", ParkingResult.Status.LEFT, new long[] { 16, 17, 18 }),
+            new ParkingResult("Car1", ParkingResult.Status.NOT_FOUND)));
+
+    String body = """
+        {
+          "vehicleIds": ["Van1", "Car1"]
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/leave/batch")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].status").value("LEFT"))
+        .andExpect(jsonPath("$[1].status").value("NOT_FOUND"));
+  }
+
   @Test
   void leaveShouldReturnNotFoundStatusCodeWhenVehicleNotFound() throws Exception {
     doThrow(VehicleNotFoundException.class)
         .when(parkingLotService)
-        .leave(any());
+        .leave(eq(ParkingLot.DEFAULT_ID), any());
 
     this.mockMvc.perform(
         post("/parking-lot/leave/Motorcycle1"))
@@ -133,11 +272,137 @@ public class ParkingLotControllerTest {
         .andExpect(status().isOk());
   }
 
+  @Test
+  void retriedParkShouldReturnOriginalOutcome() throws Exception {
+    String body = """
+        {
+          "id": "Car1",
+          "type": "CAR"
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/park")
+                .header("Idempotency-Key", "park-1")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk());
+    doThrow(VehicleAlreadyParkedException.class)
+        .when(parkingLotService)
+        .park(eq(ParkingLot.DEFAULT_ID), any());
+    this.mockMvc.perform(
+            post("/parking-lot/park")
+                .header("Idempotency-Key", "park-1")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk());
+
+    verify(parkingLotService, times(1)).park(eq(ParkingLot.DEFAULT_ID), any());
+  }
+
+  @Test
+  void retriedParkShouldReturnOriginalOutcomeOnceTheLotIsFull() throws Exception {
+    String body = """
+        {
+          "id": "Car2",
+          "type": "CAR"
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/park")
+                .header("Idempotency-Key", "park-2")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk());
+    when(parkingLotService.isFull(eq(ParkingLot.DEFAULT_ID), any(ParkVehicleRequest.class))).thenReturn(true);
+    this.mockMvc.perform(
+            post("/parking-lot/park")
+                .header("Idempotency-Key", "park-2")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk());
+    this.mockMvc.perform(
+            post("/parking-lot/park")
+                .header("Idempotency-Key", "park-3")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isConflict());
+
+    verify(parkingLotService, times(1)).park(eq(ParkingLot.DEFAULT_ID), any());
+  }
+
+  @Test
+  void retriedLeaveShouldReturnOriginalOutcome() throws Exception {
+    this.mockMvc.perform(
+            post("/parking-lot/leave/Car1")
+                .header("Idempotency-Key", "leave-1"))
+        .andExpect(status().isOk());
+    doThrow(VehicleNotFoundException.class)
+        .when(parkingLotService)
+        .leave(ParkingLot.DEFAULT_ID, "Car1");
+    this.mockMvc.perform(
+            post("/parking-lot/leave/Car1")
+                .header("Idempotency-Key", "leave-1"))
+        .andExpect(status().isOk());
+    this.mockMvc.perform(
+            post("/parking-lot/leave/Car1"))
+        .andExpect(status().isNotFound());
+
+    verify(parkingLotService, times(2)).leave(ParkingLot.DEFAULT_ID, "Car1");
+  }
+
+  @Test
+  void idempotencyKeyReusedForAnotherRequestShouldReturnUnprocessableEntity() throws Exception {
+    this.mockMvc.perform(
+            post("/parking-lot/leave/Car1")
+                .header("Idempotency-Key", "leave-2"))
+        .andExpect(status().isOk());
+    this.mockMvc.perform(
+            post("/parking-lot/leave/Car2")
+                .header("Idempotency-Key", "leave-2"))
+        .andExpect(status().isUnprocessableEntity());
+
+    verify(parkingLotService, never()).leave(ParkingLot.DEFAULT_ID, "Car2");
+  }
+
+  @Test
+  void statsShouldReturnRollups() throws Exception {
+    Instant from = Instant.parse("2024-01-01T00:00:00Z");
+    Instant to = Instant.parse("2024-01-02T00:00:00Z");
+    OccupancyStats stats = new OccupancyStats(from, to, Interval.HOUR);
+    stats.getPeakOccupied().put(ParkingSpotType.REGULAR, 12);
+    when(parkingLotService.getStats(ParkingLot.DEFAULT_ID, from, to, Interval.HOUR))
+        .thenReturn(stats);
+
+    this.mockMvc.perform(
+            get("/parking-lot/stats")
+                .param("from", from.toString())
+                .param("to", to.toString()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.peakOccupied.REGULAR").value(12));
+  }
+
+  @Test
+  void statsShouldReturnBadRequestStatusCodeWhenRangeIsEmptyOrTooLong() throws Exception {
+    this.mockMvc.perform(
+            get("/parking-lot/stats")
+                .param("from", "2024-01-02T00:00:00Z")
+                .param("to", "2024-01-01T00:00:00Z"))
+        .andExpect(status().isBadRequest());
+    this.mockMvc.perform(
+            get("/parking-lot/stats")
+                .param("from", "2024-01-01T00:00:00Z")
+                .param("to", "2024-02-01T00:00:00Z")
+                .param("interval", "MINUTE"))
+        .andExpect(status().isBadRequest());
+  }
+
   @Test
   void remainingSpotsShouldReturnInteger() throws Exception {
     Integer result = 5;
 
-    when(parkingLotService.getRemainingSpots()).
+    when(parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID)).
         thenReturn(result);
 
     this.mockMvc.perform(
@@ -148,7 +413,7 @@ public class ParkingLotControllerTest {
 
   @Test
   void isFullShouldReturnTrueWhenIsFull() throws Exception {
-    when(parkingLotService.isFull(any())).thenReturn(true);
+    when(parkingLotService.isFull(eq(ParkingLot.DEFAULT_ID), any())).thenReturn(true);
 
     this.mockMvc.perform(
             get("/parking-lot/MOTORCYCLE/is-full"))
@@ -158,11 +423,192 @@ public class ParkingLotControllerTest {
 
   @Test
   void isFullShouldReturnFalseWhenIsNotFull() throws Exception {
-    when(parkingLotService.isFull(any())).thenReturn(false);
+    when(parkingLotService.isFull(eq(ParkingLot.DEFAULT_ID), any())).thenReturn(false);
 
     this.mockMvc.perform(
             get("/parking-lot/MOTORCYCLE/is-full"))
         .andExpect(status().isOk())
         .andExpect(content().string("false"));
   }
+
+  @Test
+  void theInMemoryAllocationModeShouldServeParksLeavesAndIsFullWithStatuses() throws Exception {
+    when(parkingLotService.isInMemoryAllocation()).thenReturn(true);
+    when(parkingLotService.tryPark(ParkingLot.DEFAULT_ID, "Car1", VehicleType.CAR))
+        .thenReturn(ParkingResult.Status.PARKED, ParkingResult.Status.ALREADY_PARKED);
+    when(parkingLotService.tryPark(ParkingLot.DEFAULT_ID, "Car2", VehicleType.CAR))
+        .thenReturn(ParkingResult.Status.NO_AVAILABLE_SPOTS);
+    when(parkingLotService.tryLeave(ParkingLot.DEFAULT_ID, "Car1"))
+        .thenReturn(ParkingResult.Status.LEFT, ParkingResult.Status.NOT_FOUND);
+    when(parkingLotService.isFullNow(ParkingLot.DEFAULT_ID, VehicleType.CAR)).thenReturn(true);
+
+    for (int expected : new int[] { 200, 409 }) {
+      this.mockMvc.perform(
+              post("/parking-lot/park")
+                  .contentType(APPLICATION_JSON)
+                  .content("{\"id\": \"Car1\", \"type\": \"CAR\"}"))
+          .andExpect(status().is(expected));
+    }
+    this.mockMvc.perform(
+            post("/parking-lot/park")
+                .contentType(APPLICATION_JSON)
+                .content("{\"id\": \"Car2\", \"type\": \"CAR\"}"))
+        .andExpect(status().isConflict());
+    this.mockMvc.perform(
+            post("/parking-lot/leave/Car1"))
+        .andExpect(status().isOk());
+    this.mockMvc.perform(
+            post("/parking-lot/leave/Car1"))
+        .andExpect(status().isNotFound());
+    this.mockMvc.perform(
+            get("/parking-lot/CAR/is-full"))
+        .andExpect(status().isOk())
+        .andExpect(content().string("true"));
+
+    verify(parkingLotService, never()).park(anyLong(), any());
+    verify(parkingLotService, never()).leave(anyLong(), any());
+    verify(parkingLotService, never()).isFull(anyLong(), any(VehicleType.class));
+  }
+
+  @Test
+  void findVehicleShouldReturnTheSpotsItHolds() throws Exception {
+    when(parkingLotService.findVehicle(ParkingLot.DEFAULT_ID, "Van1"))
+        .thenReturn(new VehicleLocation("Van1", ParkingLot.DEFAULT_ID, new long[] { 4, 5, 6 }));
+
+    this.mockMvc.perform(
+            get("/parking-lot/vehicles/Van1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.spotIds.length()").value(3))
+        .andExpect(jsonPath("$.spotIds[0]").value(4));
+  }
+
+  @Test
+  void findVehicleShouldReturnNotFoundStatusCodeWhenNotParked() throws Exception {
+    when(parkingLotService.findVehicle(ParkingLot.DEFAULT_ID, "Van1")).thenThrow(VehicleNotFoundException.class);
+
+    this.mockMvc.perform(
+            get("/parking-lot/vehicles/Van1"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void findVehiclesShouldReturnTheParkedOnes() throws Exception {
+    when(parkingLotService.findVehicles(ParkingLot.DEFAULT_ID, List.of("Car1", "Car2")))
+        .thenReturn(List.of(new VehicleLocation("Car2", ParkingLot.DEFAULT_ID, new long[] { 9 })));
+
+    this.mockMvc.perform(
+            get("/parking-lot/vehicles").param("ids", "Car1", "Car2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(1))
+        .andExpect(jsonPath("$[0].vehicleId").value("Car2"));
+  }
+
+  @Test
+  void availabilityShouldStartEventStream() throws Exception {
+    when(availabilityBroadcaster.subscribe(ParkingLot.DEFAULT_ID)).thenReturn(new SseEmitter());
+
+    this.mockMvc.perform(
+            get("/parking-lot/availability")
+                .accept(TEXT_EVENT_STREAM))
+        .andExpect(status().isOk())
+        .andExpect(request().asyncStarted());
+  }
+
+  @Test
+  void holdShouldReturnTheHeldSpots() throws Exception {
+    when(parkingLotService.hold(eq(ParkingLot.DEFAULT_ID), any(), eq(300L)))
+        .thenReturn(new Hold("Van1", VehicleType.VAN, ParkingLot.DEFAULT_ID, new long[] { 16, 17, 18 }, 0));
+
+    String body = """
+        {
+          "id": "Van1",
+          "type": "VAN"
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/hold?ttlSeconds=300")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.vehicleId").value("Van1"))
+        .andExpect(jsonPath("$.spotIds.length()").value(3));
+  }
+
+  @Test
+  void holdShouldReturnConflictStatusCodeWhenVehicleAlreadyHoldsSpots() throws Exception {
+    doThrow(HoldExistsException.class)
+        .when(parkingLotService)
+        .hold(eq(ParkingLot.DEFAULT_ID), any(), anyLong());
+
+    String body = """
+        {
+          "id": "Car1",
+          "type": "CAR"
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/hold")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isConflict());
+  }
+
+  @Test
+  void holdShouldReturnBadRequestStatusCodeWhenTtlIsNotPositive() throws Exception {
+    String body = """
+        {
+          "id": "Car1",
+          "type": "CAR"
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/hold?ttlSeconds=0")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void releaseHoldShouldReturnNotFoundStatusCodeWhenNoHold() throws Exception {
+    doThrow(HoldNotFoundException.class)
+        .when(parkingLotService)
+        .releaseHold(ParkingLot.DEFAULT_ID, "Car1");
+
+    this.mockMvc.perform(
+            post("/parking-lot/release-hold/Car1"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void lotScopedRoutesShouldUseTheLotFromThePath() throws Exception {
+    when(parkingLotService.getRemainingSpots(7)).thenReturn(3);
+
+    this.mockMvc.perform(
+            get("/parking-lots/7/remaining-spots"))
+        .andExpect(status().isOk())
+        .andExpect(content().string("3"));
+  }
+
+  @Test
+  void parkShouldReturnNotFoundStatusCodeWhenLotNotFound() throws Exception {
+    doThrow(ParkingLotNotFoundException.class)
+        .when(parkingLotService)
+        .park(eq(7L), any());
+
+    String body = """
+        {
+          "id": "Motorcycle1",
+          "type": "MOTORCYCLE"
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lots/7/park")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isNotFound());
+  }
 }
@@ -1,14 +1,24 @@
 package assessment.parkinglot;
 
+import assessment.parkinglot.allocation.Hold;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.allocation.SpotHolds;
 import assessment.parkinglot.domain.ParkingSpot;
 import assessment.parkinglot.domain.ParkingSpotType;
 import assessment.parkinglot.domain.Vehicle;
 import assessment.parkinglot.domain.VehicleType;
 import assessment.parkinglot.factories.VehicleFactory;
-import assessment.parkinglot.repositories.ParkingSpotRepository;
-import assessment.parkinglot.repositories.VehicleRepository;
+import assessment.parkinglot.history.OccupancyHistory;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.persistence.ParkingStore;
+import assessment.parkinglot.repositories.ParkingLotRepository;
 import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.response.ParkingResult;
+import assessment.parkinglot.response.VehicleLocation;
+import assessment.parkinglot.services.HoldExistsException;
+import assessment.parkinglot.services.HoldNotFoundException;
 import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotNotFoundException;
 import assessment.parkinglot.services.ParkingLotService;
 import assessment.parkinglot.services.VehicleAlreadyParkedException;
 import assessment.parkinglot.services.VehicleNotFoundException;
@@ -17,9 +27,17 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.argThat;
@@ -27,14 +45,28 @@ import static org.mockito.Mockito.*;
 
 public class ParkingLotServiceTest {
 
+  private static final long LOT_ID = 1;
+
   @Mock
   private VehicleFactory vehicleFactory;
 
   @Mock
-  private ParkingSpotRepository parkingSpotRepository;
+  private ParkingLotRepository parkingLotRepository;
+
+  @Mock
+  private ParkingStore parkingStore;
+
+  @Mock
+  private ParkingMetrics parkingMetrics;
 
   @Mock
-  private VehicleRepository vehicleRepository;
+  private OccupancyHistory occupancyHistory;
+
+  @Spy
+  private ParkingLotShards parkingLotShards = new ParkingLotShards();
+
+  @Spy
+  private SpotHolds spotHolds = new SpotHolds();
 
   @InjectMocks
   private ParkingLotService parkingLotService;
@@ -42,54 +74,51 @@ public class ParkingLotServiceTest {
   @BeforeEach
   void setUp() {
     MockitoAnnotations.openMocks(this);
+    parkingLotShards.rebuild(LOT_ID, List.of());
   }
 
   @Test
-  void parkShouldThrowExceptionWhenAlreadyParked() {
+  void parkShouldThrowExceptionWhenAlreadyParked() throws Exception {
     ParkVehicleRequest request = new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE);
 
-    when(vehicleRepository.existsById(request.getId()))
-        .thenReturn(true);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, new Vehicle("Motorcycle1", VehicleType.MOTORCYCLE)),
+        new ParkingSpot(2L, ParkingSpotType.MOTORCYCLE, null)));
 
-    assertThrows(VehicleAlreadyParkedException.class, () -> parkingLotService.park(request));
+    assertThrows(VehicleAlreadyParkedException.class, () -> parkingLotService.park(LOT_ID, request));
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    verify(parkingMetrics).recordPark(eq(VehicleType.MOTORCYCLE), eq(ParkingMetrics.Outcome.ALREADY_PARKED), anyLong());
   }
 
   @Test
   void parkShouldThrowExceptionWhenNoAvailableSpotsForMotorcycle() {
     ParkVehicleRequest request = new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE);
 
-    when(vehicleRepository.existsById(request.getId()))
-        .thenReturn(false);
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.MOTORCYCLE }))
-        .thenReturn(List.of());
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, new Vehicle("Motorcycle2", VehicleType.MOTORCYCLE))));
 
-    assertThrows(NoAvailableSpotsException.class, () -> parkingLotService.park(request));
+    assertThrows(NoAvailableSpotsException.class, () -> parkingLotService.park(LOT_ID, request));
   }
 
   @Test
   void parkShouldThrowExceptionWhenNoAvailableSpotsForCar() {
     ParkVehicleRequest request = new ParkVehicleRequest("Car1", VehicleType.CAR);
 
-    when(vehicleRepository.existsById(request.getId()))
-        .thenReturn(false);
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.COMPACT, ParkingSpotType.REGULAR }))
-        .thenReturn(List.of());
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null)));
 
-    assertThrows(NoAvailableSpotsException.class, () -> parkingLotService.park(request));
+    assertThrows(NoAvailableSpotsException.class, () -> parkingLotService.park(LOT_ID, request));
   }
 
   @Test
   void parkShouldThrowExceptionWhenNoAvailableSpotsForVan() {
     ParkVehicleRequest request = new ParkVehicleRequest("Van1", VehicleType.VAN);
 
-    when(vehicleRepository.existsById(request.getId()))
-        .thenReturn(false);
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.REGULAR }))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
-            new ParkingSpot(2L, ParkingSpotType.REGULAR, null)));
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, null)));
 
-    assertThrows(NoAvailableSpotsException.class, () -> parkingLotService.park(request));
+    assertThrows(NoAvailableSpotsException.class, () -> parkingLotService.park(LOT_ID, request));
   }
 
   @Test
@@ -97,20 +126,15 @@ public class ParkingLotServiceTest {
     ParkVehicleRequest request = new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE);
     Vehicle vehicle = new Vehicle("Motorcycle1", VehicleType.MOTORCYCLE);
 
-    when(vehicleRepository.existsById(request.getId()))
-        .thenReturn(false);
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.MOTORCYCLE }))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null)));
+    List<ParkingSpot> spots = List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null));
+    parkingLotShards.rebuild(LOT_ID, spots);
     when(vehicleFactory.createVehicle(request))
         .thenReturn(vehicle);
-    when(vehicleRepository.save(vehicle))
-        .thenReturn(vehicle);
 
-    parkingLotService.park(request);
+    parkingLotService.park(LOT_ID, request);
 
-    verify(vehicleRepository).save(vehicle);
-    verify(parkingSpotRepository, times(1)).save(argThat((spot) -> spot.getVehicle().equals(vehicle)));
+    verify(parkingStore).park(LOT_ID, vehicle, new long[] { 1 });
   }
 
   @Test
@@ -118,20 +142,15 @@ public class ParkingLotServiceTest {
     ParkVehicleRequest request = new ParkVehicleRequest("Car1", VehicleType.CAR);
     Vehicle vehicle = new Vehicle("Car1", VehicleType.CAR);
 
-    when(vehicleRepository.existsById(request.getId()))
-        .thenReturn(false);
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.COMPACT, ParkingSpotType.REGULAR }))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.COMPACT, null)));
+    List<ParkingSpot> spots = List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, null));
+    parkingLotShards.rebuild(LOT_ID, spots);
     when(vehicleFactory.createVehicle(request))
         .thenReturn(vehicle);
-    when(vehicleRepository.save(vehicle))
-        .thenReturn(vehicle);
 
-    parkingLotService.park(request);
+    parkingLotService.park(LOT_ID, request);
 
-    verify(vehicleRepository).save(vehicle);
-    verify(parkingSpotRepository, times(1)).save(argThat((spot) -> spot.getVehicle().equals(vehicle)));
+    verify(parkingStore).park(LOT_ID, vehicle, new long[] { 1 });
   }
 
   @Test
@@ -139,111 +158,485 @@ public class ParkingLotServiceTest {
     ParkVehicleRequest request = new ParkVehicleRequest("Van1", VehicleType.VAN);
     Vehicle vehicle = new Vehicle("Van1", VehicleType.VAN);
 
-    when(vehicleRepository.existsById(request.getId()))
-        .thenReturn(false);
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.REGULAR }))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
-            new ParkingSpot(2L, ParkingSpotType.REGULAR, null),
-            new ParkingSpot(3L, ParkingSpotType.REGULAR, null)));
+    List<ParkingSpot> spots = List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(3L, ParkingSpotType.REGULAR, null));
+    parkingLotShards.rebuild(LOT_ID, spots);
     when(vehicleFactory.createVehicle(request))
         .thenReturn(vehicle);
-    when(vehicleRepository.save(vehicle))
-        .thenReturn(vehicle);
 
-    parkingLotService.park(request);
+    parkingLotService.park(LOT_ID, request);
 
-    verify(vehicleRepository).save(vehicle);
-    verify(parkingSpotRepository, times(3)).save(argThat((spot) -> spot.getVehicle().equals(vehicle)));
+    verify(parkingStore).park(LOT_ID, vehicle, new long[] { 1, 2, 3 });
+    verify(occupancyHistory).recordPark(anyLong(), eq(LOT_ID), eq("Van1"), eq(VehicleType.VAN),
+        eq(ParkingSpotType.REGULAR), eq(new long[] { 1, 2, 3 }), eq(3));
+    assertEquals(0, parkingLotService.getRemainingSpots(LOT_ID));
   }
 
   @Test
-  void leaveShouldThrowExceptionWhenNotFound() {
-    when(vehicleRepository.existsById("Motorcycle1"))
-        .thenReturn(false);
+  void parkShouldFreeTheSpotsWhenTheStoreFails() throws Exception {
+    ParkVehicleRequest request = new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE);
+    Vehicle vehicle = new Vehicle("Motorcycle1", VehicleType.MOTORCYCLE);
 
-    assertThrows(VehicleNotFoundException.class, () -> parkingLotService.leave("Motorcycle1"));
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null)));
+    when(vehicleFactory.createVehicle(request))
+        .thenReturn(vehicle);
+    doThrow(new IllegalStateException("Spots [1] are no longer free"))
+        .when(parkingStore).park(LOT_ID, vehicle, new long[] { 1 });
+
+    assertThrows(IllegalStateException.class, () -> parkingLotService.park(LOT_ID, request));
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    verifyNoInteractions(occupancyHistory);
+    assertThrows(VehicleNotFoundException.class, () -> parkingLotService.leave(LOT_ID, "Motorcycle1"));
+  }
+
+  @Test
+  void leaveShouldThrowExceptionWhenNotFound() {
+    assertThrows(VehicleNotFoundException.class, () -> parkingLotService.leave(LOT_ID, "Motorcycle1"));
   }
 
   @Test
   void leaveShouldSuccessWhenFoundForMotorcycle() throws Exception {
     String vehicleId = "Motorcycle1";
+    List<ParkingSpot> spots = List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, new Vehicle(vehicleId, VehicleType.MOTORCYCLE)));
+    parkingLotShards.rebuild(LOT_ID, spots);
 
-    when(vehicleRepository.existsById(vehicleId))
-        .thenReturn(true);
-    when(parkingSpotRepository.findByVehicleId(vehicleId))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, new Vehicle(vehicleId, VehicleType.MOTORCYCLE))));
-
-    parkingLotService.leave(vehicleId);
+    parkingLotService.leave(LOT_ID, vehicleId);
 
-    verify(vehicleRepository).deleteById(vehicleId);
-    verify(parkingSpotRepository, times(1)).save(argThat((spot) -> spot.getVehicle() == null));
+    verify(parkingStore).leave(LOT_ID, vehicleId, new long[] { 1 });
   }
 
   @Test
   void leaveShouldSuccessWhenFoundForCar() throws Exception {
     String vehicleId = "Car1";
+    List<ParkingSpot> spots = List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, new Vehicle(vehicleId, VehicleType.CAR)));
+    parkingLotShards.rebuild(LOT_ID, spots);
 
-    when(vehicleRepository.existsById(vehicleId))
-        .thenReturn(true);
-    when(parkingSpotRepository.findByVehicleId(vehicleId))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.REGULAR, new Vehicle(vehicleId, VehicleType.CAR))));
-
-    parkingLotService.leave(vehicleId);
+    parkingLotService.leave(LOT_ID, vehicleId);
 
-    verify(vehicleRepository).deleteById(vehicleId);
-    verify(parkingSpotRepository, times(1)).save(argThat((spot) -> spot.getVehicle() == null));
+    verify(parkingStore).leave(LOT_ID, vehicleId, new long[] { 1 });
   }
 
   @Test
   void leaveShouldSuccessWhenFoundForVan() throws Exception {
     String vehicleId = "Van1";
     Vehicle vehicle = new Vehicle(vehicleId, VehicleType.VAN);
+    List<ParkingSpot> spots = List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, vehicle),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, vehicle),
+        new ParkingSpot(3L, ParkingSpotType.REGULAR, vehicle));
+    parkingLotShards.rebuild(LOT_ID, spots);
+
+    parkingLotService.leave(LOT_ID, vehicleId);
+
+    verify(parkingStore).leave(LOT_ID, vehicleId, new long[] { 1, 2, 3 });
+    verify(occupancyHistory).recordLeave(anyLong(), eq(LOT_ID), eq(vehicleId), eq(ParkingSpotType.REGULAR),
+        eq(new long[] { 1, 2, 3 }), eq(0));
+    assertEquals(false, parkingLotService.isFull(LOT_ID, VehicleType.VAN));
+  }
+
+  @Test
+  void parkAllShouldReportOutcomePerVehicle() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, new Vehicle("Motorcycle1", VehicleType.MOTORCYCLE)),
+        new ParkingSpot(2L, ParkingSpotType.MOTORCYCLE, null),
+        new ParkingSpot(3L, ParkingSpotType.COMPACT, null)));
+    Vehicle vehicle = new Vehicle("Car1", VehicleType.CAR);
+    ParkVehicleRequest request = new ParkVehicleRequest("Car1", VehicleType.CAR);
+    when(vehicleFactory.createVehicle(request))
+        .thenReturn(vehicle);
+
+    List<ParkingResult> results = parkingLotService.parkAll(LOT_ID, List.of(
+        new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE),
+        request,
+        new ParkVehicleRequest("Car2", VehicleType.CAR)));
+
+    assertEquals(ParkingResult.Status.ALREADY_PARKED, results.get(0).getStatus());
+    assertEquals(ParkingResult.Status.PARKED, results.get(1).getStatus());
+    assertArrayEquals(new long[] { 3 }, results.get(1).getSpotIds());
+    assertEquals(ParkingResult.Status.NO_AVAILABLE_SPOTS, results.get(2).getStatus());
+    verify(parkingStore).parkAll(
+        eq(LOT_ID),
+        eq(List.of(vehicle)),
+        argThat(spotIds -> spotIds.size() == 1 && spotIds.get(0)[0] == 3L));
+    verifyNoMoreInteractions(parkingStore);
+  }
+
+  @Test
+  void leaveAllShouldReportOutcomePerVehicle() throws Exception {
+    Vehicle vehicle = new Vehicle("Van1", VehicleType.VAN);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, vehicle),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, vehicle),
+        new ParkingSpot(3L, ParkingSpotType.REGULAR, vehicle)));
+
+    List<ParkingResult> results = parkingLotService.leaveAll(LOT_ID, List.of("Van1", "Car1"));
+
+    assertEquals(ParkingResult.Status.LEFT, results.get(0).getStatus());
+    assertArrayEquals(new long[] { 1, 2, 3 }, results.get(0).getSpotIds());
+    assertEquals(ParkingResult.Status.NOT_FOUND, results.get(1).getStatus());
+    verify(parkingStore).leaveAll(eq(LOT_ID), eq(List.of("Van1")), argThat(spotIds -> spotIds.size() == 1));
+    assertEquals(3, parkingLotService.getRemainingSpots(LOT_ID));
+  }
+
+  @Test
+  void parkAllShouldFreeEverySpotWhenAVehicleCannotBeCreated() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, null),
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, null)));
+    ParkVehicleRequest first = new ParkVehicleRequest("Car1", VehicleType.CAR);
+    ParkVehicleRequest second = new ParkVehicleRequest("Car2", VehicleType.CAR);
+    when(vehicleFactory.createVehicle(first))
+        .thenReturn(new Vehicle("Car1", VehicleType.CAR));
+    when(vehicleFactory.createVehicle(second))
+        .thenThrow(new IllegalArgumentException("Unknown vehicle type"));
+
+    assertThrows(IllegalArgumentException.class, () -> parkingLotService.parkAll(LOT_ID, List.of(first, second)));
+    assertEquals(2, parkingLotService.getRemainingSpots(LOT_ID));
+    assertThrows(VehicleNotFoundException.class, () -> parkingLotService.leave(LOT_ID, "Car1"));
+    verify(parkingLotShards).unclaim("Car1", LOT_ID);
+    verifyNoInteractions(parkingStore);
+  }
+
+  @Test
+  void getRemainingSpotsShouldReturnAvailableSpotsCount() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null),
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, new Vehicle("Car1", VehicleType.CAR))));
+
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    verifyNoInteractions(parkingStore);
+  }
+
+  @Test
+  void isFullShouldReturnTrueWhenNoAvailableSpace() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, null)));
+
+    assertEquals(true, parkingLotService.isFull(LOT_ID, VehicleType.VAN));
+  }
+
+  @Test
+  void isFullShouldReturnFalseWhenAvailableSpace() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(3L, ParkingSpotType.REGULAR, null)));
+
+    assertEquals(false, parkingLotService.isFull(LOT_ID, VehicleType.VAN));
+  }
+
+  @Test
+  void parkShouldThrowExceptionWhenLotIsUnknown() {
+    ParkVehicleRequest request = new ParkVehicleRequest("Car1", VehicleType.CAR);
+
+    assertThrows(ParkingLotNotFoundException.class, () -> parkingLotService.park(2, request));
+  }
+
+  @Test
+  void parkShouldThrowExceptionWhenParkedInAnotherLot() throws Exception {
+    ParkVehicleRequest request = new ParkVehicleRequest("Car1", VehicleType.CAR);
 
-    when(vehicleRepository.existsById(vehicleId))
-        .thenReturn(true);
-    when(parkingSpotRepository.findByVehicleId(vehicleId))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.REGULAR, vehicle),
-            new ParkingSpot(2L, ParkingSpotType.REGULAR, vehicle),
-            new ParkingSpot(3L, ParkingSpotType.REGULAR, vehicle)));
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, new Vehicle("Car1", VehicleType.CAR))));
+    parkingLotShards.rebuild(2, List.of(
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, null)));
 
-    parkingLotService.leave(vehicleId);
+    assertThrows(VehicleAlreadyParkedException.class, () -> parkingLotService.park(2, request));
+    assertEquals(1, parkingLotService.getRemainingSpots(2));
+  }
+
+  @Test
+  void aVehicleParkingInTwoLotsAtOnceShouldOnlyParkInOne() throws Exception {
+    for (long lotId = 1; lotId <= 8; lotId++) {
+      parkingLotShards.rebuild(lotId, List.of(
+          new ParkingSpot(lotId * 10, ParkingSpotType.COMPACT, null)));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (int round = 0; round < 50; round++) {
+        String vehicleId = "Car" + round;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ParkingResult.Status>> statuses = new ArrayList<>();
+        for (long lotId = 1; lotId <= 8; lotId++) {
+          long lot = lotId;
+          statuses.add(executor.submit(() -> {
+            start.await();
+            return parkingLotService.tryPark(lot, vehicleId, VehicleType.CAR);
+          }));
+        }
+        start.countDown();
+        int parked = 0;
+        for (Future<ParkingResult.Status> status : statuses) {
+          parked += status.get() == ParkingResult.Status.PARKED ? 1 : 0;
+        }
+
+        assertEquals(1, parked, vehicleId + " parked in " + parked + " lots");
+        long lotId = parkingLotShards.getLotIds().stream()
+            .filter(id -> parkingLotShards.get(id).isParked(vehicleId)).findFirst().orElseThrow();
+        assertEquals(ParkingResult.Status.LEFT, parkingLotService.tryLeave(lotId, vehicleId));
+        assertEquals(false, parkingLotShards.isParked(vehicleId));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void aLotRebuiltWithAVehicleParkedInAnotherLotShouldDropIt() throws Exception {
+    Vehicle vehicle = new Vehicle("Car1", VehicleType.CAR);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, vehicle)));
+
+    parkingLotShards.rebuild(2, List.of(
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, vehicle),
+        new ParkingSpot(3L, ParkingSpotType.COMPACT, null)));
+
+    assertEquals(0, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(2, parkingLotService.getRemainingSpots(2));
+    assertEquals(false, parkingLotShards.get(2).isParked("Car1"));
+    parkingLotService.leave(LOT_ID, "Car1");
+    assertEquals(false, parkingLotShards.isParked("Car1"));
+  }
+
+  @Test
+  void lotsShouldAllocateIndependently() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, null)));
+    parkingLotShards.rebuild(2, List.of(
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, null),
+        new ParkingSpot(3L, ParkingSpotType.COMPACT, null)));
+
+    parkingLotService.park(2, new ParkVehicleRequest("Car1", VehicleType.CAR));
+
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(1, parkingLotService.getRemainingSpots(2));
+    verify(parkingStore).park(eq(2L), any(), eq(new long[] { 2 }));
+    assertThrows(VehicleNotFoundException.class, () -> parkingLotService.leave(LOT_ID, "Car1"));
+  }
+
+  @Test
+  void heldSpotsShouldCountAsTaken() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(3L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(4L, ParkingSpotType.COMPACT, null)));
+
+    Hold hold = parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Van1", VehicleType.VAN), 60);
+
+    assertArrayEquals(new long[] { 1, 2, 3 }, hold.getSpotIds());
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(true, parkingLotService.isFull(LOT_ID, VehicleType.VAN));
+    assertThrows(HoldExistsException.class,
+        () -> parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Van1", VehicleType.VAN), 60));
+    verifyNoInteractions(parkingStore);
+  }
+
+  @Test
+  void isFullForRequestShouldLetHoldersAndParkedVehiclesThrough() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, new Vehicle("Van2", VehicleType.VAN)),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(3L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(4L, ParkingSpotType.REGULAR, null)));
+
+    parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Van1", VehicleType.VAN), 60);
+
+    assertEquals(true, parkingLotService.isFull(LOT_ID, new ParkVehicleRequest("Van3", VehicleType.VAN)));
+    assertEquals(false, parkingLotService.isFull(LOT_ID, new ParkVehicleRequest("Van1", VehicleType.VAN)));
+    assertEquals(false, parkingLotService.isFull(LOT_ID, new ParkVehicleRequest("Van2", VehicleType.VAN)));
+  }
+
+  @Test
+  void parkShouldTakeTheHeldSpots() throws Exception {
+    ParkVehicleRequest request = new ParkVehicleRequest("Car1", VehicleType.CAR);
+    Vehicle vehicle = new Vehicle("Car1", VehicleType.CAR);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, null),
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, null)));
+    when(vehicleFactory.createVehicle(request))
+        .thenReturn(vehicle);
+    parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Car2", VehicleType.CAR), 60);
+    Hold hold = parkingLotService.hold(LOT_ID, request, 60);
+
+    parkingLotService.park(LOT_ID, request);
+
+    verify(parkingStore).park(LOT_ID, vehicle, hold.getSpotIds());
+    assertEquals(0, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(1, spotHolds.size());
+    assertThrows(HoldNotFoundException.class, () -> parkingLotService.releaseHold(LOT_ID, "Car1"));
+  }
+
+  @Test
+  void aParkThatFailsToBeStoredShouldGiveTheSpotsBackToTheHold() throws Exception {
+    ParkVehicleRequest request = new ParkVehicleRequest("Car1", VehicleType.CAR);
+    Vehicle vehicle = new Vehicle("Car1", VehicleType.CAR);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, null),
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, null)));
+    when(vehicleFactory.createVehicle(request))
+        .thenReturn(vehicle);
+    Hold hold = parkingLotService.hold(LOT_ID, request, 60);
+    doThrow(new IllegalStateException("Spots [1] are no longer free"))
+        .when(parkingStore).park(LOT_ID, vehicle, hold.getSpotIds());
+
+    assertThrows(IllegalStateException.class, () -> parkingLotService.park(LOT_ID, request));
 
-    verify(vehicleRepository).deleteById(vehicleId);
-    verify(parkingSpotRepository, times(3)).save(argThat((spot) -> spot.getVehicle() == null));
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(hold, spotHolds.get("Car1"));
+    parkingLotService.releaseHold(LOT_ID, "Car1");
+    assertEquals(2, parkingLotService.getRemainingSpots(LOT_ID));
   }
 
   @Test
-  void getRemainingSpotsShouldReturnAvailableSpotsCount() {
-    int remainingSpots = 1;
+  void holdShouldRefuseAVehicleClaimedForALot() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, null)));
+    parkingLotShards.claim("Car1", 2);
+
+    assertThrows(VehicleAlreadyParkedException.class,
+        () -> parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Car1", VehicleType.CAR), 60));
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(0, spotHolds.size());
+  }
 
-    when(parkingSpotRepository.countByVehicleIsNull())
-        .thenReturn(remainingSpots);
+  @Test
+  void parkingInAnotherLotShouldReleaseTheHold() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.COMPACT, null)));
+    parkingLotShards.rebuild(2, List.of(
+        new ParkingSpot(2L, ParkingSpotType.COMPACT, null)));
+    parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Car1", VehicleType.CAR), 60);
+
+    parkingLotService.park(2, new ParkVehicleRequest("Car1", VehicleType.CAR));
+
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(0, parkingLotService.getRemainingSpots(2));
+    assertEquals(0, spotHolds.size());
+  }
 
-    assertEquals(remainingSpots, parkingLotService.getRemainingSpots());
+  @Test
+  void expiredHoldsShouldFreeTheirSpots() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null)));
+    Hold hold = parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE), 60);
+
+    parkingLotService.expireHolds(hold.getExpiresAt().toEpochMilli() - 1000);
+    assertEquals(0, parkingLotService.getRemainingSpots(LOT_ID));
+
+    parkingLotService.expireHolds(hold.getExpiresAt().toEpochMilli() + SpotHolds.TICK_MILLIS);
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
+    assertEquals(0, spotHolds.size());
   }
 
   @Test
-  void isFullShouldReturnTrueWhenNoAvailableSpace() {
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.REGULAR }))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
-            new ParkingSpot(2L, ParkingSpotType.REGULAR, null)));
+  void releaseHoldShouldFreeTheSpots() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null)));
+    parkingLotService.hold(LOT_ID, new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE), 60);
 
-    assertEquals(true, parkingLotService.isFull(VehicleType.VAN));
+    assertThrows(HoldNotFoundException.class, () -> parkingLotService.releaseHold(2, "Motorcycle1"));
+    parkingLotService.releaseHold(LOT_ID, "Motorcycle1");
+
+    assertEquals(1, parkingLotService.getRemainingSpots(LOT_ID));
   }
 
   @Test
-  void isFullShouldReturnFalseWhenAvailableSpace() {
-    when(parkingSpotRepository.findByVehicleIsNullAndTypeIn(new ParkingSpotType[] { ParkingSpotType.REGULAR }))
-        .thenReturn(List.of(
-            new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
-            new ParkingSpot(2L, ParkingSpotType.REGULAR, null),
-            new ParkingSpot(3L, ParkingSpotType.REGULAR, null)));
+  void findVehicleShouldReturnTheSpotsItHolds() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, null)));
+    parkingLotService.park(LOT_ID, new ParkVehicleRequest("Car1", VehicleType.CAR));
+
+    VehicleLocation location = parkingLotService.findVehicle(LOT_ID, "Car1");
+
+    assertEquals(LOT_ID, location.getLotId());
+    assertEquals(1, location.getSpotIds().length);
+    parkingLotService.leave(LOT_ID, "Car1");
+    assertThrows(VehicleNotFoundException.class, () -> parkingLotService.findVehicle(LOT_ID, "Car1"));
+  }
+
+  @Test
+  void findVehiclesShouldSkipVehiclesNotParkedInTheLot() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, new Vehicle("Car1", VehicleType.CAR)),
+        new ParkingSpot(2L, ParkingSpotType.REGULAR, new Vehicle("Car2", VehicleType.CAR))));
+
+    List<VehicleLocation> locations = parkingLotService.findVehicles(LOT_ID, List.of("Car2", "Car3", "Car1"));
 
-    assertEquals(false, parkingLotService.isFull(VehicleType.VAN));
+    assertEquals(List.of("Car2", "Car1"), locations.stream().map(VehicleLocation::getVehicleId).toList());
+    assertArrayEquals(new long[] { 2 }, locations.get(0).getSpotIds());
+    assertThrows(ParkingLotNotFoundException.class, () -> parkingLotService.findVehicles(2, List.of("Car1")));
+  }
+
+  @Test
+  void tryParkAndTryLeaveShouldAnswerWithStatusesWithoutAStore() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.MOTORCYCLE, null)));
+
+    assertEquals(ParkingResult.Status.PARKED, parkingLotService.tryPark(LOT_ID, "Motorcycle1", VehicleType.MOTORCYCLE));
+    assertEquals(ParkingResult.Status.ALREADY_PARKED, parkingLotService.tryPark(LOT_ID, "Motorcycle1", VehicleType.MOTORCYCLE));
+    assertEquals(ParkingResult.Status.NO_AVAILABLE_SPOTS, parkingLotService.tryPark(LOT_ID, "Motorcycle2", VehicleType.MOTORCYCLE));
+    assertEquals(true, parkingLotService.isFullNow(LOT_ID, VehicleType.MOTORCYCLE));
+    assertEquals(ParkingResult.Status.LEFT, parkingLotService.tryLeave(LOT_ID, "Motorcycle1"));
+    assertEquals(ParkingResult.Status.NOT_FOUND, parkingLotService.tryLeave(LOT_ID, "Motorcycle1"));
+
+    assertEquals(false, parkingLotService.isFullNow(LOT_ID, VehicleType.MOTORCYCLE));
+    verify(parkingStore, never()).park(anyLong(), any(), any());
+    verify(parkingStore, never()).leave(anyLong(), any(), any());
+    verify(parkingMetrics).recordPark(eq(VehicleType.MOTORCYCLE), eq(ParkingMetrics.Outcome.NO_AVAILABLE_SPOTS), anyLong());
+  }
+
+  @Test
+  void tryParkShouldStoreTheParkWithADurableStore() throws Exception {
+    when(parkingStore.isDurable()).thenReturn(true);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null)));
+
+    assertEquals(ParkingResult.Status.PARKED, parkingLotService.tryPark(LOT_ID, "Car1", VehicleType.CAR));
+    assertEquals(ParkingResult.Status.LEFT, parkingLotService.tryLeave(LOT_ID, "Car1"));
+
+    verify(parkingStore).park(eq(LOT_ID), any(), argThat(spotIds -> spotIds.length == 1));
+    verify(parkingStore).leave(eq(LOT_ID), eq("Car1"), any());
+    assertThrows(ParkingLotNotFoundException.class, () -> parkingLotService.tryPark(2, "Car2", VehicleType.CAR));
+  }
+
+  @Test
+  void tryParkAndTryLeaveShouldBeRecordedInTheHistoryLikeParkAndLeave() throws Exception {
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null)));
+
+    parkingLotService.park(LOT_ID, new ParkVehicleRequest("Car1", VehicleType.CAR));
+    assertEquals(ParkingResult.Status.LEFT, parkingLotService.tryLeave(LOT_ID, "Car1"));
+    assertEquals(ParkingResult.Status.PARKED, parkingLotService.tryPark(LOT_ID, "Car2", VehicleType.CAR));
+    parkingLotService.leave(LOT_ID, "Car2");
+
+    for (String vehicleId : List.of("Car1", "Car2")) {
+      verify(occupancyHistory).recordPark(anyLong(), eq(LOT_ID), eq(vehicleId), eq(VehicleType.CAR),
+          eq(ParkingSpotType.REGULAR), argThat(spotIds -> spotIds.length == 1 && spotIds[0] == 1), eq(1));
+      verify(occupancyHistory).recordLeave(anyLong(), eq(LOT_ID), eq(vehicleId), eq(ParkingSpotType.REGULAR),
+          argThat(spotIds -> spotIds.length == 1 && spotIds[0] == 1), eq(0));
+    }
+  }
+
+  @Test
+  void theInMemoryAllocationModeShouldLeaveEveryParkAndLeaveOutOfTheHistory() throws Exception {
+    ReflectionTestUtils.setField(parkingLotService, "inMemoryAllocation", true);
+    parkingLotShards.rebuild(LOT_ID, List.of(
+        new ParkingSpot(1L, ParkingSpotType.REGULAR, null)));
+
+    parkingLotService.park(LOT_ID, new ParkVehicleRequest("Car1", VehicleType.CAR));
+    assertEquals(ParkingResult.Status.LEFT, parkingLotService.tryLeave(LOT_ID, "Car1"));
+    assertEquals(ParkingResult.Status.PARKED, parkingLotService.tryPark(LOT_ID, "Car2", VehicleType.CAR));
+    parkingLotService.leave(LOT_ID, "Car2");
+
+    assertEquals(true, parkingLotService.isInMemoryAllocation());
+    verifyNoInteractions(occupancyHistory);
   }
 }
@@ -0,0 +1,76 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.ParkingLotService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@DirtiesContext
+public class ParkingLotStatementCountTest {
+
+  @Autowired
+  private ParkingLotService parkingLotService;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  void parkShouldInsertVehicleAndClaimSpotsInTwoStatements() throws Exception {
+    parkingLotService.park(ParkingLot.DEFAULT_ID, new ParkVehicleRequest("Van1", VehicleType.VAN));
+
+    assertEquals(2, statistics.getPrepareStatementCount());
+
+    parkingLotService.leave(ParkingLot.DEFAULT_ID, "Van1");
+  }
+
+  @Test
+  void leaveShouldReleaseSpotsAndDeleteVehicleInTwoStatements() throws Exception {
+    parkingLotService.park(ParkingLot.DEFAULT_ID, new ParkVehicleRequest("Car1", VehicleType.CAR));
+    statistics.clear();
+
+    parkingLotService.leave(ParkingLot.DEFAULT_ID, "Car1");
+
+    assertEquals(2, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void availabilityShouldNotQueryTheDatabase() throws Exception {
+    parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID);
+    parkingLotService.isFull(ParkingLot.DEFAULT_ID, VehicleType.VAN);
+
+    assertEquals(0, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void vehicleLookupsShouldNotQueryTheDatabase() throws Exception {
+    parkingLotService.park(ParkingLot.DEFAULT_ID, new ParkVehicleRequest("Car2", VehicleType.CAR));
+    statistics.clear();
+
+    parkingLotService.findVehicle(ParkingLot.DEFAULT_ID, "Car2");
+    parkingLotService.findVehicles(ParkingLot.DEFAULT_ID, List.of("Car2", "Car3"));
+
+    assertEquals(0, statistics.getPrepareStatementCount());
+    parkingLotService.leave(ParkingLot.DEFAULT_ID, "Car2");
+  }
+}
@@ -0,0 +1,51 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.ParkingLotService;
+import assessment.parkinglot.services.VehicleNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@DirtiesContext
+public class ParkingMetricsTest {
+
+  @Autowired
+  private ParkingLotService parkingLotService;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Test
+  void parkAndLeaveShouldBeTimedByOutcomeAndCountStatements() throws Exception {
+    parkingLotService.park(ParkingLot.DEFAULT_ID, new ParkVehicleRequest("Van1", VehicleType.VAN));
+    parkingLotService.leave(ParkingLot.DEFAULT_ID, "Van1");
+    assertThrows(VehicleNotFoundException.class, () -> parkingLotService.leave(ParkingLot.DEFAULT_ID, "Van1"));
+
+    assertEquals(1, meterRegistry.get("parking.park").tag("vehicle.type", "VAN").tag("outcome", "SUCCESS").timer().count());
+    assertEquals(1, meterRegistry.get("parking.leave").tag("outcome", "SUCCESS").timer().count());
+    assertEquals(1, meterRegistry.get("parking.leave").tag("outcome", "NOT_FOUND").timer().count());
+    assertEquals(2, meterRegistry.get("parking.db.statements").tag("operation", "PARK").counter().count());
+    assertEquals(2, meterRegistry.get("parking.db.statements").tag("operation", "LEAVE").counter().count());
+  }
+
+  @Test
+  void spotGaugesShouldFollowOccupancy() throws Exception {
+    parkingLotService.park(ParkingLot.DEFAULT_ID, new ParkVehicleRequest("Motorcycle1", VehicleType.MOTORCYCLE));
+
+    assertEquals(4, meterRegistry.get("parking.spots").tag("type", "MOTORCYCLE").tag("state", "free").gauge().value());
+    assertEquals(1, meterRegistry.get("parking.spots").tag("type", "MOTORCYCLE").tag("state", "occupied").gauge().value());
+
+    parkingLotService.leave(ParkingLot.DEFAULT_ID, "Motorcycle1");
+
+    assertEquals(5, meterRegistry.get("parking.spots").tag("type", "MOTORCYCLE").tag("state", "free").gauge().value());
+  }
+}
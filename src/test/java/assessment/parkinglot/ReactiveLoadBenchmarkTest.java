@@ -0,0 +1,67 @@
+package assessment.parkinglot;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the Spring MVC API with the WebFlux and R2DBC one of the {@code reactive} profile over
+ * HTTP, with every connection parking and then removing its own car in a loop. Memory per
+ * connection is the heap still in use after a collection halfway through the run, less the heap
+ * in use before it, over the connections. The client runs in the same JVM and so counts towards
+ * it, the same for both.
+ * <p>
+ * Run with {@code ./gradlew benchmark --tests '*ReactiveLoad*'}, adding for instance
+ * {@code -PloadTest.connections=2000} where file descriptors are scarce.
+ */
+@Tag("benchmark")
+public class ReactiveLoadBenchmarkTest {
+
+  @Test
+  void servletVersusReactive() throws Exception {
+    for (boolean reactive : new boolean[] { false, true }) {
+      try (ConfigurableApplicationContext context = start(reactive)) {
+        URI baseUri = ParkAndLeaveLoad.baseUri(context);
+        ParkAndLeaveLoad.run(baseUri, ParkAndLeaveLoad.WARMUP);
+        long baseHeap = usedHeap();
+        ParkAndLeaveLoad load = ParkAndLeaveLoad.start(baseUri, ParkAndLeaveLoad.MEASUREMENT);
+        Thread.sleep(ParkAndLeaveLoad.MEASUREMENT.toMillis() / 2);
+        double heapPerConnection = (double) (usedHeap() - baseHeap) / ParkAndLeaveLoad.CONNECTIONS;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        ParkAndLeaveLoad.Result result = load.finish();
+        System.out.printf("%s, %d connections: %.0f requests/s, p50 %.1f ms, p99 %.1f ms, %.1f KiB per connection, "
+                + "%d threads, %d errors%n",
+            reactive ? "reactive" : "servlet", ParkAndLeaveLoad.CONNECTIONS, result.throughput(),
+            result.percentile(50), result.percentile(99), heapPerConnection / 1024.0, threads, result.errors());
+        assertEquals(0, result.errors());
+      }
+    }
+  }
+
+  private static ConfigurableApplicationContext start(boolean reactive) {
+    String database = "load-" + (reactive ? "reactive" : "servlet");
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .profiles(reactive ? new String[] { "reactive" } : new String[0])
+        .properties(
+            "server.port=0",
+            "server.tomcat.max-connections=" + 2 * ParkAndLeaveLoad.CONNECTIONS,
+            "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+            "spring.r2dbc.url=r2dbc:pool:h2:mem:///" + database + "?options=DB_CLOSE_DELAY=-1&maxSize=32",
+            "parking-lot.generated-spots=" + 2 * ParkAndLeaveLoad.CONNECTIONS,
+            "logging.level.root=WARN")
+        .run();
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    memory.gc();
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,111 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.Vehicle;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.factories.VehicleFactory;
+import assessment.parkinglot.metrics.ParkingMetrics;
+import assessment.parkinglot.persistence.ReactiveParkingStore;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.response.ParkingResult;
+import assessment.parkinglot.services.NoAvailableSpotsException;
+import assessment.parkinglot.services.ParkingLotService;
+import assessment.parkinglot.services.ReactiveParkingLotService;
+import assessment.parkinglot.services.VehicleNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static assessment.parkinglot.response.ParkingResult.Status.LEFT;
+import static assessment.parkinglot.response.ParkingResult.Status.NOT_FOUND;
+import static assessment.parkinglot.response.ParkingResult.Status.NO_AVAILABLE_SPOTS;
+import static assessment.parkinglot.response.ParkingResult.Status.PARKED;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ReactiveParkingLotServiceTest {
+
+  private static final long LOT_ID = 1;
+
+  private static final ParkVehicleRequest CAR = new ParkVehicleRequest("Car1", VehicleType.CAR);
+
+  private static final long[] SPOT_IDS = { 7 };
+
+  @Mock
+  private ParkingLotService parkingLotService;
+
+  @Mock
+  private ReactiveParkingStore reactiveParkingStore;
+
+  @Mock
+  private VehicleFactory vehicleFactory;
+
+  @Mock
+  private ParkingMetrics parkingMetrics;
+
+  @InjectMocks
+  private ReactiveParkingLotService reactiveParkingLotService;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    when(vehicleFactory.createVehicle(CAR)).thenReturn(new Vehicle("Car1", VehicleType.CAR));
+  }
+
+  @Test
+  void parkShouldCompleteTheParkOnceWritten() throws Exception {
+    when(parkingLotService.allocate(LOT_ID, CAR)).thenReturn(new ParkingResult("Car1", PARKED, SPOT_IDS));
+    when(reactiveParkingStore.park(any(), eq(SPOT_IDS))).thenReturn(Mono.empty());
+
+    StepVerifier.create(reactiveParkingLotService.park(LOT_ID, CAR)).verifyComplete();
+
+    verify(parkingLotService).completePark(LOT_ID, CAR, SPOT_IDS);
+    verify(parkingLotService, never()).undoPark(anyLong(), any(), any());
+    verify(parkingMetrics).recordPark(eq(VehicleType.CAR), eq(ParkingMetrics.Outcome.SUCCESS), anyLong());
+  }
+
+  @Test
+  void parkShouldGiveTheSpotsBackWhenTheWriteFails() throws Exception {
+    when(parkingLotService.allocate(LOT_ID, CAR)).thenReturn(new ParkingResult("Car1", PARKED, SPOT_IDS));
+    when(reactiveParkingStore.park(any(), eq(SPOT_IDS))).thenReturn(Mono.error(new IllegalStateException()));
+
+    StepVerifier.create(reactiveParkingLotService.park(LOT_ID, CAR)).verifyError(IllegalStateException.class);
+
+    verify(parkingLotService).undoPark(LOT_ID, "Car1", SPOT_IDS);
+    verify(parkingLotService, never()).completePark(anyLong(), any(), any());
+    verify(parkingMetrics).recordPark(eq(VehicleType.CAR), eq(ParkingMetrics.Outcome.ERROR), anyLong());
+  }
+
+  @Test
+  void parkShouldFailWithoutWritingWhenNoSpotIsAvailable() throws Exception {
+    when(parkingLotService.allocate(LOT_ID, CAR)).thenReturn(new ParkingResult("Car1", NO_AVAILABLE_SPOTS));
+
+    StepVerifier.create(reactiveParkingLotService.park(LOT_ID, CAR)).verifyError(NoAvailableSpotsException.class);
+
+    verifyNoInteractions(reactiveParkingStore);
+  }
+
+  @Test
+  void leaveShouldPutTheVehicleBackWhenTheWriteFails() throws Exception {
+    when(parkingLotService.vacate(LOT_ID, "Car1")).thenReturn(new ParkingResult("Car1", LEFT, SPOT_IDS));
+    when(reactiveParkingStore.leave("Car1", SPOT_IDS)).thenReturn(Mono.error(new IllegalStateException()));
+
+    StepVerifier.create(reactiveParkingLotService.leave(LOT_ID, "Car1")).verifyError(IllegalStateException.class);
+
+    verify(parkingLotService).undoLeave(LOT_ID, "Car1", SPOT_IDS);
+    verify(parkingLotService, never()).completeLeave(anyLong(), any(), any());
+  }
+
+  @Test
+  void leaveShouldFailWhenTheVehicleIsNotParked() throws Exception {
+    when(parkingLotService.vacate(LOT_ID, "Car1")).thenReturn(new ParkingResult("Car1", NOT_FOUND));
+
+    StepVerifier.create(reactiveParkingLotService.leave(LOT_ID, "Car1")).verifyError(VehicleNotFoundException.class);
+
+    verifyNoInteractions(reactiveParkingStore);
+    verify(parkingMetrics).recordLeave(eq(ParkingMetrics.Outcome.NOT_FOUND), anyLong());
+  }
+}
@@ -0,0 +1,147 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.OccupancyIndex;
+import assessment.parkinglot.allocation.ParkingLotShards;
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.ParkingLotService;
+import assessment.parkinglot.services.SpotInventoryService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parks and leaves cars on every core, first on their own and then while a hundred thousand spots
+ * are added to the lot, and compares the park latencies. Adding the spots grows the lot's pools
+ * beyond the id range they were sized for, so the parks run into the copy too, and their p99
+ * must stay within three times what it was before.
+ * <p>
+ * Run with {@code ./gradlew benchmark --tests '*SpotInventory*'}, adding for instance
+ * {@code -PloadTest.added=500000} to change the number of spots added.
+ */
+@Tag("benchmark")
+public class SpotInventoryBenchmarkTest {
+
+  private static final int SPOTS = Integer.getInteger("loadTest.spots", 20_000);
+
+  private static final int ADDED = Integer.getInteger("loadTest.added", 100_000);
+
+  private static final int SECONDS = Integer.getInteger("loadTest.seconds", 5);
+
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+  @Test
+  void parkLatencyDuringABulkAdd() throws Exception {
+    try (ConfigurableApplicationContext context = start()) {
+      ParkingLotService parkingLotService = context.getBean(ParkingLotService.class);
+      SpotInventoryService spotInventoryService = context.getBean(SpotInventoryService.class);
+      long levelId = context.getBean(JdbcTemplate.class)
+          .queryForObject("SELECT MIN(id) FROM parking_level WHERE lot_id = ?", Long.class, ParkingLot.DEFAULT_ID);
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      try {
+        long warmUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        measure(executor, parkingLotService, "Warm", () -> System.nanoTime() < warmUp);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        long[] before = measure(executor, parkingLotService, "Before", () -> System.nanoTime() < deadline);
+
+        OccupancyIndex shard = context.getBean(ParkingLotShards.class).get(ParkingLot.DEFAULT_ID);
+        int spotsBefore = shard.countSpots(ParkingSpotType.REGULAR);
+        long start = System.nanoTime();
+        CompletableFuture<long[]> add = CompletableFuture.supplyAsync(() -> {
+          try {
+            return spotInventoryService.addSpots(ParkingLot.DEFAULT_ID, levelId, ParkingSpotType.REGULAR, ADDED);
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        });
+        long[] during = measure(executor, parkingLotService, "During", () -> !add.isDone());
+        double addMillis = (System.nanoTime() - start) / 1e6;
+
+        assertEquals(ADDED, add.get().length);
+        assertEquals(spotsBefore + ADDED, shard.countSpots(ParkingSpotType.REGULAR));
+        System.out.printf("%,d spots, %,d added in %.0f ms, %d threads%n", SPOTS, ADDED, addMillis, THREADS);
+        System.out.printf("%-8s %10s %8s %8s %8s%n", "", "parks", "p50 us", "p99 us", "max us");
+        print("before", before);
+        print("during", during);
+        assertTrue(during.length > 0, "no park ran during the add");
+        assertTrue(percentile(during, 0.99) <= 3 * percentile(before, 0.99), "p99 park latency rose during the add");
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .properties(
+            "spring.main.web-application-type=none",
+            "spring.datasource.url=jdbc:h2:mem:spot-inventory",
+            "parking-lot.generated-spots=" + SPOTS,
+            "logging.level.root=WARN")
+        .run();
+  }
+
+  /**
+   * Parks and leaves a car over and over on every thread while {@code running}.
+   *
+   * @return the sorted park latencies in nanoseconds
+   */
+  private static long[] measure(ExecutorService executor, ParkingLotService parkingLotService, String prefix,
+      BooleanSupplier running) throws Exception {
+    List<Future<long[]>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      String vehicleId = prefix + t;
+      futures.add(executor.submit(() -> {
+        ParkVehicleRequest request = new ParkVehicleRequest(vehicleId, VehicleType.CAR);
+        long[] latencies = new long[1 << 16];
+        int n = 0;
+        while (running.getAsBoolean()) {
+          long start = System.nanoTime();
+          parkingLotService.park(ParkingLot.DEFAULT_ID, request);
+          long latency = System.nanoTime() - start;
+          if (n == latencies.length) {
+            latencies = Arrays.copyOf(latencies, n * 2);
+          }
+          latencies[n++] = latency;
+          parkingLotService.leave(ParkingLot.DEFAULT_ID, vehicleId);
+        }
+        return Arrays.copyOf(latencies, n);
+      }));
+    }
+    long[] all = new long[0];
+    for (Future<long[]> future : futures) {
+      long[] latencies = future.get(5, TimeUnit.MINUTES);
+      int from = all.length;
+      all = Arrays.copyOf(all, from + latencies.length);
+      System.arraycopy(latencies, 0, all, from, latencies.length);
+    }
+    Arrays.sort(all);
+    return all;
+  }
+
+  private static void print(String phase, long[] latencies) {
+    System.out.printf("%-8s %,10d %8.1f %8.1f %8.1f%n", phase, latencies.length, percentile(latencies, 0.5) / 1e3,
+        percentile(latencies, 0.99) / 1e3, latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e3);
+  }
+
+  private static long percentile(long[] sorted, double fraction) {
+    return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+  }
+}
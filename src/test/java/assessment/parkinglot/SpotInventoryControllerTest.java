@@ -0,0 +1,147 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.controllers.SpotInventoryController;
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.ParkingSpotType;
+import assessment.parkinglot.response.SpotChanges;
+import assessment.parkinglot.services.LevelNotFoundException;
+import assessment.parkinglot.services.SpotInventoryService;
+import assessment.parkinglot.services.SpotNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(SpotInventoryController.class)
+public class SpotInventoryControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private SpotInventoryService spotInventoryService;
+
+  @Test
+  void addSpotsShouldReturnTheNewSpotIds() throws Exception {
+    when(spotInventoryService.addSpots(ParkingLot.DEFAULT_ID, 2, ParkingSpotType.COMPACT, 2))
+        .thenReturn(new long[] { 41, 42 });
+
+    String body = """
+        {
+          "levelId": 2,
+          "type": "COMPACT",
+          "count": 2
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/spots")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0]").value(41))
+        .andExpect(jsonPath("$[1]").value(42));
+  }
+
+  @Test
+  void addSpotsShouldReturnBadRequestStatusCodeWhenCountIsTooLarge() throws Exception {
+    String body = """
+        {
+          "levelId": 2,
+          "type": "COMPACT",
+          "count": 100001
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/spots")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isBadRequest());
+    verifyNoInteractions(spotInventoryService);
+  }
+
+  @Test
+  void addSpotsShouldReturnNotFoundStatusCodeWhenLevelIsNotInTheLot() throws Exception {
+    when(spotInventoryService.addSpots(anyLong(), anyLong(), any(), anyInt()))
+        .thenThrow(new LevelNotFoundException(9));
+
+    String body = """
+        {
+          "levelId": 9,
+          "type": "REGULAR",
+          "count": 10
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lots/2/spots")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void retireSpotsShouldReturnWhichSpotsAreDeferred() throws Exception {
+    when(spotInventoryService.retireSpots(ParkingLot.DEFAULT_ID, new long[] { 1, 2 }))
+        .thenReturn(new SpotChanges(new long[] { 1 }, new long[] { 2 }));
+
+    String body = """
+        {
+          "spotIds": [1, 2, 2]
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/spots/retire")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.applied[0]").value(1))
+        .andExpect(jsonPath("$.deferred[0]").value(2));
+  }
+
+  @Test
+  void retireSpotsShouldReturnNotFoundStatusCodeWhenSpotIsNotInTheLot() throws Exception {
+    when(spotInventoryService.retireSpots(anyLong(), any())).thenThrow(new SpotNotFoundException(7));
+
+    String body = """
+        {
+          "spotIds": [7]
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/spots/retire")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void retypeSpotsShouldReturnBadRequestStatusCodeWhenMissingType() throws Exception {
+    String body = """
+        {
+          "spotIds": [1]
+        }
+        """;
+
+    this.mockMvc.perform(
+            post("/parking-lot/spots/retype")
+                .contentType(APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isBadRequest());
+    verifyNoInteractions(spotInventoryService);
+  }
+}
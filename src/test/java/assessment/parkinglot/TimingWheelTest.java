@@ -0,0 +1,62 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+
+  private static final long TICK = 100;
+
+  private final TimingWheel<String> timingWheel = new TimingWheel<>(TICK, 0);
+
+  @Test
+  void itemsShouldExpireOnTheTickOfTheirDeadline() {
+    timingWheel.schedule("a", 250);
+    timingWheel.schedule("b", 300);
+
+    assertEquals(List.of(), timingWheel.advance(299));
+    assertEquals(List.of("a", "b"), timingWheel.advance(300));
+    assertEquals(0, timingWheel.size());
+  }
+
+  @Test
+  void pastDeadlinesShouldExpireOnTheNextTick() {
+    timingWheel.advance(1_000);
+    timingWheel.schedule("late", 500);
+
+    assertEquals(List.of("late"), timingWheel.advance(1_100));
+  }
+
+  @Test
+  void distantDeadlinesShouldMoveDownTheWheels() {
+    long[] deadlines = { 6_400, 6_500, 409_600, 409_700, 26_214_400, 1_677_721_600L, 5_000_000_000L };
+    for (long deadline : deadlines) {
+      timingWheel.schedule(Long.toString(deadline), deadline);
+    }
+
+    List<String> expired = new ArrayList<>();
+    for (long deadline : deadlines) {
+      assertEquals(List.of(), timingWheel.advance(deadline - TICK));
+      expired.addAll(timingWheel.advance(deadline));
+      assertEquals(Long.toString(deadline), expired.get(expired.size() - 1));
+    }
+    assertEquals(deadlines.length, expired.size());
+  }
+
+  @Test
+  void cancelledItemsShouldNotExpire() {
+    TimingWheel.Timer<String> timer = timingWheel.schedule("a", 10_000);
+    timingWheel.schedule("b", 10_000);
+
+    assertTrue(timingWheel.cancel(timer));
+    assertFalse(timingWheel.cancel(timer));
+    assertEquals(List.of("b"), timingWheel.advance(10_000));
+  }
+}
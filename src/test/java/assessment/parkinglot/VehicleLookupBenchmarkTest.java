@@ -0,0 +1,136 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.services.ParkingLotService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Looks up where vehicles are parked in a lot with a million of them, one at a time on one and on
+ * every core, and a thousand at a time, against the indexed query the lookups would otherwise
+ * take. The lookups must not issue a single statement.
+ * <p>
+ * Run with {@code ./gradlew benchmark --tests '*VehicleLookup*'}, adding for instance
+ * {@code -PloadTest.vehicles=5000000} to change the number of parked vehicles.
+ */
+@Tag("benchmark")
+public class VehicleLookupBenchmarkTest {
+
+  private static final int VEHICLES = Integer.getInteger("loadTest.vehicles", 1_000_000);
+
+  private static final int LOOKUPS = 2_000_000;
+
+  private static final int BULK = 1_000;
+
+  private static final int QUERIES = 20_000;
+
+  @Test
+  void lookupsAtAMillionParkedVehicles() throws Exception {
+    try (ConfigurableApplicationContext context = start()) {
+      ParkingLotService parkingLotService = context.getBean(ParkingLotService.class);
+      JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+      jdbcTemplate.update("INSERT INTO vehicle (id, type) SELECT 'V' || id, 'CAR' FROM parking_spot");
+      jdbcTemplate.update("UPDATE parking_spot SET vehicle_id = 'V' || id");
+      parkingLotService.loadOccupancy();
+      String[] probes = jdbcTemplate.queryForList("SELECT vehicle_id FROM parking_spot WHERE vehicle_id IS NOT NULL", String.class)
+          .toArray(String[]::new);
+      shuffle(probes);
+      Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+      lookup(parkingLotService, probes, 0, LOOKUPS);
+      statistics.clear();
+      long start = System.nanoTime();
+      lookup(parkingLotService, probes, 0, LOOKUPS);
+      double single = (double) (System.nanoTime() - start) / LOOKUPS;
+
+      int threads = Runtime.getRuntime().availableProcessors();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      List<Future<Integer>> futures = new ArrayList<>();
+      start = System.nanoTime();
+      for (int t = 0; t < threads; t++) {
+        int offset = t * (probes.length / threads);
+        futures.add(executor.submit(() -> lookup(parkingLotService, probes, offset, LOOKUPS)));
+      }
+      for (Future<Integer> future : futures) {
+        assertEquals(LOOKUPS, future.get());
+      }
+      double parallel = (double) threads * LOOKUPS * 1e9 / (System.nanoTime() - start);
+      executor.shutdown();
+
+      List<List<String>> batches = new ArrayList<>();
+      for (int i = 0; i + BULK <= probes.length && batches.size() < 1_000; i += BULK) {
+        batches.add(Arrays.asList(probes).subList(i, i + BULK));
+      }
+      start = System.nanoTime();
+      for (List<String> batch : batches) {
+        assertEquals(BULK, parkingLotService.findVehicles(ParkingLot.DEFAULT_ID, batch).size());
+      }
+      double bulk = (System.nanoTime() - start) / 1e3 / batches.size();
+      long statements = statistics.getPrepareStatementCount();
+
+      for (int i = 0; i < QUERIES / 10; i++) {
+        jdbcTemplate.queryForList("SELECT id FROM parking_spot WHERE vehicle_id = ?", Long.class, probes[i]);
+      }
+      start = System.nanoTime();
+      for (int i = 0; i < QUERIES; i++) {
+        jdbcTemplate.queryForList("SELECT id FROM parking_spot WHERE vehicle_id = ?", Long.class, probes[i]);
+      }
+      double query = (double) (System.nanoTime() - start) / QUERIES;
+
+      System.out.printf("%,d parked vehicles%n", probes.length);
+      System.out.printf("findVehicle            %8.0f ns per lookup on one thread%n", single);
+      System.out.printf("findVehicle            %8.1f million lookups/s on %d threads%n", parallel / 1e6, threads);
+      System.out.printf("findVehicles (%d)    %8.1f us per lookup%n", BULK, bulk);
+      System.out.printf("indexed query          %8.0f ns per lookup%n", query);
+      assertEquals(0, statements);
+    }
+  }
+
+  private static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .properties(
+            "spring.main.web-application-type=none",
+            "spring.datasource.url=jdbc:h2:mem:vehicle-lookup",
+            "spring.jpa.properties.hibernate.generate_statistics=true",
+            "parking-lot.generated-spots=" + VEHICLES,
+            "logging.level.root=WARN")
+        .run();
+  }
+
+  private static int lookup(ParkingLotService parkingLotService, String[] probes, int offset, int lookups)
+      throws Exception {
+    int found = 0;
+    for (int i = 0; i < lookups; i++) {
+      if (parkingLotService.findVehicle(ParkingLot.DEFAULT_ID, probes[(offset + i) % probes.length]) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  private static void shuffle(String[] probes) {
+    Random random = new Random(42);
+    for (int i = probes.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      String probe = probes[i];
+      probes[i] = probes[j];
+      probes[j] = probe;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.VehicleRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares the {@link VehicleRegistry} with the JDK maps it replaces, a
+ * {@link ConcurrentHashMap} of arrays and a {@link HashMap} of boxed lists, for the heap taken
+ * per parked vehicle and the latency of looking a vehicle up.
+ * <p>
+ * Heap is measured as the growth of the used heap after full collections, with the ids of the
+ * vehicles only reachable through the structure under test. Run with
+ * {@code ./gradlew benchmark --tests '*VehicleRegistryBenchmark*'}, adding for instance
+ * {@code -PloadTest.vehicles=5000000} to change the number of parked vehicles.
+ */
+@Tag("benchmark")
+public class VehicleRegistryBenchmarkTest {
+
+  private static final int VEHICLES = Integer.getInteger("loadTest.vehicles", 1_000_000);
+
+  private static final int LOOKUPS = 5_000_000;
+
+  @Test
+  void compareFootprintAndLookupLatency() {
+    Map<String, Supplier<Function<String, Object>>> structures = new LinkedHashMap<>();
+    structures.put("VehicleRegistry", () -> {
+      VehicleRegistry registry = new VehicleRegistry();
+      for (int i = 0; i < VEHICLES; i++) {
+        registry.putIfAbsent(plate(i), spotIds(i), null);
+      }
+      System.out.printf("%-24s %.1f bytes per vehicle reported by footprintBytes()%n",
+          "VehicleRegistry", (double) registry.footprintBytes() / registry.size());
+      return registry::get;
+    });
+    structures.put("ConcurrentHashMap<long[]>", () -> {
+      Map<String, long[]> map = new ConcurrentHashMap<>();
+      for (int i = 0; i < VEHICLES; i++) {
+        map.put(plate(i), spotIds(i));
+      }
+      return map::get;
+    });
+    structures.put("HashMap<List<Long>>", () -> {
+      Map<String, List<Long>> map = new HashMap<>();
+      for (int i = 0; i < VEHICLES; i++) {
+        List<Long> spots = new ArrayList<>();
+        Arrays.stream(spotIds(i)).forEach(spots::add);
+        map.put(plate(i), spots);
+      }
+      return map::get;
+    });
+
+    System.out.printf("%d parked vehicles, %d lookups%n", VEHICLES, LOOKUPS);
+    structures.forEach(VehicleRegistryBenchmarkTest::measure);
+  }
+
+  private static void measure(String name, Supplier<Function<String, Object>> structure) {
+    long before = usedHeap();
+    Function<String, Object> lookup = structure.get();
+    long bytes = usedHeap() - before;
+    String[] probes = probes();
+    lookup(lookup, probes);
+    long start = System.nanoTime();
+    long found = lookup(lookup, probes);
+    long elapsed = System.nanoTime() - start;
+    System.out.printf("%-24s %6.1f bytes per vehicle, %5.1f ns per lookup%n",
+        name, (double) bytes / VEHICLES, (double) elapsed / LOOKUPS);
+    assertNotNull(lookup.apply(plate(VEHICLES - 1)));
+    assertEquals(LOOKUPS, found);
+  }
+
+  private static long lookup(Function<String, Object> lookup, String[] probes) {
+    long found = 0;
+    for (int i = 0; i < LOOKUPS; i++) {
+      if (lookup.apply(probes[i & (probes.length - 1)]) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Ids of random parked vehicles, built apart from the stored ones so lookups compare contents
+   * as the service's do.
+   */
+  private static String[] probes() {
+    Random random = new Random(42);
+    String[] probes = new String[1 << 16];
+    for (int i = 0; i < probes.length; i++) {
+      probes[i] = plate(random.nextInt(VEHICLES));
+    }
+    return probes;
+  }
+
+  private static String plate(int i) {
+    return String.format("%c%c-%04d-%c", 'A' + i % 26, 'A' + i / 26 % 26, i / 676 % 10_000, 'A' + i / 6_760_000 % 26);
+  }
+
+  private static long[] spotIds(int i) {
+    return i % 5 == 0 ? new long[] { 3L * i, 3L * i + 1, 3L * i + 2 } : new long[] { 3L * i };
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
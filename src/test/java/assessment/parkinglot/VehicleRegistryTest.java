@@ -0,0 +1,178 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.allocation.VehicleRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VehicleRegistryTest {
+
+  @Test
+  void putIfAbsentKeepsFirstAssignment() {
+    VehicleRegistry registry = new VehicleRegistry();
+
+    assertTrue(registry.putIfAbsent("AB-123", new long[] { 1, 2 }, null));
+    assertFalse(registry.putIfAbsent("AB-123", new long[] { 3 }, null));
+
+    assertArrayEquals(new long[] { 1, 2 }, registry.get("AB-123"));
+    assertTrue(registry.contains("AB-123"));
+    assertNull(registry.get("AB-124"));
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  void removeOnlyMatchingAssignment() {
+    VehicleRegistry registry = new VehicleRegistry();
+    registry.putIfAbsent("AB-123", new long[] { 1, 2 }, null);
+
+    assertFalse(registry.remove("AB-123", new long[] { 1 }, null));
+    assertFalse(registry.remove("AB-124", new long[] { 1, 2 }, null));
+    assertTrue(registry.remove("AB-123", new long[] { 1, 2 }, null));
+
+    assertFalse(registry.contains("AB-123"));
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  void takeWritesOutTheSpotsIfTheyFit() {
+    VehicleRegistry registry = new VehicleRegistry();
+    registry.putIfAbsent("AB-123", new long[] { 1, 2, 3 }, null);
+    long[] into = new long[3];
+    List<long[]> unassigned = new ArrayList<>();
+
+    assertEquals(0, registry.take("AB-124", into, null));
+    assertEquals(3, registry.take("AB-123", new long[2], null));
+    assertTrue(registry.contains("AB-123"));
+    assertEquals(3, registry.take("AB-123", into, (id, spotIds) -> unassigned.add(spotIds)));
+
+    assertArrayEquals(new long[] { 1, 2, 3 }, into);
+    assertArrayEquals(new long[] { 1, 2, 3 }, unassigned.get(0));
+    assertFalse(registry.contains("AB-123"));
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  void listenerCalledOnlyOnChange() {
+    VehicleRegistry registry = new VehicleRegistry();
+    List<String> calls = new ArrayList<>();
+
+    registry.putIfAbsent("AB-123", new long[] { 1 }, (id, spotIds) -> calls.add("assigned " + id));
+    registry.putIfAbsent("AB-123", new long[] { 2 }, (id, spotIds) -> calls.add("assigned " + id));
+    registry.remove("AB-123", new long[] { 2 }, (id, spotIds) -> calls.add("unassigned " + id));
+    registry.remove("AB-123", new long[] { 1 }, (id, spotIds) -> calls.add("unassigned " + id));
+
+    assertEquals(List.of("assigned AB-123", "unassigned AB-123"), calls);
+  }
+
+  @Test
+  void assignmentsOfAnyLengthRoundTrip() {
+    VehicleRegistry registry = new VehicleRegistry();
+    long[] spotIds = new long[100];
+    Arrays.setAll(spotIds, i -> 1_000_000L + i);
+
+    registry.putIfAbsent("AB-123", spotIds, null);
+    registry.putIfAbsent("AB-124", new long[0], null);
+
+    assertArrayEquals(spotIds, registry.get("AB-123"));
+    assertArrayEquals(new long[0], registry.get("AB-124"));
+    assertTrue(registry.remove("AB-124", new long[0], null));
+  }
+
+  @Test
+  void idsOutsideLatin1RoundTrip() {
+    VehicleRegistry registry = new VehicleRegistry();
+    registry.putIfAbsent("\u00d6-\u00c4\u00dc-1", new long[] { 1 }, null);
+    registry.putIfAbsent("\u6771\u4eac-500", new long[] { 2 }, null);
+
+    assertArrayEquals(new long[] { 1 }, registry.get("\u00d6-\u00c4\u00dc-1"));
+    assertArrayEquals(new long[] { 2 }, registry.get("\u6771\u4eac-500"));
+    assertNull(registry.get("\u6771\u4eac-501"));
+    assertEquals(Map.of("\u00d6-\u00c4\u00dc-1", 1L, "\u6771\u4eac-500", 2L), firstSpots(registry.toMap()));
+  }
+
+  @Test
+  void matchesMapUnderRandomParksAndLeaves() {
+    VehicleRegistry registry = new VehicleRegistry();
+    Map<String, long[]> expected = new HashMap<>();
+    Random random = new Random(7);
+
+    for (int i = 0; i < 200_000; i++) {
+      String vehicleId = "V" + random.nextInt(5_000);
+      long[] held = expected.get(vehicleId);
+      if (held == null) {
+        long[] spotIds = new long[1 + random.nextInt(3)];
+        for (int j = 0; j < spotIds.length; j++) {
+          spotIds[j] = random.nextInt(100_000);
+        }
+        assertTrue(registry.putIfAbsent(vehicleId, spotIds, null));
+        expected.put(vehicleId, spotIds);
+      } else {
+        assertTrue(registry.remove(vehicleId, held, null));
+        expected.remove(vehicleId);
+      }
+    }
+
+    assertEquals(expected.size(), registry.size());
+    for (int i = 0; i < 5_000; i++) {
+      String vehicleId = "V" + i;
+      long[] held = expected.get(vehicleId);
+      if (held == null) {
+        assertNull(registry.get(vehicleId));
+      } else {
+        assertArrayEquals(held, registry.get(vehicleId));
+      }
+    }
+    Map<String, long[]> copy = registry.toMap();
+    assertEquals(expected.keySet(), copy.keySet());
+    expected.forEach((vehicleId, held) -> assertArrayEquals(held, copy.get(vehicleId)));
+  }
+
+  @Test
+  void footprintStaysBoundedUnderChurn() {
+    VehicleRegistry registry = new VehicleRegistry();
+    for (int i = 0; i < 10_000; i++) {
+      registry.putIfAbsent("V" + i, new long[] { i }, null);
+    }
+    long footprint = registry.footprintBytes();
+
+    for (int round = 1; round <= 20; round++) {
+      for (int i = 0; i < 10_000; i++) {
+        registry.remove("V" + (round - 1) + "-" + i, new long[] { i }, null);
+        registry.remove("V" + i, new long[] { i }, null);
+        registry.putIfAbsent("V" + round + "-" + i, new long[] { i }, null);
+      }
+    }
+
+    assertEquals(10_000, registry.size());
+    assertTrue(registry.footprintBytes() <= 2 * footprint, registry.footprintBytes() + " bytes");
+  }
+
+  @Test
+  void clearForgetsEveryVehicle() {
+    VehicleRegistry registry = new VehicleRegistry();
+    registry.putIfAbsent("AB-123", new long[] { 1 }, null);
+
+    registry.clear();
+
+    assertEquals(0, registry.size());
+    assertNull(registry.get("AB-123"));
+    assertTrue(registry.putIfAbsent("AB-123", new long[] { 2 }, null));
+  }
+
+  private static Map<String, Long> firstSpots(Map<String, long[]> vehicles) {
+    Map<String, Long> firstSpots = new HashMap<>();
+    vehicles.forEach((vehicleId, spotIds) -> firstSpots.put(vehicleId, spotIds[0]));
+    return firstSpots;
+  }
+}
@@ -0,0 +1,51 @@
+package assessment.parkinglot;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the platform-thread pool with virtual threads over HTTP, with every connection
+ * parking and then removing its own car in a loop.
+ * <p>
+ * Run with {@code ./gradlew benchmark -PjavaVersion=21 --tests '*VirtualThreadLoad*'}, adding
+ * for instance {@code -PloadTest.connections=2000} where file descriptors are scarce.
+ */
+@Tag("benchmark")
+public class VirtualThreadLoadBenchmarkTest {
+
+  @Test
+  void platformThreadsVersusVirtualThreads() throws Exception {
+    assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+
+    for (boolean virtual : new boolean[] { false, true }) {
+      try (ConfigurableApplicationContext context = start(virtual)) {
+        URI baseUri = ParkAndLeaveLoad.baseUri(context);
+        ParkAndLeaveLoad.run(baseUri, ParkAndLeaveLoad.WARMUP);
+        ParkAndLeaveLoad.Result result = ParkAndLeaveLoad.run(baseUri, ParkAndLeaveLoad.MEASUREMENT);
+        System.out.printf("%s threads, %d connections: %.0f requests/s, p50 %.1f ms, p99 %.1f ms, %d errors%n",
+            virtual ? "virtual" : "platform", ParkAndLeaveLoad.CONNECTIONS, result.throughput(),
+            result.percentile(50), result.percentile(99), result.errors());
+        assertEquals(0, result.errors());
+      }
+    }
+  }
+
+  private static ConfigurableApplicationContext start(boolean virtual) {
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .profiles(virtual ? new String[] { "virtual-threads" } : new String[0])
+        .properties(
+            "server.port=0",
+            "server.tomcat.max-connections=" + 2 * ParkAndLeaveLoad.CONNECTIONS,
+            "spring.datasource.url=jdbc:h2:mem:load-" + (virtual ? "virtual" : "platform"),
+            "parking-lot.generated-spots=" + 2 * ParkAndLeaveLoad.CONNECTIONS,
+            "logging.level.root=WARN")
+        .run();
+  }
+}
@@ -0,0 +1,80 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.services.OccupancyWarmStart;
+import assessment.parkinglot.services.ParkingLotService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares loading the occupancy of lots of several sizes from the database with warming it from
+ * a snapshot, both until the service can serve parks and until it has been reconciled.
+ * <p>
+ * Run with {@code ./gradlew benchmark --tests '*WarmStartBenchmark*'}, adding for instance
+ * {@code -PloadTest.lotSizes=10000,100000} to pick the sizes.
+ */
+@Tag("benchmark")
+public class WarmStartBenchmarkTest {
+
+  private static final long[] LOT_SIZES = Arrays.stream(System.getProperty("loadTest.lotSizes", "10000,100000,1000000")
+      .split(",")).mapToLong(Long::parseLong).toArray();
+
+  private static final int ROUNDS = 3;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void databaseLoadVersusWarmStart() throws Exception {
+    for (long size : LOT_SIZES) {
+      Path file = directory.resolve("warm-start-" + size + ".bin");
+      try (ConfigurableApplicationContext context = start(size, file)) {
+        ParkingLotService parkingLotService = context.getBean(ParkingLotService.class);
+        OccupancyWarmStart occupancyWarmStart = context.getBean(OccupancyWarmStart.class);
+        int remainingSpots = parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID);
+        occupancyWarmStart.save();
+
+        long databaseNanos = Long.MAX_VALUE;
+        long readyNanos = Long.MAX_VALUE;
+        long reconciledNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+          long start = System.nanoTime();
+          parkingLotService.loadOccupancy();
+          databaseNanos = Math.min(databaseNanos, System.nanoTime() - start);
+
+          start = System.nanoTime();
+          CompletableFuture<Void> reconciliation = occupancyWarmStart.load();
+          readyNanos = Math.min(readyNanos, System.nanoTime() - start);
+          reconciliation.get(5, TimeUnit.MINUTES);
+          reconciledNanos = Math.min(reconciledNanos, System.nanoTime() - start);
+        }
+
+        System.out.printf("%d spots: database %.0f ms, snapshot ready %.0f ms, reconciled %.0f ms, snapshot %d KiB%n",
+            size, databaseNanos / 1e6, readyNanos / 1e6, reconciledNanos / 1e6, Files.size(file) / 1024);
+        assertEquals(remainingSpots, parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID));
+      }
+    }
+  }
+
+  private static ConfigurableApplicationContext start(long size, Path file) {
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .properties(
+            "server.port=0",
+            "spring.datasource.url=jdbc:h2:mem:warm-start-" + size,
+            "parking-lot.generated-spots=" + size,
+            "parking-lot.warm-start.file=" + file,
+            "logging.level.root=WARN")
+        .run();
+  }
+}
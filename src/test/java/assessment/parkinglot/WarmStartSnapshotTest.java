@@ -0,0 +1,106 @@
+package assessment.parkinglot;
+
+import assessment.parkinglot.domain.ParkingLot;
+import assessment.parkinglot.domain.VehicleType;
+import assessment.parkinglot.persistence.WarmStartSnapshot;
+import assessment.parkinglot.request.ParkVehicleRequest;
+import assessment.parkinglot.services.ParkingLotService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WarmStartSnapshotTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void snapshotShouldRoundTrip() throws Exception {
+    Path file = directory.resolve("warm-start.bin");
+    long[][] spotIds = { { 1, 2, 3 }, { 11, 12, 20, 13 }, { 30, 31, 32, 33 } };
+
+    WarmStartSnapshot.write(file, new WarmStartSnapshot(List.of(
+        new WarmStartSnapshot.Lot(1, spotIds, Map.of("Car1", new long[] { 20 }, "Van1", new long[] { 30, 31, 32 })),
+        new WarmStartSnapshot.Lot(2, new long[][] { {}, {}, {} }, Map.of()))));
+    WarmStartSnapshot snapshot = WarmStartSnapshot.read(file);
+
+    assertEquals(2, snapshot.getLots().size());
+    WarmStartSnapshot.Lot lot = snapshot.getLots().get(0);
+    assertEquals(1, lot.getLotId());
+    assertArrayEquals(new long[] { 1, 2, 3 }, lot.getSpotIds()[0]);
+    assertArrayEquals(new long[] { 11, 12, 13, 20 }, lot.getSpotIds()[1]);
+    assertArrayEquals(new long[] { 30, 31, 32, 33 }, lot.getSpotIds()[2]);
+    assertArrayEquals(new long[] { 30, 31, 32 }, lot.getVehicles().get("Van1"));
+    assertArrayEquals(new long[] { 20 }, lot.getVehicles().get("Car1"));
+    assertEquals(0, snapshot.getLots().get(1).getVehicles().size());
+  }
+
+  @Test
+  void readShouldIgnoreMissingOrDamagedFiles() throws Exception {
+    Path file = directory.resolve("warm-start.bin");
+
+    assertNull(WarmStartSnapshot.read(file));
+
+    WarmStartSnapshot.write(file, new WarmStartSnapshot(List.of(
+        new WarmStartSnapshot.Lot(1, new long[][] { { 1 }, {}, {} }, Map.of()))));
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(file, bytes);
+
+    assertNull(WarmStartSnapshot.read(file));
+  }
+
+  @Test
+  void encodeShouldRefuseVehiclesThatDoNotFit() {
+    assertThrows(IllegalArgumentException.class, () -> WarmStartSnapshot.encode(new WarmStartSnapshot(List.of(
+        new WarmStartSnapshot.Lot(1, new long[][] { { 1 }, {}, {} }, Map.of("Car".repeat(30_000), new long[] { 1 }))))));
+    assertThrows(IllegalArgumentException.class, () -> WarmStartSnapshot.encode(new WarmStartSnapshot(List.of(
+        new WarmStartSnapshot.Lot(1, new long[][] { { 1 }, {}, {} }, Map.of("Car1", new long[300]))))));
+  }
+
+  @Test
+  void theServiceShouldRestartFromItsSnapshotOnAPersistentDatabase() throws Exception {
+    Path file = directory.resolve("warm-start.bin");
+    int remainingSpots;
+    long[] spotIds;
+    try (ConfigurableApplicationContext context = start(file)) {
+      ParkingLotService parkingLotService = context.getBean(ParkingLotService.class);
+      parkingLotService.park(ParkingLot.DEFAULT_ID, new ParkVehicleRequest("Car1", VehicleType.CAR));
+      remainingSpots = parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID);
+      spotIds = parkingLotService.findVehicle(ParkingLot.DEFAULT_ID, "Car1").getSpotIds();
+    }
+    assertTrue(Files.exists(file));
+
+    try (ConfigurableApplicationContext context = start(file)) {
+      ParkingLotService parkingLotService = context.getBean(ParkingLotService.class);
+
+      assertEquals(remainingSpots, parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID));
+      assertArrayEquals(spotIds, parkingLotService.findVehicle(ParkingLot.DEFAULT_ID, "Car1").getSpotIds());
+      parkingLotService.loadOccupancy();
+      assertEquals(remainingSpots, parkingLotService.getRemainingSpots(ParkingLot.DEFAULT_ID));
+    }
+  }
+
+  private ConfigurableApplicationContext start(Path file) {
+    return new SpringApplicationBuilder(ParkingLotServiceApplication.class)
+        .properties(
+            "server.port=0",
+            "spring.datasource.url=jdbc:h2:file:" + directory.resolve("parking-lot"),
+            "parking-lot.generated-spots=100",
+            "parking-lot.warm-start.file=" + file,
+            "logging.level.root=WARN")
+        .run();
+  }
+}